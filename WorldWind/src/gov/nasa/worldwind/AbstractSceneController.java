@@ -411,6 +411,12 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
         this.dc.setPerFrameStatistic(PerformanceStatistic.FRAME_TIME, "Frame Time (ms)", (int) this.frameTime);
         this.dc.setPerFrameStatistic(PerformanceStatistic.FRAME_RATE, "Frame Rate (fps)", (int) this.framesPerSecond);
         this.dc.setPerFrameStatistic(PerformanceStatistic.PICK_TIME, "Pick Time (ms)", (int) this.pickTime);
+        this.dc.setPerFrameStatistic(PerformanceStatistic.ORDERED_RENDERABLES_QUEUED, "Ordered Renderables Queued",
+            this.dc.getOrderedRenderablesQueued());
+        this.dc.setPerFrameStatistic(PerformanceStatistic.ORDERED_RENDERABLES_CULLED, "Ordered Renderables Culled",
+            this.dc.getOrderedRenderablesCulled());
+        this.dc.setPerFrameStatistic(PerformanceStatistic.ORDERED_RENDERABLES_DRAWN, "Ordered Renderables Drawn",
+            this.dc.getOrderedRenderablesDrawn());
 
         Set<String> perfKeys = dc.getPerFrameStatisticsKeys();
         if (perfKeys == null)
@@ -423,9 +429,18 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
 
         if (perfKeys.contains(PerformanceStatistic.TEXTURE_CACHE) || perfKeys.contains(PerformanceStatistic.ALL))
         {
-            if (dc.getTextureCache() != null)
+            GpuResourceCache textureCache = this.dc.getTextureCache();
+            if (textureCache != null)
+            {
                 this.dc.setPerFrameStatistic(PerformanceStatistic.TEXTURE_CACHE,
-                    "Texture Cache size (Kb)", this.dc.getTextureCache().getUsedCapacity() / 1000);
+                    "Texture Cache size (Kb)", textureCache.getUsedCapacity() / 1000);
+                this.dc.setPerFrameStatistic(PerformanceStatistic.TEXTURE_CACHE, "Texture Cache Hit Ratio (%)",
+                    PerformanceStatistic.computeHitRatio(textureCache.getHitCount(), textureCache.getMissCount()));
+                this.dc.setPerFrameStatistic(PerformanceStatistic.TEXTURE_CACHE, "Texture Cache Evictions",
+                    textureCache.getEvictionCount());
+                this.dc.setPerFrameStatistic(PerformanceStatistic.TEXTURE_CACHE, "Texture Cache Evicted (Kb)",
+                    textureCache.getEvictedCapacity() / 1000);
+            }
         }
 
         if (perfKeys.contains(PerformanceStatistic.JVM_HEAP) || perfKeys.contains(PerformanceStatistic.ALL))
@@ -992,7 +1007,11 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
     protected void preRenderOrderedSurfaceRenderables(DrawContext dc)
     {
         if (dc.getOrderedSurfaceRenderables().isEmpty())
+        {
+            // Clear the composite representation built in earlier frames.
+            this.buildCompositeSurfaceObjects(dc);
             return;
+        }
 
         dc.setOrderedRenderingMode(true);
 
@@ -1071,8 +1090,8 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
      * Builds a composite representation for all {@link gov.nasa.worldwind.render.SurfaceObject} instances in the draw
      * context's ordered surface renderable queue. While building the composite representation this invokes {@link
      * gov.nasa.worldwind.render.SurfaceObject#render(gov.nasa.worldwind.render.DrawContext)} in ordered rendering mode.
-     * This does nothing if the ordered surface renderable queue is empty, or if it does not contain any
-     * SurfaceObjects.
+     * If the ordered surface renderable queue is empty, or does not contain any SurfaceObjects, this builds no
+     * composite representation and releases the surface objects held from earlier frames.
      * <p/>
      * This method is called during the preRender phase, and is therefore free to modify the framebuffer contents to
      * create the composite representation.
@@ -1083,10 +1102,8 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
      */
     protected void buildCompositeSurfaceObjects(DrawContext dc)
     {
-        if (dc.getOrderedSurfaceRenderables().size() > 0)
-        {
-            this.surfaceObjectTileBuilder.buildTiles(dc, dc.getOrderedSurfaceRenderables());
-        }
+        // Build tiles even when the queue is empty, so the tile builder releases the surface objects it tracks.
+        this.surfaceObjectTileBuilder.buildTiles(dc, dc.getOrderedSurfaceRenderables());
     }
 
     /**
@@ -1123,8 +1140,9 @@ public abstract class AbstractSceneController extends WWObjectImpl implements Sc
         }
         finally
         {
+            // The tiles aren't cleared here: the tile builder keeps track of the surface objects between frames so it
+            // updates only the tiles they change, and releases them when next given an empty queue.
             ogsh.pop(gl);
-            this.surfaceObjectTileBuilder.clearTiles(dc);
         }
     }
 }
@@ -57,6 +57,11 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String CLOSE = "gov.nasa.worldwind.avkey.Close";
     final String COLOR = "gov.nasa.worldwind.avkey.Color";
     final String COMPRESS_TEXTURES = "gov.nasa.worldwind.avkey.CompressTextures";
+    /**
+     * The size in bytes of the {@link gov.nasa.worldwind.cache.CompressedTileCache} shared by tiled image layers and
+     * elevation models. Zero disables the cache.
+     */
+    final String COMPRESSED_TILE_CACHE_SIZE = "gov.nasa.worldwind.avkey.CompressedTileCacheSize";
     final String CONSTRUCTION_PARAMETERS = "gov.nasa.worldwind.avkey.ConstructionParameters";
     final String CONTEXT = "gov.nasa.worldwind.avkey.Context";
     final String COORDINATE_SYSTEM = "gov.nasa.worldwind.avkey.CoordinateSystem";
@@ -112,11 +117,23 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String ELEVATION_MAX = "gov.nasa.worldwind.avkey.ElevationMaxKey";
     final String ELEVATION_MODEL = "gov.nasa.worldwind.avkey.ElevationModel";
     final String ELEVATION_MODEL_FACTORY = "gov.nasa.worldwind.avkey.ElevationModelFactory";
+    /** The number of bytes per second an elevation tile prefetcher may request. */
+    final String ELEVATION_PREFETCH_BANDWIDTH_BUDGET = "gov.nasa.worldwind.avkey.ElevationPrefetchBandwidthBudget";
+    /** The number of bytes an elevation tile prefetcher may request during one flight or motion of the view. */
+    final String ELEVATION_PREFETCH_MEMORY_BUDGET = "gov.nasa.worldwind.avkey.ElevationPrefetchMemoryBudget";
     final String ELEVATION_TILE_CACHE_SIZE = "gov.nasa.worldwind.avkey.ElevationTileCacheSize";
     final String ELEVATION_UNIT = "gov.nasa.worldwind.avkey.ElevationUnit";
 
     final String END = "gov.nasa.worldwind.avkey.End";
 
+    /**
+     * Indicates that a {@link gov.nasa.worldwind.cache.MemoryCache} evicts entries with the CLOCK (second chance)
+     * approximation of least-recently-used eviction.
+     */
+    final String EVICTION_POLICY_CLOCK = "gov.nasa.worldwind.avkey.EvictionPolicyClock";
+    /** Indicates that a {@link gov.nasa.worldwind.cache.MemoryCache} evicts its least recently used entries. */
+    final String EVICTION_POLICY_LRU = "gov.nasa.worldwind.avkey.EvictionPolicyLRU";
+
     final String EXPIRY_TIME = "gov.nasa.worldwind.avkey.ExpiryTime";
     final String EXTENT = "gov.nasa.worldwind.avkey.Extent";
     final String EXTERNAL_LINK = "gov.nasa.worldwind.avkey.ExternalLink";
@@ -219,6 +236,17 @@ public interface AVKey // TODO: Eliminate unused constants, if any
 
     final String MAX_ACTIVE_ALTITUDE = "gov.nasa.worldwind.avkey.MaxActiveAltitude";
     final String MAX_MESSAGE_REPEAT = "gov.nasa.worldwind.avkey.MaxMessageRepeat";
+    /**
+     * Indicates the class of {@link gov.nasa.worldwind.cache.MemoryCache} created by {@link
+     * gov.nasa.worldwind.cache.MemoryCacheSet#addCache(String, long, long)}. The class must provide a public
+     * constructor taking the low water and capacity as <code>long</code> arguments.
+     */
+    final String MEMORY_CACHE_CLASS_NAME = "gov.nasa.worldwind.avkey.MemoryCacheClassName";
+    /**
+     * Indicates the default eviction policy of memory caches created by {@link
+     * gov.nasa.worldwind.cache.MemoryCacheSet#addCache(String, long, long)}, either {@link #EVICTION_POLICY_LRU} or {@link #EVICTION_POLICY_CLOCK}.
+     */
+    final String MEMORY_CACHE_EVICTION_POLICY = "gov.nasa.worldwind.avkey.MemoryCacheEvictionPolicy";
     final String MEMORY_CACHE_SET_CLASS_NAME = "gov.nasa.worldwind.avkey.MemoryCacheSetClassName";
     /**
      * Indicates the location that MIL-STD-2525 tactical symbols and tactical point graphics retrieve their icons from.
@@ -259,6 +287,12 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String NORTH = "gov.nasa.worldwind.avkey.North";
 
     final String OFFLINE_MODE = "gov.nasa.worldwind.avkey.OfflineMode";
+    /**
+     * Indicates whether a {@link gov.nasa.worldwind.terrain.BasicElevationModel} stores the elevations of its cached
+     * tiles in native memory slabs outside the Java heap. When used as a key, the corresponding value must be a
+     * <code>Boolean</code>.
+     */
+    final String OFF_HEAP_ELEVATION_CACHE_ENABLED = "gov.nasa.worldwind.avkey.OffHeapElevationCacheEnabled";
     final String OPACITY = "gov.nasa.worldwind.avkey.Opacity";
     /**
      * Indicates an object's position in a series. When used as a key, the corresponding value must be an {@link
@@ -336,6 +370,12 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String RASTER_PIXEL = "gov.nasa.worldwind.avkey.RasterPixel";
     final String RASTER_PIXEL_IS_AREA = "gov.nasa.worldwind.avkey.RasterPixelIsArea";
     final String RASTER_PIXEL_IS_POINT = "gov.nasa.worldwind.avkey.RasterPixelIsPoint";
+    /**
+     * Indicates whether the rectangular tessellator builds the vertices of new terrain tiles on the task service's
+     * threads, drawing each tile's parent until the tile's vertices are ready.
+     */
+    final String RECTANGULAR_TESSELLATOR_BUILD_IN_BACKGROUND =
+        "gov.nasa.worldwind.avkey.RectangularTessellatorBuildInBackground";
     final String RECTANGULAR_TESSELLATOR_MAX_LEVEL = "gov.nasa.worldwind.avkey.RectangularTessellatorMaxLevel";
     final String REPAINT = "gov.nasa.worldwind.avkey.Repaint";
     final String REPEAT_NONE = "gov.nasa.worldwind.avkey.RepeatNone";
@@ -354,11 +394,26 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     /** Does not modify the item size when the window changes size. */
     final String RESIZE_KEEP_FIXED_SIZE = "gov.nasa.worldwind.CompassLayer.ResizeKeepFixedSize";
     final String RETAIN_LEVEL_ZERO_TILES = "gov.nasa.worldwind.avkey.RetainLevelZeroTiles";
+    /**
+     * The maximum number of retrievals run at once when the retrieval service's thread mode is {@link
+     * #THREAD_MODE_VIRTUAL}. When used as a key, the corresponding value must be an <code>Integer</code>.
+     */
+    final String RETRIEVAL_CONCURRENCY_LIMIT = "gov.nasa.worldwind.avkey.RetrievalConcurrencyLimit";
+    /**
+     * The maximum number of connections the retrievers open concurrently to one host. When used as a key, the
+     * corresponding value must be an <code>Integer</code>. Zero or less indicates no limit.
+     */
+    final String RETRIEVAL_HOST_CONNECTION_LIMIT = "gov.nasa.worldwind.avkey.RetrievalHostConnectionLimit";
     final String RETRIEVAL_POOL_SIZE = "gov.nasa.worldwind.avkey.RetrievalPoolSize";
     final String RETRIEVE_PROPERTIES_FROM_SERVICE = "gov.nasa.worldwind.avkey.RetrievePropertiesFromService";
     final String RETRIEVAL_QUEUE_SIZE = "gov.nasa.worldwind.avkey.RetrievalQueueSize";
     final String RETRIEVAL_QUEUE_STALE_REQUEST_LIMIT = "gov.nasa.worldwind.avkey.RetrievalStaleRequestLimit";
     final String RETRIEVAL_SERVICE_CLASS_NAME = "gov.nasa.worldwind.avkey.RetrievalServiceClassName";
+    /**
+     * Indicates how the retrieval service runs retrievers, either {@link #THREAD_MODE_POOLED} or {@link
+     * #THREAD_MODE_VIRTUAL}.
+     */
+    final String RETRIEVAL_THREAD_MODE = "gov.nasa.worldwind.avkey.RetrievalThreadMode";
     final String RETRIEVER_FACTORY_LOCAL = "gov.nasa.worldwind.avkey.RetrieverFactoryLocal";
     final String RETRIEVER_FACTORY_REMOTE = "gov.nasa.worldwind.avkey.RetrieverFactoryRemote";
     final String RETRIEVER_STATE = "gov.nasa.worldwind.avkey.RetrieverState";
@@ -432,13 +487,30 @@ public interface AVKey // TODO: Eliminate unused constants, if any
     final String TEXTURE_FORMAT = "gov.nasa.worldwind.avkey.TextureFormat";
     final String TEXTURE_IMAGE_CACHE_SIZE = "gov.nasa.worldwind.avkey.TextureTileCacheSize";
     final String TARGET = "gov.nasa.worldwind.avkey.Target";
+    /**
+     * The maximum number of tasks run at once when the task service's thread mode is {@link #THREAD_MODE_VIRTUAL}.
+     * When used as a key, the corresponding value must be an <code>Integer</code>.
+     */
+    final String TASK_CONCURRENCY_LIMIT = "gov.nasa.worldwind.avkey.TaskConcurrencyLimit";
     final String TASK_POOL_SIZE = "gov.nasa.worldwind.avkey.TaskPoolSize";
     final String TASK_QUEUE_SIZE = "gov.nasa.worldwind.avkey.TaskQueueSize";
     final String TASK_SERVICE_CLASS_NAME = "gov.nasa.worldwind.avkey.TaskServiceClassName";
+    /**
+     * Indicates how the task service runs tasks, either {@link #THREAD_MODE_POOLED} or {@link #THREAD_MODE_VIRTUAL}.
+     */
+    final String TASK_THREAD_MODE = "gov.nasa.worldwind.avkey.TaskThreadMode";
     final String TEXT = "gov.nasa.worldwind.avkey.Text";
     final String TEXT_EFFECT_NONE = "gov.nasa.worldwind.avkey.TextEffectNone";
     final String TEXT_EFFECT_OUTLINE = "gov.nasa.worldwind.avkey.TextEffectOutline";
     final String TEXT_EFFECT_SHADOW = "gov.nasa.worldwind.avkey.TextEffectShadow";
+    /** Indicates that a service runs its work on a fixed-size pool of platform threads. */
+    final String THREAD_MODE_POOLED = "gov.nasa.worldwind.avkey.ThreadModePooled";
+    /**
+     * Indicates that a service runs each piece of work on its own virtual thread, limiting the number run at once with
+     * a semaphore. Platform threads are used if the Java runtime doesn't provide virtual threads. See {@link
+     * gov.nasa.worldwind.util.ThreadPerTaskExecutor}.
+     */
+    final String THREAD_MODE_VIRTUAL = "gov.nasa.worldwind.avkey.ThreadModeVirtual";
     final String TILE_DELTA = "gov.nasa.worldwind.avkey.TileDeltaKey";
     final String TILE_HEIGHT = "gov.nasa.worldwind.avkey.TileHeightKey";
     final String TILE_ORIGIN = "gov.nasa.worldwind.avkey.TileOrigin";
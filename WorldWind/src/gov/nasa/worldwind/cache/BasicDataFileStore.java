@@ -38,7 +38,10 @@ public class BasicDataFileStore extends AbstractFileStore
         "image/png"
     );
 
-    /** The map of cached entries. */
+    /**
+     * The map of cached entries. Lookups don't lock the store, so an entry's state is set after its other fields, and
+     * an entry is modified only while holding the store's lock.
+     */
     protected BasicMemoryCache db = new BasicMemoryCache((long) 3e5, (long) 5e5);
     /**
      * Absent-resource list to keep track of resources that were requested by requestFile but failed. The default list
@@ -203,7 +206,8 @@ public class BasicDataFileStore extends AbstractFileStore
         protected long expiration;
         protected URL localUrl;
         protected long lastUpdateTime;
-        protected int state;
+        // Written after the other fields, so that a reader that sees the state also sees the fields it describes.
+        protected volatile int state;
 
         public DBEntry(String name)
         {
@@ -240,7 +244,7 @@ public class BasicDataFileStore extends AbstractFileStore
     }
 
     /** {@inheritDoc} */
-    public synchronized URL requestFile(String address)
+    public URL requestFile(String address)
     {
         if (address == null)
         {
@@ -255,7 +259,7 @@ public class BasicDataFileStore extends AbstractFileStore
     }
 
     /** {@inheritDoc} */
-    public synchronized URL requestFile(String address, boolean cacheRemoteFile)
+    public URL requestFile(String address, boolean cacheRemoteFile)
     {
         if (address == null)
         {
@@ -270,14 +274,16 @@ public class BasicDataFileStore extends AbstractFileStore
         DBEntry entry = (DBEntry) this.db.getObject(address);
         if (entry != null)
         {
+            // Read the state before the fields it describes.
+            int state = entry.state;
             long now = System.currentTimeMillis();
             boolean expired = entry.expiration != 0 && now > entry.expiration;
 
             // Return the resource if it is local and has not expired.
-            if (entry.state == DBEntry.LOCAL && !expired)
+            if (state == DBEntry.LOCAL && !expired)
                 return entry.localUrl;
 
-            if (entry.state == DBEntry.PENDING && (now - entry.lastUpdateTime <= TIMEOUT))
+            if (state == DBEntry.PENDING && (now - entry.lastUpdateTime <= TIMEOUT))
                 return null;
         }
 
@@ -320,7 +326,7 @@ public class BasicDataFileStore extends AbstractFileStore
      *
      * @throws IllegalArgumentException if the specified address is null.
      */
-    protected synchronized URL getLocalFileUrl(String address, URL retrievalUrl, boolean searchLocalCache)
+    protected URL getLocalFileUrl(String address, URL retrievalUrl, boolean searchLocalCache)
     {
         if (address == null)
         {
@@ -443,14 +449,14 @@ public class BasicDataFileStore extends AbstractFileStore
      * @param saveInLocalCache <code>true</code> to add the file to the cache, or <code>false</code> to save it in a
      *                         temporary location.
      */
-    protected synchronized void makeLocal(String address, URL url, boolean saveInLocalCache)
+    protected void makeLocal(String address, URL url, boolean saveInLocalCache)
     {
         if (WorldWind.getNetworkStatus().isHostUnavailable(url) || !WorldWind.getRetrievalService().isAvailable())
             return;
 
         DBEntry newEntry = new DBEntry(address);
-        this.db.add(address, newEntry);
         newEntry.state = DBEntry.PENDING;
+        this.db.add(address, newEntry);
 
         Retriever retriever = URLRetriever.createRetriever(url, new PostProcessor(address, url, saveInLocalCache));
 
@@ -569,11 +575,11 @@ public class BasicDataFileStore extends AbstractFileStore
         if (entry == null)
             return;
 
-        entry.state = DBEntry.LOCAL;
         entry.localUrl = localFileUrl;
         entry.contentType = WWIO.makeMimeTypeForSuffix(WWIO.getSuffix(localFileUrl.getPath()));
         entry.expiration = expiration;
         entry.lastUpdateTime = System.currentTimeMillis();
+        entry.state = DBEntry.LOCAL;
     }
 
     /**
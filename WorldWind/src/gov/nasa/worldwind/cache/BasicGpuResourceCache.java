@@ -220,6 +220,31 @@ public class BasicGpuResourceCache implements GpuResourceCache
         return this.resources.getLowWater();
     }
 
+    public long getHitCount()
+    {
+        return this.resources.getHitCount();
+    }
+
+    public long getMissCount()
+    {
+        return this.resources.getMissCount();
+    }
+
+    public long getInsertionCount()
+    {
+        return this.resources.getInsertionCount();
+    }
+
+    public long getEvictionCount()
+    {
+        return this.resources.getEvictionCount();
+    }
+
+    public long getEvictedCapacity()
+    {
+        return this.resources.getEvictedCapacity();
+    }
+
     protected long computeEntrySize(CacheEntry entry)
     {
         if (entry.resourceType == TEXTURE)
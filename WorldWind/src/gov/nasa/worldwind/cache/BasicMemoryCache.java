@@ -5,11 +5,18 @@
  */
 package gov.nasa.worldwind.cache;
 
+import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.util.Logging;
 
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * A {@link MemoryCache} that holds its entries on a doubly linked list ordered from the least recently used entry to
+ * the most recently used entry, so that eviction takes constant time. The eviction policy is either {@link
+ * AVKey#EVICTION_POLICY_LRU} or {@link AVKey#EVICTION_POLICY_CLOCK}. LRU moves an entry to the tail of the list each
+ * time it is retrieved. CLOCK only marks a retrieved entry as referenced, which allows <code>getObject</code> to run
+ * without locking, and gives referenced entries a second chance when they reach the head of the list during eviction.
+ *
  * @author Eric Dalgliesh
  * @version $Id$
  */
@@ -21,6 +28,11 @@ public class BasicMemoryCache implements MemoryCache
         Object clientObject;
         protected long lastUsed;
         protected long clientObjectSize;
+        /** Indicates whether the entry has been retrieved since it was last examined for eviction. */
+        protected volatile boolean referenced;
+        // Links in the cache's usage list. Guarded by the cache's lock.
+        protected CacheEntry prev;
+        protected CacheEntry next;
 
         CacheEntry(Object key, Object clientObject, long clientObjectSize)
         {
@@ -54,6 +66,15 @@ public class BasicMemoryCache implements MemoryCache
     protected AtomicLong currentUsedCapacity = new AtomicLong();
     protected Long lowWater;
     protected String name = "";
+    protected volatile String evictionPolicy = AVKey.EVICTION_POLICY_LRU;
+    // The usage list, from least recently used to most recently used. Guarded by the lock.
+    protected CacheEntry head;
+    protected CacheEntry tail;
+    protected AtomicLong hitCount = new AtomicLong();
+    protected AtomicLong missCount = new AtomicLong();
+    protected AtomicLong insertionCount = new AtomicLong();
+    protected AtomicLong evictionCount = new AtomicLong();
+    protected AtomicLong evictedCapacity = new AtomicLong();
 
     protected final Object lock = new Object();
 
@@ -72,6 +93,23 @@ public class BasicMemoryCache implements MemoryCache
         this.currentUsedCapacity.set((long) 0);
     }
 
+    /**
+     * Constructs a new cache using <code>capacity</code> for maximum size, <code>loWater</code> for the low water, and
+     * the specified eviction policy.
+     *
+     * @param loWater        the low water level.
+     * @param capacity       the maximum capacity.
+     * @param evictionPolicy the eviction policy, either {@link AVKey#EVICTION_POLICY_LRU} or {@link
+     *                       AVKey#EVICTION_POLICY_CLOCK}.
+     *
+     * @throws IllegalArgumentException if the eviction policy is not recognized.
+     */
+    public BasicMemoryCache(long loWater, long capacity, String evictionPolicy)
+    {
+        this(loWater, capacity);
+        this.setEvictionPolicy(evictionPolicy);
+    }
+
     /** @return the number of objects currently stored in this cache. */
     public int getNumObjects()
     {
@@ -96,6 +134,67 @@ public class BasicMemoryCache implements MemoryCache
         return Math.max(this.capacity.get() - this.currentUsedCapacity.get(), 0);
     }
 
+    /**
+     * Indicates the policy used to select entries for eviction.
+     *
+     * @return the eviction policy, either {@link AVKey#EVICTION_POLICY_LRU} or {@link AVKey#EVICTION_POLICY_CLOCK}.
+     */
+    public String getEvictionPolicy()
+    {
+        return this.evictionPolicy;
+    }
+
+    /**
+     * Specifies the policy used to select entries for eviction. The policy may be changed at any time; entries keep
+     * their position in the usage list.
+     *
+     * @param evictionPolicy the eviction policy, either {@link AVKey#EVICTION_POLICY_LRU} or {@link
+     *                       AVKey#EVICTION_POLICY_CLOCK}.
+     *
+     * @throws IllegalArgumentException if the eviction policy is not recognized.
+     */
+    public void setEvictionPolicy(String evictionPolicy)
+    {
+        if (!AVKey.EVICTION_POLICY_LRU.equals(evictionPolicy) && !AVKey.EVICTION_POLICY_CLOCK.equals(evictionPolicy))
+        {
+            String message = Logging.getMessage("generic.UnrecognizedEvictionPolicy", evictionPolicy);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.evictionPolicy = evictionPolicy;
+    }
+
+    /** @return the number of <code>getObject</code> calls that found their entry. */
+    public long getHitCount()
+    {
+        return this.hitCount.get();
+    }
+
+    /** @return the number of <code>getObject</code> calls that did not find their entry. */
+    public long getMissCount()
+    {
+        return this.missCount.get();
+    }
+
+    /** @return the number of entries added to this cache. */
+    public long getInsertionCount()
+    {
+        return this.insertionCount.get();
+    }
+
+    /** @return the number of entries removed to make space for new entries. */
+    public long getEvictionCount()
+    {
+        return this.evictionCount.get();
+    }
+
+    /** @return the total size, in cache units, of the entries removed to make space for new entries. */
+    public long getEvictedCapacity()
+    {
+        return this.evictedCapacity.get();
+    }
+
     public void setName(String name)
     {
         this.name = name != null ? name : "";
@@ -260,10 +359,11 @@ public class BasicMemoryCache implements MemoryCache
                 this.makeSpace(clientObjectSize);
             }
 
-            this.currentUsedCapacity.addAndGet(clientObjectSize);
-            this.entries.putIfAbsent(entry.key, entry);
+            this.addEntry(entry);
         }
 
+        this.insertionCount.incrementAndGet();
+
         return true;
     }
 
@@ -316,19 +416,46 @@ public class BasicMemoryCache implements MemoryCache
             return null;
         }
 
-        CacheEntry entry; // don't need to lock because call is atomic
-        synchronized (this.lock)
+        CacheEntry entry;
+
+        if (AVKey.EVICTION_POLICY_CLOCK.equals(this.evictionPolicy))
         {
+            // CLOCK only marks the entry, so the lookup doesn't need to lock.
             entry = this.entries.get(key);
+            if (entry != null)
+            {
+                entry.referenced = true;
+                entry.lastUsed = System.nanoTime();
+            }
+        }
+        else
+        {
+            synchronized (this.lock)
+            {
+                entry = this.entries.get(key);
 
-            if (entry == null)
-                return null;
+                if (entry != null)
+                {
+                    entry.lastUsed = System.nanoTime(); // nanoTime overflows once every 292 years
+                    // which will result in a slowing of the cache
+                    // until ww is restarted or the cache is cleared.
+                    if (this.tail != entry)
+                    {
+                        this.unlink(entry);
+                        this.link(entry);
+                    }
+                }
+            }
+        }
 
-            entry.lastUsed = System.nanoTime(); // nanoTime overflows once every 292 years
-            // which will result in a slowing of the cache
-            // until ww is restarted or the cache is cleared.
+        if (entry == null)
+        {
+            this.missCount.incrementAndGet();
+            return null;
         }
 
+        this.hitCount.incrementAndGet();
+
         return entry.clientObject;
     }
 
@@ -344,6 +471,19 @@ public class BasicMemoryCache implements MemoryCache
         }
     }
 
+    /**
+     * Adds <code>entry</code> to the cache as its most recently used entry. The caller must ensure that no entry with
+     * the same key is present.
+     *
+     * @param entry the entry to add.
+     */
+    protected void addEntry(CacheEntry entry) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        this.currentUsedCapacity.addAndGet(entry.clientObjectSize);
+        this.entries.put(entry.key, entry);
+        this.link(entry);
+    }
+
     /**
      * Removes <code>entry</code> from the cache. To remove an entry using its key, use <code>remove()</code>.
      *
@@ -356,6 +496,7 @@ public class BasicMemoryCache implements MemoryCache
 
         if (this.entries.remove(entry.key) != null) // returns null if entry does not exist
         {
+            this.unlink(entry);
             this.currentUsedCapacity.addAndGet(-entry.clientObjectSize);
 
             for (MemoryCache.CacheListener listener : this.listeners)
@@ -378,22 +519,77 @@ public class BasicMemoryCache implements MemoryCache
      *
      * @param spaceRequired the amount of space required.
      */
-    private void makeSpace(long spaceRequired) // MUST BE CALLED WITHIN SYNCHRONIZED
+    protected void makeSpace(long spaceRequired) // MUST BE CALLED WITHIN SYNCHRONIZED
     {
         if (spaceRequired > this.capacity.get() || spaceRequired < 0)
             return;
 
-        CacheEntry[] timeOrderedEntries = new CacheEntry[this.entries.size()];
-        java.util.Arrays.sort(this.entries.values().toArray(timeOrderedEntries)); // TODO
+        while ((this.getFreeCapacity() < spaceRequired || this.getUsedCapacity() > this.lowWater) && this.head != null)
+        {
+            CacheEntry victim = this.selectVictim();
+            this.removeEntry(victim);
+            this.evictionCount.incrementAndGet();
+            this.evictedCapacity.addAndGet(victim.clientObjectSize);
+        }
+    }
 
-        int i = 0;
-        while (this.getFreeCapacity() < spaceRequired || this.getUsedCapacity() > this.lowWater)
+    /**
+     * Selects the next entry to evict. Under the LRU policy this is the head of the usage list. Under the CLOCK policy,
+     * referenced entries at the head of the list have their reference cleared and are moved to the tail until an
+     * unreferenced entry reaches the head.
+     *
+     * @return the entry to evict.
+     */
+    protected CacheEntry selectVictim() // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        while (this.head.referenced && this.head != this.tail)
         {
-            if (i < timeOrderedEntries.length)
-            {
-                this.removeEntry(timeOrderedEntries[i++]);
-            }
+            CacheEntry entry = this.head;
+            entry.referenced = false;
+            this.unlink(entry);
+            this.link(entry);
         }
+
+        return this.head;
+    }
+
+    /**
+     * Appends an entry to the tail of the usage list.
+     *
+     * @param entry the entry to append.
+     */
+    protected void link(CacheEntry entry) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        entry.prev = this.tail;
+        entry.next = null;
+
+        if (this.tail != null)
+            this.tail.next = entry;
+        else
+            this.head = entry;
+
+        this.tail = entry;
+    }
+
+    /**
+     * Removes an entry from the usage list.
+     *
+     * @param entry the entry to remove.
+     */
+    protected void unlink(CacheEntry entry) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        if (entry.prev != null)
+            entry.prev.next = entry.next;
+        else if (this.head == entry)
+            this.head = entry.next;
+
+        if (entry.next != null)
+            entry.next.prev = entry.prev;
+        else if (this.tail == entry)
+            this.tail = entry.prev;
+
+        entry.prev = null;
+        entry.next = null;
     }
 
     /**
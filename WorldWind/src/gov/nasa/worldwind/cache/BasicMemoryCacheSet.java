@@ -5,6 +5,8 @@
  */
 package gov.nasa.worldwind.cache;
 
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.util.*;
 
 import java.util.*;
@@ -17,6 +19,7 @@ import java.util.concurrent.ConcurrentHashMap;
 public class BasicMemoryCacheSet implements MemoryCacheSet
 {
     private ConcurrentHashMap<String, MemoryCache> caches = new ConcurrentHashMap<String, MemoryCache>();
+    private ConcurrentHashMap<String, String> evictionPolicies = new ConcurrentHashMap<String, String>();
 
     public synchronized boolean containsCache(String key)
     {
@@ -63,6 +66,69 @@ public class BasicMemoryCacheSet implements MemoryCacheSet
         return cache;
     }
 
+    public synchronized MemoryCache addCache(String key, long loWater, long capacity)
+    {
+        return this.addCache(key, this.createMemoryCache(key, loWater, capacity));
+    }
+
+    /**
+     * Creates a cache of the class specified by the configuration property {@link AVKey#MEMORY_CACHE_CLASS_NAME}. If
+     * the property is not set, or the class cannot be created, this returns a {@link BasicMemoryCache}. A
+     * <code>BasicMemoryCache</code> uses the eviction policy specified for the key by {@link
+     * #setEvictionPolicy(String, String)}, or if none was specified, the policy specified by the configuration property
+     * {@link AVKey#MEMORY_CACHE_EVICTION_POLICY}.
+     *
+     * @param key      the key identifying the cache.
+     * @param loWater  the new cache's low water level.
+     * @param capacity the new cache's capacity.
+     *
+     * @return the new cache.
+     */
+    protected MemoryCache createMemoryCache(String key, long loWater, long capacity)
+    {
+        String policy = this.evictionPolicies.get(key);
+        if (policy == null)
+            policy = Configuration.getStringValue(AVKey.MEMORY_CACHE_EVICTION_POLICY, AVKey.EVICTION_POLICY_LRU);
+
+        String className = Configuration.getStringValue(AVKey.MEMORY_CACHE_CLASS_NAME);
+        if (WWUtil.isEmpty(className) || className.trim().equals(BasicMemoryCache.class.getName()))
+            return new BasicMemoryCache(loWater, capacity, policy);
+
+        try
+        {
+            Class<?> c = Class.forName(className.trim());
+            return (MemoryCache) c.getConstructor(long.class, long.class).newInstance(loWater, capacity);
+        }
+        catch (Exception e)
+        {
+            String message = Logging.getMessage("WorldWind.ExceptionCreatingComponent", className);
+            Logging.logger().log(java.util.logging.Level.SEVERE, message, e);
+            return new BasicMemoryCache(loWater, capacity, policy);
+        }
+    }
+
+    public void setEvictionPolicy(String key, String evictionPolicy)
+    {
+        if (key == null)
+        {
+            String message = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (evictionPolicy == null)
+        {
+            this.evictionPolicies.remove(key);
+            return;
+        }
+
+        MemoryCache cache = this.caches.get(key);
+        if (cache instanceof BasicMemoryCache)
+            ((BasicMemoryCache) cache).setEvictionPolicy(evictionPolicy);
+
+        this.evictionPolicies.put(key, evictionPolicy);
+    }
+
     public synchronized void clear()
     {
         for (MemoryCache cache : this.caches.values())
@@ -79,6 +145,13 @@ public class BasicMemoryCacheSet implements MemoryCacheSet
         {
             stats.add(new PerformanceStatistic(PerformanceStatistic.MEMORY_CACHE, "Cache Size (Kb): " + cache.getName(),
                 cache.getUsedCapacity() / 1000));
+            stats.add(new PerformanceStatistic(PerformanceStatistic.MEMORY_CACHE,
+                "Cache Hit Ratio (%): " + cache.getName(),
+                PerformanceStatistic.computeHitRatio(cache.getHitCount(), cache.getMissCount())));
+            stats.add(new PerformanceStatistic(PerformanceStatistic.MEMORY_CACHE,
+                "Cache Evictions: " + cache.getName(), cache.getEvictionCount()));
+            stats.add(new PerformanceStatistic(PerformanceStatistic.MEMORY_CACHE,
+                "Cache Evicted (Kb): " + cache.getName(), cache.getEvictedCapacity() / 1000));
         }
 
         return stats;
@@ -78,8 +78,7 @@ public class BasicRasterServerCache extends BasicMemoryCache
                 this.removeEntry(existing);
             }
 
-            this.currentUsedCapacity.addAndGet(clientObjectSize);
-            this.entries.putIfAbsent(entry.key, entry);
+            this.addEntry(entry);
             this.updateMemorySemaphore();
         }
 
@@ -110,7 +109,13 @@ public class BasicRasterServerCache extends BasicMemoryCache
         this.timeoutLeastRecentUseInNanoSeconds = nanoSeconds;
     }
 
-    protected void removeExpiredEntries()
+    /**
+     * Removes the entries that have not been used within the least recent use timeout. The usage list is in order of
+     * last use, oldest first, so entries are removed from its head until one that has not expired is reached. Under
+     * the CLOCK eviction policy uses don't reorder the list, so an expired entry behind a recently used one is removed
+     * by a later call or by eviction.
+     */
+    protected void removeExpiredEntries() // MUST BE CALLED WITHIN SYNCHRONIZED
     {
         if (this.entries.size() == 0)
             return;
@@ -119,15 +124,10 @@ public class BasicRasterServerCache extends BasicMemoryCache
         {
             try
             {
-                CacheEntry[] timeOrderedEntries = new CacheEntry[this.entries.size()];
-                java.util.Arrays.sort(this.entries.values().toArray(timeOrderedEntries));
-
-                for (CacheEntry entry : timeOrderedEntries)
+                long now = System.nanoTime();
+                while (this.head != null && (now - this.head.lastUsed) > this.getLeastRecentUseTimeout())
                 {
-                    if (null != entry && (System.nanoTime() - entry.lastUsed) > this.getLeastRecentUseTimeout())
-                    {
-                        this.removeEntry(entry);
-                    }
+                    this.removeEntry(this.head);
                 }
             }
             finally
@@ -177,7 +177,12 @@ public class BasicRasterServerCache extends BasicMemoryCache
                 for (; ;)
                 {
                     Thread.sleep(DEFAULT_PRUNER_THREAD_TIMEOUT_MSEC);
-                    removeExpiredEntries();
+
+                    // Removing entries unlinks them from the usage list, which the cache's lock guards.
+                    synchronized (lock)
+                    {
+                        removeExpiredEntries();
+                    }
                 }
             }
             catch (InterruptedException ignore)
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.util.Logging;
+
+import java.nio.ByteBuffer;
+import java.util.zip.*;
+
+/**
+ * A second-level cache of encoded tile data, such as DDS texture files or BIL elevation files, held in memory between
+ * the tile memory caches and the file store. A tile evicted from a tile memory cache can be decoded again from this
+ * cache without reading its file. Data that is not already compressed can be stored deflated, which typically halves
+ * the memory used by elevation data.
+ * <p/>
+ * Entries are held in a {@link MemoryCache} with its own byte budget, specified by the configuration property {@link
+ * AVKey#COMPRESSED_TILE_CACHE_SIZE}. The shared cache is disabled when that size is zero, which is the default.
+ *
+ * @version $Id$
+ */
+public class CompressedTileCache
+{
+    protected static class Entry
+    {
+        protected final byte[] data;
+        protected final int length;
+        protected final boolean deflated;
+
+        protected Entry(byte[] data, int length, boolean deflated)
+        {
+            this.data = data;
+            this.length = length;
+            this.deflated = deflated;
+        }
+    }
+
+    /** The approximate memory used by an entry in addition to its data. */
+    protected static final int ENTRY_OVERHEAD = 64;
+
+    protected final MemoryCache cache;
+
+    /**
+     * Returns the shared compressed tile cache, creating it in the World Wind memory cache set if it doesn't yet
+     * exist.
+     *
+     * @return the shared compressed tile cache, or null if the configured cache size is zero.
+     */
+    public static CompressedTileCache getSharedCache()
+    {
+        long size = Configuration.getLongValue(AVKey.COMPRESSED_TILE_CACHE_SIZE, 0L);
+        if (size <= 0)
+            return null;
+
+        synchronized (CompressedTileCache.class)
+        {
+            if (!WorldWind.getMemoryCacheSet().containsCache(CompressedTileCache.class.getName()))
+            {
+                MemoryCache cache = WorldWind.getMemoryCacheSet().addCache(CompressedTileCache.class.getName(),
+                    (long) (0.85 * size), size);
+                cache.setName("Compressed Tiles");
+            }
+        }
+
+        return new CompressedTileCache(WorldWind.getMemoryCache(CompressedTileCache.class.getName()));
+    }
+
+    /**
+     * Constructs a compressed tile cache that holds its entries in the specified memory cache.
+     *
+     * @param cache the memory cache to hold entries.
+     *
+     * @throws IllegalArgumentException if the cache is null.
+     */
+    public CompressedTileCache(MemoryCache cache)
+    {
+        if (cache == null)
+        {
+            String message = Logging.getMessage("nullValue.CacheIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.cache = cache;
+    }
+
+    /** @return the memory cache holding this cache's entries. */
+    public MemoryCache getMemoryCache()
+    {
+        return this.cache;
+    }
+
+    /**
+     * Adds a copy of the remaining bytes of the specified buffer to the cache. The buffer's position is not changed.
+     *
+     * @param key     the key identifying the data.
+     * @param data    the data to cache.
+     * @param deflate true to store the data deflated, false to store it as is. Data that is already compressed, such
+     *                as DDS, PNG or JPEG, should not be deflated. Data that does not shrink when deflated is stored as
+     *                is.
+     *
+     * @throws IllegalArgumentException if the key or data is null.
+     */
+    public void put(Object key, ByteBuffer data, boolean deflate)
+    {
+        if (key == null)
+        {
+            String message = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (data == null)
+        {
+            String message = Logging.getMessage("nullValue.ByteBufferIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+
+        Entry entry = null;
+        if (deflate)
+            entry = this.deflate(bytes);
+
+        if (entry == null)
+            entry = new Entry(bytes, bytes.length, false);
+
+        this.cache.add(key, entry, entry.data.length + ENTRY_OVERHEAD);
+    }
+
+    /**
+     * Returns the data for the specified key, inflating it if necessary.
+     *
+     * @param key the key identifying the data.
+     *
+     * @return a new buffer containing the data, or null if the data is not in the cache or cannot be inflated.
+     */
+    public ByteBuffer get(Object key)
+    {
+        Entry entry = (Entry) this.cache.getObject(key);
+        if (entry == null)
+            return null;
+
+        if (!entry.deflated)
+            return ByteBuffer.wrap(entry.data);
+
+        byte[] bytes = this.inflate(entry);
+        if (bytes == null)
+        {
+            this.cache.remove(key);
+            return null;
+        }
+
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Removes the data for the specified key. This should be called when the data's source is removed or replaced.
+     *
+     * @param key the key identifying the data.
+     */
+    public void remove(Object key)
+    {
+        this.cache.remove(key);
+    }
+
+    protected Entry deflate(byte[] bytes)
+    {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try
+        {
+            deflater.setInput(bytes);
+            deflater.finish();
+
+            // Give up on data that doesn't shrink.
+            byte[] buffer = new byte[bytes.length];
+            int length = deflater.deflate(buffer);
+            if (!deflater.finished())
+                return null;
+
+            byte[] compressed = new byte[length];
+            System.arraycopy(buffer, 0, compressed, 0, length);
+
+            return new Entry(compressed, bytes.length, true);
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    protected byte[] inflate(Entry entry)
+    {
+        Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(entry.data);
+            byte[] bytes = new byte[entry.length];
+            int length = inflater.inflate(bytes);
+
+            return length == entry.length ? bytes : null;
+        }
+        catch (DataFormatException e)
+        {
+            Logging.logger().log(java.util.logging.Level.SEVERE, e.getMessage(), e);
+            return null;
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+}
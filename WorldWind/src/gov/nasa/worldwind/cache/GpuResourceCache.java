@@ -162,4 +162,39 @@ public interface GpuResourceCache
      * @see #setLowWater(long)
      */
     long getLowWater();
+
+    /**
+     * Indicates the number of resource lookups that found the requested resource.
+     *
+     * @return the number of cache hits.
+     */
+    long getHitCount();
+
+    /**
+     * Indicates the number of resource lookups that did not find the requested resource.
+     *
+     * @return the number of cache misses.
+     */
+    long getMissCount();
+
+    /**
+     * Indicates the number of resources added to the cache.
+     *
+     * @return the number of insertions.
+     */
+    long getInsertionCount();
+
+    /**
+     * Indicates the number of resources the cache removed to make space for new resources.
+     *
+     * @return the number of evictions.
+     */
+    long getEvictionCount();
+
+    /**
+     * Indicates the total size, in bytes, of the resources counted by {@link #getEvictionCount()}.
+     *
+     * @return the number of evicted bytes.
+     */
+    long getEvictedCapacity();
 }
\ No newline at end of file
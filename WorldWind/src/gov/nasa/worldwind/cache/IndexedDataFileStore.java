@@ -0,0 +1,390 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.util.Logging;
+
+import java.io.File;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+
+/**
+ * A {@link BasicDataFileStore} that answers {@link #findFile(String, boolean)} and {@link #containsFile(String)} from
+ * an in-memory index of the file names in each store location rather than by querying the file system. The index of
+ * each location is built by a background scan when the location is added to the store, and is kept current as files
+ * are created and removed through the store. Until a location's scan completes, lookups in that location fall back to
+ * the file system.
+ * <p/>
+ * A file created by {@link #newFile(String)} is checked against the file system the first time it's looked up, because
+ * the caller may not have written it yet. Files added to a store location by other means are not seen until the store
+ * is restarted. Lookups mark files as used only in locations configured to mark files when used.
+ * <p/>
+ * Use this store by specifying its class name for the configuration property {@link AVKey#DATA_FILE_STORE_CLASS_NAME}.
+ *
+ * @version $Id$
+ */
+public class IndexedDataFileStore extends BasicDataFileStore
+{
+    /** The names of the files and directories in one store location. */
+    protected static class LocationIndex
+    {
+        protected final Set<String> names = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        protected final Set<String> pendingNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        protected volatile boolean complete;
+    }
+
+    protected final ConcurrentHashMap<StoreLocation, LocationIndex> indexes =
+        new ConcurrentHashMap<StoreLocation, LocationIndex>();
+    protected ExecutorService indexService;
+
+    /**
+     * Create an instance.
+     *
+     * @throws IllegalStateException if the configuration file name cannot be determined from {@link Configuration} or
+     *                               the configuration file cannot be found.
+     */
+    public IndexedDataFileStore()
+    {
+        super();
+
+        this.initializeIndexes();
+    }
+
+    /**
+     * Create an instance to manage a specified directory.
+     *
+     * @param directoryPath the directory to manage as a file store.
+     */
+    public IndexedDataFileStore(File directoryPath)
+    {
+        super(directoryPath);
+
+        this.initializeIndexes();
+    }
+
+    protected void initializeIndexes()
+    {
+        // Use an entry database whose lookups don't lock, so that requestFile doesn't either.
+        this.db = new BasicMemoryCache((long) 3e5, (long) 5e5, AVKey.EVICTION_POLICY_CLOCK);
+
+        for (StoreLocation location : this.readLocations)
+        {
+            this.startIndexing(location);
+        }
+    }
+
+    /**
+     * Indicates whether the indexes of all this store's locations are complete.
+     *
+     * @return true if all locations have been indexed, otherwise false.
+     */
+    public boolean isIndexComplete()
+    {
+        for (StoreLocation location : this.readLocations)
+        {
+            LocationIndex index = this.indexes.get(location);
+            if (index == null || !index.complete)
+                return false;
+        }
+
+        return true;
+    }
+
+    protected synchronized ExecutorService getIndexService()
+    {
+        if (this.indexService == null)
+        {
+            this.indexService = Executors.newSingleThreadExecutor(new ThreadFactory()
+            {
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable);
+                    thread.setName("File Store Indexer");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+
+        return this.indexService;
+    }
+
+    protected void startIndexing(final StoreLocation location)
+    {
+        final LocationIndex index = new LocationIndex();
+        this.indexes.put(location, index);
+
+        this.getIndexService().execute(new Runnable()
+        {
+            public void run()
+            {
+                indexLocation(location, index);
+            }
+        });
+    }
+
+    protected void indexLocation(StoreLocation location, LocationIndex index)
+    {
+        long start = System.currentTimeMillis();
+
+        try
+        {
+            File root = location.getFile();
+            if (root.isDirectory())
+            {
+                ArrayDeque<File> dirs = new ArrayDeque<File>();
+                dirs.push(root);
+
+                while (!dirs.isEmpty() && this.indexes.get(location) == index)
+                {
+                    File[] children = dirs.pop().listFiles();
+                    if (children == null)
+                        continue;
+
+                    for (File child : children)
+                    {
+                        index.names.add(this.makeIndexKey(storePathForFile(location, child)));
+                        if (child.isDirectory())
+                            dirs.push(child);
+                    }
+                }
+            }
+
+            index.complete = true;
+            Logging.logger().log(Level.FINE, "FileStore.IndexedLocation",
+                new Object[] {location.getFile(), index.names.size(), System.currentTimeMillis() - start});
+        }
+        catch (Exception e)
+        {
+            // Leave the index incomplete so that lookups in this location continue to use the file system.
+            String message = Logging.getMessage("FileStore.ExceptionIndexingLocation", location.getFile());
+            Logging.logger().log(Level.SEVERE, message, e);
+        }
+    }
+
+    /**
+     * Creates the key identifying a file name in a location index. The key is independent of the platform's file
+     * separator and, on Windows, of case.
+     *
+     * @param fileName the file's path relative to its store location.
+     *
+     * @return the index key.
+     */
+    protected String makeIndexKey(String fileName)
+    {
+        String key = normalizeFileStoreName(fileName);
+        return Configuration.isWindowsOS() ? key.toLowerCase() : key;
+    }
+
+    /**
+     * Creates a "file" URL for a file without querying the file system, which {@link File#toURI()} does.
+     *
+     * @param file the file.
+     *
+     * @return the file's URL.
+     *
+     * @throws URISyntaxException    if the file's path cannot be made into a URI.
+     * @throws MalformedURLException if the URI cannot be made into a URL.
+     */
+    protected static URL makeFileURL(File file) throws URISyntaxException, MalformedURLException
+    {
+        String path = file.getAbsolutePath();
+        if (File.separatorChar != '/')
+            path = path.replace(File.separatorChar, '/');
+        if (!path.startsWith("/"))
+            path = "/" + path;
+        if (path.startsWith("//"))
+            path = "//" + path;
+
+        return new URI("file", null, path, null).toURL();
+    }
+
+    /**
+     * Indicates whether a location contains a file. Uses the location's index if it's complete, otherwise the file
+     * system.
+     *
+     * @param location the location to search.
+     * @param fileName the file's path relative to the location.
+     *
+     * @return true if the location contains the file, otherwise false.
+     */
+    protected boolean locationContains(StoreLocation location, String fileName)
+    {
+        LocationIndex index = this.indexes.get(location);
+        if (index == null || !index.complete)
+            return makeAbsoluteFile(location.getFile(), fileName).exists();
+
+        String key = this.makeIndexKey(fileName);
+        if (index.names.contains(key))
+            return true;
+
+        // A file created by newFile may not have been written yet, so confirm that it exists before indexing it.
+        if (index.pendingNames.contains(key) && makeAbsoluteFile(location.getFile(), fileName).exists())
+        {
+            index.names.add(key);
+            index.pendingNames.remove(key);
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean containsFile(String fileName)
+    {
+        if (fileName == null)
+            return false;
+
+        for (StoreLocation location : this.readLocations)
+        {
+            String dir = location.getFile().getAbsolutePath();
+            if (fileName.startsWith(dir))
+            {
+                if (this.locationContains(location, fileName.substring(dir.length())))
+                    return true;
+            }
+            else if (this.locationContains(location, fileName))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public URL findFile(String fileName, boolean checkClassPath)
+    {
+        if (fileName == null)
+        {
+            String message = Logging.getMessage("nullValue.FilePathIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (checkClassPath)
+        {
+            URL url = this.getClass().getClassLoader().getResource(fileName);
+            if (url != null)
+                return url;
+
+            // Check for a thread context class loader. This allows the file store to find resources in a case
+            // in which different parts of the application are handled by different class loaders.
+            ClassLoader tccl = Thread.currentThread().getContextClassLoader();
+            if (tccl != null)
+            {
+                url = tccl.getResource(fileName);
+                if (url != null)
+                    return url;
+            }
+        }
+
+        for (StoreLocation location : this.readLocations)
+        {
+            if (!this.locationContains(location, fileName))
+                continue;
+
+            File file = new File(makeAbsolutePath(location.getFile(), fileName));
+            try
+            {
+                if (location.isMarkWhenUsed())
+                    markFileUsed(file);
+
+                return makeFileURL(file);
+            }
+            catch (Exception e)
+            {
+                Logging.logger().log(Level.SEVERE,
+                    Logging.getMessage("FileStore.ExceptionCreatingURLForFile", file.getPath()), e);
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public File newFile(String fileName)
+    {
+        File file = super.newFile(fileName);
+        if (file == null)
+            return null;
+
+        LocationIndex index = this.indexes.get(this.writeLocation);
+        if (index != null)
+        {
+            // The parent directories exist now, but the file itself may not until the caller writes it.
+            String key = this.makeIndexKey(fileName);
+            index.pendingNames.add(key);
+
+            for (int i = key.lastIndexOf('/'); i > 0; i = key.lastIndexOf('/', i - 1))
+            {
+                index.names.add(key.substring(0, i));
+            }
+        }
+
+        return file;
+    }
+
+    @Override
+    public void removeFile(URL url)
+    {
+        super.removeFile(url);
+
+        try
+        {
+            File file = new File(url.toURI());
+            for (StoreLocation location : this.readLocations)
+            {
+                if (!file.getPath().startsWith(location.getFile().getPath()))
+                    continue;
+
+                LocationIndex index = this.indexes.get(location);
+                if (index != null)
+                {
+                    String key = this.makeIndexKey(storePathForFile(location, file));
+                    index.names.remove(key);
+                    index.pendingNames.remove(key);
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            // The URL was rejected by super.removeFile, which logged it.
+        }
+    }
+
+    @Override
+    public void addLocation(int index, String newPath, boolean isInstall)
+    {
+        StoreLocation oldLocation = newPath != null && newPath.length() > 0 ? this.storeLocationFor(newPath) : null;
+
+        super.addLocation(index, newPath, isInstall);
+
+        // Adding a location that's already in the store replaces it.
+        if (oldLocation != null)
+            this.indexes.remove(oldLocation);
+
+        StoreLocation location = this.storeLocationFor(newPath);
+        if (location != null)
+            this.startIndexing(location);
+    }
+
+    @Override
+    public void removeLocation(String path)
+    {
+        StoreLocation location = path != null && path.length() > 0 ? this.storeLocationFor(path) : null;
+
+        super.removeLocation(path);
+
+        if (location != null && !this.readLocations.contains(location))
+            this.indexes.remove(location);
+    }
+}
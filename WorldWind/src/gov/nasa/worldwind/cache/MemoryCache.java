@@ -188,4 +188,43 @@ public interface MemoryCache
      * @param capacity the new capacity.
      */
     void setCapacity(long capacity);
+
+    /* *******************************************************************************/
+    // usage statistics
+
+    /**
+     * Retrieves the number of <code>getObject</code> calls that found the requested item.
+     *
+     * @return the number of cache hits.
+     */
+    long getHitCount();
+
+    /**
+     * Retrieves the number of <code>getObject</code> calls that did not find the requested item.
+     *
+     * @return the number of cache misses.
+     */
+    long getMissCount();
+
+    /**
+     * Retrieves the number of items successfully added to the cache, including items that replaced an existing item.
+     *
+     * @return the number of insertions.
+     */
+    long getInsertionCount();
+
+    /**
+     * Retrieves the number of items the cache removed to make space for new items. Items removed by
+     * <code>remove</code> or <code>clear</code> are not counted.
+     *
+     * @return the number of evictions.
+     */
+    long getEvictionCount();
+
+    /**
+     * Retrieves the total size, in cache units, of the items counted by {@link #getEvictionCount()}.
+     *
+     * @return the amount of evicted capacity.
+     */
+    long getEvictedCapacity();
 }
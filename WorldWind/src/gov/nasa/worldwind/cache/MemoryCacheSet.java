@@ -21,6 +21,29 @@ public interface MemoryCacheSet
 
     MemoryCache addCache(String key, MemoryCache cache);
 
+    /**
+     * Creates a cache of the class specified by the configuration property {@link
+     * gov.nasa.worldwind.avlist.AVKey#MEMORY_CACHE_CLASS_NAME} and adds it to this set.
+     *
+     * @param key      the key identifying the cache.
+     * @param loWater  the new cache's low water level.
+     * @param capacity the new cache's capacity.
+     *
+     * @return the new cache.
+     */
+    MemoryCache addCache(String key, long loWater, long capacity);
+
+    /**
+     * Specifies the eviction policy of the cache identified by a key. If the cache exists and supports the policy, its
+     * policy is changed immediately. Otherwise the policy is used when the cache is created by {@link
+     * #addCache(String, long, long)}.
+     *
+     * @param key            the key identifying the cache.
+     * @param evictionPolicy the eviction policy, either {@link gov.nasa.worldwind.avlist.AVKey#EVICTION_POLICY_LRU} or
+     *                       {@link gov.nasa.worldwind.avlist.AVKey#EVICTION_POLICY_CLOCK}.
+     */
+    void setEvictionPolicy(String key, String evictionPolicy);
+
     Collection<PerformanceStatistic> getPerformanceStatistics();
 
     void clear();
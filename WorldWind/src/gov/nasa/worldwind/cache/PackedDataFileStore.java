@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.util.Logging;
+
+import java.io.*;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link BasicDataFileStore} that packs the tile files in its write location into a {@link TileArchive}, avoiding
+ * the cost of millions of small files. Tiles are written as individual files, as with any file store, and are moved
+ * into the archive by a periodic background pass once they're no longer recently written. The first pass imports any
+ * tiles already in the write location, so an existing file store is converted as it's used. The archive is compacted
+ * when more than half of it is occupied by replaced or removed tiles.
+ * <p/>
+ * Only files named like tiles -- <code>row_column.suffix</code>, as produced by {@link
+ * gov.nasa.worldwind.util.Tile#getPath()} -- with a suffix read from a stream are packed. {@link #findFile(String,
+ * boolean)} returns URLs created by {@link TileArchive#makeURL(String)} for packed tiles, which can be read but cannot
+ * be converted to a <code>java.io.File</code>.
+ * <p/>
+ * Use this store by specifying its class name for the configuration property {@link AVKey#DATA_FILE_STORE_CLASS_NAME}.
+ *
+ * @version $Id$
+ */
+public class PackedDataFileStore extends BasicDataFileStore
+{
+    /** The name of the archive in the write location. */
+    protected static final String ARCHIVE_NAME = "tiles";
+    /** The number of milliseconds between packing passes. */
+    protected static final long PACK_INTERVAL = 60000;
+    /** The number of milliseconds a file must go unmodified before it's packed. */
+    protected static final long PACK_DELAY = 30000;
+    /** The garbage fraction at which the archive is compacted. */
+    protected static final double COMPACTION_THRESHOLD = 0.5;
+    /** The names of files that are packed. */
+    protected static final Pattern TILE_FILE_NAME = Pattern.compile("\\d+_\\d+\\.(dds|bil|png|jpg|jpeg|gif)",
+        Pattern.CASE_INSENSITIVE);
+
+    protected TileArchive archive;
+    protected ScheduledExecutorService packService;
+
+    /**
+     * Create an instance.
+     *
+     * @throws IllegalStateException if the configuration file name cannot be determined from {@link Configuration} or
+     *                               the configuration file cannot be found.
+     */
+    public PackedDataFileStore()
+    {
+        super();
+
+        this.initializeArchive();
+    }
+
+    /**
+     * Create an instance to manage a specified directory.
+     *
+     * @param directoryPath the directory to manage as a file store.
+     */
+    public PackedDataFileStore(File directoryPath)
+    {
+        super(directoryPath);
+
+        this.initializeArchive();
+    }
+
+    protected void initializeArchive()
+    {
+        if (this.writeLocation == null)
+            return;
+
+        try
+        {
+            this.archive = new TileArchive(this.writeLocation.getFile(), ARCHIVE_NAME);
+        }
+        catch (IOException e)
+        {
+            // Continue as an unpacked file store.
+            String message = Logging.getMessage("FileStore.ExceptionOpeningArchive", this.writeLocation.getFile());
+            Logging.logger().log(Level.SEVERE, message, e);
+            return;
+        }
+
+        this.packService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable);
+                thread.setName("File Store Packer");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+
+        this.packService.scheduleWithFixedDelay(new Runnable()
+        {
+            public void run()
+            {
+                packFiles();
+            }
+        }, 0, PACK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the archive holding this store's packed tiles.
+     *
+     * @return the tile archive, or null if this store has no write location or the archive could not be opened.
+     */
+    public TileArchive getArchive()
+    {
+        return this.archive;
+    }
+
+    /**
+     * Moves the tile files in the write location that haven't been modified recently into the archive, compacts the
+     * archive if it's mostly garbage, and saves the archive index. This is called periodically by a background thread,
+     * and may also be called by applications, for example before backing up the file store.
+     */
+    public void packFiles()
+    {
+        if (this.archive == null)
+            return;
+
+        try
+        {
+            final long packTime = System.currentTimeMillis() - PACK_DELAY;
+            int count = this.archive.importDirectory(this.writeLocation.getFile(), new FileFilter()
+            {
+                public boolean accept(File file)
+                {
+                    return isPackable(file) && file.lastModified() < packTime;
+                }
+            }, true);
+
+            if (count > 0)
+                Logging.logger().log(Level.FINE, "FileStore.PackedFiles", count);
+
+            if (this.archive.getGarbageFraction() > COMPACTION_THRESHOLD)
+                this.archive.compact();
+
+            this.archive.flush();
+        }
+        catch (Exception e)
+        {
+            String message = Logging.getMessage("FileStore.ExceptionPackingFiles", this.archive.getDirectory());
+            Logging.logger().log(Level.SEVERE, message, e);
+        }
+    }
+
+    /**
+     * Indicates whether a file is moved into the archive.
+     *
+     * @param file the file.
+     *
+     * @return true if the file is a tile, otherwise false.
+     */
+    protected boolean isPackable(File file)
+    {
+        return TILE_FILE_NAME.matcher(file.getName()).matches();
+    }
+
+    @Override
+    public boolean containsFile(String fileName)
+    {
+        if (this.archive != null && fileName != null && this.archive.contains(normalizeFileStoreName(fileName)))
+            return true;
+
+        return super.containsFile(fileName);
+    }
+
+    @Override
+    public URL findFile(String fileName, boolean checkClassPath)
+    {
+        if (this.archive != null && fileName != null)
+        {
+            URL url = this.archive.makeURL(normalizeFileStoreName(fileName));
+            if (url != null)
+                return url;
+        }
+
+        return super.findFile(fileName, checkClassPath);
+    }
+
+    @Override
+    public File newFile(String fileName)
+    {
+        // The new file replaces any packed copy.
+        this.removeArchivedFile(fileName);
+
+        return super.newFile(fileName);
+    }
+
+    @Override
+    public void removeFile(URL url)
+    {
+        String fileName = TileArchive.getFileName(url);
+        if (fileName != null)
+            this.removeArchivedFile(fileName);
+        else
+            super.removeFile(url);
+    }
+
+    protected void removeArchivedFile(String fileName)
+    {
+        if (this.archive == null || fileName == null)
+            return;
+
+        try
+        {
+            this.archive.remove(normalizeFileStoreName(fileName));
+        }
+        catch (IOException e)
+        {
+            String message = Logging.getMessage("FileStore.ExceptionRemovingFile", fileName);
+            Logging.logger().log(Level.SEVERE, message, e);
+        }
+    }
+
+    @Override
+    protected String[] doListFileNames(String pathName, FileStoreFilter filter, boolean recurse,
+        boolean exitBranchOnFirstMatch)
+    {
+        String[] fileNames = super.doListFileNames(pathName, filter, recurse, exitBranchOnFirstMatch);
+        if (this.archive == null)
+            return fileNames;
+
+        // Add the packed files beneath the path.
+        String prefix = pathName != null ? normalizeFileStoreName(pathName) : "";
+        if (prefix.length() > 0)
+            prefix += "/";
+
+        ArrayList<String> names = new ArrayList<String>();
+        for (String name : this.archive.getFileNames())
+        {
+            if (!name.startsWith(prefix) || (!recurse && name.indexOf('/', prefix.length()) >= 0))
+                continue;
+
+            if (filter.accept(this, name))
+                names.add(name);
+        }
+
+        if (names.isEmpty())
+            return fileNames;
+
+        if (fileNames != null)
+            names.addAll(0, Arrays.asList(fileNames));
+
+        return names.toArray(new String[names.size()]);
+    }
+}
@@ -0,0 +1,582 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A {@link MemoryCache} that partitions its entries into independently locked segments. Entries are located through a
+ * shared <code>ConcurrentHashMap</code>, so <code>contains</code> and <code>getObject</code> never lock. Each segment
+ * keeps its entries on a circular list and evicts with the CLOCK (second chance) approximation of least-recently-used
+ * eviction, which makes each eviction constant time in the amortized case. Mutations lock only the segment that owns
+ * the entry's key, so threads adding or removing entries with different keys rarely contend with each other.
+ * <p/>
+ * Capacity, low water and listener semantics are those of {@link BasicMemoryCache}: capacity and used capacity are
+ * tracked for the cache as a whole, and when an add would exceed the capacity entries are evicted until the used
+ * capacity falls to the low water level. Listeners are notified after the entry's segment lock is released.
+ *
+ * @version $Id$
+ */
+public class SegmentedMemoryCache implements MemoryCache
+{
+    /** The default number of segments. */
+    protected static final int DEFAULT_SEGMENT_COUNT = 16;
+
+    protected static class CacheEntry
+    {
+        protected final Object key;
+        protected final Object clientObject;
+        protected final long clientObjectSize;
+        /** The CLOCK reference bit, set by each access and cleared as the segment's clock hand passes. */
+        protected volatile boolean referenced;
+        // Links in the segment's circular list. Guarded by the segment.
+        protected CacheEntry prev;
+        protected CacheEntry next;
+
+        protected CacheEntry(Object key, Object clientObject, long clientObjectSize)
+        {
+            this.key = key;
+            this.clientObject = clientObject;
+            this.clientObjectSize = clientObjectSize;
+        }
+
+        public String toString()
+        {
+            return key.toString() + " " + clientObject.toString() + " " + referenced + " " + clientObjectSize;
+        }
+    }
+
+    /** A segment's circular entry list and clock hand. All access to a segment must be synchronized on it. */
+    protected static class Segment
+    {
+        protected CacheEntry hand;
+        protected int size;
+
+        protected void link(CacheEntry entry)
+        {
+            if (this.hand == null)
+            {
+                entry.prev = entry;
+                entry.next = entry;
+                this.hand = entry;
+            }
+            else
+            {
+                // Insert just behind the hand so that the new entry is the last one the hand reaches.
+                entry.next = this.hand;
+                entry.prev = this.hand.prev;
+                this.hand.prev.next = entry;
+                this.hand.prev = entry;
+            }
+
+            this.size++;
+        }
+
+        protected void unlink(CacheEntry entry)
+        {
+            if (entry.next == entry)
+            {
+                this.hand = null;
+            }
+            else
+            {
+                entry.prev.next = entry.next;
+                entry.next.prev = entry.prev;
+                if (this.hand == entry)
+                    this.hand = entry.next;
+            }
+
+            entry.prev = null;
+            entry.next = null;
+            this.size--;
+        }
+
+        /**
+         * Advances the clock hand to the first entry that has not been referenced since the hand last passed it,
+         * clearing reference bits along the way.
+         *
+         * @return the entry to evict, or null if the segment is empty.
+         */
+        protected CacheEntry selectVictim()
+        {
+            if (this.hand == null)
+                return null;
+
+            while (this.hand.referenced)
+            {
+                this.hand.referenced = false;
+                this.hand = this.hand.next;
+            }
+
+            return this.hand;
+        }
+    }
+
+    protected ConcurrentHashMap<Object, CacheEntry> entries;
+    protected CopyOnWriteArrayList<MemoryCache.CacheListener> listeners;
+    protected Segment[] segments;
+    protected AtomicLong capacity = new AtomicLong();
+    protected AtomicLong currentUsedCapacity = new AtomicLong();
+    protected AtomicInteger evictionCursor = new AtomicInteger();
+    protected AtomicLong hitCount = new AtomicLong();
+    protected AtomicLong missCount = new AtomicLong();
+    protected AtomicLong insertionCount = new AtomicLong();
+    protected AtomicLong evictionCount = new AtomicLong();
+    protected AtomicLong evictedCapacity = new AtomicLong();
+    protected volatile long lowWater;
+    protected String name = "";
+
+    /**
+     * Constructs a new cache with the default number of segments, using <code>capacity</code> for maximum size, and
+     * <code>loWater</code> for the low water.
+     *
+     * @param loWater  the low water level.
+     * @param capacity the maximum capacity.
+     */
+    public SegmentedMemoryCache(long loWater, long capacity)
+    {
+        this(loWater, capacity, DEFAULT_SEGMENT_COUNT);
+    }
+
+    /**
+     * Constructs a new cache using <code>capacity</code> for maximum size, and <code>loWater</code> for the low water.
+     * The number of segments is rounded up to the next power of two.
+     *
+     * @param loWater      the low water level.
+     * @param capacity     the maximum capacity.
+     * @param segmentCount the number of independently locked segments.
+     *
+     * @throws IllegalArgumentException if <code>segmentCount</code> is less than 1.
+     */
+    public SegmentedMemoryCache(long loWater, long capacity, int segmentCount)
+    {
+        if (segmentCount < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "segmentCount < 1");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        int count = 1;
+        while (count < segmentCount)
+        {
+            count <<= 1;
+        }
+
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++)
+        {
+            this.segments[i] = new Segment();
+        }
+
+        this.entries = new ConcurrentHashMap<Object, CacheEntry>(16, 0.75f, count);
+        this.listeners = new CopyOnWriteArrayList<MemoryCache.CacheListener>();
+        this.capacity.set(capacity);
+        this.lowWater = loWater;
+    }
+
+    /** @return the number of independently locked segments in this cache. */
+    public int getSegmentCount()
+    {
+        return this.segments.length;
+    }
+
+    /** @return the number of objects currently stored in this cache. */
+    public int getNumObjects()
+    {
+        return this.entries.size();
+    }
+
+    /** @return the capacity of the cache. */
+    public long getCapacity()
+    {
+        return this.capacity.get();
+    }
+
+    /** @return the number of cache units that the cache currently holds. */
+    public long getUsedCapacity()
+    {
+        return this.currentUsedCapacity.get();
+    }
+
+    /** @return the amount of free space left in the cache (in cache units). */
+    public long getFreeCapacity()
+    {
+        return Math.max(this.capacity.get() - this.currentUsedCapacity.get(), 0);
+    }
+
+    /** @return the number of <code>getObject</code> calls that found their entry. */
+    public long getHitCount()
+    {
+        return this.hitCount.get();
+    }
+
+    /** @return the number of <code>getObject</code> calls that did not find their entry. */
+    public long getMissCount()
+    {
+        return this.missCount.get();
+    }
+
+    /** @return the number of entries added to this cache. */
+    public long getInsertionCount()
+    {
+        return this.insertionCount.get();
+    }
+
+    /** @return the number of entries removed to make space for new entries. */
+    public long getEvictionCount()
+    {
+        return this.evictionCount.get();
+    }
+
+    /** @return the total size, in cache units, of the entries removed to make space for new entries. */
+    public long getEvictedCapacity()
+    {
+        return this.evictedCapacity.get();
+    }
+
+    public void setName(String name)
+    {
+        this.name = name != null ? name : "";
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Adds a cache listener, which is notified when an item is removed from the cache.
+     *
+     * @param listener The new <code>CacheListener</code>.
+     *
+     * @throws IllegalArgumentException is <code>listener</code> is null.
+     */
+    public void addCacheListener(MemoryCache.CacheListener listener)
+    {
+        if (listener == null)
+        {
+            String message = Logging.getMessage("BasicMemoryCache.nullListenerAdded");
+            Logging.logger().warning(message);
+            throw new IllegalArgumentException(message);
+        }
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Removes a cache listener, objects using this listener will no longer receive notification of cache events.
+     *
+     * @param listener The <code>CacheListener</code> to remove.
+     *
+     * @throws IllegalArgumentException if <code>listener</code> is null.
+     */
+    public void removeCacheListener(MemoryCache.CacheListener listener)
+    {
+        if (listener == null)
+        {
+            String message = Logging.getMessage("BasicMemoryCache.nullListenerRemoved");
+            Logging.logger().warning(message);
+            throw new IllegalArgumentException(message);
+        }
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Sets the new capacity for the cache. Entries are not removed until the next add that exceeds the new capacity.
+     *
+     * @param newCapacity the new capacity of the cache.
+     */
+    public void setCapacity(long newCapacity)
+    {
+        this.capacity.set(newCapacity);
+    }
+
+    /**
+     * Sets the new low water level in cache units. When the cache fills, it removes items until it reaches the low
+     * water level. The new value is ignored if it is negative or not less than the capacity.
+     *
+     * @param loWater the new low water level.
+     */
+    public void setLowWater(long loWater)
+    {
+        if (loWater < this.capacity.get() && loWater >= 0)
+        {
+            this.lowWater = loWater;
+        }
+    }
+
+    /**
+     * Returns the low water level in cache units. When the cache fills, it removes items until it reaches the low water
+     * level.
+     *
+     * @return the low water level.
+     */
+    public long getLowWater()
+    {
+        return this.lowWater;
+    }
+
+    /**
+     * Returns true if the cache contains the item referenced by key. This method does not lock and does not mark the
+     * item as accessed.
+     *
+     * @param key The key of a specific object.
+     *
+     * @return true if the cache holds the item referenced by key.
+     *
+     * @throws IllegalArgumentException if <code>key</code> is null.
+     */
+    public boolean contains(Object key)
+    {
+        if (key == null)
+        {
+            String msg = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        return this.entries.containsKey(key);
+    }
+
+    /**
+     * Adds an object to the cache. The add fails if the object or key is null, or if the size is zero, negative or
+     * greater than the maximum capacity.
+     *
+     * @param key              The unique reference key that identifies this object.
+     * @param clientObject     The actual object to be cached.
+     * @param clientObjectSize The size of the object in cache units.
+     *
+     * @return returns true if clientObject was added, false otherwise.
+     */
+    public boolean add(Object key, Object clientObject, long clientObjectSize)
+    {
+        long cap = this.capacity.get();
+
+        if (key == null || clientObject == null || clientObjectSize <= 0 || clientObjectSize > cap)
+        {
+            String message = Logging.getMessage("BasicMemoryCache.CacheItemNotAdded");
+
+            if (clientObjectSize > cap)
+            {
+                message += " - " + Logging.getMessage("BasicMemoryCache.ItemTooLargeForCache");
+            }
+
+            Logging.logger().warning(message);
+
+            return false;
+        }
+
+        if (this.currentUsedCapacity.get() + clientObjectSize > cap)
+        {
+            this.makeSpace(clientObjectSize);
+        }
+
+        CacheEntry entry = new CacheEntry(key, clientObject, clientObjectSize);
+        CacheEntry existing;
+
+        Segment segment = this.segmentFor(key);
+        synchronized (segment)
+        {
+            existing = this.entries.put(key, entry);
+            if (existing != null) // replacing
+            {
+                segment.unlink(existing);
+                this.currentUsedCapacity.addAndGet(-existing.clientObjectSize);
+            }
+
+            segment.link(entry);
+            this.currentUsedCapacity.addAndGet(clientObjectSize);
+        }
+
+        this.insertionCount.incrementAndGet();
+
+        if (existing != null)
+            this.notifyRemoved(existing);
+
+        return true;
+    }
+
+    public boolean add(Object key, Cacheable clientObject)
+    {
+        return this.add(key, clientObject, clientObject.getSizeInBytes());
+    }
+
+    /**
+     * Remove the object reference by key from the cache. If no object with the corresponding key is found, this method
+     * returns immediately.
+     *
+     * @param key the key of the object to be removed.
+     */
+    public void remove(Object key)
+    {
+        if (key == null)
+        {
+            Logging.logger().finer("nullValue.KeyIsNull");
+
+            return;
+        }
+
+        CacheEntry entry;
+
+        Segment segment = this.segmentFor(key);
+        synchronized (segment)
+        {
+            entry = this.entries.remove(key);
+            if (entry != null)
+            {
+                segment.unlink(entry);
+                this.currentUsedCapacity.addAndGet(-entry.clientObjectSize);
+            }
+        }
+
+        if (entry != null)
+            this.notifyRemoved(entry);
+    }
+
+    /**
+     * Obtain the object referenced by key without removing it. This method does not lock. It marks the object as
+     * recently used by setting its reference bit.
+     *
+     * @param key The key for the object to be found.
+     *
+     * @return the object referenced by key if it is present, null otherwise.
+     */
+    public Object getObject(Object key)
+    {
+        if (key == null)
+        {
+            Logging.logger().finer("nullValue.KeyIsNull");
+
+            return null;
+        }
+
+        CacheEntry entry = this.entries.get(key);
+        if (entry == null)
+        {
+            this.missCount.incrementAndGet();
+            return null;
+        }
+
+        entry.referenced = true;
+        this.hitCount.incrementAndGet();
+
+        return entry.clientObject;
+    }
+
+    /** Empties the cache. */
+    public void clear()
+    {
+        for (Segment segment : this.segments)
+        {
+            List<CacheEntry> removed;
+
+            synchronized (segment)
+            {
+                if (segment.size == 0)
+                    continue;
+
+                removed = new ArrayList<CacheEntry>(segment.size);
+                while (segment.hand != null)
+                {
+                    CacheEntry entry = segment.hand;
+                    segment.unlink(entry);
+                    this.entries.remove(entry.key);
+                    this.currentUsedCapacity.addAndGet(-entry.clientObjectSize);
+                    removed.add(entry);
+                }
+            }
+
+            for (CacheEntry entry : removed)
+            {
+                this.notifyRemoved(entry);
+            }
+        }
+    }
+
+    protected Segment segmentFor(Object key)
+    {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+
+        return this.segments[h & (this.segments.length - 1)];
+    }
+
+    /**
+     * Makes at least <code>spaceRequired</code> space in the cache, continuing until the used capacity is no greater
+     * than the low water level. Segments are visited round robin, and each visit evicts that segment's CLOCK victim.
+     * Only one segment lock is held at a time.
+     *
+     * @param spaceRequired the amount of space required.
+     */
+    protected void makeSpace(long spaceRequired)
+    {
+        if (spaceRequired > this.capacity.get() || spaceRequired < 0)
+            return;
+
+        int emptySegments = 0;
+        while ((this.getFreeCapacity() < spaceRequired || this.getUsedCapacity() > this.lowWater)
+            && emptySegments < this.segments.length)
+        {
+            Segment segment = this.segments[this.evictionCursor.getAndIncrement() & (this.segments.length - 1)];
+            CacheEntry victim;
+
+            synchronized (segment)
+            {
+                victim = segment.selectVictim();
+                if (victim != null)
+                {
+                    segment.unlink(victim);
+                    this.entries.remove(victim.key);
+                    this.currentUsedCapacity.addAndGet(-victim.clientObjectSize);
+                }
+            }
+
+            if (victim != null)
+            {
+                emptySegments = 0;
+                this.evictionCount.incrementAndGet();
+                this.evictedCapacity.addAndGet(victim.clientObjectSize);
+                this.notifyRemoved(victim);
+            }
+            else
+            {
+                emptySegments++;
+            }
+        }
+    }
+
+    protected void notifyRemoved(CacheEntry entry)
+    {
+        for (MemoryCache.CacheListener listener : this.listeners)
+        {
+            try
+            {
+                listener.entryRemoved(entry.key, entry.clientObject);
+            }
+            catch (Exception e)
+            {
+                listener.removalException(e, entry.key, entry.clientObject);
+            }
+        }
+    }
+
+    /**
+     * a <code>String</code> representation of this object is returned.&nbsp; This representation consists of maximum
+     * size, current used capacity and number of currently cached items.
+     *
+     * @return a <code>String</code> representation of this object.
+     */
+    @Override
+    public String toString()
+    {
+        return "SegmentedMemoryCache " + this.name + " max size = " + this.getCapacity() + " current size = "
+            + this.currentUsedCapacity.get() + " number of items: " + this.getNumObjects();
+    }
+}
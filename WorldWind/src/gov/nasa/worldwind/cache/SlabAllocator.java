@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Allocates fixed-size slots of native memory from large direct <code>ByteBuffer</code> slabs. Slabs are allocated on
+ * demand until the allocator's capacity is reached, and are never released, so data stored in slots lives outside the
+ * garbage collected heap and does not contribute to collection pauses.
+ * <p/>
+ * Slots are reference counted. A newly allocated slot holds one reference on behalf of its owner, each thread that
+ * reads the slot's memory holds another for as long as it does so, and the slot returns to the free list only when the
+ * last reference is released. A thread still reading a tile that was just evicted from a memory cache therefore never
+ * sees the slot's contents overwritten by another tile. References are counted atomically, so acquiring and releasing
+ * them does not contend for the allocator's lock. A freed slot can't be acquired again; its memory is handed out by a
+ * later call to {@link #allocate()} as a new slot.
+ *
+ * @version $Id$
+ */
+public class SlabAllocator
+{
+    /** A fixed-size region of a slab. */
+    public static class Slot
+    {
+        protected final SlabAllocator allocator;
+        protected final ByteBuffer buffer;
+        protected final AtomicInteger referenceCount = new AtomicInteger(1);
+
+        protected Slot(SlabAllocator allocator, ByteBuffer buffer)
+        {
+            this.allocator = allocator;
+            this.buffer = buffer;
+        }
+
+        /** @return the number of references currently held to this slot. Zero indicates the slot is free. */
+        public int getReferenceCount()
+        {
+            return this.referenceCount.get();
+        }
+
+        /** @return the allocator that owns this slot. */
+        public SlabAllocator getAllocator()
+        {
+            return this.allocator;
+        }
+
+        /**
+         * Returns a new view of this slot's memory, with position zero, limit equal to the slot size, and native byte
+         * order.
+         *
+         * @return a view of this slot's memory.
+         */
+        public ByteBuffer getBuffer()
+        {
+            ByteBuffer view = this.buffer.duplicate();
+            view.clear();
+            return view.order(ByteOrder.nativeOrder());
+        }
+    }
+
+    protected final int slotSize;
+    protected final int slotsPerSlab;
+    protected final long capacity;
+    protected final List<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+    protected final ArrayDeque<ByteBuffer> freeSlots = new ArrayDeque<ByteBuffer>();
+    protected int numAllocatedSlots;
+
+    /**
+     * Constructs an allocator. No memory is allocated until the first call to {@link #allocate()}.
+     *
+     * @param slotSize     the size of each slot in bytes.
+     * @param slotsPerSlab the number of slots in each slab.
+     * @param capacity     the maximum number of bytes of slab memory to allocate.
+     *
+     * @throws IllegalArgumentException if the slot size or slots per slab is less than 1, or if the slab size exceeds
+     *                                  the maximum size of a <code>ByteBuffer</code>.
+     */
+    public SlabAllocator(int slotSize, int slotsPerSlab, long capacity)
+    {
+        if (slotSize < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "slotSize < 1");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (slotsPerSlab < 1 || (long) slotSize * slotsPerSlab > Integer.MAX_VALUE)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "slotsPerSlab");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.slotSize = slotSize;
+        this.slotsPerSlab = slotsPerSlab;
+        this.capacity = capacity;
+    }
+
+    /** @return the size of each slot in bytes. */
+    public int getSlotSize()
+    {
+        return this.slotSize;
+    }
+
+    /** @return the maximum number of bytes of slab memory this allocator allocates. */
+    public long getCapacity()
+    {
+        return this.capacity;
+    }
+
+    /** @return the number of bytes of slab memory allocated so far. */
+    public synchronized long getAllocatedCapacity()
+    {
+        return (long) this.slabs.size() * this.slotsPerSlab * this.slotSize;
+    }
+
+    /** @return the number of bytes in slots currently in use. */
+    public synchronized long getUsedCapacity()
+    {
+        return (long) this.numAllocatedSlots * this.slotSize;
+    }
+
+    /**
+     * Allocates a slot. The memory of a free slot is reused if there is one. Otherwise a new slab is allocated if the
+     * capacity allows it. The returned slot holds one reference, which the caller releases by calling {@link
+     * #release(Slot)}.
+     *
+     * @return the allocated slot, or null if no slot is available.
+     */
+    public synchronized Slot allocate()
+    {
+        if (this.freeSlots.isEmpty() && !this.allocateSlab())
+            return null;
+
+        this.numAllocatedSlots++;
+
+        return new Slot(this, this.freeSlots.pollFirst());
+    }
+
+    /**
+     * Adds a reference to an allocated slot. The slot is not reused until the reference is released by calling {@link
+     * #release(Slot)}.
+     *
+     * @param slot the slot to reference.
+     *
+     * @return true if the reference was added, false if the slot is free or belongs to another allocator.
+     */
+    public boolean acquire(Slot slot)
+    {
+        if (slot == null || slot.allocator != this)
+            return false;
+
+        while (true)
+        {
+            int count = slot.referenceCount.get();
+            if (count == 0)
+                return false;
+
+            if (slot.referenceCount.compareAndSet(count, count + 1))
+                return true;
+        }
+    }
+
+    /**
+     * Releases a reference to a slot. The slot returns to the free list when its last reference is released. Slots
+     * that are already free or belong to another allocator are ignored.
+     *
+     * @param slot the slot to release.
+     *
+     * @return true if this released the slot's last reference and the slot is now free, otherwise false.
+     */
+    public boolean release(Slot slot)
+    {
+        if (slot == null || slot.allocator != this)
+            return false;
+
+        while (true)
+        {
+            int count = slot.referenceCount.get();
+            if (count == 0)
+                return false;
+
+            if (slot.referenceCount.compareAndSet(count, count - 1))
+            {
+                if (count > 1)
+                    return false;
+                break;
+            }
+        }
+
+        synchronized (this)
+        {
+            this.freeSlots.addLast(slot.buffer);
+            this.numAllocatedSlots--;
+        }
+
+        return true;
+    }
+
+    /**
+     * Allocates a new slab and places its slots at the head of the free list.
+     *
+     * @return true if a slab was allocated, false if the capacity does not allow another slab.
+     */
+    protected boolean allocateSlab() // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        long slabSize = (long) this.slotsPerSlab * this.slotSize;
+        if (this.getAllocatedCapacity() + slabSize > this.capacity)
+            return false;
+
+        ByteBuffer slab = ByteBuffer.allocateDirect((int) slabSize);
+        this.slabs.add(slab);
+
+        for (int i = this.slotsPerSlab - 1; i >= 0; i--)
+        {
+            slab.limit((i + 1) * this.slotSize);
+            slab.position(i * this.slotSize);
+            this.freeSlots.addFirst(slab.slice());
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,994 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.regex.*;
+
+/**
+ * Packs many small files, such as image and elevation tiles, into a few large append-only volume files. Files are
+ * identified by name, typically their path relative to a file store location. An in-memory index maps each name to
+ * the location of its most recent data, and is saved to an index file by {@link #flush()} so that the archive opens
+ * without reading its volumes. Records appended after the index was last saved are recovered by scanning the end of
+ * each volume when the archive is opened.
+ * <p/>
+ * Data is read through memory-mapped views of the volumes. A volume is remapped once it has grown to twice its mapped
+ * size, and records appended since it was last mapped are read from the volume file. Replacing or removing a file
+ * leaves its old record in place; {@link #compact()} rewrites the live records to a new set of volumes, and deletes
+ * the old volumes once the reads in progress on them complete. Existing directories of files can be added with {@link
+ * #importDirectory(java.io.File, java.io.FileFilter, boolean)}.
+ * <p/>
+ * Archived files are also available through URLs created by {@link #makeURL(String)}, which can be passed to code
+ * that reads files from a {@link FileStore} URL. These URLs are opaque, and cannot be converted to a
+ * <code>java.io.File</code>.
+ * <p/>
+ * Each record is a four byte name length, the UTF-8 name, an eight byte modification time, a four byte data length and
+ * the data. A data length of -1 marks a removal.
+ *
+ * @version $Id$
+ */
+public class TileArchive
+{
+    /** The protocol of URLs that refer to archived files. */
+    public static final String PROTOCOL = "wwarchive";
+    /** The default maximum size of a volume file. Volumes are mapped whole, so this must be less than 2 GB. */
+    protected static final long DEFAULT_MAX_VOLUME_SIZE = 1L << 30;
+    protected static final int INDEX_VERSION = 1;
+    protected static final int REMOVED = -1;
+
+    /** The location of a file's data. */
+    protected static class Entry
+    {
+        protected final int volume;
+        protected final long offset;
+        protected final int length;
+        protected final long lastModified;
+        protected final int recordSize;
+
+        protected Entry(int volume, long offset, int length, long lastModified, int recordSize)
+        {
+            this.volume = volume;
+            this.offset = offset;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.recordSize = recordSize;
+        }
+    }
+
+    /** One volume file and its current memory mapping. */
+    protected static class Volume
+    {
+        protected final File file;
+        protected final FileChannel channel;
+        protected volatile long length;
+        protected volatile ByteBuffer mapping;
+
+        protected Volume(File file) throws IOException
+        {
+            this.file = file;
+            this.channel = new RandomAccessFile(file, "rw").getChannel();
+            this.length = this.channel.size();
+        }
+
+        /**
+         * Returns a mapping of the volume that extends at least to a specified position, remapping the volume if
+         * necessary.
+         *
+         * @param end the position the mapping must include.
+         *
+         * @return the volume's mapping.
+         *
+         * @throws IOException if the volume cannot be mapped.
+         */
+        protected ByteBuffer getMapping(long end) throws IOException
+        {
+            ByteBuffer buffer = this.mapping;
+            if (buffer != null && buffer.capacity() >= end)
+                return buffer;
+
+            synchronized (this)
+            {
+                if (this.mapping == null || this.mapping.capacity() < end)
+                    this.mapping = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.length);
+
+                return this.mapping;
+            }
+        }
+
+        /**
+         * Returns a region of the volume. A region within the current mapping is a view of the mapping. The volume is
+         * remapped only once it has grown to twice its mapped size, so that reading each record as it's appended does
+         * not remap the volume each time. Regions beyond the mapping are read from the file.
+         *
+         * @param offset the region's position in the volume.
+         * @param length the region's length.
+         *
+         * @return the region's data.
+         *
+         * @throws IOException if the volume cannot be mapped or read.
+         */
+        protected ByteBuffer read(long offset, int length) throws IOException
+        {
+            long end = offset + length;
+
+            ByteBuffer mapping = this.mapping;
+            if (mapping == null || (mapping.capacity() < end && this.length >= 2L * mapping.capacity()))
+                mapping = this.getMapping(this.length);
+
+            if (mapping.capacity() >= end)
+            {
+                ByteBuffer buffer = mapping.duplicate();
+                buffer.limit((int) end);
+                buffer.position((int) offset);
+                return buffer.slice();
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining())
+            {
+                if (this.channel.read(buffer, offset + buffer.position()) < 0)
+                    throw new EOFException(this.file.getPath());
+            }
+            buffer.flip();
+
+            return buffer;
+        }
+    }
+
+    /**
+     * The index and volumes of one generation of the archive. Compaction replaces the state as a whole, and the
+     * replaced state's volumes are closed once no reads are in progress on them.
+     */
+    protected static class State
+    {
+        protected final int generation;
+        protected final ConcurrentHashMap<String, Entry> index = new ConcurrentHashMap<String, Entry>();
+        protected final List<Volume> volumes = new CopyOnWriteArrayList<Volume>();
+        protected long totalBytes;
+        protected long liveBytes;
+        /** The number of reads in progress on the state's volumes. */
+        protected final AtomicInteger readers = new AtomicInteger();
+        /** Indicates whether the state has been replaced or the archive closed. */
+        protected volatile boolean retired;
+        /** Indicates whether the volumes are deleted once they're closed. */
+        protected volatile boolean deleteWhenClosed;
+        protected boolean closed;
+
+        protected State(int generation)
+        {
+            this.generation = generation;
+        }
+    }
+
+    protected final File directory;
+    protected final String name;
+    protected final long maxVolumeSize;
+    protected final URLStreamHandler urlHandler = new ArchiveURLStreamHandler();
+    protected volatile State state;
+    protected boolean indexDirty;
+
+    /**
+     * Opens or creates an archive with the default maximum volume size.
+     *
+     * @param directory the directory containing the archive's files.
+     * @param name      the archive name, used as the prefix of its file names.
+     *
+     * @throws IllegalArgumentException if the directory or name is null.
+     * @throws IOException              if the archive cannot be opened.
+     */
+    public TileArchive(File directory, String name) throws IOException
+    {
+        this(directory, name, DEFAULT_MAX_VOLUME_SIZE);
+    }
+
+    /**
+     * Opens or creates an archive.
+     *
+     * @param directory     the directory containing the archive's files.
+     * @param name          the archive name, used as the prefix of its file names.
+     * @param maxVolumeSize the size in bytes at which a new volume is started. Files larger than this are stored in a
+     *                      volume of their own.
+     *
+     * @throws IllegalArgumentException if the directory or name is null, or the maximum volume size is less than 1 or
+     *                                  2 GB or more.
+     * @throws IOException              if the archive cannot be opened.
+     */
+    public TileArchive(File directory, String name, long maxVolumeSize) throws IOException
+    {
+        if (directory == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (name == null)
+        {
+            String message = Logging.getMessage("nullValue.NameIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (maxVolumeSize < 1 || maxVolumeSize >= Integer.MAX_VALUE)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "maxVolumeSize");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.directory = directory;
+        this.name = name;
+        this.maxVolumeSize = maxVolumeSize;
+
+        this.open();
+    }
+
+    /** @return the directory containing the archive's files. */
+    public File getDirectory()
+    {
+        return this.directory;
+    }
+
+    /** @return the archive name. */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /** @return the number of files in the archive. */
+    public int getFileCount()
+    {
+        return this.state.index.size();
+    }
+
+    /** @return the total size in bytes of the archive's volumes. */
+    public synchronized long getTotalBytes()
+    {
+        return this.state.totalBytes;
+    }
+
+    /**
+     * Returns the fraction of the volumes' size occupied by replaced or removed records, which {@link #compact()}
+     * reclaims.
+     *
+     * @return the fraction of the archive that is garbage, from 0 to 1.
+     */
+    public synchronized double getGarbageFraction()
+    {
+        State s = this.state;
+        return s.totalBytes > 0 ? (double) (s.totalBytes - s.liveBytes) / s.totalBytes : 0;
+    }
+
+    /**
+     * Indicates whether the archive contains a file.
+     *
+     * @param fileName the file name.
+     *
+     * @return true if the archive contains the file, otherwise false.
+     */
+    public boolean contains(String fileName)
+    {
+        return fileName != null && this.state.index.containsKey(fileName);
+    }
+
+    /**
+     * Returns the names of the files in the archive.
+     *
+     * @return the file names.
+     */
+    public Set<String> getFileNames()
+    {
+        return Collections.unmodifiableSet(this.state.index.keySet());
+    }
+
+    /**
+     * Returns the modification time of a file.
+     *
+     * @param fileName the file name.
+     *
+     * @return the time the file was added to the archive or last modified before it was imported, in milliseconds
+     *         since the epoch, or zero if the archive does not contain the file.
+     */
+    public long getLastModified(String fileName)
+    {
+        Entry entry = fileName != null ? this.state.index.get(fileName) : null;
+        return entry != null ? entry.lastModified : 0;
+    }
+
+    /**
+     * Returns a file's data.
+     *
+     * @param fileName the file name.
+     *
+     * @return a read-only view of the file's data, or null if the archive does not contain the file.
+     *
+     * @throws IOException if the volume containing the file cannot be mapped.
+     */
+    public ByteBuffer get(String fileName) throws IOException
+    {
+        if (fileName == null)
+            return null;
+
+        State s = this.acquireState();
+        try
+        {
+            Entry entry = s.index.get(fileName);
+            if (entry == null)
+                return null;
+
+            return s.volumes.get(entry.volume).read(entry.offset, entry.length).asReadOnlyBuffer();
+        }
+        finally
+        {
+            this.releaseState(s);
+        }
+    }
+
+    /**
+     * Adds a file to the archive, replacing any file with the same name.
+     *
+     * @param fileName     the file name.
+     * @param data         the file's data. The remaining bytes are added; the buffer's position is not changed.
+     * @param lastModified the file's modification time in milliseconds since the epoch.
+     *
+     * @throws IllegalArgumentException if the file name or data is null.
+     * @throws IOException              if the data cannot be written.
+     */
+    public synchronized void put(String fileName, ByteBuffer data, long lastModified) throws IOException
+    {
+        if (fileName == null)
+        {
+            String message = Logging.getMessage("nullValue.FilePathIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (data == null)
+        {
+            String message = Logging.getMessage("nullValue.ByteBufferIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.append(this.state, fileName, data.duplicate(), lastModified);
+    }
+
+    /**
+     * Removes a file from the archive.
+     *
+     * @param fileName the file name.
+     *
+     * @return true if the archive contained the file, otherwise false.
+     *
+     * @throws IOException if the removal cannot be written.
+     */
+    public synchronized boolean remove(String fileName) throws IOException
+    {
+        if (fileName == null || !this.state.index.containsKey(fileName))
+            return false;
+
+        this.append(this.state, fileName, null, System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * Adds the files in a directory and its subdirectories to the archive. Each file is named by its path relative to
+     * the directory, with '/' separating path elements.
+     *
+     * @param dir                 the directory to import.
+     * @param filter              selects the files to import. Directories are always searched. May be null, in which
+     *                            case all files are imported.
+     * @param deleteImportedFiles true to delete each file once it's been added to the archive.
+     *
+     * @return the number of files imported.
+     *
+     * @throws IllegalArgumentException if the directory is null.
+     * @throws IOException              if a file cannot be added to the archive.
+     */
+    public int importDirectory(File dir, FileFilter filter, boolean deleteImportedFiles) throws IOException
+    {
+        if (dir == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        String rootPath = dir.getAbsolutePath();
+        int count = 0;
+
+        ArrayDeque<File> dirs = new ArrayDeque<File>();
+        dirs.push(dir);
+
+        while (!dirs.isEmpty())
+        {
+            File[] children = dirs.pop().listFiles();
+            if (children == null)
+                continue;
+
+            for (File child : children)
+            {
+                if (child.isDirectory())
+                {
+                    dirs.push(child);
+                    continue;
+                }
+
+                if (this.isArchiveFile(child) || (filter != null && !filter.accept(child)))
+                    continue;
+
+                String fileName = child.getAbsolutePath().substring(rootPath.length()).replace(File.separatorChar,
+                    '/');
+                fileName = WWIO.stripLeadingSeparator(fileName);
+
+                long lastModified = child.lastModified();
+                ByteBuffer data = WWIO.readFileToBuffer(child);
+                this.put(fileName, data, lastModified);
+                count++;
+
+                //noinspection ResultOfMethodCallIgnored
+                if (deleteImportedFiles)
+                    child.delete();
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Rewrites the archive's live records to a new set of volumes and deletes the old volumes, reclaiming the space of
+     * replaced and removed files. Reads may continue while the archive is compacted.
+     *
+     * @throws IOException if the new volumes cannot be written.
+     */
+    public synchronized void compact() throws IOException
+    {
+        State oldState = this.state;
+        State newState = new State(oldState.generation + 1);
+
+        try
+        {
+            for (Map.Entry<String, Entry> e : oldState.index.entrySet())
+            {
+                ByteBuffer data = this.get(e.getKey());
+                if (data != null)
+                    this.append(newState, e.getKey(), data, e.getValue().lastModified);
+            }
+
+            // Writing the index commits the new generation. Until it's renamed into place, an interrupted compaction
+            // leaves the archive opening with the old generation.
+            this.writeIndex(newState);
+        }
+        catch (IOException e)
+        {
+            this.retireState(newState, true);
+            throw e;
+        }
+
+        this.state = newState;
+        this.retireState(oldState, true);
+    }
+
+    /**
+     * Writes the archive's index so that it opens without scanning its volumes.
+     *
+     * @throws IOException if the index cannot be written.
+     */
+    public synchronized void flush() throws IOException
+    {
+        if (this.indexDirty)
+            this.writeIndex(this.state);
+    }
+
+    /** Writes the archive's index and closes its volumes. The archive cannot be used after it's closed. */
+    public synchronized void close()
+    {
+        try
+        {
+            this.flush();
+        }
+        catch (IOException e)
+        {
+            String message = Logging.getMessage("TileArchive.ExceptionWritingIndex", this.getIndexFile());
+            Logging.logger().log(Level.SEVERE, message, e);
+        }
+
+        this.retireState(this.state, false);
+    }
+
+    /**
+     * Creates a URL that reads a file from this archive. The URL's content length, modification time and content type
+     * are those of the archived file.
+     *
+     * @param fileName the file name.
+     *
+     * @return a URL for the file, or null if the archive does not contain the file.
+     */
+    public URL makeURL(String fileName)
+    {
+        if (!this.contains(fileName))
+            return null;
+
+        try
+        {
+            return new URL(PROTOCOL, null, -1, fileName, this.urlHandler);
+        }
+        catch (MalformedURLException e)
+        {
+            String message = Logging.getMessage("generic.MalformedURL", fileName);
+            Logging.logger().log(Level.SEVERE, message, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the name of the archived file referred to by a URL created by {@link #makeURL(String)}.
+     *
+     * @param url the URL.
+     *
+     * @return the file name, or null if the URL does not refer to an archived file.
+     */
+    public static String getFileName(URL url)
+    {
+        return url != null && PROTOCOL.equals(url.getProtocol()) ? url.getFile() : null;
+    }
+
+    protected class ArchiveURLStreamHandler extends URLStreamHandler
+    {
+        protected URLConnection openConnection(URL url) throws IOException
+        {
+            return new ArchiveURLConnection(url);
+        }
+    }
+
+    protected class ArchiveURLConnection extends URLConnection
+    {
+        protected ByteBuffer data;
+
+        public ArchiveURLConnection(URL url)
+        {
+            super(url);
+        }
+
+        public void connect() throws IOException
+        {
+            if (this.connected)
+                return;
+
+            this.data = TileArchive.this.get(this.url.getFile());
+            if (this.data == null)
+                throw new FileNotFoundException(this.url.toString());
+
+            this.connected = true;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException
+        {
+            this.connect();
+            return WWIO.getInputStreamFromByteBuffer(this.data.duplicate());
+        }
+
+        @Override
+        public int getContentLength()
+        {
+            try
+            {
+                this.connect();
+                return this.data.remaining();
+            }
+            catch (IOException e)
+            {
+                return -1;
+            }
+        }
+
+        @Override
+        public String getContentType()
+        {
+            return WWIO.makeMimeTypeForSuffix(WWIO.getSuffix(this.url.getFile()));
+        }
+
+        @Override
+        public long getLastModified()
+        {
+            return TileArchive.this.getLastModified(this.url.getFile());
+        }
+    }
+
+    //**************************************************************//
+    //********************  Volumes and Index  *********************//
+    //**************************************************************//
+
+    protected File getIndexFile()
+    {
+        return new File(this.directory, this.name + ".wwi");
+    }
+
+    protected File getVolumeFile(int generation, int volume)
+    {
+        return new File(this.directory, this.name + "." + generation + "." + volume + ".wwa");
+    }
+
+    protected boolean isArchiveFile(File file)
+    {
+        String fileName = file.getName();
+        return file.getParentFile() != null && file.getParentFile().getAbsoluteFile().equals(
+            this.directory.getAbsoluteFile()) && fileName.startsWith(this.name + ".")
+            && (fileName.endsWith(".wwa") || fileName.endsWith(".wwi") || fileName.endsWith(".tmp"));
+    }
+
+    protected void open() throws IOException
+    {
+        if (!this.directory.exists() && !this.directory.mkdirs())
+        {
+            String message = Logging.getMessage("generic.CannotCreateFile", this.directory);
+            Logging.logger().severe(message);
+            throw new IOException(message);
+        }
+
+        // A generation is committed once an index naming it has been written. Compaction writes its volumes before
+        // its index, so volumes of a later generation are those of an interrupted compaction, and volumes of an earlier
+        // generation are those that could not be deleted because they were still mapped. Without an index, which is
+        // the case until the archive is first flushed or compacted, the earliest generation is the committed one.
+        Pattern pattern = Pattern.compile(Pattern.quote(this.name) + "\\.(\\d+)\\.(\\d+)\\.wwa");
+        List<File> volumeFiles = new ArrayList<File>();
+        int earliestGeneration = -1;
+        File[] files = this.directory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                Matcher m = pattern.matcher(file.getName());
+                if (!m.matches())
+                    continue;
+
+                volumeFiles.add(file);
+                int g = Integer.parseInt(m.group(1));
+                if (earliestGeneration < 0 || g < earliestGeneration)
+                    earliestGeneration = g;
+            }
+        }
+
+        int generation = this.readIndexGeneration();
+        if (generation < 0)
+            generation = Math.max(earliestGeneration, 0);
+
+        int numVolumes = 0;
+        for (File file : volumeFiles)
+        {
+            Matcher m = pattern.matcher(file.getName());
+            if (m.matches() && Integer.parseInt(m.group(1)) == generation)
+                numVolumes = Math.max(numVolumes, Integer.parseInt(m.group(2)) + 1);
+        }
+
+        for (File file : volumeFiles)
+        {
+            Matcher m = pattern.matcher(file.getName());
+            //noinspection ResultOfMethodCallIgnored
+            if (m.matches() && Integer.parseInt(m.group(1)) != generation)
+                file.delete();
+        }
+
+        State s = new State(generation);
+        for (int i = 0; i < numVolumes; i++)
+        {
+            s.volumes.add(new Volume(this.getVolumeFile(generation, i)));
+        }
+
+        long[] indexedLengths = this.readIndex(s);
+
+        // Recover the records appended since the index was written.
+        for (int i = 0; i < s.volumes.size(); i++)
+        {
+            this.scanVolume(s, i, indexedLengths != null && i < indexedLengths.length ? indexedLengths[i] : 0);
+        }
+
+        for (Volume volume : s.volumes)
+        {
+            s.totalBytes += volume.length;
+        }
+
+        this.state = s;
+    }
+
+    /**
+     * Reads the generation named by the archive's index file.
+     *
+     * @return the committed generation, or -1 if the index file is absent or cannot be read.
+     */
+    protected int readIndexGeneration()
+    {
+        File file = this.getIndexFile();
+        if (!file.exists())
+            return -1;
+
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != INDEX_VERSION)
+                return -1;
+
+            int generation = in.readInt();
+            return generation >= 0 ? generation : -1;
+        }
+        catch (IOException e)
+        {
+            String message = Logging.getMessage("TileArchive.ExceptionReadingIndex", file);
+            Logging.logger().log(Level.WARNING, message, e);
+            return -1;
+        }
+        finally
+        {
+            WWIO.closeStream(in, file.getPath());
+        }
+    }
+
+    protected long[] readIndex(State s)
+    {
+        File file = this.getIndexFile();
+        if (!file.exists())
+            return null;
+
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != INDEX_VERSION || in.readInt() != s.generation)
+                return null;
+
+            int numVolumes = in.readInt();
+            if (numVolumes > s.volumes.size())
+                return null;
+
+            long[] lengths = new long[numVolumes];
+            for (int i = 0; i < numVolumes; i++)
+            {
+                lengths[i] = in.readLong();
+                if (lengths[i] > s.volumes.get(i).length)
+                    return null;
+            }
+
+            int numEntries = in.readInt();
+            for (int i = 0; i < numEntries; i++)
+            {
+                String fileName = in.readUTF();
+                Entry entry = new Entry(in.readInt(), in.readLong(), in.readInt(), in.readLong(), in.readInt());
+                s.index.put(fileName, entry);
+                s.liveBytes += entry.recordSize;
+            }
+
+            return lengths;
+        }
+        catch (IOException e)
+        {
+            // Discard the partially read index and rebuild it from the volumes.
+            String message = Logging.getMessage("TileArchive.ExceptionReadingIndex", file);
+            Logging.logger().log(Level.WARNING, message, e);
+            s.index.clear();
+            s.liveBytes = 0;
+            return null;
+        }
+        finally
+        {
+            WWIO.closeStream(in, file.getPath());
+        }
+    }
+
+    protected void writeIndex(State s) throws IOException
+    {
+        File file = this.getIndexFile();
+        File tmpFile = new File(this.directory, this.name + ".wwi.tmp");
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        try
+        {
+            out.writeInt(INDEX_VERSION);
+            out.writeInt(s.generation);
+
+            out.writeInt(s.volumes.size());
+            for (Volume volume : s.volumes)
+            {
+                volume.channel.force(false);
+                out.writeLong(volume.length);
+            }
+
+            out.writeInt(s.index.size());
+            for (Map.Entry<String, Entry> e : s.index.entrySet())
+            {
+                Entry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeInt(entry.volume);
+                out.writeLong(entry.offset);
+                out.writeInt(entry.length);
+                out.writeLong(entry.lastModified);
+                out.writeInt(entry.recordSize);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+        if (!tmpFile.renameTo(file))
+        {
+            String message = Logging.getMessage("TileArchive.ExceptionWritingIndex", file);
+            throw new IOException(message);
+        }
+
+        this.indexDirty = false;
+    }
+
+    protected void scanVolume(State s, int volumeNumber, long start) throws IOException
+    {
+        Volume volume = s.volumes.get(volumeNumber);
+        if (start >= volume.length)
+            return;
+
+        ByteBuffer buffer = volume.getMapping(volume.length).duplicate();
+        long position = start;
+
+        while (position < volume.length)
+        {
+            try
+            {
+                buffer.position((int) position);
+                byte[] nameBytes = new byte[buffer.getInt()];
+                buffer.get(nameBytes);
+                long lastModified = buffer.getLong();
+                int length = buffer.getInt();
+                int recordSize = 16 + nameBytes.length + Math.max(length, 0);
+                if (length < REMOVED || position + recordSize > volume.length)
+                    throw new BufferUnderflowException();
+
+                String fileName = new String(nameBytes, "UTF-8");
+                Entry old = length == REMOVED ? s.index.remove(fileName)
+                    : s.index.put(fileName, new Entry(volumeNumber, buffer.position(), length, lastModified,
+                        recordSize));
+                if (old != null)
+                    s.liveBytes -= old.recordSize;
+                if (length != REMOVED)
+                    s.liveBytes += recordSize;
+
+                position += recordSize;
+                this.indexDirty = true;
+            }
+            catch (RuntimeException e)
+            {
+                // The rest of the volume is an incomplete record left by an interrupted write. Discard it.
+                String message = Logging.getMessage("TileArchive.TruncatingVolume", volume.file, position);
+                Logging.logger().warning(message);
+                volume.channel.truncate(position);
+                volume.length = position;
+                volume.mapping = null;
+                break;
+            }
+        }
+    }
+
+    protected void append(State s, String fileName, ByteBuffer data, long lastModified) throws IOException
+    {
+        byte[] nameBytes = fileName.getBytes("UTF-8");
+        int length = data != null ? data.remaining() : REMOVED;
+        int recordSize = 16 + nameBytes.length + Math.max(length, 0);
+
+        // Start a new volume when this record doesn't fit in the current one, unless the current one is empty.
+        Volume volume = s.volumes.isEmpty() ? null : s.volumes.get(s.volumes.size() - 1);
+        if (volume == null || (volume.length > 0 && volume.length + recordSize > this.maxVolumeSize))
+        {
+            volume = new Volume(this.getVolumeFile(s.generation, s.volumes.size()));
+            s.volumes.add(volume);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(16 + nameBytes.length);
+        header.putInt(nameBytes.length).put(nameBytes).putLong(lastModified).putInt(length).flip();
+
+        long position = volume.length;
+        long writePosition = position;
+        while (header.hasRemaining())
+        {
+            writePosition += volume.channel.write(header, writePosition);
+        }
+        while (data != null && data.hasRemaining())
+        {
+            writePosition += volume.channel.write(data, writePosition);
+        }
+
+        volume.length = writePosition;
+        s.totalBytes += recordSize;
+
+        Entry old;
+        if (data != null)
+        {
+            old = s.index.put(fileName, new Entry(s.volumes.size() - 1, position + header.capacity(), length,
+                lastModified, recordSize));
+            s.liveBytes += recordSize;
+        }
+        else
+        {
+            old = s.index.remove(fileName);
+        }
+
+        if (old != null)
+            s.liveBytes -= old.recordSize;
+
+        this.indexDirty = true;
+    }
+
+    /**
+     * Returns the current state, registered as being read so that its volumes remain open until {@link
+     * #releaseState(State)} is called.
+     *
+     * @return the current state.
+     */
+    protected State acquireState()
+    {
+        while (true)
+        {
+            State s = this.state;
+            s.readers.incrementAndGet();
+            if (!s.retired || s == this.state)
+                return s;
+
+            // The state was replaced while it was being acquired. Read from its replacement.
+            this.releaseState(s);
+        }
+    }
+
+    protected void releaseState(State s)
+    {
+        if (s.readers.decrementAndGet() == 0 && s.retired)
+            this.closeVolumes(s);
+    }
+
+    /**
+     * Marks a state as no longer current and closes its volumes once the reads in progress on them complete.
+     *
+     * @param s      the state to retire.
+     * @param delete true to delete the state's volumes once they're closed.
+     */
+    protected void retireState(State s, boolean delete)
+    {
+        s.deleteWhenClosed = delete;
+        s.retired = true;
+
+        if (s.readers.get() == 0)
+            this.closeVolumes(s);
+    }
+
+    protected void closeVolumes(State s)
+    {
+        synchronized (s)
+        {
+            if (s.closed)
+                return;
+            s.closed = true;
+        }
+
+        for (Volume volume : s.volumes)
+        {
+            WWIO.closeStream(volume.channel, volume.file.getPath());
+
+            // A volume that's still mapped can't be deleted on some platforms. It's deleted when the archive is next
+            // opened.
+            //noinspection ResultOfMethodCallIgnored
+            if (s.deleteWhenClosed)
+                volume.file.delete();
+        }
+    }
+}
@@ -0,0 +1,493 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.data;
+
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.util.*;
+
+import java.nio.*;
+
+/**
+ * Encodes and decodes World Wind quantized elevation tiles. A quantized elevation tile holds a tile's elevations in
+ * a fraction of the space of the equivalent BIL file, and decodes without an image reader.
+ * <p/>
+ * Elevations are quantized to 16-bit codes relative to the tile's minimum elevation, in steps no larger than needed to
+ * span the tile's range of elevations. Integer elevations spanning less than 65535 meters, which includes all 16-bit
+ * elevation data, are quantized in steps of one meter and are therefore encoded losslessly. Floating point elevations
+ * are quantized to a specified precision. Each code is predicted from the codes of its neighbors to the left, above,
+ * and above left, and the 16-bit difference between the code and its prediction is Rice coded in blocks of {@link
+ * #BLOCK_SIZE} samples. Missing elevations are encoded as a reserved code and decoded as the tile's missing data
+ * signal.
+ * <p/>
+ * The encoded tile begins with a header, in big-endian byte order, that holds the magic number {@link #MAGIC}, the
+ * format version, the decoded data type, the tile's width and height, its minimum and maximum elevation, the
+ * quantization step and the missing data signal. The Rice coded differences follow.
+ *
+ * @version $Id$
+ */
+public class QuantizedElevationCodec
+{
+    /** The mime type of quantized elevation tiles. */
+    public static final String MIME_TYPE = "application/qel";
+    /** The file suffix of quantized elevation tiles. */
+    public static final String SUFFIX = "qel";
+    /** The magic number identifying quantized elevation tiles, the characters "WWQE". */
+    public static final int MAGIC = 0x57575145;
+    /** The current format version. */
+    public static final int VERSION = 1;
+    /** The number of samples sharing a Rice parameter. */
+    public static final int BLOCK_SIZE = 32;
+    /** The largest tile width or height, in samples, that {@link #decode(ByteBuffer)} accepts. */
+    public static final int MAX_DIMENSION = 8192;
+
+    protected static final int HEADER_SIZE = 46;
+    protected static final int DATA_TYPE_INT16 = 0;
+    protected static final int DATA_TYPE_FLOAT32 = 1;
+    protected static final int MAX_CODE = 0xFFFE;
+    protected static final int MISSING_CODE = 0xFFFF;
+    // Differences whose quotient reaches this value are written as an escape followed by the raw 16-bit difference.
+    protected static final int ESCAPE_QUOTIENT = 16;
+
+    /**
+     * Encodes elevations as a quantized elevation tile.
+     *
+     * @param elevations        the elevations, in row major order starting at the tile's upper left corner.
+     * @param width             the tile's width in samples.
+     * @param height            the tile's height in samples.
+     * @param missingDataSignal the value denoting missing elevations.
+     * @param precision         the largest quantization step for floating point elevations, in meters. Integer
+     *                          elevations are quantized in steps of one meter.
+     *
+     * @return a buffer containing the encoded tile, positioned at zero.
+     *
+     * @throws IllegalArgumentException if the elevations are null, the width or height is less than one, the
+     *                                  elevations buffer is smaller than the tile, or the precision is not positive.
+     */
+    public static ByteBuffer encode(BufferWrapper elevations, int width, int height, double missingDataSignal,
+        double precision)
+    {
+        if (elevations == null)
+        {
+            String message = Logging.getMessage("nullValue.BufferIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (width < 1 || height < 1)
+        {
+            String message = Logging.getMessage("generic.InvalidImageSize", width, height);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (elevations.length() < width * height)
+        {
+            String message = Logging.getMessage("ElevationModel.ElevationsBufferTooSmall", width * height);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (precision <= 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", precision);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        int numSamples = width * height;
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        boolean hasMissing = false;
+        for (int i = 0; i < numSamples; i++)
+        {
+            double value = elevations.getDouble(i);
+            if (isMissing(value, missingDataSignal))
+            {
+                hasMissing = true;
+                continue;
+            }
+
+            if (min > value)
+                min = value;
+            if (max < value)
+                max = value;
+        }
+
+        if (min > max) // all elevations are missing
+            min = max = 0;
+
+        // Integer elevations are quantized in one meter steps, so are lossless when their range fits in a code.
+        boolean integer = isIntegerType(elevations);
+        double step = integer ? 1 : precision;
+        if ((max - min) / step > MAX_CODE)
+            step = (max - min) / MAX_CODE;
+
+        // Decode to 16-bit integers when they represent every sample, including the missing data signal, exactly.
+        boolean shortSignal = missingDataSignal >= Short.MIN_VALUE && missingDataSignal <= Short.MAX_VALUE
+            && missingDataSignal == Math.rint(missingDataSignal);
+        int dataType = integer && step == 1 && min >= Short.MIN_VALUE && max <= Short.MAX_VALUE
+            && (!hasMissing || shortSignal) ? DATA_TYPE_INT16 : DATA_TYPE_FLOAT32;
+
+        int[] codes = new int[numSamples];
+        for (int i = 0; i < numSamples; i++)
+        {
+            double value = elevations.getDouble(i);
+            codes[i] = isMissing(value, missingDataSignal) ? MISSING_CODE
+                : Math.min(MAX_CODE, (int) Math.round((value - min) / step));
+        }
+
+        // Rice codes of differences near zero take a few bits, so size the output for about two bytes per sample.
+        BitWriter writer = new BitWriter(HEADER_SIZE + 2 * numSamples + 64);
+        ByteBuffer header = ByteBuffer.wrap(writer.bytes);
+        header.putInt(MAGIC);
+        header.put((byte) VERSION);
+        header.put((byte) dataType);
+        header.putInt(width);
+        header.putInt(height);
+        header.putDouble(min);
+        header.putDouble(max);
+        header.putDouble(step);
+        header.putDouble(missingDataSignal);
+        writer.position = HEADER_SIZE;
+
+        int[] differences = new int[BLOCK_SIZE];
+        for (int start = 0; start < numSamples; start += BLOCK_SIZE)
+        {
+            int count = Math.min(BLOCK_SIZE, numSamples - start);
+            long sum = 0;
+            for (int n = 0; n < count; n++)
+            {
+                int i = start + n;
+                int difference = (short) (codes[i] - predict(codes, i, width));
+                differences[n] = (difference << 1) ^ (difference >> 31); // zig-zag the signed difference
+                sum += differences[n];
+            }
+
+            int k = 0;
+            while (k < 15 && ((long) count << (k + 1)) <= sum)
+            {
+                k++;
+            }
+            writer.write(k, 4);
+
+            for (int n = 0; n < count; n++)
+            {
+                int quotient = differences[n] >>> k;
+                if (quotient < ESCAPE_QUOTIENT)
+                {
+                    writer.writeUnary(quotient);
+                    writer.write(differences[n] & ((1 << k) - 1), k);
+                }
+                else
+                {
+                    writer.write((1 << ESCAPE_QUOTIENT) - 1, ESCAPE_QUOTIENT);
+                    writer.write(differences[n], 16);
+                }
+            }
+        }
+
+        writer.flush();
+        ByteBuffer buffer = ByteBuffer.wrap(writer.bytes, 0, writer.position);
+        return buffer.slice();
+    }
+
+    /**
+     * Decodes a quantized elevation tile. The returned buffer holds 16-bit integer elevations if the tile was encoded
+     * from integer elevations without loss, and otherwise holds 32-bit floating point elevations.
+     *
+     * @param buffer the encoded tile, from its position to its limit. The buffer's position is not changed.
+     *
+     * @return the tile's elevations, in row major order starting at the tile's upper left corner.
+     *
+     * @throws IllegalArgumentException if the buffer is null or does not contain a complete quantized elevation tile:
+     *                                  if its header is invalid, its width or height is less than one or greater than
+     *                                  {@link #MAX_DIMENSION}, or its data ends before all of the tile's samples are
+     *                                  decoded.
+     */
+    public static BufferWrapper decode(ByteBuffer buffer)
+    {
+        if (buffer == null)
+        {
+            String message = Logging.getMessage("nullValue.BufferIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        ByteBuffer header = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC)
+        {
+            String message = Logging.getMessage("QuantizedElevationCodec.NotQuantizedElevations");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        int version = header.get();
+        if (version != VERSION)
+        {
+            String message = Logging.getMessage("QuantizedElevationCodec.UnsupportedVersion", version);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        int dataType = header.get();
+        int width = header.getInt();
+        int height = header.getInt();
+        double min = header.getDouble();
+        header.getDouble(); // the maximum elevation is informational
+        double step = header.getDouble();
+        double missingDataSignal = header.getDouble();
+
+        if (dataType != DATA_TYPE_INT16 && dataType != DATA_TYPE_FLOAT32)
+            throw invalidHeader("dataType " + dataType);
+
+        if (width < 1 || width > MAX_DIMENSION || height < 1 || height > MAX_DIMENSION)
+            throw invalidHeader("width " + width + ", height " + height);
+
+        if (Double.isNaN(min) || Double.isInfinite(min) || !(step > 0) || Double.isInfinite(step))
+            throw invalidHeader("min " + min + ", step " + step);
+
+        // Each block takes at least its 4-bit Rice parameter and one bit per sample. Reject a tile whose data can't
+        // hold that before allocating space for its samples.
+        int numSamples = width * height;
+        long numBlocks = (numSamples + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if (8L * header.remaining() < numSamples + 4 * numBlocks)
+            throw truncated();
+
+        int[] codes = new int[numSamples];
+        BitReader reader = new BitReader(header);
+        for (int start = 0; start < numSamples; start += BLOCK_SIZE)
+        {
+            int count = Math.min(BLOCK_SIZE, numSamples - start);
+            int k = reader.read(4);
+            for (int n = 0; n < count; n++)
+            {
+                int quotient = reader.readUnary(ESCAPE_QUOTIENT);
+                int difference = quotient < ESCAPE_QUOTIENT ? (quotient << k) | reader.read(k) : reader.read(16);
+                difference = (difference >>> 1) ^ -(difference & 1); // undo the zig-zag
+                int i = start + n;
+                codes[i] = (predict(codes, i, width) + difference) & 0xFFFF;
+            }
+
+            if (reader.isPastEnd())
+                throw truncated();
+        }
+
+        if (dataType == DATA_TYPE_INT16)
+        {
+            short[] values = new short[numSamples];
+            for (int i = 0; i < numSamples; i++)
+            {
+                values[i] = (short) (codes[i] == MISSING_CODE ? missingDataSignal : min + codes[i]);
+            }
+
+            return new BufferWrapper.ShortBufferWrapper(ShortBuffer.wrap(values));
+        }
+        else
+        {
+            float[] values = new float[numSamples];
+            for (int i = 0; i < numSamples; i++)
+            {
+                values[i] = (float) (codes[i] == MISSING_CODE ? missingDataSignal : min + step * codes[i]);
+            }
+
+            return new BufferWrapper.FloatBufferWrapper(FloatBuffer.wrap(values));
+        }
+    }
+
+    protected static IllegalArgumentException invalidHeader(String fields)
+    {
+        String message = Logging.getMessage("QuantizedElevationCodec.InvalidHeader", fields);
+        Logging.logger().severe(message);
+        return new IllegalArgumentException(message);
+    }
+
+    protected static IllegalArgumentException truncated()
+    {
+        String message = Logging.getMessage("QuantizedElevationCodec.Truncated");
+        Logging.logger().severe(message);
+        return new IllegalArgumentException(message);
+    }
+
+    protected static boolean isMissing(double value, double missingDataSignal)
+    {
+        return value == missingDataSignal || Double.isNaN(value);
+    }
+
+    protected static boolean isIntegerType(BufferWrapper elevations)
+    {
+        String dataType = WWBufferUtil.getPrimitiveType(elevations);
+        return AVKey.INT8.equals(dataType) || AVKey.INT16.equals(dataType) || AVKey.INT32.equals(dataType);
+    }
+
+    /**
+     * Predicts a code from its neighbors with the median edge detector: the prediction is the gradient a + b - c
+     * clamped to the range of the left and upper neighbors a and b.
+     *
+     * @param codes the codes, of which those preceding the predicted code must be known.
+     * @param i     the index of the code to predict.
+     * @param width the number of codes in a row.
+     *
+     * @return the predicted code.
+     */
+    protected static int predict(int[] codes, int i, int width)
+    {
+        int col = i % width;
+        if (i < width)
+            return col == 0 ? 0 : codes[i - 1];
+        if (col == 0)
+            return codes[i - width];
+
+        int a = codes[i - 1];
+        int b = codes[i - width];
+        int c = codes[i - width - 1];
+
+        if (c >= Math.max(a, b))
+            return Math.min(a, b);
+        else if (c <= Math.min(a, b))
+            return Math.max(a, b);
+        else
+            return a + b - c;
+    }
+
+    protected static class BitWriter
+    {
+        protected byte[] bytes;
+        protected int position;
+        protected long bits;
+        protected int numBits;
+
+        public BitWriter(int capacity)
+        {
+            this.bytes = new byte[capacity];
+        }
+
+        /**
+         * Writes the low bits of a value, most significant bit first.
+         *
+         * @param value   the value to write.
+         * @param numBits the number of bits to write, at most 32.
+         */
+        public void write(int value, int numBits)
+        {
+            this.bits = (this.bits << numBits) | (value & ((1L << numBits) - 1));
+            this.numBits += numBits;
+
+            while (this.numBits >= 8)
+            {
+                this.numBits -= 8;
+                this.put((byte) (this.bits >>> this.numBits));
+            }
+        }
+
+        /**
+         * Writes a value in unary: a run of one bits as long as the value followed by a zero bit.
+         *
+         * @param value the value to write, less than 32.
+         */
+        public void writeUnary(int value)
+        {
+            this.write(((1 << value) - 1) << 1, value + 1);
+        }
+
+        public void flush()
+        {
+            if (this.numBits > 0)
+                this.write(0, 8 - this.numBits);
+        }
+
+        protected void put(byte b)
+        {
+            if (this.position == this.bytes.length)
+            {
+                byte[] newBytes = new byte[2 * this.bytes.length];
+                System.arraycopy(this.bytes, 0, newBytes, 0, this.position);
+                this.bytes = newBytes;
+            }
+
+            this.bytes[this.position++] = b;
+        }
+    }
+
+    protected static class BitReader
+    {
+        protected final ByteBuffer buffer;
+        protected long bits;
+        protected int numBits;
+        protected int numPaddingBits; // the number of zero bits added to the accumulator past the end of the buffer
+
+        public BitReader(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Indicates whether bits past the end of the buffer have been read. The accumulator is padded with zeros past
+         * the end of the buffer, so a value read from there is not part of the encoded data.
+         *
+         * @return true if any value read so far extends past the end of the buffer, otherwise false.
+         */
+        public boolean isPastEnd()
+        {
+            return this.numBits < this.numPaddingBits;
+        }
+
+        /** Fills the bit accumulator with at least 32 bits, padding with zeros past the end of the buffer. */
+        protected void fill()
+        {
+            while (this.numBits <= 56)
+            {
+                int b = 0;
+                if (this.buffer.hasRemaining())
+                    b = this.buffer.get() & 0xFF;
+                else
+                    this.numPaddingBits += 8;
+                this.bits |= (long) b << (56 - this.numBits);
+                this.numBits += 8;
+            }
+        }
+
+        /**
+         * Reads a value written with {@link BitWriter#write(int, int)}.
+         *
+         * @param numBits the number of bits to read, at most 32.
+         *
+         * @return the value.
+         */
+        public int read(int numBits)
+        {
+            if (numBits == 0)
+                return 0;
+
+            if (this.numBits < numBits)
+                this.fill();
+
+            int value = (int) (this.bits >>> (64 - numBits));
+            this.bits <<= numBits;
+            this.numBits -= numBits;
+            return value;
+        }
+
+        /**
+         * Reads a value written with {@link BitWriter#writeUnary(int)}, or a run of ones as long as the specified
+         * limit without the terminating zero.
+         *
+         * @param limit the longest run of ones to read.
+         *
+         * @return the value, or the limit if the run of ones reaches it.
+         */
+        public int readUnary(int limit)
+        {
+            if (this.numBits <= limit)
+                this.fill();
+
+            int value = Math.min(Long.numberOfLeadingZeros(~this.bits), limit);
+            int length = value < limit ? value + 1 : value;
+            this.bits <<= length;
+            this.numBits -= length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.data;
+
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+
+/**
+ * Writes elevation rasters as World Wind quantized elevation tiles. See {@link QuantizedElevationCodec} for a
+ * description of the format. Quantized elevation tiles carry no georeferencing, so this writer is suited to tiled
+ * elevations whose tile structure implies each tile's location.
+ *
+ * @version $Id$
+ */
+public class QuantizedElevationRasterWriter extends AbstractDataRasterWriter
+{
+    /** The default quantization step of floating point elevations, in meters. */
+    public static final double DEFAULT_PRECISION = 0.1;
+
+    protected static final String[] qelMimeTypes = new String[] {QuantizedElevationCodec.MIME_TYPE};
+    protected static final String[] qelSuffixes = new String[] {QuantizedElevationCodec.SUFFIX};
+
+    protected double precision;
+
+    /**
+     * Creates a writer that quantizes floating point elevations to the specified precision.
+     *
+     * @param precision the largest quantization step for floating point elevations, in meters.
+     *
+     * @throws IllegalArgumentException if the precision is not positive.
+     */
+    public QuantizedElevationRasterWriter(double precision)
+    {
+        super(qelMimeTypes, qelSuffixes);
+
+        if (precision <= 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", precision);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.precision = precision;
+    }
+
+    public QuantizedElevationRasterWriter()
+    {
+        this(DEFAULT_PRECISION);
+    }
+
+    public double getPrecision()
+    {
+        return this.precision;
+    }
+
+    protected boolean doCanWrite(DataRaster raster, String formatSuffix, File file)
+    {
+        return (raster != null) && (raster instanceof BufferWrapperRaster);
+    }
+
+    protected void doWrite(DataRaster raster, String formatSuffix, File file) throws IOException
+    {
+        BufferWrapperRaster bufferRaster = (BufferWrapperRaster) raster;
+        java.nio.ByteBuffer byteBuffer = QuantizedElevationCodec.encode(bufferRaster.getBuffer(), raster.getWidth(),
+            raster.getHeight(), bufferRaster.getTransparentValue(), this.precision);
+
+        // Do not force changes to the underlying storage device.
+        WWIO.saveBuffer(byteBuffer, file, false);
+    }
+}
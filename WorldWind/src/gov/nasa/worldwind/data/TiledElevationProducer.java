@@ -103,7 +103,8 @@ public class TiledElevationProducer extends TiledRasterProducer
                 // Configure the BIL writer to disable writing of georeference files. Georeferencing files are redundant
                 // for tiled elevations. The elevation format is defined in the data configuration file, and each
                 // tile's georeferencing information is implicit in the tile structure.
-                new BILRasterWriter(true) // TODO: debugging change
+                new BILRasterWriter(true), // TODO: debugging change
+                new QuantizedElevationRasterWriter()
             };
     }
 
@@ -331,9 +331,9 @@ public class ShapefilePolygons extends ShapefileRenderable implements OrderedRen
         if (!WorldWind.getMemoryCacheSet().containsCache(ShapefileGeometry.class.getName()))
         {
             long size = Configuration.getLongValue(AVKey.SHAPEFILE_GEOMETRY_CACHE_SIZE, (long) 50e6); // default 50MB
-            MemoryCache cache = new BasicMemoryCache((long) (0.8 * size), size);
+            MemoryCache cache = WorldWind.getMemoryCacheSet().addCache(ShapefileGeometry.class.getName(),
+                (long) (0.8 * size), size);
             cache.setName("Shapefile Geometry");
-            WorldWind.getMemoryCacheSet().addCache(ShapefileGeometry.class.getName(), cache);
         }
     }
 
@@ -446,6 +446,17 @@ public class EllipsoidalGlobe extends WWObjectImpl implements Globe
             this.egm96 = null;
     }
 
+    /**
+     * Applies the geoid offsets of a specified offsets grid to the elevations produced by this globe. Unlike {@link
+     * #applyEGMA96Offsets(String)}, this accepts grids other than the EGM96 15 minute grid.
+     *
+     * @param egm96 the geoid offsets grid to apply, or null to apply no offsets.
+     */
+    public void applyEGMA96Offsets(EGM96 egm96)
+    {
+        this.egm96 = egm96;
+    }
+
     public double getElevations(Sector sector, List<? extends LatLon> latlons, double targetResolution,
         double[] elevations)
     {
@@ -486,6 +497,31 @@ public class EllipsoidalGlobe extends WWObjectImpl implements Globe
         return resolution;
     }
 
+    public double getElevations(Sector sector, double[] latLons, boolean radians, double targetResolution,
+        double[] elevations)
+    {
+        if (this.elevationModel == null)
+            return 0;
+
+        double resolution = this.elevationModel.getElevations(sector, latLons, radians, targetResolution, elevations);
+
+        if (this.egm96 != null)
+        {
+            for (int i = 0; i < latLons.length / 2; i++)
+            {
+                double lat = latLons[2 * i];
+                double lon = latLons[2 * i + 1];
+                if (Double.isNaN(lat) || Double.isNaN(lon))
+                    continue;
+
+                elevations[i] = elevations[i] + this.egm96.getOffsetDegrees(
+                    radians ? Math.toDegrees(lat) : lat, radians ? Math.toDegrees(lon) : lon);
+            }
+        }
+
+        return resolution;
+    }
+
     public double getElevation(Angle latitude, Angle longitude)
     {
         if (latitude == null || longitude == null)
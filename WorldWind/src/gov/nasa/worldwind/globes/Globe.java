@@ -158,6 +158,30 @@ public interface Globe extends WWObject, Extent
     double[] getElevations(Sector sector, List<? extends LatLon> latlons, double[] targetResolution,
         double[] elevations);
 
+    /**
+     * Indicates the elevations of a collection of locations specified as packed latitude and longitude values. Behaves
+     * as {@link #getElevations(gov.nasa.worldwind.geom.Sector, java.util.List, double, double[])}, but does not require
+     * a {@link LatLon} for each location.
+     *
+     * @param sector           the sector in question.
+     * @param latLons          the locations to return elevations for, as consecutive latitude and longitude pairs. If
+     *                         a latitude or longitude is NaN, the output buffer for that location is not modified.
+     * @param radians          true if the latitudes and longitudes are in radians, false if they're in degrees.
+     * @param targetResolution the desired horizontal resolution, in radians, of the raster or other elevation sample
+     *                         from which elevations are drawn.
+     * @param elevations       an array in which to place the returned elevations. The array must be pre-allocated and
+     *                         contain at least half as many elements as the array of latitudes and longitudes.
+     *
+     * @return the resolution achieved, in radians, or {@link Double#MAX_VALUE} if individual elevations cannot be
+     *         determined for all of the locations. Returns zero if an elevation model is not available.
+     *
+     * @throws IllegalArgumentException if either the sector, latitude and longitude array or elevations array is null,
+     *                                  or if the elevations array is too small.
+     * @see ElevationModel#getElevations(gov.nasa.worldwind.geom.Sector, double[], boolean, double, double[])
+     */
+    double getElevations(Sector sector, double[] latLons, boolean radians, double targetResolution,
+        double[] elevations);
+
     /**
      * Indicates the maximum elevation on this globe, in meters.
      *
@@ -8,7 +8,7 @@ package gov.nasa.worldwind.layers;
 import com.jogamp.opengl.util.texture.*;
 import gov.nasa.worldwind.*;
 import gov.nasa.worldwind.avlist.*;
-import gov.nasa.worldwind.cache.FileStore;
+import gov.nasa.worldwind.cache.*;
 import gov.nasa.worldwind.event.BulkRetrievalListener;
 import gov.nasa.worldwind.exception.WWRuntimeException;
 import gov.nasa.worldwind.formats.dds.*;
@@ -33,6 +33,7 @@ import java.util.Map;
 public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetrievable
 {
     protected final Object fileLock = new Object();
+    protected CompressedTileCache compressedTileCache = CompressedTileCache.getSharedCache();
 
     // Layer resource properties.
     protected static final int RESOURCE_ID_OGC_CAPABILITIES = 1;
@@ -258,6 +259,7 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
                 {
                     // Assume that something is wrong with the file and delete it.
                     this.layer.getDataFileStore().removeFile(textureURL);
+                    this.layer.removeCompressedTile(textureURL);
                     String message = Logging.getMessage("generic.DeletedCorruptDataFile", textureURL);
                     Logging.logger().info(message);
                 }
@@ -316,6 +318,7 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
 
         // The file has expired. Delete it.
         fileStore.removeFile(textureURL);
+        this.removeCompressedTile(textureURL);
         String message = Logging.getMessage("generic.DataFileExpired", textureURL);
         Logging.logger().fine(message);
         return true;
@@ -361,6 +364,16 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
     {
         try
         {
+            // Decode the texture from the compressed tile cache if it's there, avoiding both the file read and any DDS
+            // conversion.
+            String cacheKey = this.getCompressedTileKey(url, textureFormat, useMipMaps);
+            ByteBuffer buffer = this.compressedTileCache != null ? this.compressedTileCache.get(cacheKey) : null;
+            if (buffer != null)
+            {
+                return OGLUtil.newTextureData(Configuration.getMaxCompatibleGLProfile(),
+                    WWIO.getInputStreamFromByteBuffer(buffer), useMipMaps);
+            }
+
             // If the caller has enabled texture compression, and the texture data is not a DDS file, then use read the
             // texture data and convert it to DDS.
             if ("image/dds".equalsIgnoreCase(textureFormat) && !url.toString().toLowerCase().endsWith("dds"))
@@ -369,17 +382,28 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
                 // convert the image URL to a compressed DDS format.
                 DXTCompressionAttributes attributes = DDSCompressor.getDefaultCompressionAttributes();
                 attributes.setBuildMipmaps(useMipMaps);
-                ByteBuffer buffer = DDSCompressor.compressImageURL(url, attributes);
-
-                return OGLUtil.newTextureData(Configuration.getMaxCompatibleGLProfile(),
-                    WWIO.getInputStreamFromByteBuffer(buffer), useMipMaps);
+                buffer = DDSCompressor.compressImageURL(url, attributes);
             }
             // If the caller has disabled texture compression, or if the texture data is already a DDS file, then read
             // the texture data without converting it.
+            else if (this.compressedTileCache != null)
+            {
+                buffer = WWIO.readURLContentToBuffer(url);
+            }
             else
             {
                 return OGLUtil.newTextureData(Configuration.getMaxCompatibleGLProfile(), url, useMipMaps);
             }
+
+            // Decode from a duplicate, since reading a direct buffer's stream advances the buffer's position.
+            TextureData textureData = OGLUtil.newTextureData(Configuration.getMaxCompatibleGLProfile(),
+                WWIO.getInputStreamFromByteBuffer(buffer.duplicate()), useMipMaps);
+
+            // Image and DDS files are already compressed, so they're cached as is.
+            if (textureData != null && this.compressedTileCache != null)
+                this.compressedTileCache.put(cacheKey, buffer, false);
+
+            return textureData;
         }
         catch (Exception e)
         {
@@ -389,6 +413,18 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
         }
     }
 
+    protected String getCompressedTileKey(java.net.URL url, String textureFormat, boolean useMipMaps)
+    {
+        return url.toExternalForm() + "|" + textureFormat + "|" + useMipMaps;
+    }
+
+    protected void removeCompressedTile(java.net.URL url)
+    {
+        if (this.compressedTileCache != null)
+            this.compressedTileCache.remove(this.getCompressedTileKey(url, this.getTextureFormat(),
+                this.isUseMipMaps()));
+    }
+
     protected void addTileToCache(TextureTile tile)
     {
         TextureTile.getMemoryCache().add(tile.getTileKey(), tile);
@@ -592,6 +628,7 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
         Integer srl = AVListImpl.getIntegerValue(this, AVKey.RETRIEVAL_QUEUE_STALE_REQUEST_LIMIT);
         if (srl != null && srl > 0)
             retriever.setStaleRequestLimit(srl);
+        retriever.setValue(AVKey.LAYER, this); // identifies the layer's requests to the retrieval service
 
         WorldWind.getRetrievalService().runRetriever(retriever, tile.getPriority());
     }
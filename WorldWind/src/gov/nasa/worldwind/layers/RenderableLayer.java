@@ -6,19 +6,28 @@
 package gov.nasa.worldwind.layers;
 
 import gov.nasa.worldwind.*;
-import gov.nasa.worldwind.avlist.AVList;
+import gov.nasa.worldwind.avlist.*;
 import gov.nasa.worldwind.event.*;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.pick.PickSupport;
 import gov.nasa.worldwind.render.*;
-import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.*;
 
 import javax.media.opengl.GL2;
+import java.beans.PropertyChangeEvent;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * The <code>RenderableLayer</code> class manages a collection of {@link gov.nasa.worldwind.render.Renderable} objects
  * for rendering, picking, and disposal.
+ * <p/>
+ * By default the layer visits every renderable in each frame, and relies on each renderable to determine whether it's
+ * visible. Layers holding many renderables can instead index them by geographic sector with {@link
+ * #setEnableSpatialIndex(boolean)}. The layer then visits only the renderables whose sectors intersect the draw
+ * context's visible sector, and while picking only those whose extents also intersect the pick frustums. See {@link
+ * #computeRenderableSectors(DrawContext, Renderable)} for how a renderable's sectors are determined.
  *
  * @author tag
  * @version $Id$
@@ -29,6 +38,8 @@ public class RenderableLayer extends AbstractLayer
     protected Collection<Renderable> renderables = new ConcurrentLinkedQueue<Renderable>();
     protected Iterable<Renderable> renderablesOverride;
     protected PickSupport pickSupport = new PickSupport();
+    /** The spatial index of the layer's renderables. Null unless the spatial index is enabled. */
+    protected RenderableIndex renderableIndex;
 
     /** Creates a new <code>RenderableLayer</code> with a null <code>delegateOwner</code> */
     public RenderableLayer()
@@ -68,6 +79,9 @@ public class RenderableLayer extends AbstractLayer
 
         this.renderables.add(renderable);
 
+        if (this.renderableIndex != null)
+            this.renderableIndex.add(renderable);
+
         // Attach the layer as a property change listener of the renderable. This forwards property change events from
         // the renderable to the SceneController.
         if (renderable instanceof AVList)
@@ -123,6 +137,14 @@ public class RenderableLayer extends AbstractLayer
         this.renderables.clear();
         this.renderables.addAll(copy);
 
+        // The index orders the renderables it finds by their position in the collection. Add the renderable to the
+        // index, then assign the index positions of the renderables that follow it.
+        if (this.renderableIndex != null)
+        {
+            this.renderableIndex.add(renderable);
+            this.renderableIndex.assignOrder(copy);
+        }
+
         // Attach the layer as a property change listener of the renderable. This forwards property change events from
         // the renderable to the SceneController.
         if (renderable instanceof AVList)
@@ -164,8 +186,13 @@ public class RenderableLayer extends AbstractLayer
         {
             // Internal list of renderables does not accept null values.
             if (renderable != null)
+            {
                 this.renderables.add(renderable);
 
+                if (this.renderableIndex != null)
+                    this.renderableIndex.add(renderable);
+            }
+
             // Attach the layer as a property change listener of the renderable. This forwards property change events
             // from the renderable to the SceneController.
             if (renderable instanceof AVList)
@@ -204,7 +231,10 @@ public class RenderableLayer extends AbstractLayer
             throw new IllegalStateException(msg);
         }
 
-        this.renderables.remove(renderable);
+        boolean removed = this.renderables.remove(renderable);
+
+        if (removed && this.renderableIndex != null)
+            this.renderableIndex.remove(renderable);
 
         // Remove the layer as a property change listener of the renderable. This prevents the renderable from keeping a
         // dangling reference to the layer.
@@ -249,6 +279,9 @@ public class RenderableLayer extends AbstractLayer
 
             this.renderables.clear();
         }
+
+        if (this.renderableIndex != null)
+            this.renderableIndex.clear();
     }
 
     public int getNumRenderables()
@@ -406,21 +439,307 @@ public class RenderableLayer extends AbstractLayer
         }
 
         this.renderables.clear();
+
+        if (this.renderableIndex != null)
+            this.renderableIndex.clear();
+    }
+
+    /**
+     * Indicates whether the layer indexes its renderables by geographic sector. See {@link
+     * #setEnableSpatialIndex(boolean)}.
+     *
+     * @return true if the layer's renderables are indexed, otherwise false.
+     */
+    public boolean isEnableSpatialIndex()
+    {
+        return this.renderableIndex != null;
+    }
+
+    /**
+     * Specifies whether the layer indexes its renderables by geographic sector. When enabled, the layer visits only the
+     * renderables whose sectors intersect the draw context's visible sector, rather than every renderable in each
+     * frame. Renderables with no sector are always visited. The renderables visited are drawn in the order they appear
+     * in the layer. The index is disabled by default.
+     * <p/>
+     * Renderables are indexed during the frame after they're added. A renderable that moves or changes shape is
+     * indexed again when it sends a property change event to the layer, or when {@link
+     * #updateRenderable(gov.nasa.worldwind.render.Renderable)} is called. Renderables that move without sending
+     * property change events must be passed to <code>updateRenderable</code>.
+     * <p/>
+     * The index applies only to the layer's internal collection, and not to an Iterable specified by {@link
+     * #setRenderables(Iterable)}. A renderable added to the layer more than once is visited once, and remains indexed
+     * until it's been removed as many times as it was added. The index is not used on a continuous 2D globe.
+     *
+     * @param enable true to index the layer's renderables, otherwise false.
+     */
+    public void setEnableSpatialIndex(boolean enable)
+    {
+        if (enable == this.isEnableSpatialIndex())
+            return;
+
+        if (enable)
+        {
+            RenderableIndex index = this.createRenderableIndex();
+            for (Renderable renderable : this.renderables)
+            {
+                index.add(renderable);
+            }
+            this.renderableIndex = index;
+        }
+        else
+        {
+            this.renderableIndex = null;
+        }
+    }
+
+    /**
+     * Causes the layer's spatial index to determine the sectors of a renderable again during the next frame. Call this
+     * after moving or changing the shape of a renderable that does not send property change events to the layer. This
+     * does nothing if the layer's spatial index is disabled or if the renderable is not in the layer.
+     *
+     * @param renderable the renderable that changed.
+     *
+     * @throws IllegalArgumentException If <code>renderable</code> is null.
+     */
+    public void updateRenderable(Renderable renderable)
+    {
+        if (renderable == null)
+        {
+            String msg = Logging.getMessage("nullValue.RenderableIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (this.renderableIndex != null)
+            this.renderableIndex.invalidate(renderable);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Overridden to index again a renderable that sends a property change event, when the layer's spatial index is
+     * enabled.
+     */
+    @Override
+    public void propertyChange(PropertyChangeEvent propertyChangeEvent)
+    {
+        if (this.renderableIndex != null && propertyChangeEvent != null
+            && propertyChangeEvent.getSource() instanceof Renderable)
+        {
+            this.renderableIndex.invalidate((Renderable) propertyChangeEvent.getSource());
+        }
+
+        super.propertyChange(propertyChangeEvent);
+    }
+
+    /**
+     * Creates the spatial index used when {@link #setEnableSpatialIndex(boolean)} is enabled.
+     *
+     * @return a new, empty renderable index.
+     */
+    protected RenderableIndex createRenderableIndex()
+    {
+        return new RenderableIndex();
+    }
+
+    /**
+     * Returns the sectors bounding a renderable, which the layer's spatial index uses to determine whether the
+     * renderable is visible. This returns the sector of a {@link GeographicExtent}, the sectors of a {@link
+     * SurfaceRenderable}, or a sector around the position of a {@link Locatable}. This returns null for other
+     * renderables, and those renderables are visited in every frame.
+     * <p/>
+     * The draw context's visible sector bounds the visible terrain, so the sectors of renderables above the terrain are
+     * expanded to include the locations from which they may be seen. See {@link #expandSectorForAltitude(DrawContext,
+     * Sector, double)}. A {@link Path}'s sector also includes the great circle arcs between its positions. Other {@link
+     * AbstractShape}s may connect their positions with great circle arcs that leave the sector of their positions, so
+     * this returns null for them and they're visited in every frame, culling themselves by their extents.
+     * <p/>
+     * Subclasses can override this method to index renderables by other means. The sectors should bound the region in
+     * which the renderable is visible, and are assumed to be normalized to +/- 90 degrees latitude and +/- 180 degrees
+     * longitude.
+     *
+     * @param dc         the current draw context.
+     * @param renderable the renderable whose sectors are computed.
+     *
+     * @return the renderable's sectors, or null if the renderable is to be visited in every frame.
+     */
+    protected List<Sector> computeRenderableSectors(DrawContext dc, Renderable renderable)
+    {
+        if (renderable instanceof Path)
+        {
+            Sector sector = this.computePathSector(dc, (Path) renderable);
+            return sector != null ? Arrays.asList(sector) : null;
+        }
+        else if (renderable instanceof AbstractShape)
+        {
+            return null;
+        }
+        else if (renderable instanceof GeographicExtent)
+        {
+            Sector sector = ((GeographicExtent) renderable).getSector();
+            return sector != null ? Arrays.asList(sector) : null;
+        }
+        else if (renderable instanceof SurfaceRenderable)
+        {
+            return ((SurfaceRenderable) renderable).getSectors(dc);
+        }
+        else if (renderable instanceof Locatable)
+        {
+            Position position = ((Locatable) renderable).getPosition();
+            if (position == null)
+                return null;
+
+            Sector sector = new Sector(position.getLatitude(), position.getLatitude(), position.getLongitude(),
+                position.getLongitude());
+            return Arrays.asList(this.expandSectorForAltitude(dc, sector, position.getElevation()));
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the sector bounding a path: the sector of its positions, including the great circle arcs between them if
+     * the path follows great circles, expanded for the path's highest position unless the path is clamped to the
+     * ground.
+     *
+     * @param dc   the current draw context.
+     * @param path the path whose sector is computed.
+     *
+     * @return the path's sector, or null if the path has no positions.
+     */
+    protected Sector computePathSector(DrawContext dc, Path path)
+    {
+        Iterable<? extends Position> positions = path.getPositions();
+        if (positions == null || !positions.iterator().hasNext())
+            return null;
+
+        Sector sector = Sector.boundingSector(positions);
+
+        // A great circle arc bulges toward the pole, beyond the latitudes of the positions it connects.
+        if (AVKey.GREAT_CIRCLE.equals(path.getPathType()))
+        {
+            LatLon[] extremes = LatLon.greatCircleArcExtremeLocations(positions);
+            for (LatLon location : extremes)
+            {
+                if (location != null)
+                    sector = sector.union(location.getLatitude(), location.getLongitude());
+            }
+        }
+
+        if (path.getAltitudeMode() == WorldWind.CLAMP_TO_GROUND)
+            return sector;
+
+        double maxElevation = 0;
+        for (Position position : positions)
+        {
+            maxElevation = Math.max(maxElevation, position.getElevation());
+        }
+
+        return this.expandSectorForAltitude(dc, sector, maxElevation);
+    }
+
+    /**
+     * Expands a renderable's sector to include the locations from which the renderable may be visible when it's at a
+     * specified altitude. The draw context's visible sector bounds the visible terrain, and a renderable above the
+     * terrain remains visible beyond the terrain's horizon by the angle at which its own horizon lies. The altitude is
+     * increased by the globe's maximum elevation, so that altitudes relative to the ground are accounted for too.
+     *
+     * @param dc       the current draw context.
+     * @param sector   the renderable's sector.
+     * @param altitude the renderable's highest altitude, in meters.
+     *
+     * @return the expanded sector, or the specified sector if the altitude is not positive.
+     */
+    protected Sector expandSectorForAltitude(DrawContext dc, Sector sector, double altitude)
+    {
+        Globe globe = dc.getGlobe();
+        if (altitude <= 0 || globe == null)
+            return sector;
+
+        double radius = globe.getEquatorialRadius();
+        double height = (altitude + globe.getMaxElevation()) * dc.getVerticalExaggeration();
+        double delta = Math.acos(radius / (radius + height));
+
+        double minLat = Math.max(-Math.PI / 2, sector.getMinLatitude().radians - delta);
+        double maxLat = Math.min(Math.PI / 2, sector.getMaxLatitude().radians + delta);
+
+        // A degree of longitude narrows toward the poles. Sectors near a pole or across the antimeridian span all
+        // longitudes.
+        double maxAbsLat = Math.max(Math.abs(minLat), Math.abs(maxLat));
+        double deltaLon = maxAbsLat < Math.PI / 2 ? delta / Math.cos(maxAbsLat) : Math.PI;
+        double minLon = sector.getMinLongitude().radians - deltaLon;
+        double maxLon = sector.getMaxLongitude().radians + deltaLon;
+        if (minLon < -Math.PI || maxLon > Math.PI)
+        {
+            minLon = -Math.PI;
+            maxLon = Math.PI;
+        }
+
+        return Sector.fromRadians(minLat, maxLat, minLon, maxLon);
+    }
+
+    /**
+     * Indicates whether the layer's spatial index determines the renderables visited in the current frame. The index
+     * is used when it's enabled, when the layer's internal collection is in use, when the draw context has a visible
+     * sector, and when the globe is not a continuous 2D globe.
+     *
+     * @param dc the current draw context.
+     *
+     * @return true if the spatial index is used, otherwise false.
+     */
+    protected boolean isUseSpatialIndex(DrawContext dc)
+    {
+        return this.renderableIndex != null && this.renderablesOverride == null && dc.getVisibleSector() != null
+            && !dc.isContinuous2DGlobe();
+    }
+
+    /**
+     * Returns the renderables visited in the current frame. These are the renderables found by the layer's spatial
+     * index when it's in use, and otherwise all of the active renderables.
+     *
+     * @param dc the current draw context.
+     *
+     * @return the renderables to visit.
+     */
+    protected Iterable<Renderable> getVisibleRenderables(DrawContext dc)
+    {
+        if (!this.isUseSpatialIndex(dc))
+            return this.getActiveRenderables();
+
+        List<Renderable> list = this.renderableIndex.getRenderables(dc, dc.getVisibleSector());
+
+        // While picking, visit only the renderables whose extents intersect the pick frustums.
+        if (dc.isPickingMode() && dc.getPickFrustums() != null && dc.getGlobe() != null)
+        {
+            for (Iterator<Renderable> iter = list.iterator(); iter.hasNext(); )
+            {
+                Renderable renderable = iter.next();
+                if (renderable instanceof ExtentHolder)
+                {
+                    Extent extent = ((ExtentHolder) renderable).getExtent(dc.getGlobe(),
+                        dc.getVerticalExaggeration());
+                    if (extent != null && !dc.getPickFrustums().intersectsAny(extent))
+                        iter.remove();
+                }
+            }
+        }
+
+        return list;
     }
 
     protected void doPreRender(DrawContext dc)
     {
-        this.doPreRender(dc, this.getActiveRenderables());
+        this.doPreRender(dc, this.getVisibleRenderables(dc));
     }
 
     protected void doPick(DrawContext dc, java.awt.Point pickPoint)
     {
-        this.doPick(dc, this.getActiveRenderables(), pickPoint);
+        this.doPick(dc, this.getVisibleRenderables(dc), pickPoint);
     }
 
     protected void doRender(DrawContext dc)
     {
-        this.doRender(dc, this.getActiveRenderables());
+        this.doRender(dc, this.getVisibleRenderables(dc));
     }
 
     protected void doPreRender(DrawContext dc, Iterable<? extends Renderable> renderables)
@@ -522,6 +841,180 @@ public class RenderableLayer extends AbstractLayer
         return Logging.getMessage("layers.RenderableLayer.Name");
     }
 
+    /**
+     * A spatial index of a layer's renderables, keyed by the sectors returned by {@link
+     * RenderableLayer#computeRenderableSectors(DrawContext, Renderable)}. Renderables are indexed during the frame after
+     * they're added or invalidated, because computing a renderable's sectors may require the draw context. All
+     * renderables are indexed again when the globe's configuration changes. The index is safe for use by the thread
+     * adding and removing renderables and the rendering thread.
+     */
+    protected class RenderableIndex
+    {
+        /** A renderable, its position in the layer, its sectors and the number of times it's in the layer. */
+        protected class Entry
+        {
+            protected final Renderable renderable;
+            protected long ordinal;
+            protected List<Sector> sectors;
+            protected int count = 1;
+
+            public Entry(Renderable renderable, long ordinal)
+            {
+                this.renderable = renderable;
+                this.ordinal = ordinal;
+            }
+        }
+
+        protected final Comparator<Entry> ordinalComparator = new Comparator<Entry>()
+        {
+            public int compare(Entry a, Entry b)
+            {
+                return a.ordinal < b.ordinal ? -1 : a.ordinal == b.ordinal ? 0 : 1;
+            }
+        };
+
+        protected BasicRTree<Entry> tree = new BasicRTree<Entry>();
+        protected Map<Renderable, Entry> entries = new HashMap<Renderable, Entry>();
+        /** Entries without sectors. These are visited in every frame. */
+        protected Set<Entry> unboundedEntries = new HashSet<Entry>();
+        /** Entries whose sectors are computed in the next frame. */
+        protected Set<Entry> pendingEntries = new LinkedHashSet<Entry>();
+        protected long nextOrdinal;
+        protected Object globeStateKey;
+        protected double verticalExaggeration;
+
+        synchronized public void add(Renderable renderable)
+        {
+            Entry entry = this.entries.get(renderable);
+            if (entry != null)
+            {
+                entry.count++;
+                return;
+            }
+
+            entry = new Entry(renderable, this.nextOrdinal++);
+            this.entries.put(renderable, entry);
+            this.pendingEntries.add(entry);
+        }
+
+        synchronized public void remove(Renderable renderable)
+        {
+            Entry entry = this.entries.get(renderable);
+            if (entry == null || --entry.count > 0)
+                return;
+
+            this.entries.remove(renderable);
+            this.tree.remove(entry);
+            this.unboundedEntries.remove(entry);
+            this.pendingEntries.remove(entry);
+        }
+
+        synchronized public void invalidate(Renderable renderable)
+        {
+            Entry entry = this.entries.get(renderable);
+            if (entry != null)
+                this.pendingEntries.add(entry);
+        }
+
+        /**
+         * Assigns each entry's position from the order of the layer's renderables.
+         *
+         * @param renderables the layer's renderables, in order.
+         */
+        synchronized public void assignOrder(Iterable<Renderable> renderables)
+        {
+            this.nextOrdinal = 0;
+            for (Renderable renderable : renderables)
+            {
+                Entry entry = this.entries.get(renderable);
+                if (entry != null)
+                    entry.ordinal = this.nextOrdinal++;
+            }
+        }
+
+        synchronized public void clear()
+        {
+            this.tree.clear();
+            this.entries.clear();
+            this.unboundedEntries.clear();
+            this.pendingEntries.clear();
+            this.nextOrdinal = 0;
+        }
+
+        /**
+         * Returns the renderables whose sectors intersect a specified sector, and the renderables without sectors, in
+         * the order they appear in the layer.
+         *
+         * @param dc     the current draw context.
+         * @param sector the sector of interest.
+         *
+         * @return a new list of the renderables found.
+         */
+        synchronized public List<Renderable> getRenderables(DrawContext dc, Sector sector)
+        {
+            this.update(dc);
+
+            List<Entry> found = new ArrayList<Entry>(this.tree.getItemsInRegion(sector, null));
+            found.addAll(this.unboundedEntries);
+            Collections.sort(found, this.ordinalComparator);
+
+            List<Renderable> list = new ArrayList<Renderable>(found.size());
+            for (Entry entry : found)
+            {
+                list.add(entry.renderable);
+            }
+
+            return list;
+        }
+
+        /**
+         * Computes the sectors of the pending entries, or of all entries if the globe's configuration or the vertical
+         * exaggeration has changed, and updates the entries in the tree.
+         *
+         * @param dc the current draw context.
+         */
+        protected void update(DrawContext dc)
+        {
+            Object key = dc.getGlobe() != null ? dc.getGlobe().getGlobeStateKey(dc) : null;
+            if ((key != null ? !key.equals(this.globeStateKey) : this.globeStateKey != null)
+                || dc.getVerticalExaggeration() != this.verticalExaggeration)
+            {
+                this.globeStateKey = key;
+                this.verticalExaggeration = dc.getVerticalExaggeration();
+                this.pendingEntries.addAll(this.entries.values());
+            }
+
+            if (this.pendingEntries.isEmpty())
+                return;
+
+            for (Entry entry : this.pendingEntries)
+            {
+                List<Sector> sectors;
+                try
+                {
+                    sectors = computeRenderableSectors(dc, entry.renderable);
+                }
+                catch (Exception e)
+                {
+                    String msg = Logging.getMessage("generic.ExceptionWhileComputingRenderableSectors");
+                    Logging.logger().log(java.util.logging.Level.SEVERE, msg, e);
+                    sectors = null; // visit the renderable in every frame
+                }
+
+                this.tree.remove(entry);
+                this.unboundedEntries.remove(entry);
+
+                entry.sectors = sectors != null && !sectors.isEmpty() ? new ArrayList<Sector>(sectors) : null;
+                if (entry.sectors != null)
+                    this.tree.add(entry, entry.sectors);
+                else
+                    this.unboundedEntries.add(entry);
+            }
+
+            this.pendingEntries.clear();
+        }
+    }
+
     /**
      * {@inheritDoc}
      * <p/>
@@ -39,9 +39,9 @@ public class BasicMercatorTiledImageLayer extends MercatorTiledImageLayer
         {
             long size = Configuration.getLongValue(
                 AVKey.TEXTURE_IMAGE_CACHE_SIZE, 3000000L);
-            MemoryCache cache = new BasicMemoryCache((long) (0.85 * size), size);
+            MemoryCache cache = WorldWind.getMemoryCacheSet().addCache(MercatorTextureTile.class.getName(),
+                (long) (0.85 * size), size);
             cache.setName("Texture Tiles");
-            WorldWind.getMemoryCacheSet().addCache(MercatorTextureTile.class.getName(), cache);
         }
     }
 
@@ -264,6 +264,7 @@ public class BasicMercatorTiledImageLayer extends MercatorTiledImageLayer
             AVKey.RETRIEVAL_QUEUE_STALE_REQUEST_LIMIT);
         if (srl != null && srl > 0)
             retriever.setStaleRequestLimit(srl);
+        retriever.setValue(AVKey.LAYER, this); // identifies the layer's requests to the retrieval service
 
         WorldWind.getRetrievalService().runRetriever(retriever,
             tile.getPriority());
@@ -94,9 +94,9 @@ public class PlaceNameLayer extends AbstractLayer implements BulkRetrievable
         if (!WorldWind.getMemoryCacheSet().containsCache(Tile.class.getName()))
         {
             long size = Configuration.getLongValue(AVKey.PLACENAME_LAYER_CACHE_SIZE, 2000000L);
-            MemoryCache cache = new BasicMemoryCache((long) (0.85 * size), size);
+            MemoryCache cache = WorldWind.getMemoryCacheSet().addCache(Tile.class.getName(), (long) (0.85 * size),
+                size);
             cache.setName("Placename Tiles");
-            WorldWind.getMemoryCacheSet().addCache(Tile.class.getName(), cache);
         }
     }
 
@@ -1126,6 +1126,7 @@ public class PlaceNameLayer extends AbstractLayer implements BulkRetrievable
         Integer srl = AVListImpl.getIntegerValue(this, AVKey.RETRIEVAL_QUEUE_STALE_REQUEST_LIMIT);
         if (srl != null && srl > 0)
             retriever.setStaleRequestLimit(srl);
+        retriever.setValue(AVKey.LAYER, this); // identifies the layer's requests to the retrieval service
 
         WorldWind.getRetrievalService().runRetriever(retriever, tile.getPriority());
     }
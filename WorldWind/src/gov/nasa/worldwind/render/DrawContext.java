@@ -944,6 +944,30 @@ public interface DrawContext extends WWObject, Disposable
      */
     OrderedRenderable pollOrderedRenderables();
 
+    /**
+     * Indicates the number of ordered renderables added to the ordered-renderable queue while drawing the current
+     * frame, including those a clutter filter adds back. Ordered renderables added while picking are not counted.
+     *
+     * @return the number of ordered renderables queued during the current frame.
+     */
+    int getOrderedRenderablesQueued();
+
+    /**
+     * Indicates the number of ordered renderables a clutter filter removed from the ordered-renderable queue while
+     * drawing the current frame, net of the ordered renderables it added back.
+     *
+     * @return the number of ordered renderables culled during the current frame.
+     */
+    int getOrderedRenderablesCulled();
+
+    /**
+     * Indicates the number of ordered renderables removed from the ordered-renderable queue by {@link
+     * #pollOrderedRenderables()} while drawing the current frame.
+     *
+     * @return the number of ordered renderables drawn during the current frame.
+     */
+    int getOrderedRenderablesDrawn();
+
     /**
      * Returns a {@link Terrain} object that uses the current sector geometry or the current globe to compute surface
      * points.
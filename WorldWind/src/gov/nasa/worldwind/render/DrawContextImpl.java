@@ -95,51 +95,11 @@ public class DrawContextImpl extends WWObjectImpl implements DrawContext
     protected ClutterFilter clutterFilter;
 //    protected Map<String, GroupingFilter> groupingFilters;
 
-    protected static class OrderedRenderableEntry
-    {
-        protected OrderedRenderable or;
-        protected double distanceFromEye;
-        protected long time;
-        protected int globeOffset;
-        protected SectorGeometryList surfaceGeometry;
-
-        public OrderedRenderableEntry(OrderedRenderable orderedRenderable, long insertionTime, DrawContext dc)
-        {
-            this.or = orderedRenderable;
-            this.distanceFromEye = orderedRenderable.getDistanceFromEye();
-            this.time = insertionTime;
-            if (dc.isContinuous2DGlobe())
-            {
-                this.globeOffset = ((Globe2D) dc.getGlobe()).getOffset();
-                this.surfaceGeometry = dc.getSurfaceGeometry();
-            }
-        }
-
-        public OrderedRenderableEntry(OrderedRenderable orderedRenderable, double distanceFromEye, long insertionTime,
-            DrawContext dc)
-        {
-            this.or = orderedRenderable;
-            this.distanceFromEye = distanceFromEye;
-            this.time = insertionTime;
-            if (dc.isContinuous2DGlobe())
-            {
-                this.globeOffset = ((Globe2D) dc.getGlobe()).getOffset();
-                this.surfaceGeometry = dc.getSurfaceGeometry();
-            }
-        }
-    }
-
-    protected PriorityQueue<OrderedRenderableEntry> orderedRenderables =
-        new PriorityQueue<OrderedRenderableEntry>(100, new Comparator<OrderedRenderableEntry>()
-        {
-            public int compare(OrderedRenderableEntry orA, OrderedRenderableEntry orB)
-            {
-                double eA = orA.distanceFromEye;
-                double eB = orB.distanceFromEye;
-
-                return eA > eB ? -1 : eA == eB ? (orA.time < orB.time ? -1 : orA.time == orB.time ? 0 : 1) : 1;
-            }
-        });
+    protected OrderedRenderableQueue orderedRenderables = new OrderedRenderableQueue();
+    protected List<Declutterable> declutterables = new ArrayList<Declutterable>();
+    protected int orderedRenderablesQueued;
+    protected int orderedRenderablesCulled;
+    protected int orderedRenderablesDrawn;
     // Use a standard Queue to store the ordered surface object renderables. Ordered surface renderables are processed
     // in the order they were submitted.
     protected Queue<OrderedRenderable> orderedSurfaceRenderables = new ArrayDeque<OrderedRenderable>();
@@ -221,6 +181,9 @@ public class DrawContextImpl extends WWObjectImpl implements DrawContext
         this.objectsInPickRect.clear();
         this.orderedRenderables.clear();
         this.orderedSurfaceRenderables.clear();
+        this.orderedRenderablesQueued = 0;
+        this.orderedRenderablesCulled = 0;
+        this.orderedRenderablesDrawn = 0;
         this.uniquePickNumber = 0;
         this.deepPickingMode = false;
         this.redrawRequested = 0;
@@ -690,7 +653,7 @@ public class DrawContextImpl extends WWObjectImpl implements DrawContext
             return; // benign event
         }
 
-        this.orderedRenderables.add(new OrderedRenderableEntry(orderedRenderable, System.nanoTime(), this));
+        this.enqueueOrderedRenderable(orderedRenderable, orderedRenderable.getDistanceFromEye());
     }
 
     /** {@inheritDoc} */
@@ -708,28 +671,66 @@ public class DrawContextImpl extends WWObjectImpl implements DrawContext
         // If multiple ordered renderables are added in this way, they are drawn according to the order in which they
         // are added.
         double eyeDistance = isBehind ? Double.MAX_VALUE : orderedRenderable.getDistanceFromEye();
-        this.orderedRenderables.add(
-            new OrderedRenderableEntry(orderedRenderable, eyeDistance, System.nanoTime(), this));
+        this.enqueueOrderedRenderable(orderedRenderable, eyeDistance);
+    }
+
+    protected void enqueueOrderedRenderable(OrderedRenderable orderedRenderable, double eyeDistance)
+    {
+        if (this.isContinuous2DGlobe())
+        {
+            this.orderedRenderables.add(orderedRenderable, eyeDistance, ((Globe2D) this.getGlobe()).getOffset(),
+                this.getSurfaceGeometry());
+        }
+        else
+        {
+            this.orderedRenderables.add(orderedRenderable, eyeDistance, 0, null);
+        }
+
+        if (!this.isPickingMode())
+            this.orderedRenderablesQueued++;
     }
 
     public OrderedRenderable peekOrderedRenderables()
     {
-        OrderedRenderableEntry ore = this.orderedRenderables.peek();
+        int index = this.orderedRenderables.peek();
 
-        return ore != null ? ore.or : null;
+        return index >= 0 ? this.orderedRenderables.getRenderable(index) : null;
     }
 
     public OrderedRenderable pollOrderedRenderables()
     {
-        OrderedRenderableEntry ore = this.orderedRenderables.poll();
+        int index = this.orderedRenderables.poll();
+        if (index < 0)
+            return null;
 
-        if (ore != null && this.isContinuous2DGlobe())
+        if (this.isContinuous2DGlobe())
         {
-            ((Globe2D) this.getGlobe()).setOffset(ore.globeOffset);
-            this.setSurfaceGeometry(ore.surfaceGeometry);
+            ((Globe2D) this.getGlobe()).setOffset(this.orderedRenderables.getGlobeOffset(index));
+            this.setSurfaceGeometry(this.orderedRenderables.getSurfaceGeometry(index));
         }
 
-        return ore != null ? ore.or : null;
+        if (!this.isPickingMode())
+            this.orderedRenderablesDrawn++;
+
+        return this.orderedRenderables.getRenderable(index);
+    }
+
+    /** {@inheritDoc} */
+    public int getOrderedRenderablesQueued()
+    {
+        return this.orderedRenderablesQueued;
+    }
+
+    /** {@inheritDoc} */
+    public int getOrderedRenderablesCulled()
+    {
+        return this.orderedRenderablesCulled;
+    }
+
+    /** {@inheritDoc} */
+    public int getOrderedRenderablesDrawn()
+    {
+        return this.orderedRenderablesDrawn;
     }
 //
 //    public void applyDeclutterFilter2()
@@ -793,42 +794,53 @@ public class DrawContextImpl extends WWObjectImpl implements DrawContext
         if (this.getClutterFilter() == null)
             return;
 
-        // Collect all the active declutterables.
-        ArrayList<OrderedRenderableEntry> declutterableArray = new ArrayList<OrderedRenderableEntry>();
-        for (OrderedRenderableEntry ore : this.orderedRenderables)
+        // Collect all the active declutterables front-to-back, the reverse of the drawing order. Ordered renderables
+        // at the same distance are collected in the order they were added. The collected declutterables are removed
+        // from the renderable list. The clutter filter will add those it wants displayed back to the list, or it will
+        // add some other representation.
+        int numRemaining = this.orderedRenderables.sortRemaining();
+        for (int last = numRemaining - 1; last >= 0; )
         {
-            if (ore.or instanceof Declutterable && ((Declutterable) ore.or).isEnableDecluttering())
-                declutterableArray.add(ore);
-        }
-
-        // Sort the declutterables front-to-back.
-        Collections.sort(declutterableArray, new Comparator<OrderedRenderableEntry>()
-        {
-            public int compare(OrderedRenderableEntry orA, OrderedRenderableEntry orB)
+            double distance = this.orderedRenderables.getDistanceFromEye(this.orderedRenderables.getRemaining(last));
+            int first = last;
+            while (first > 0 && this.orderedRenderables.getDistanceFromEye(
+                this.orderedRenderables.getRemaining(first - 1)) == distance)
             {
-                double eA = orA.distanceFromEye;
-                double eB = orB.distanceFromEye;
+                first--;
+            }
 
-                return eA < eB ? -1 : eA == eB ? (orA.time < orB.time ? -1 : orA.time == orB.time ? 0 : 1) : 1;
+            for (int i = first; i <= last; i++)
+            {
+                int index = this.orderedRenderables.getRemaining(i);
+                OrderedRenderable or = this.orderedRenderables.getRenderable(index);
+                if (or instanceof Declutterable && ((Declutterable) or).isEnableDecluttering())
+                {
+                    this.declutterables.add((Declutterable) or);
+                    this.orderedRenderables.remove(index);
+                }
             }
-        });
 
-        if (declutterableArray.size() == 0)
+            last = first - 1;
+        }
+
+        if (this.declutterables.size() == 0)
             return;
 
-        // Prepare the declutterable list for the filter and remove eliminated ordered renderables from the renderable
-        // list. The clutter filter will add those it wants displayed back to the list, or it will add some other
-        // representation.
-        List<Declutterable> declutterables = new ArrayList<Declutterable>(declutterableArray.size());
-        for (OrderedRenderableEntry ore : declutterableArray)
+        // Tell the filter to apply itself and draw whatever it draws.
+        int numQueued = this.orderedRenderablesQueued;
+        try
         {
-            declutterables.add((Declutterable) ore.or);
-
-            orderedRenderables.remove(ore);
+            this.getClutterFilter().apply(this, this.declutterables);
+        }
+        finally
+        {
+            if (!this.isPickingMode())
+            {
+                this.orderedRenderablesCulled += Math.max(0,
+                    this.declutterables.size() - (this.orderedRenderablesQueued - numQueued));
+            }
+            this.declutterables.clear();
         }
-
-        // Tell the filter to apply itself and draw whatever it draws.
-        this.getClutterFilter().apply(this, declutterables);
     }
 
     /** {@inheritDoc} */
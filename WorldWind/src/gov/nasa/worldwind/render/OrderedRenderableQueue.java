@@ -0,0 +1,399 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.render;
+
+import gov.nasa.worldwind.terrain.SectorGeometryList;
+
+import java.util.Arrays;
+
+/**
+ * Holds a frame's ordered renderables and delivers them farthest from the eye first. Ordered renderables at the same
+ * distance from the eye are delivered in the order they were added.
+ * <p/>
+ * Entries are held in parallel arrays indexed by the order in which they were added, and the arrays are kept from one
+ * frame to the next, so adding an ordered renderable does not allocate once the queue has grown to the frame's number
+ * of ordered renderables. The entries are sorted when first read, with a radix sort of their eye distances. Entries
+ * added after that, such as those a clutter filter adds back, are kept in a binary heap and merged with the sorted
+ * entries as the queue is read. Many such entries are instead sorted along with the entries remaining.
+ * <p/>
+ * Entries are identified by their index, which {@link #peek()} and {@link #poll()} return.
+ *
+ * @version $Id$
+ */
+public class OrderedRenderableQueue
+{
+    protected static final int INITIAL_CAPACITY = 128;
+    /** The number of entries below which insertion sort is used rather than radix sort. */
+    protected static final int INSERTION_SORT_THRESHOLD = 48;
+    /** The number of entries added while the queue is being read above which the remainder is sorted again. */
+    protected static final int RESORT_THRESHOLD = 256;
+
+    protected int size; // the number of entries added since the queue was cleared
+    protected OrderedRenderable[] renderables = new OrderedRenderable[INITIAL_CAPACITY]; // null once removed
+    protected double[] distances = new double[INITIAL_CAPACITY];
+    // Distances converted to integers that sort in delivery order when compared as unsigned values.
+    protected long[] keys = new long[INITIAL_CAPACITY];
+    protected int[] globeOffsets = new int[INITIAL_CAPACITY];
+    protected SectorGeometryList[] surfaceGeometries = new SectorGeometryList[INITIAL_CAPACITY];
+
+    // The sorted entries, of which those from head on remain to be delivered.
+    protected int[] order = new int[INITIAL_CAPACITY];
+    protected int numSorted;
+    protected int head;
+    // The entries added after the queue was sorted. Their indices exceed those of every sorted entry.
+    protected int[] heap = new int[INITIAL_CAPACITY];
+    protected int heapSize;
+    // Entries from this index on have been neither sorted nor placed in the heap.
+    protected int pendingStart;
+
+    protected int[] scratch = new int[INITIAL_CAPACITY];
+    protected int[] histogram = new int[256];
+
+    /**
+     * Adds an ordered renderable to the queue.
+     *
+     * @param orderedRenderable the ordered renderable.
+     * @param distanceFromEye   the distance at which to order the renderable.
+     * @param globeOffset       the 2D globe offset to restore when the renderable is delivered.
+     * @param surfaceGeometry   the surface geometry to restore when the renderable is delivered, or null.
+     *
+     * @return the entry's index.
+     */
+    public int add(OrderedRenderable orderedRenderable, double distanceFromEye, int globeOffset,
+        SectorGeometryList surfaceGeometry)
+    {
+        if (this.size == this.renderables.length)
+            this.grow();
+
+        int index = this.size++;
+        this.renderables[index] = orderedRenderable;
+        this.distances[index] = distanceFromEye;
+        this.keys[index] = computeKey(distanceFromEye);
+        this.globeOffsets[index] = globeOffset;
+        this.surfaceGeometries[index] = surfaceGeometry;
+
+        return index;
+    }
+
+    /**
+     * Converts an eye distance to an integer key. Keys compared as unsigned values order distances from greatest to
+     * least.
+     *
+     * @param distance the eye distance.
+     *
+     * @return the distance's key.
+     */
+    protected static long computeKey(double distance)
+    {
+        // Negative zero orders with positive zero.
+        long bits = Double.doubleToLongBits(distance == 0 ? 0d : distance);
+        // Flip negative values entirely and positive values' sign bit to order them as unsigned integers, then invert
+        // to order greatest first.
+        return ~(bits ^ ((bits >> 63) | Long.MIN_VALUE));
+    }
+
+    protected void grow()
+    {
+        int capacity = 2 * this.renderables.length;
+        this.renderables = Arrays.copyOf(this.renderables, capacity);
+        this.distances = Arrays.copyOf(this.distances, capacity);
+        this.keys = Arrays.copyOf(this.keys, capacity);
+        this.globeOffsets = Arrays.copyOf(this.globeOffsets, capacity);
+        this.surfaceGeometries = Arrays.copyOf(this.surfaceGeometries, capacity);
+        this.order = Arrays.copyOf(this.order, capacity);
+        this.heap = Arrays.copyOf(this.heap, capacity);
+        this.scratch = new int[capacity];
+    }
+
+    /** Removes all entries from the queue, releasing its references to them. */
+    public void clear()
+    {
+        Arrays.fill(this.renderables, 0, this.size, null);
+        Arrays.fill(this.surfaceGeometries, 0, this.size, null);
+        this.size = 0;
+        this.numSorted = 0;
+        this.head = 0;
+        this.heapSize = 0;
+        this.pendingStart = 0;
+    }
+
+    /**
+     * Indicates whether any entries remain to be delivered.
+     *
+     * @return true if no entries remain, otherwise false.
+     */
+    public boolean isEmpty()
+    {
+        return this.peek() < 0;
+    }
+
+    /**
+     * Returns the next entry to be delivered, without removing it.
+     *
+     * @return the entry's index, or -1 if the queue is empty.
+     */
+    public int peek()
+    {
+        this.update();
+
+        while (this.head < this.numSorted && this.renderables[this.order[this.head]] == null)
+        {
+            this.head++;
+        }
+
+        while (this.heapSize > 0 && this.renderables[this.heap[0]] == null)
+        {
+            this.popHeap();
+        }
+
+        if (this.head < this.numSorted)
+        {
+            int sorted = this.order[this.head];
+            return this.heapSize > 0 && this.precedes(this.heap[0], sorted) ? this.heap[0] : sorted;
+        }
+
+        return this.heapSize > 0 ? this.heap[0] : -1;
+    }
+
+    /**
+     * Removes and returns the next entry to be delivered.
+     *
+     * @return the entry's index, or -1 if the queue is empty.
+     */
+    public int poll()
+    {
+        int index = this.peek();
+        if (index < 0)
+            return -1;
+
+        if (this.head < this.numSorted && this.order[this.head] == index)
+            this.head++;
+        else
+            this.popHeap();
+
+        return index;
+    }
+
+    /**
+     * Removes an entry from the queue without delivering it.
+     *
+     * @param index the entry's index.
+     */
+    public void remove(int index)
+    {
+        this.renderables[index] = null;
+        this.surfaceGeometries[index] = null;
+    }
+
+    public OrderedRenderable getRenderable(int index)
+    {
+        return this.renderables[index];
+    }
+
+    public double getDistanceFromEye(int index)
+    {
+        return this.distances[index];
+    }
+
+    public int getGlobeOffset(int index)
+    {
+        return this.globeOffsets[index];
+    }
+
+    public SectorGeometryList getSurfaceGeometry(int index)
+    {
+        return this.surfaceGeometries[index];
+    }
+
+    /**
+     * Sorts the entries remaining to be delivered, so that they can be examined in delivery order with {@link
+     * #getRemaining(int)}.
+     *
+     * @return the number of entries remaining.
+     */
+    public int sortRemaining()
+    {
+        int n = 0;
+        int[] sorted = this.scratch;
+
+        for (int i = this.head; i < this.numSorted; i++)
+        {
+            if (this.renderables[this.order[i]] != null)
+                sorted[n++] = this.order[i];
+        }
+
+        // Heap entries follow the sorted entries in the order added, so that the sort keeps entries of equal distance
+        // in the order added.
+        int heapStart = n;
+        for (int i = 0; i < this.heapSize; i++)
+        {
+            if (this.renderables[this.heap[i]] != null)
+                sorted[n++] = this.heap[i];
+        }
+        Arrays.sort(sorted, heapStart, n);
+
+        for (int i = this.pendingStart; i < this.size; i++)
+        {
+            if (this.renderables[i] != null)
+                sorted[n++] = i;
+        }
+
+        this.scratch = this.order;
+        this.order = sorted;
+        this.numSorted = n;
+        this.head = 0;
+        this.heapSize = 0;
+        this.pendingStart = this.size;
+        this.sort(this.order, n);
+
+        return n;
+    }
+
+    /**
+     * Returns an entry remaining to be delivered. Valid only until the queue is next modified or read.
+     *
+     * @param position the entry's position in delivery order, from zero to one less than the number returned by
+     *                 {@link #sortRemaining()}.
+     *
+     * @return the entry's index.
+     */
+    public int getRemaining(int position)
+    {
+        return this.order[this.head + position];
+    }
+
+    /** Sorts or places in the heap the entries added since the queue was last read. */
+    protected void update()
+    {
+        int numPending = this.size - this.pendingStart;
+        if (numPending == 0)
+            return;
+
+        if ((this.head == this.numSorted && this.heapSize == 0) || numPending > RESORT_THRESHOLD)
+        {
+            this.sortRemaining();
+            return;
+        }
+
+        for (int i = this.pendingStart; i < this.size; i++)
+        {
+            this.pushHeap(i);
+        }
+        this.pendingStart = this.size;
+    }
+
+    /**
+     * Indicates whether one entry is delivered before another.
+     *
+     * @param a the first entry's index.
+     * @param b the second entry's index.
+     *
+     * @return true if the first entry is delivered first, otherwise false.
+     */
+    protected boolean precedes(int a, int b)
+    {
+        long ka = this.keys[a] ^ Long.MIN_VALUE;
+        long kb = this.keys[b] ^ Long.MIN_VALUE;
+
+        return ka < kb || (ka == kb && a < b);
+    }
+
+    /**
+     * Sorts entries into delivery order. Entries of equal key keep their relative order.
+     *
+     * @param indices the indices of the entries to sort.
+     * @param n       the number of entries.
+     */
+    protected void sort(int[] indices, int n)
+    {
+        if (n < INSERTION_SORT_THRESHOLD)
+        {
+            for (int i = 1; i < n; i++)
+            {
+                int index = indices[i];
+                int j = i - 1;
+                for (; j >= 0 && this.precedes(index, indices[j]); j--)
+                {
+                    indices[j + 1] = indices[j];
+                }
+                indices[j + 1] = index;
+            }
+            return;
+        }
+
+        // Least significant digit radix sort, a byte at a time. Passes whose byte is the same for every entry are
+        // skipped, which is typically most of the passes for the exponent and high mantissa bytes.
+        int[] src = indices;
+        int[] dst = this.scratch;
+        for (int shift = 0; shift < 64; shift += 8)
+        {
+            Arrays.fill(this.histogram, 0);
+            for (int i = 0; i < n; i++)
+            {
+                this.histogram[(int) (this.keys[src[i]] >>> shift) & 0xFF]++;
+            }
+
+            if (this.histogram[(int) (this.keys[src[0]] >>> shift) & 0xFF] == n)
+                continue;
+
+            for (int d = 0, offset = 0; d < 256; d++)
+            {
+                int count = this.histogram[d];
+                this.histogram[d] = offset;
+                offset += count;
+            }
+
+            for (int i = 0; i < n; i++)
+            {
+                dst[this.histogram[(int) (this.keys[src[i]] >>> shift) & 0xFF]++] = src[i];
+            }
+
+            int[] tmp = src;
+            src = dst;
+            dst = tmp;
+        }
+
+        if (src != indices)
+            System.arraycopy(src, 0, indices, 0, n);
+    }
+
+    protected void pushHeap(int index)
+    {
+        int i = this.heapSize++;
+        while (i > 0)
+        {
+            int parent = (i - 1) >>> 1;
+            if (!this.precedes(index, this.heap[parent]))
+                break;
+
+            this.heap[i] = this.heap[parent];
+            i = parent;
+        }
+        this.heap[i] = index;
+    }
+
+    protected void popHeap()
+    {
+        int last = this.heap[--this.heapSize];
+        int i = 0;
+        int half = this.heapSize >>> 1;
+        while (i < half)
+        {
+            int child = 2 * i + 1;
+            if (child + 1 < this.heapSize && this.precedes(this.heap[child + 1], this.heap[child]))
+                child++;
+
+            if (!this.precedes(this.heap[child], last))
+                break;
+
+            this.heap[i] = this.heap[child];
+            i = child;
+        }
+        if (this.heapSize > 0)
+            this.heap[i] = last;
+    }
+}
@@ -7,7 +7,6 @@ package gov.nasa.worldwind.render;
 
 import com.jogamp.opengl.util.texture.*;
 import gov.nasa.worldwind.avlist.*;
-import gov.nasa.worldwind.cache.Cacheable;
 import gov.nasa.worldwind.geom.*;
 import gov.nasa.worldwind.globes.Globe2D;
 import gov.nasa.worldwind.layers.TextureTile;
@@ -33,6 +32,11 @@ import java.util.List;
  * during the preRender method of a World Wind layer. See the {@link gov.nasa.worldwind.render.PreRenderable} interface
  * for details. Once built, the surface tiles can be rendered by a {@link gov.nasa.worldwind.render.SurfaceTileRenderer}.
  * <p/>
+ * Surface tiles are updated incrementally. Between calls to buildTiles the tile builder retains each surface
+ * renderable's state key and sectors, and records as dirty the sectors of surface renderables that are added, removed,
+ * reordered or changed. Only the tiles intersecting a dirty sector are drawn again, so moving one of many surface
+ * renderables redraws only the tiles it leaves and enters.
+ * <p/>
  * By default, SurfaceObjectTileBuilder creates texture tiles with a width and height of 512 pixels, and with internal
  * format <code>GL_RGBA</code>. These parameters are configurable by calling {@link
  * #setTileDimension(java.awt.Dimension)} or {@link #setTileTextureFormat(int)}.
@@ -86,6 +90,16 @@ public class SurfaceObjectTileBuilder
      * equator.
      */
     protected static final int DEFAULT_NUM_LEVELS = 17;
+    /**
+     * The number of dirty sectors retained to determine which tiles to update. When more are recorded the oldest are
+     * discarded, and tiles not updated since those were recorded are updated.
+     */
+    protected static final int MAX_DIRTY_SECTORS = 1024;
+    /**
+     * The number of surface renderables intersecting a tile above which its sub-tiles find their intersecting surface
+     * renderables with the tile info's R-tree rather than by testing each of the tile's surface renderables.
+     */
+    protected static final int OBJECT_TREE_THRESHOLD = 32;
     /** The next unique ID. This property is shared by all instances of SurfaceObjectTileBuilder. */
     protected static long nextUniqueId = 1;
     /**
@@ -118,6 +132,10 @@ public class SurfaceObjectTileBuilder
     protected Map<Object, TileInfo> tileInfoMap = new HashMap<Object, TileInfo>();
     /** The currently active TileInfo. Valid only during the execution of {@link #buildTiles(DrawContext, Iterable)}. */
     protected TileInfo currentInfo;
+    /** Set used to gather the surface renderables intersecting a tile. Valid only during tile assembly. */
+    protected Set<SurfaceObjectInfo> intersectingObjectInfo = new HashSet<SurfaceObjectInfo>();
+    /** List used to sort the surface renderables intersecting a tile. Valid only during tile assembly. */
+    protected List<SurfaceObjectInfo> sortedObjectInfo = new ArrayList<SurfaceObjectInfo>();
     /** Support class used to render to an offscreen surface tile. */
     protected OGLRenderToTextureSupport rttSupport = new OGLRenderToTextureSupport();
 
@@ -373,7 +391,9 @@ public class SurfaceObjectTileBuilder
      * gov.nasa.worldwind.View}. This may temporarily use the framebuffer to perform offscreen rendering, and therefore
      * should be called during the preRender method of a World Wind {@link gov.nasa.worldwind.layers.Layer}.
      * <p/>
-     * This does nothing if the specified iterable is null, is empty or contains no surface renderables.
+     * If the specified iterable is null, is empty or contains no surface renderables, this assembles no tiles and
+     * releases the surface renderables assembled by earlier calls. See {@link #releaseObjectInfo(DrawContext,
+     * TileInfo)}.
      *
      * @param dc       the draw context to build tiles for.
      * @param iterable the iterable to gather surface renderables from.
@@ -400,23 +420,33 @@ public class SurfaceObjectTileBuilder
         this.currentSurfaceObjects.clear();
         this.currentInfo.tiles.clear();
 
-        if (iterable == null)
-            return;
-
         // Assemble the list of current surface renderables from the specified iterable.
-        this.assembleSurfaceObjects(iterable);
+        if (iterable != null)
+            this.assembleSurfaceObjects(iterable);
+
+        // There's nothing to draw. Release the surface renderables assembled in earlier rendering passes.
+        if (this.currentSurfaceObjects.isEmpty())
+        {
+            this.releaseObjectInfo(dc, this.currentInfo);
+            return;
+        }
 
         // We've cleared any tile assembly state from the last rendering pass. Determine if we can assemble and update
         // the tiles. If not, we're done.
-        if (this.currentSurfaceObjects.isEmpty() || !this.canAssembleTiles(dc))
+        if (!this.canAssembleTiles(dc))
             return;
 
+        // Determine which surface renderables have changed since the last rendering pass, and record the sectors they
+        // occupied and now occupy. Only the tiles intersecting those sectors need to be updated.
+        this.updateObjectInfo(dc);
+
         // Assemble the current visible tiles and update their associated textures if necessary.
         this.assembleTiles(dc);
         this.updateTiles(dc);
 
         // Clear references to surface renderables to avoid dangling references. The surface renderable list is no
-        // longer needed, no are the lists held by each tile.
+        // longer needed, no are the lists held by each tile. The tile info retains the surface renderables it tracks
+        // until they're absent from a later call.
         this.currentSurfaceObjects.clear();
         for (SurfaceObjectTile tile : this.currentInfo.tiles)
         {
@@ -426,7 +456,9 @@ public class SurfaceObjectTileBuilder
 
     /**
      * Removes all entries from the list of SurfaceTiles assembled during the last call to {@link
-     * #buildTiles(DrawContext, Iterable)}.
+     * #buildTiles(DrawContext, Iterable)}, and releases the surface renderables assembled by that call. See {@link
+     * #releaseObjectInfo(DrawContext, TileInfo)}. The next call to buildTiles therefore updates every tile its surface
+     * renderables intersect, so callers that build tiles every frame should not call this between frames.
      *
      * @param dc the draw context used to build tiles.
      *
@@ -446,6 +478,7 @@ public class SurfaceObjectTileBuilder
         if (tileInfo != null)
         {
             tileInfo.tiles.clear();
+            this.releaseObjectInfo(dc, tileInfo);
         }
     }
 
@@ -548,9 +581,9 @@ public class SurfaceObjectTileBuilder
 
     /**
      * Draws the current list of surface renderables into the specified surface tile. The surface tiles is updated only
-     * when necessary. The tile keeps track of the list of surface renderables rendered into it, and the state keys
-     * those objects. The tile is updated if the list changes, if any of the state keys change, or if the tile has no
-     * texture. Otherwise the tile is left unchanged and the update is skipped.
+     * when necessary. The tile is updated if it has no texture, or if a dirty sector recorded since the tile was last
+     * updated intersects the tile. See {@link #isTileDirty(SurfaceObjectTile)}. Otherwise the tile is left unchanged
+     * and the update is skipped.
      *
      * @param dc   the draw context the tile relates to.
      * @param tile the tile to update.
@@ -561,23 +594,18 @@ public class SurfaceObjectTileBuilder
         // texture cache below.
         Texture texture = tile.getTexture(dc.getTextureCache());
 
-        // If force tile updates is off, compare the previous tile state against the currently computed state to
-        // determine if the tile needs to be updated. The tile needs to be updated if any the following conditions are
-        // true:
+        // If force tile updates is off, determine if the tile needs to be updated. The tile needs to be updated if any
+        // the following conditions are true:
         // * The tile has no texture.
-        // * The tile has no state.
-        // * The list of intersecting objects has changed.
-        // * An intersecting object's state key is different than one stored in the tile's previous state key.
-        if (!this.isForceTileUpdates())
-        {
-            Object tileStateKey = tile.getStateKey(dc);
-            if (texture != null && tileStateKey.equals(tile.lastUpdateStateKey))
-                return;
+        // * The tile has not been updated, or was updated before the oldest dirty sector retained.
+        // * A surface renderable intersecting the tile has been added, removed, reordered or changed its state key or
+        //   sectors since the tile was last updated.
+        if (!this.isForceTileUpdates() && texture != null && !this.isTileDirty(tile))
+            return;
 
-            // If the tile needs to be updated, then assign its lastUpdateStateKey before its texture is created. This
-            // ensures that the lastUpdateStateKey is current when the tile is added to the cache.
-            tile.lastUpdateStateKey = tileStateKey;
-        }
+        // Assign the tile's lastUpdateFrameNumber before its texture is created. This ensures that the tile's update
+        // state is current when the tile is added to the cache.
+        tile.lastUpdateFrameNumber = this.currentInfo.frameNumber;
 
         if (texture == null) // Create the tile's texture if it doesn't already have one.
         {
@@ -617,6 +645,35 @@ public class SurfaceObjectTileBuilder
         }
     }
 
+    /**
+     * Indicates whether any of the sectors recorded as dirty since the specified tile was last updated intersect the
+     * tile. Dirty sectors are recorded in the {@link #currentInfo} by {@link #updateObjectInfo(DrawContext)}. This
+     * returns true if the tile has not been updated, or if it was last updated before the oldest dirty sector retained.
+     *
+     * @param tile the tile to test.
+     *
+     * @return true if the tile needs to be updated; false otherwise.
+     */
+    protected boolean isTileDirty(SurfaceObjectTile tile)
+    {
+        if (tile.lastUpdateFrameNumber < this.currentInfo.dirtyFrameNumber)
+            return true;
+
+        // Dirty sectors are recorded in frame order. Visit only those recorded since the tile was last updated.
+        List<DirtySector> dirtySectors = this.currentInfo.dirtySectors;
+        for (int i = dirtySectors.size() - 1; i >= 0; i--)
+        {
+            DirtySector dirtySector = dirtySectors.get(i);
+            if (dirtySector.frameNumber <= tile.lastUpdateFrameNumber)
+                break;
+
+            if (tile.getSector().intersects(dirtySector.sector))
+                return true;
+        }
+
+        return false;
+    }
+
     /**
      * Returns a new surface tile texture for use on the specified draw context with the specified width and height.
      * <p/>
@@ -733,6 +790,153 @@ public class SurfaceObjectTileBuilder
         }
     }
 
+    /**
+     * Compares the surface renderables in {@link #currentSurfaceObjects} against those assembled during the last call
+     * to {@link #buildTiles(DrawContext, Iterable)} on the {@link #currentInfo}, and records as dirty the sectors of
+     * any surface renderable that has been added, removed, reordered, or that has changed its state key or sectors.
+     * Changed surface renderables record both the sectors they occupied and the sectors they now occupy. This also
+     * keeps the current info's R-tree of surface renderable sectors up to date.
+     * <p/>
+     * Each surface renderable's state key and sectors are computed once, rather than once for each tile it intersects.
+     *
+     * @param dc the draw context the surface renderables relate to.
+     */
+    protected void updateObjectInfo(DrawContext dc)
+    {
+        TileInfo info = this.currentInfo;
+        long frameNumber = ++info.frameNumber;
+        int maxPreviousOrdinal = -1;
+
+        for (int i = 0; i < this.currentSurfaceObjects.size(); i++)
+        {
+            SurfaceRenderable so = this.currentSurfaceObjects.get(i);
+            SurfaceObjectInfo objectInfo = info.objectInfoMap.get(so);
+            if (objectInfo != null && objectInfo.frameNumber == frameNumber)
+                continue; // The surface renderable appears in the list more than once.
+
+            Object stateKey = so.getStateKey(dc);
+            List<Sector> sectors = so.getSectors(dc);
+
+            if (objectInfo == null)
+            {
+                objectInfo = new SurfaceObjectInfo(so);
+                info.objectInfoMap.put(so, objectInfo);
+                this.updateObjectSectors(objectInfo, sectors);
+                this.addDirtySectors(sectors);
+            }
+            else
+            {
+                // A surface renderable now drawn after one it was previously drawn before changes the order of the
+                // tiles' contents. Every tile holding both holds the one that moved back, so only that surface
+                // renderable needs to mark its sectors as dirty.
+                boolean reordered = objectInfo.ordinal < maxPreviousOrdinal;
+                maxPreviousOrdinal = Math.max(maxPreviousOrdinal, objectInfo.ordinal);
+
+                boolean sectorsChanged = sectors != null ? !sectors.equals(objectInfo.sectors)
+                    : objectInfo.sectors != null;
+                boolean stateChanged = stateKey != null ? !stateKey.equals(objectInfo.stateKey)
+                    : objectInfo.stateKey != null;
+
+                if (reordered || sectorsChanged || stateChanged)
+                {
+                    this.addDirtySectors(objectInfo.sectors);
+                    this.addDirtySectors(sectors);
+                }
+
+                if (sectorsChanged)
+                    this.updateObjectSectors(objectInfo, sectors);
+            }
+
+            objectInfo.stateKey = stateKey;
+            objectInfo.ordinal = i;
+            objectInfo.frameNumber = frameNumber;
+        }
+
+        // Surface renderables not in the current list have been removed. Mark the sectors they occupied as dirty, and
+        // release the references to them.
+        for (Iterator<SurfaceObjectInfo> iter = info.objectInfoMap.values().iterator(); iter.hasNext(); )
+        {
+            SurfaceObjectInfo objectInfo = iter.next();
+            if (objectInfo.frameNumber == frameNumber)
+                continue;
+
+            this.addDirtySectors(objectInfo.sectors);
+            info.objectTree.remove(objectInfo);
+            iter.remove();
+        }
+
+        // Discard the oldest dirty sectors when there are too many to retain. Tiles last updated before the most recent
+        // of those discarded are updated.
+        if (info.dirtySectors.size() > MAX_DIRTY_SECTORS)
+        {
+            List<DirtySector> discarded = info.dirtySectors.subList(0,
+                info.dirtySectors.size() - MAX_DIRTY_SECTORS / 2);
+            info.dirtyFrameNumber = discarded.get(discarded.size() - 1).frameNumber;
+            discarded.clear();
+        }
+    }
+
+    /**
+     * Releases the references a tile info holds to the surface renderables assembled in earlier rendering passes, and
+     * records the sectors they occupied as dirty so that the tiles they were drawn into are updated when next
+     * assembled. This does nothing if the tile info holds no surface renderables.
+     *
+     * @param dc   the draw context the surface renderables relate to.
+     * @param info the tile info to release the surface renderables of.
+     */
+    protected void releaseObjectInfo(DrawContext dc, TileInfo info)
+    {
+        if (info.objectInfoMap.isEmpty())
+            return;
+
+        // Updating the object info against an empty list of surface renderables removes every one of them.
+        TileInfo previousInfo = this.currentInfo;
+        this.currentInfo = info;
+        this.currentSurfaceObjects.clear();
+        try
+        {
+            this.updateObjectInfo(dc);
+        }
+        finally
+        {
+            this.currentInfo = previousInfo;
+        }
+    }
+
+    /**
+     * Assigns a surface renderable's sectors, and replaces the surface renderable's entries in the current info's
+     * R-tree.
+     *
+     * @param objectInfo the information for the surface renderable.
+     * @param sectors    the surface renderable's current sectors. May be null.
+     */
+    protected void updateObjectSectors(SurfaceObjectInfo objectInfo, List<Sector> sectors)
+    {
+        // Copy the sectors to insulate them from changes to the list returned by the surface renderable.
+        objectInfo.sectors = sectors != null ? new ArrayList<Sector>(sectors) : null;
+
+        this.currentInfo.objectTree.remove(objectInfo);
+        if (objectInfo.sectors != null)
+            this.currentInfo.objectTree.add(objectInfo, objectInfo.sectors);
+    }
+
+    /**
+     * Records the specified sectors as dirty in the current frame of the {@link #currentInfo}.
+     *
+     * @param sectors the sectors to record. May be null.
+     */
+    protected void addDirtySectors(List<Sector> sectors)
+    {
+        if (sectors == null)
+            return;
+
+        for (Sector sector : sectors)
+        {
+            if (sector != null)
+                this.currentInfo.dirtySectors.add(new DirtySector(sector, this.currentInfo.frameNumber));
+        }
+    }
+
     //**************************************************************//
     //********************  LevelSet Assembly  *********************//
     //**************************************************************//
@@ -1009,8 +1213,14 @@ public class SurfaceObjectTileBuilder
         {
             tile.addAllSurfaceObjects(parent.getObjectList(), parent.getObjectSector());
         }
-        // Otherwise, the tile may intersect some of the parent's object list. Compute which objects intersect this
-        // tile, and compute this tile's bounding sector as the union of those object's sectors.
+        // Otherwise, the tile may intersect some of the parent's object list. When the parent has many objects, find
+        // the objects intersecting this tile with the R-tree of object sectors rather than testing each of them.
+        else if (parent.getObjectList().size() > OBJECT_TREE_THRESHOLD)
+        {
+            this.addIntersectingObjects(tile);
+        }
+        // Otherwise, compute which objects intersect this tile, and compute this tile's bounding sector as the union of
+        // those object's sectors.
         else
         {
             for (SurfaceRenderable so : parent.getObjectList())
@@ -1033,6 +1243,44 @@ public class SurfaceObjectTileBuilder
         }
     }
 
+    /**
+     * Adds the surface renderables intersecting the specified tile to the tile's object list. The surface renderables
+     * are found with the {@link #currentInfo}'s R-tree of surface renderable sectors, and are added in the order they
+     * appear in {@link #currentSurfaceObjects}.
+     *
+     * @param tile the tile to add intersecting surface renderables to.
+     */
+    protected void addIntersectingObjects(SurfaceObjectTile tile)
+    {
+        try
+        {
+            this.currentInfo.objectTree.getItemsInRegion(tile.getSector(), this.intersectingObjectInfo);
+            if (this.intersectingObjectInfo.isEmpty())
+                return;
+
+            this.sortedObjectInfo.addAll(this.intersectingObjectInfo);
+            Collections.sort(this.sortedObjectInfo);
+
+            for (SurfaceObjectInfo objectInfo : this.sortedObjectInfo)
+            {
+                // Add the object with the first of its sectors that intersects the tile, as the list scan does.
+                for (Sector s : objectInfo.sectors)
+                {
+                    if (tile.getSector().intersects(s))
+                    {
+                        tile.addSurfaceObject(objectInfo.object, s);
+                        break;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            this.intersectingObjectInfo.clear();
+            this.sortedObjectInfo.clear();
+        }
+    }
+
     /**
      * Adds the specified tile to this tile builder's {@link #currentInfo} and the TextureTile memory cache.
      *
@@ -1270,6 +1518,17 @@ public class SurfaceObjectTileBuilder
         public String cacheName;
         public int tileWidth;
         public int tileHeight;
+        /** The number of times surface renderables have been assembled for this tile info. */
+        public long frameNumber;
+        /** Tiles last updated before this frame are updated regardless of the dirty sectors retained. */
+        public long dirtyFrameNumber = 1;
+        /** The sectors changed by surface renderables, in the order they were recorded. */
+        public ArrayList<DirtySector> dirtySectors = new ArrayList<DirtySector>();
+        /** The information for each surface renderable assembled in the last frame. */
+        public Map<SurfaceRenderable, SurfaceObjectInfo> objectInfoMap =
+            new IdentityHashMap<SurfaceRenderable, SurfaceObjectInfo>();
+        /** An R-tree of the sectors of the surface renderables assembled in the last frame. */
+        public BasicRTree<SurfaceObjectInfo> objectTree = new BasicRTree<SurfaceObjectInfo>();
 
         public TileInfo(LevelSet levelSet, String cacheName, int tileWidth, int tileHeight)
         {
@@ -1280,6 +1539,42 @@ public class SurfaceObjectTileBuilder
         }
     }
 
+    /**
+     * Holds a surface renderable's state key and sectors as of the last frame it was assembled in, and its position in
+     * that frame's list of surface renderables. Orders surface renderables by that position.
+     */
+    protected static class SurfaceObjectInfo implements Comparable<SurfaceObjectInfo>
+    {
+        public final SurfaceRenderable object;
+        public Object stateKey;
+        public List<Sector> sectors;
+        public int ordinal;
+        public long frameNumber;
+
+        public SurfaceObjectInfo(SurfaceRenderable object)
+        {
+            this.object = object;
+        }
+
+        public int compareTo(SurfaceObjectInfo that)
+        {
+            return this.ordinal < that.ordinal ? -1 : this.ordinal == that.ordinal ? 0 : 1;
+        }
+    }
+
+    /** A sector changed by a surface renderable, and the frame in which it changed. */
+    protected static class DirtySector
+    {
+        public final Sector sector;
+        public final long frameNumber;
+
+        public DirtySector(Sector sector, long frameNumber)
+        {
+            this.sector = sector;
+            this.frameNumber = frameNumber;
+        }
+    }
+
     //**************************************************************//
     //********************  Surface Object Tile  *******************//
     //**************************************************************//
@@ -1320,9 +1615,8 @@ public class SurfaceObjectTileBuilder
     /**
      * Represents a {@link gov.nasa.worldwind.layers.TextureTile} who's contents is constructed by a set of surface
      * objects. The tile maintains a collection of surface renderables that intersect the tile, and provides methods for
-     * to modify and retrieve that collection. Additionally, the method {@link #getStateKey(DrawContext)} provides a
-     * mechanism to uniquely identify the tile's current state, including the state of each intersecting surface
-     * object.
+     * to modify and retrieve that collection. Additionally, the tile records the frame in which it was last updated,
+     * which the tile builder compares against the frames in which surface renderables changed.
      */
     protected static class SurfaceObjectTile extends TextureTile
     {
@@ -1330,8 +1624,8 @@ public class SurfaceObjectTileBuilder
         protected Sector objectSector;
         /** List of surface renderables intersecting the tile. */
         protected List<SurfaceRenderable> intersectingObjects;
-        /** The state key that was valid when the tile was last updated. */
-        protected Object lastUpdateStateKey;
+        /** The tile info's frame number when the tile was last updated. 0 indicates the tile has not been updated. */
+        protected long lastUpdateFrameNumber;
 
         /**
          * Constructs a tile for a given sector, level, row and column of the tile's containing tile set.
@@ -1351,38 +1645,6 @@ public class SurfaceObjectTileBuilder
             super(sector, level, row, column, cacheName);
         }
 
-        /**
-         * Returns the tile's size in bytes. Overridden to append the size of the {@link #cacheName} and the {@link
-         * #lastUpdateStateKey} to the superclass' computed size.
-         *
-         * @return The tile's size in bytes.
-         */
-        @Override
-        public long getSizeInBytes()
-        {
-            long size = super.getSizeInBytes();
-
-            if (this.lastUpdateStateKey instanceof Cacheable)
-                size += ((Cacheable) this.lastUpdateStateKey).getSizeInBytes();
-            else if (this.lastUpdateStateKey != null)
-                size += 4; // If the object doesn't implement Cacheable, just account for the reference to it.
-
-            return size;
-        }
-
-        /**
-         * Returns an object that uniquely identifies the tile's state on the specified draw context. This object is
-         * guaranteed to be globally unique; an equality test with a state key from another always returns false.
-         *
-         * @param dc the draw context the state key relates to.
-         *
-         * @return an object representing surface renderable's current state.
-         */
-        public Object getStateKey(DrawContext dc)
-        {
-            return new SurfaceObjectTileStateKey(dc, this);
-        }
-
         /**
          * Returns a sector that bounds the surface renderables intersecting the tile. This returns null if no surface
          * objects intersect the tile.
@@ -1478,91 +1740,4 @@ public class SurfaceObjectTileBuilder
             return new TileKey(level.getLevelNumber(), row, col, this.getCacheName());
         }
     }
-
-    /**
-     * Represents a surface renderable tile's current state. TileStateKey distinguishes the tile's state by comparing
-     * the individual state keys of the surface renderables intersecting the tile. This does not retain any references
-     * to the surface renderables themselves. Should the tile state key live longer than the surface renderables, the
-     * state key does not prevent those objects from being reclaimed by the garbage collector.
-     */
-    protected static class SurfaceObjectTileStateKey implements Cacheable
-    {
-        protected final TileKey tileKey;
-        protected final Object[] intersectingObjectKeys;
-
-        /**
-         * Construsts a tile state key for the specified surface renderable tile.
-         *
-         * @param dc   the draw context the state key is related to.
-         * @param tile the tile to construct a state key for.
-         */
-        public SurfaceObjectTileStateKey(DrawContext dc, SurfaceObjectTile tile)
-        {
-            if (tile != null && tile.hasObjects())
-            {
-                this.tileKey = tile.getTileKey();
-                this.intersectingObjectKeys = new Object[tile.getObjectList().size()];
-
-                int index = 0;
-                for (SurfaceRenderable so : tile.getObjectList())
-                {
-                    this.intersectingObjectKeys[index++] = so.getStateKey(dc);
-                }
-            }
-            else
-            {
-                this.tileKey = null;
-                this.intersectingObjectKeys = null;
-            }
-        }
-
-        @Override
-        public boolean equals(Object o)
-        {
-            if (this == o)
-                return true;
-            if (o == null || this.getClass() != o.getClass())
-                return false;
-
-            // Compare the tile keys and each state key in the array. The state keys are equal if the tile keys are
-            // equal, the arrays equivalent length, and each array element is equivalent. Arrays.equals() correctly
-            // handles null references.
-            SurfaceObjectTileStateKey that = (SurfaceObjectTileStateKey) o;
-            return (this.tileKey != null ? this.tileKey.equals(that.tileKey) : that.tileKey == null)
-                && Arrays.equals(this.intersectingObjectKeys, that.intersectingObjectKeys);
-        }
-
-        @Override
-        public int hashCode()
-        {
-            int result = this.tileKey != null ? this.tileKey.hashCode() : 0;
-            result = 31 * result + Arrays.hashCode(this.intersectingObjectKeys); // Correctly handles a null reference.
-            return result;
-        }
-
-        /**
-         * Returns the tile state key's size in bytes. The total size of the intersecting object keys, plus the size of
-         * the array itself. The tileKey is owned by the SurfaceObjectTile, so we don't include it in the state key's
-         * size.
-         *
-         * @return The state key's size in bytes.
-         */
-        public long getSizeInBytes()
-        {
-            if (this.intersectingObjectKeys == null)
-                return 0;
-
-            long size = 4 * this.intersectingObjectKeys.length; // For the array references.
-
-            for (Object o : this.intersectingObjectKeys)
-            {
-                if (o instanceof Cacheable)
-                    size += ((Cacheable) o).getSizeInBytes();
-                else if (o != null)
-                    size += 4; // If the object doesn't implement Cacheable, just account for the reference to it.
-            }
-
-            return size;
-        }
-    }
 }
@@ -7,15 +7,28 @@ package gov.nasa.worldwind.retrieve;
 
 import gov.nasa.worldwind.*;
 import gov.nasa.worldwind.avlist.AVKey;
-import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.*;
 
 import javax.net.ssl.SSLHandshakeException;
 import java.net.SocketTimeoutException;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 /**
  * Performs threaded retrieval of data.
+ * <p/>
+ * Pending retrievals are grouped by the layer or elevation model that requested them, as identified by the retriever's
+ * {@link AVKey#LAYER} or {@link AVKey#ELEVATION_MODEL} value, or otherwise by the host they're retrieved from. Threads
+ * take retrievals from the groups in turn, so that one layer's requests can't starve another's, and within a group in
+ * priority order. Requesting a retrieval that's already pending does not queue a duplicate, but updates the pending
+ * retrieval's priority and submit time. Retrievals that are not requested again within their stale request limit,
+ * typically those of tiles no longer in view, are cancelled before they're run.
+ * <p/>
+ * Retrievals run on a fixed-size pool of threads unless the configuration property {@link AVKey#RETRIEVAL_THREAD_MODE}
+ * is {@link AVKey#THREAD_MODE_VIRTUAL}, in which case each runs on its own virtual thread and the number run at once is
+ * limited by {@link AVKey#RETRIEVAL_CONCURRENCY_LIMIT}. See {@link ThreadPerTaskExecutor}.
  *
  * @author Tom Gaskins
  * @version $Id$
@@ -26,35 +39,44 @@ public final class BasicRetrievalService extends WWObjectImpl
     // These constants are last-ditch values in case Configuration lacks defaults
     private static final int DEFAULT_QUEUE_SIZE = 100;
     private static final int DEFAULT_POOL_SIZE = 5;
+    private static final int DEFAULT_CONCURRENCY_LIMIT = 100;
     private static final long DEFAULT_STALE_REQUEST_LIMIT = 30000; // milliseconds
     private static final int DEFAULT_TIME_PRIORITY_GRANULARITY = 500; // milliseconds
+    private static final long STALE_REQUEST_PURGE_INTERVAL = 1000; // milliseconds
 
     private static final String RUNNING_THREAD_NAME_PREFIX = Logging.getMessage(
         "BasicRetrievalService.RunningThreadNamePrefix");
     private static final String IDLE_THREAD_NAME_PREFIX = Logging.getMessage(
         "BasicRetrievalService.IdleThreadNamePrefix");
 
-    private RetrievalExecutor executor; // thread pool for running retrievers
-    private ConcurrentLinkedQueue<RetrievalTask> activeTasks; // tasks currently allocated a thread
+    private ExecutorService executor; // runs retrievers; a RetrievalExecutor or a ThreadPerTaskExecutor
+    private RetrievalScheduler scheduler; // retrievals waiting for a thread
+    private ConcurrentHashMap<RetrievalTask, RetrievalTask> tasks; // pending and active tasks, for duplicate detection
+    private Set<RetrievalTask> activeTasks; // tasks currently allocated a thread
+    private Runnable dispatcher; // runs the next scheduled task; queued on the executor once per submitted task
     private int queueSize; // maximum queue size
+    private long staleRequestLimit; // reject requests older than this
+
+    // Statistics
+    private final AtomicLong numDuplicateRequests = new AtomicLong();
+    private final AtomicLong numRetrievalsStarted = new AtomicLong();
+    private final AtomicLong numRetrievalsCancelled = new AtomicLong();
+    private final AtomicLong totalQueueTime = new AtomicLong();
+    private final AtomicLong totalRetrievalTime = new AtomicLong();
 
     /** Encapsulates a single threaded retrieval as a {@link java.util.concurrent.FutureTask}. */
-    private static class RetrievalTask extends FutureTask<Retriever>
-        implements RetrievalFuture, Comparable<RetrievalTask>
+    private class RetrievalTask extends FutureTask<Retriever> implements RetrievalFuture
     {
         private Retriever retriever;
-        private double priority; // retrieval secondary priority (primary priority is submit time)
+        private Object group; // the fairness group the task is scheduled in
+        private long queueTime; // time the task was first submitted
+        private RetrievalEntry entry; // the task's current scheduler entry, or null if not pending
 
-        private RetrievalTask(Retriever retriever, double priority)
+        private RetrievalTask(Retriever retriever, Object group)
         {
             super(retriever);
             this.retriever = retriever;
-            this.priority = priority;
-        }
-
-        public double getPriority()
-        {
-            return priority;
+            this.group = group;
         }
 
         public Retriever getRetriever()
@@ -71,35 +93,10 @@ public final class BasicRetrievalService extends WWObjectImpl
             super.run();
         }
 
-        /**
-         * @param that the task to compare with this one
-         *
-         * @return 0 if task priorities are equal, -1 if priority of this is less than that, 1 otherwise
-         *
-         * @throws IllegalArgumentException if <code>that</code> is null
-         */
-        public int compareTo(RetrievalTask that)
+        @Override
+        protected void done()
         {
-            if (that == null)
-            {
-                String msg = Logging.getMessage("nullValue.RetrieverIsNull");
-                Logging.logger().fine(msg);
-                throw new IllegalArgumentException(msg);
-            }
-
-            if (this.priority > 0 && that.priority > 0) // only secondary priority used if either is negative
-            {
-                // Requests submitted within different time-granularity periods are ordered exclusive of their
-                // client-specified priority.
-                long now = System.currentTimeMillis();
-                long thisElapsedTime = now - this.retriever.getSubmitTime();
-                long thatElapsedTime = now - that.retriever.getSubmitTime();
-                if (((thisElapsedTime - thatElapsedTime) / DEFAULT_TIME_PRIORITY_GRANULARITY) != 0)
-                    return thisElapsedTime < thatElapsedTime ? -1 : 1;
-            }
-
-            // The client-specified priority is compared for requests submitted within the same granularity period.
-            return this.priority == that.priority ? 0 : this.priority < that.priority ? -1 : 1;
+            BasicRetrievalService.this.taskDone(this);
         }
 
         public boolean equals(Object o)
@@ -122,177 +119,271 @@ public final class BasicRetrievalService extends WWObjectImpl
         }
     }
 
-    protected SSLExceptionListener sslExceptionListener;
-
-    public SSLExceptionListener getSSLExceptionListener()
+    /**
+     * A task's place in its group's queue. A task that's re-prioritized is given a new entry, and its old entry is
+     * discarded when it reaches the head of the queue.
+     */
+    private static class RetrievalEntry implements Comparable<RetrievalEntry>
     {
-        return sslExceptionListener;
-    }
+        private final RetrievalTask task;
+        private final double priority; // retrieval secondary priority (primary priority is submit time)
+        private final long submitTime;
 
-    public void setSSLExceptionListener(SSLExceptionListener sslExceptionListener)
-    {
-        this.sslExceptionListener = sslExceptionListener;
+        private RetrievalEntry(RetrievalTask task, double priority, long submitTime)
+        {
+            this.task = task;
+            this.priority = priority;
+            this.submitTime = submitTime;
+        }
+
+        /**
+         * @param that the entry to compare with this one
+         *
+         * @return 0 if entry priorities are equal, -1 if priority of this is less than that, 1 otherwise
+         */
+        public int compareTo(RetrievalEntry that)
+        {
+            if (this.priority > 0 && that.priority > 0) // only secondary priority used if either is negative
+            {
+                // Requests submitted within different time-granularity periods are ordered exclusive of their
+                // client-specified priority. More recent requests come first.
+                if (((that.submitTime - this.submitTime) / DEFAULT_TIME_PRIORITY_GRANULARITY) != 0)
+                    return this.submitTime > that.submitTime ? -1 : 1;
+            }
+
+            // The client-specified priority is compared for requests submitted within the same granularity period.
+            return this.priority == that.priority ? 0 : this.priority < that.priority ? -1 : 1;
+        }
     }
 
-    public void uncaughtException(Thread thread, Throwable throwable)
+    /** The pending retrievals of one layer, elevation model or host, in priority order. */
+    private static class RetrievalGroup
     {
-        Logging.logger().fine(Logging.getMessage("BasicRetrievalService.UncaughtExceptionDuringRetrieval",
-            thread.getName()));
+        private final Object key;
+        private final PriorityQueue<RetrievalEntry> entries = new PriorityQueue<RetrievalEntry>();
+        private int numTasks; // the number of entries that are current
+
+        private RetrievalGroup(Object key)
+        {
+            this.key = key;
+        }
     }
 
-    private class RetrievalExecutor extends ThreadPoolExecutor
+    /**
+     * Holds the retrievals waiting for a thread. Groups with pending retrievals are served in turn, and each group's
+     * retrievals in priority order.
+     */
+    private class RetrievalScheduler
     {
-        private static final long THREAD_TIMEOUT = 2; // keep idle threads alive this many seconds
-        private long staleRequestLimit; // reject requests older than this
+        private final HashMap<Object, RetrievalGroup> groups = new HashMap<Object, RetrievalGroup>();
+        private final ArrayDeque<RetrievalGroup> readyGroups = new ArrayDeque<RetrievalGroup>();
+        private int numTasks;
+        private long lastPurgeTime;
 
-        private RetrievalExecutor(int poolSize, int queueSize)
+        private synchronized void add(RetrievalTask task, double priority)
         {
-            super(poolSize, poolSize, THREAD_TIMEOUT, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(queueSize),
-                new ThreadFactory()
-                {
-                    public Thread newThread(Runnable runnable)
-                    {
-                        Thread thread = new Thread(runnable);
-                        thread.setDaemon(true);
-                        thread.setPriority(Thread.MIN_PRIORITY);
-                        thread.setUncaughtExceptionHandler(BasicRetrievalService.this);
-                        return thread;
-                    }
-                }, new ThreadPoolExecutor.DiscardPolicy() // abandon task when queue is full
+            RetrievalGroup group = this.groups.get(task.group);
+            if (group == null)
             {
-                // This listener is invoked only when the executor queue is a bounded queue and runs out of room.
-                // If the queue is a java.util.concurrent.PriorityBlockingQueue, this listener is never invoked.
-                public void rejectedExecution(Runnable runnable, ThreadPoolExecutor threadPoolExecutor)
-                {
-                    // Interposes logging for rejected execution
-                    Logging.logger().finer(Logging.getMessage("BasicRetrievalService.ResourceRejected",
-                        ((RetrievalTask) runnable).getRetriever().getName()));
-
-                    super.rejectedExecution(runnable, threadPoolExecutor);
-                }
-            });
+                group = new RetrievalGroup(task.group);
+                this.groups.put(task.group, group);
+                this.readyGroups.add(group);
+            }
 
-            this.staleRequestLimit = Configuration.getLongValue(AVKey.RETRIEVAL_QUEUE_STALE_REQUEST_LIMIT,
-                DEFAULT_STALE_REQUEST_LIMIT);
+            task.entry = new RetrievalEntry(task, priority, task.retriever.getSubmitTime());
+            group.entries.add(task.entry);
+            group.numTasks++;
+            this.numTasks++;
         }
 
         /**
-         * @param thread   the thread the task is running on
-         * @param runnable the <code>Retriever</code> running on the thread
+         * Gives a pending task a new priority and submit time.
          *
-         * @throws IllegalArgumentException if either <code>thread</code> or <code>runnable</code> is null
+         * @return true if the task is pending, false if it's been started or removed.
          */
-        protected void beforeExecute(Thread thread, Runnable runnable)
+        private synchronized boolean reprioritize(RetrievalTask task, double priority, long submitTime)
         {
-            if (thread == null)
-            {
-                String msg = Logging.getMessage("nullValue.ThreadIsNull");
-                Logging.logger().fine(msg);
-                throw new IllegalArgumentException(msg);
-            }
-            if (runnable == null)
-            {
-                String msg = Logging.getMessage("nullValue.RunnableIsNull");
-                Logging.logger().fine(msg);
-                throw new IllegalArgumentException(msg);
-            }
+            if (task.entry == null)
+                return false;
 
-            RetrievalTask task = (RetrievalTask) runnable;
+            RetrievalGroup group = this.groups.get(task.group);
+            task.retriever.setSubmitTime(submitTime);
+            task.entry = new RetrievalEntry(task, priority, submitTime);
+            group.entries.add(task.entry);
 
-            task.retriever.setBeginTime(System.currentTimeMillis());
-            long limit = task.retriever.getStaleRequestLimit() >= 0
-                ? task.retriever.getStaleRequestLimit() : this.staleRequestLimit;
-            if (task.retriever.getBeginTime() - task.retriever.getSubmitTime() > limit)
+            // Discard the superseded entries once they outnumber the current ones.
+            if (group.entries.size() > 2 * group.numTasks + 16)
             {
-                // Task has been sitting on the queue too long
-                Logging.logger().finer(Logging.getMessage("BasicRetrievalService.CancellingTooOldRetrieval",
-                    task.getRetriever().getName()));
-                task.cancel(true);
-            }
+                ArrayList<RetrievalEntry> current = new ArrayList<RetrievalEntry>(group.numTasks);
+                for (RetrievalEntry entry : group.entries)
+                {
+                    if (entry.task.entry == entry)
+                        current.add(entry);
+                }
 
-            if (BasicRetrievalService.this.activeTasks.contains(task))
-            {
-                // Task is a duplicate
-                Logging.logger().finer(Logging.getMessage("BasicRetrievalService.CancellingDuplicateRetrieval",
-                    task.getRetriever().getName()));
-                task.cancel(true);
+                group.entries.clear();
+                group.entries.addAll(current);
             }
 
-            BasicRetrievalService.this.activeTasks.add(task);
-
-            thread.setName(RUNNING_THREAD_NAME_PREFIX + task.getRetriever().getName());
-            thread.setPriority(Thread.MIN_PRIORITY); // Subordinate thread priority to rendering
-            thread.setUncaughtExceptionHandler(BasicRetrievalService.this);
-
-            super.beforeExecute(thread, runnable);
+            return true;
         }
 
-        /**
-         * @param runnable  the <code>Retriever</code> running on the thread
-         * @param throwable an exception thrown during retrieval, will be null if no exception occurred
-         *
-         * @throws IllegalArgumentException if <code>runnable</code> is null
-         */
-        protected void afterExecute(Runnable runnable, Throwable throwable)
+        private synchronized void remove(RetrievalTask task)
         {
-            if (runnable == null)
-            {
-                String msg = Logging.getMessage("nullValue.RunnableIsNull");
-                Logging.logger().fine(msg);
-                throw new IllegalArgumentException(msg);
-            }
+            if (task.entry == null)
+                return;
 
-            super.afterExecute(runnable, throwable);
+            RetrievalGroup group = this.groups.get(task.group);
+            task.entry = null;
+            this.numTasks--;
+            if (--group.numTasks == 0)
+                this.removeGroup(group);
+        }
 
-            RetrievalTask task = (RetrievalTask) runnable;
-            BasicRetrievalService.this.activeTasks.remove(task);
-            task.retriever.setEndTime(System.currentTimeMillis());
+        private void removeGroup(RetrievalGroup group)
+        {
+            this.groups.remove(group.key);
+            this.readyGroups.remove(group);
+            group.entries.clear();
+        }
 
-            try
+        /** @return the highest priority task of the next group in turn, or null if no tasks are pending. */
+        private synchronized RetrievalTask next()
+        {
+            RetrievalGroup group;
+            while ((group = this.readyGroups.poll()) != null)
             {
-                if (throwable != null)
+                RetrievalEntry entry;
+                while ((entry = group.entries.poll()) != null)
                 {
-                    Logging.logger().log(Level.FINE,
-                        Logging.getMessage("BasicRetrievalService.ExceptionDuringRetrieval",
-                            task.getRetriever().getName()), throwable);
+                    if (entry.task.entry == entry)
+                        break;
                 }
 
-                task.get(); // Wait for task to finish, cancel or break
-            }
-            catch (java.util.concurrent.ExecutionException e)
-            {
-                String message = Logging.getMessage("BasicRetrievalService.ExecutionExceptionDuringRetrieval",
-                    task.getRetriever().getName());
-                if (e.getCause() instanceof SocketTimeoutException)
+                if (entry == null)
                 {
-                    Logging.logger().fine(message + " " + e.getCause().getLocalizedMessage());
-                }
-                else if (e.getCause() instanceof SSLHandshakeException)
-                {
-                    if (sslExceptionListener != null)
-                        sslExceptionListener.onException(e.getCause(), task.getRetriever().getName());
-                    else
-                        Logging.logger().fine(message + " " + e.getCause().getLocalizedMessage());
+                    this.groups.remove(group.key);
+                    continue;
                 }
+
+                entry.task.entry = null;
+                this.numTasks--;
+                if (--group.numTasks > 0)
+                    this.readyGroups.add(group); // the group's next task waits for the other groups
                 else
+                    this.removeGroup(group);
+
+                return entry.task;
+            }
+
+            return null;
+        }
+
+        /**
+         * Removes the pending tasks that have exceeded their stale request limit. Does nothing if the last removal was
+         * recent.
+         *
+         * @return the stale tasks, which the caller should cancel.
+         */
+        private synchronized List<RetrievalTask> takeStaleTasks(long now)
+        {
+            if (now - this.lastPurgeTime < STALE_REQUEST_PURGE_INTERVAL)
+                return Collections.emptyList();
+
+            this.lastPurgeTime = now;
+
+            ArrayList<RetrievalTask> staleTasks = new ArrayList<RetrievalTask>();
+            for (RetrievalGroup group : this.groups.values())
+            {
+                for (RetrievalEntry entry : group.entries)
                 {
-                    Logging.logger().log(Level.FINE, message, e);
+                    if (entry.task.entry == entry && isStale(entry.task, now))
+                        staleTasks.add(entry.task);
                 }
             }
-            catch (InterruptedException e)
+
+            for (RetrievalTask task : staleTasks)
             {
-                Logging.logger().log(Level.FINE, Logging.getMessage("BasicRetrievalService.RetrievalInterrupted",
-                    task.getRetriever().getName()), e);
+                this.remove(task);
             }
-            catch (java.util.concurrent.CancellationException e)
+
+            return staleTasks;
+        }
+
+        private synchronized List<RetrievalTask> getTasks()
+        {
+            ArrayList<RetrievalTask> list = new ArrayList<RetrievalTask>(this.numTasks);
+            for (RetrievalGroup group : this.groups.values())
             {
-                Logging.logger().fine(Logging.getMessage("BasicRetrievalService.RetrievalCancelled",
-                    task.getRetriever().getName()));
+                for (RetrievalEntry entry : group.entries)
+                {
+                    if (entry.task.entry == entry)
+                        list.add(entry.task);
+                }
             }
-            finally
+
+            return list;
+        }
+
+        private synchronized int size()
+        {
+            return this.numTasks;
+        }
+
+        private synchronized void clear()
+        {
+            for (RetrievalGroup group : this.groups.values())
             {
-                Thread.currentThread().setName(IDLE_THREAD_NAME_PREFIX);
+                for (RetrievalEntry entry : group.entries)
+                {
+                    entry.task.entry = null;
+                }
             }
+
+            this.groups.clear();
+            this.readyGroups.clear();
+            this.numTasks = 0;
+        }
+    }
+
+    protected SSLExceptionListener sslExceptionListener;
+
+    public SSLExceptionListener getSSLExceptionListener()
+    {
+        return sslExceptionListener;
+    }
+
+    public void setSSLExceptionListener(SSLExceptionListener sslExceptionListener)
+    {
+        this.sslExceptionListener = sslExceptionListener;
+    }
+
+    public void uncaughtException(Thread thread, Throwable throwable)
+    {
+        Logging.logger().fine(Logging.getMessage("BasicRetrievalService.UncaughtExceptionDuringRetrieval",
+            thread.getName()));
+    }
+
+    private class RetrievalExecutor extends ThreadPoolExecutor
+    {
+        private static final long THREAD_TIMEOUT = 2; // keep idle threads alive this many seconds
+
+        private RetrievalExecutor(int poolSize)
+        {
+            // The executor's queue holds one dispatcher per submitted task. The tasks themselves are held by the
+            // scheduler, which determines the order they run in.
+            super(poolSize, poolSize, THREAD_TIMEOUT, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory()
+                {
+                    public Thread newThread(Runnable runnable)
+                    {
+                        Thread thread = new Thread(runnable);
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        thread.setUncaughtExceptionHandler(BasicRetrievalService.this);
+                        return thread;
+                    }
+                });
         }
     }
 
@@ -300,12 +391,38 @@ public final class BasicRetrievalService extends WWObjectImpl
     {
         Integer poolSize = Configuration.getIntegerValue(AVKey.RETRIEVAL_POOL_SIZE, DEFAULT_POOL_SIZE);
         this.queueSize = Configuration.getIntegerValue(AVKey.RETRIEVAL_QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
+        this.staleRequestLimit = Configuration.getLongValue(AVKey.RETRIEVAL_QUEUE_STALE_REQUEST_LIMIT,
+            DEFAULT_STALE_REQUEST_LIMIT);
 
         // this.executor runs the retrievers, each in their own thread
-        this.executor = new RetrievalExecutor(poolSize, this.queueSize);
+        String threadMode = Configuration.getStringValue(AVKey.RETRIEVAL_THREAD_MODE, AVKey.THREAD_MODE_POOLED);
+        if (AVKey.THREAD_MODE_VIRTUAL.equals(threadMode))
+        {
+            if (!ThreadPerTaskExecutor.isVirtualThreadSupported())
+                Logging.logger().warning(Logging.getMessage("ThreadPerTaskExecutor.VirtualThreadsUnavailable"));
+
+            this.executor = new ThreadPerTaskExecutor(
+                Configuration.getIntegerValue(AVKey.RETRIEVAL_CONCURRENCY_LIMIT, DEFAULT_CONCURRENCY_LIMIT),
+                new LinkedBlockingQueue<Runnable>());
+        }
+        else
+        {
+            this.executor = new RetrievalExecutor(poolSize);
+        }
+
+        this.scheduler = new RetrievalScheduler();
+        this.tasks = new ConcurrentHashMap<RetrievalTask, RetrievalTask>();
+
+        // this.activeTasks holds the set of currently executing tasks (*not* those pending on the queue)
+        this.activeTasks = Collections.newSetFromMap(new ConcurrentHashMap<RetrievalTask, Boolean>());
 
-        // this.activeTasks holds the list of currently executing tasks (*not* those pending on the queue)
-        this.activeTasks = new ConcurrentLinkedQueue<RetrievalTask>();
+        this.dispatcher = new Runnable()
+        {
+            public void run()
+            {
+                dispatchNextTask();
+            }
+        };
     }
 
     public void shutdown(boolean immediately)
@@ -315,6 +432,8 @@ public final class BasicRetrievalService extends WWObjectImpl
         else
             this.executor.shutdown();
 
+        this.scheduler.clear();
+        this.tasks.clear();
         this.activeTasks.clear();
     }
 
@@ -345,14 +464,18 @@ public final class BasicRetrievalService extends WWObjectImpl
     }
 
     /**
+     * Requests that a retriever be run. If an equivalent retriever is already pending, its priority is changed to the
+     * specified priority and its submit time is reset, and no new retrieval is queued.
+     *
      * @param retriever the retriever to run
      * @param priority  the secondary priority of the retriever, or negative if it is to be the primary priority
      *
-     * @return a future object that can be used to query the request status of cancel the request.
+     * @return a future object that can be used to query the request status of cancel the request, or null if the
+     *         retrieval is already pending or running.
      *
      * @throws IllegalArgumentException if <code>retriever</code> is null or has no name
      */
-    public synchronized RetrievalFuture runRetriever(Retriever retriever, double priority)
+    public RetrievalFuture runRetriever(Retriever retriever, double priority)
     {
         if (retriever == null)
         {
@@ -373,20 +496,181 @@ public final class BasicRetrievalService extends WWObjectImpl
             Logging.logger().finer(Logging.getMessage("BasicRetrievalService.ResourceRejected", retriever.getName()));
         }
 
-        RetrievalTask task = new RetrievalTask(retriever, priority);
-        retriever.setSubmitTime(System.currentTimeMillis());
+        long now = System.currentTimeMillis();
+        RetrievalTask task = new RetrievalTask(retriever, this.getGroup(retriever));
+        task.queueTime = now;
+        retriever.setSubmitTime(now);
 
-        // Do not queue duplicates.
-        if (this.activeTasks.contains(task) || this.executor.getQueue().contains(task))
+        // Do not queue duplicates, but let a repeated request keep the pending one current.
+        RetrievalTask existing = this.tasks.putIfAbsent(task, task);
+        if (existing != null)
+        {
+            this.numDuplicateRequests.incrementAndGet();
+            this.scheduler.reprioritize(existing, priority, now);
             return null;
+        }
+
+        this.scheduler.add(task, priority);
 
-        this.executor.execute(task);
+        try
+        {
+            this.executor.execute(this.dispatcher);
+        }
+        catch (RejectedExecutionException e)
+        {
+            // The service has been shut down.
+            Logging.logger().finer(Logging.getMessage("BasicRetrievalService.ResourceRejected", retriever.getName()));
+            task.cancel(false);
+            return null;
+        }
 
         return task;
     }
 
     /**
-     * @param poolSize the number of threads in the thread pool
+     * Determines the group a retriever's retrieval is scheduled in. Groups take turns running their retrievals.
+     *
+     * @param retriever the retriever.
+     *
+     * @return the layer or elevation model the retriever was created by, if it identifies it, otherwise the host it
+     *         retrieves from.
+     */
+    private Object getGroup(Retriever retriever)
+    {
+        Object group = retriever.getValue(AVKey.LAYER);
+
+        if (group == null)
+            group = retriever.getValue(AVKey.ELEVATION_MODEL);
+
+        if (group == null && retriever instanceof URLRetriever && ((URLRetriever) retriever).getUrl() != null)
+            group = ((URLRetriever) retriever).getUrl().getHost();
+
+        return group != null ? group : "";
+    }
+
+    private boolean isStale(RetrievalTask task, long now)
+    {
+        long limit = task.retriever.getStaleRequestLimit() >= 0
+            ? task.retriever.getStaleRequestLimit() : this.staleRequestLimit;
+
+        return now - task.retriever.getSubmitTime() > limit;
+    }
+
+    private void taskDone(RetrievalTask task)
+    {
+        this.tasks.remove(task, task);
+        this.scheduler.remove(task); // the task may have been cancelled while pending
+
+        if (task.isCancelled())
+            this.numRetrievalsCancelled.incrementAndGet();
+    }
+
+    /** Runs the next task the scheduler provides on the current thread, cancelling any stale tasks it encounters. */
+    private void dispatchNextTask()
+    {
+        for (RetrievalTask task : this.scheduler.takeStaleTasks(System.currentTimeMillis()))
+        {
+            this.cancelStaleTask(task);
+        }
+
+        RetrievalTask task;
+        while ((task = this.scheduler.next()) != null)
+        {
+            if (this.isStale(task, System.currentTimeMillis()))
+            {
+                // Task has been sitting on the queue too long
+                this.cancelStaleTask(task);
+                continue;
+            }
+
+            this.beforeExecute(Thread.currentThread(), task);
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                this.afterExecute(task);
+            }
+
+            return;
+        }
+    }
+
+    private void cancelStaleTask(RetrievalTask task)
+    {
+        Logging.logger().finer(Logging.getMessage("BasicRetrievalService.CancellingTooOldRetrieval",
+            task.getRetriever().getName()));
+        task.cancel(true);
+    }
+
+    /**
+     * @param thread the thread the task is running on
+     * @param task   the task running on the thread
+     */
+    private void beforeExecute(Thread thread, RetrievalTask task)
+    {
+        this.activeTasks.add(task);
+
+        task.retriever.setBeginTime(System.currentTimeMillis());
+        this.numRetrievalsStarted.incrementAndGet();
+        this.totalQueueTime.addAndGet(task.retriever.getBeginTime() - task.queueTime);
+
+        thread.setName(RUNNING_THREAD_NAME_PREFIX + task.getRetriever().getName());
+        thread.setPriority(Thread.MIN_PRIORITY); // Subordinate thread priority to rendering
+        thread.setUncaughtExceptionHandler(BasicRetrievalService.this);
+    }
+
+    /** @param task the task that ran on the current thread */
+    private void afterExecute(RetrievalTask task)
+    {
+        this.activeTasks.remove(task);
+        task.retriever.setEndTime(System.currentTimeMillis());
+        this.totalRetrievalTime.addAndGet(task.retriever.getEndTime() - task.retriever.getBeginTime());
+
+        try
+        {
+            task.get(); // Wait for task to finish, cancel or break
+        }
+        catch (java.util.concurrent.ExecutionException e)
+        {
+            String message = Logging.getMessage("BasicRetrievalService.ExecutionExceptionDuringRetrieval",
+                task.getRetriever().getName());
+            if (e.getCause() instanceof SocketTimeoutException)
+            {
+                Logging.logger().fine(message + " " + e.getCause().getLocalizedMessage());
+            }
+            else if (e.getCause() instanceof SSLHandshakeException)
+            {
+                if (sslExceptionListener != null)
+                    sslExceptionListener.onException(e.getCause(), task.getRetriever().getName());
+                else
+                    Logging.logger().fine(message + " " + e.getCause().getLocalizedMessage());
+            }
+            else
+            {
+                Logging.logger().log(Level.FINE, message, e);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Logging.logger().log(Level.FINE, Logging.getMessage("BasicRetrievalService.RetrievalInterrupted",
+                task.getRetriever().getName()), e);
+        }
+        catch (java.util.concurrent.CancellationException e)
+        {
+            Logging.logger().fine(Logging.getMessage("BasicRetrievalService.RetrievalCancelled",
+                task.getRetriever().getName()));
+        }
+        finally
+        {
+            Thread.currentThread().setName(IDLE_THREAD_NAME_PREFIX);
+        }
+    }
+
+    /**
+     * @param poolSize the number of threads in the thread pool, or the concurrency limit if retrievals run on virtual
+     *                 threads
      *
      * @throws IllegalArgumentException if <code>poolSize</code> is non-positive
      */
@@ -399,13 +683,33 @@ public final class BasicRetrievalService extends WWObjectImpl
             throw new IllegalArgumentException(message);
         }
 
-        this.executor.setCorePoolSize(poolSize);
-        this.executor.setMaximumPoolSize(poolSize);
+        if (this.executor instanceof ThreadPerTaskExecutor)
+        {
+            ((ThreadPerTaskExecutor) this.executor).setMaxConcurrency(poolSize);
+        }
+        else
+        {
+            // Grow the maximum first, since the core size may not exceed it.
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) this.executor;
+            if (poolSize > pool.getMaximumPoolSize())
+            {
+                pool.setMaximumPoolSize(poolSize);
+                pool.setCorePoolSize(poolSize);
+            }
+            else
+            {
+                pool.setCorePoolSize(poolSize);
+                pool.setMaximumPoolSize(poolSize);
+            }
+        }
     }
 
     public int getRetrieverPoolSize()
     {
-        return this.executor.getCorePoolSize();
+        if (this.executor instanceof ThreadPerTaskExecutor)
+            return ((ThreadPerTaskExecutor) this.executor).getMaxConcurrency();
+
+        return ((ThreadPoolExecutor) this.executor).getCorePoolSize();
     }
 
     private boolean hasRetrievers()
@@ -422,19 +726,79 @@ public final class BasicRetrievalService extends WWObjectImpl
 
     public boolean hasActiveTasks()
     {
+        // Virtual threads are not listed by Thread.enumerate.
+        if (this.executor instanceof ThreadPerTaskExecutor)
+            return !this.activeTasks.isEmpty();
+
         return this.hasRetrievers();
     }
 
     public boolean isAvailable()
     {
-        return this.executor.getQueue().size() < this.queueSize;
+        return this.scheduler.size() < this.queueSize;
 //            && !WorldWind.getNetworkStatus().isNetworkUnavailable();
     }
 
     public int getNumRetrieversPending()
     {
         // Could use same method to determine active tasks as hasRetrievers() above, but this method only advisory.
-        return this.activeTasks.size() + this.executor.getQueue().size();
+        return this.activeTasks.size() + this.scheduler.size();
+    }
+
+    /** @return the number of retrievals waiting for a thread. */
+    public int getNumRetrieversQueued()
+    {
+        return this.scheduler.size();
+    }
+
+    /** @return the number of retrievals currently running. */
+    public int getNumRetrieversActive()
+    {
+        return this.activeTasks.size();
+    }
+
+    /** @return the number of retrievals that have been started since the service was created. */
+    public long getNumRetrievalsStarted()
+    {
+        return this.numRetrievalsStarted.get();
+    }
+
+    /**
+     * @return the number of retrievals cancelled since the service was created, whether by the requester or because
+     *         they became stale.
+     */
+    public long getNumRetrievalsCancelled()
+    {
+        return this.numRetrievalsCancelled.get();
+    }
+
+    /**
+     * @return the number of requests for retrievals that were already pending or running, which updated the pending
+     *         retrieval rather than queuing another.
+     */
+    public long getNumDuplicateRequests()
+    {
+        return this.numDuplicateRequests.get();
+    }
+
+    /**
+     * @return the average number of milliseconds between a retrieval's first request and its start, or 0 if no
+     *         retrievals have started.
+     */
+    public double getAverageQueueTime()
+    {
+        long count = this.numRetrievalsStarted.get();
+        return count > 0 ? (double) this.totalQueueTime.get() / count : 0;
+    }
+
+    /**
+     * @return the average number of milliseconds a retrieval runs, or 0 if no retrievals have started. Retrievals that
+     *         are running are not included.
+     */
+    public double getAverageRetrievalTime()
+    {
+        long count = this.numRetrievalsStarted.get() - this.activeTasks.size();
+        return count > 0 ? (double) this.totalRetrievalTime.get() / count : 0;
     }
 
     /**
@@ -452,8 +816,8 @@ public final class BasicRetrievalService extends WWObjectImpl
             Logging.logger().fine(msg);
             throw new IllegalArgumentException(msg);
         }
-        RetrievalTask task = new RetrievalTask(retriever, 0d);
-        return (this.activeTasks.contains(task) || this.executor.getQueue().contains(task));
+        RetrievalTask task = new RetrievalTask(retriever, null);
+        return this.tasks.containsKey(task);
     }
 
     public double getProgress()
@@ -484,11 +848,8 @@ public final class BasicRetrievalService extends WWObjectImpl
             }
         }
 
-        for (Runnable runnable : this.executor.getQueue())
+        for (RetrievalTask task : this.scheduler.getTasks())
         {
-            RetrievalTask task =
-                (RetrievalTask) runnable;
-
             Retriever retriever = task.getRetriever();
             try
             {
@@ -5,18 +5,27 @@
  */
 package gov.nasa.worldwind.retrieve;
 
-import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.*;
 
+import java.io.*;
 import java.net.*;
 import java.nio.ByteBuffer;
 import java.util.logging.Level;
 
 /**
+ * Retrieves resources over HTTP and HTTPS. Connections are reused for subsequent requests to the same host through the
+ * Java HTTP client's keep-alive cache: each response body, including the body of an error response, is read fully and
+ * closed, and the number of concurrent connections to each host is limited by the shared {@link
+ * HostConnectionLimiter}.
+ *
  * @author Tom Gaskins
  * @version $Id$
  */
 public class HTTPRetriever extends URLRetriever
 {
+    /** The largest error response body read to allow the connection to be reused. Larger bodies close it. */
+    protected static final int MAX_ERROR_BODY_LENGTH = 65536;
+
     private int responseCode;
     private String responseMessage;
 
@@ -44,18 +53,87 @@ public class HTTPRetriever extends URLRetriever
             throw new IllegalArgumentException(msg);
         }
 
-        HttpURLConnection htpc = (HttpURLConnection) connection;
-        this.responseCode = htpc.getResponseCode();
-        this.responseMessage = htpc.getResponseMessage();
-        String contentType = connection.getContentType();
+        HostConnectionLimiter limiter = this.getHostConnectionLimiter();
+        try
+        {
+            limiter.acquire(this.getUrl());
+        }
+        catch (InterruptedException e)
+        {
+            // Restore the interrupt so that the caller sees this retrieval as interrupted.
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        try
+        {
+            HttpURLConnection htpc = (HttpURLConnection) connection;
+            this.responseCode = htpc.getResponseCode();
+            this.responseMessage = htpc.getResponseMessage();
+            String contentType = connection.getContentType();
+
+            Logging.logger().log(Level.FINE, "HTTPRetriever.ResponseInfo", new Object[] {this.responseCode,
+                connection.getContentLength(), contentType != null ? contentType : "content type not returned",
+                connection.getURL()});
 
-        Logging.logger().log(Level.FINE, "HTTPRetriever.ResponseInfo", new Object[] {this.responseCode,
-            connection.getContentLength(), contentType != null ? contentType : "content type not returned",
-            connection.getURL()});
+            if (this.responseCode == HttpURLConnection.HTTP_OK)
+                return super.doRead(connection);
 
-        if (this.responseCode == HttpURLConnection.HTTP_OK)
-            return super.doRead(connection);
+            this.consumeErrorStream(htpc);
+            return null;
+        }
+        finally
+        {
+            limiter.release(this.getUrl());
+        }
+    }
 
-        return null;
+    /**
+     * Returns the limiter that bounds the number of concurrent connections to this retriever's host.
+     *
+     * @return the connection limiter.
+     */
+    protected HostConnectionLimiter getHostConnectionLimiter()
+    {
+        return HostConnectionLimiter.getInstance();
+    }
+
+    /**
+     * Reads and discards the body of an error response. The Java HTTP client returns a connection to its keep-alive
+     * cache only after the response body has been read, so this allows the connection to be reused after a missing
+     * tile or other error. Bodies longer than {@link #MAX_ERROR_BODY_LENGTH} are abandoned and their connection
+     * closed.
+     *
+     * @param connection the connection to consume.
+     */
+    protected void consumeErrorStream(HttpURLConnection connection)
+    {
+        InputStream errorStream = connection.getErrorStream();
+        if (errorStream == null)
+            return;
+
+        try
+        {
+            byte[] buffer = new byte[4096];
+            int total = 0;
+            int count;
+            while ((count = errorStream.read(buffer)) >= 0)
+            {
+                total += count;
+                if (total > MAX_ERROR_BODY_LENGTH)
+                {
+                    connection.disconnect();
+                    break;
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            // The connection is unusable and is discarded by the HTTP client.
+        }
+        finally
+        {
+            WWIO.closeStream(errorStream, connection.getURL().toString());
+        }
     }
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.util.Logging;
+
+import java.net.URL;
+import java.util.concurrent.*;
+
+/**
+ * Limits the number of connections open concurrently to each host. {@link HTTPRetriever} holds a permit from the shared
+ * limiter while it requests and reads its resource, so that no more connections are opened to a host than the Java
+ * HTTP client keeps alive for reuse. Connections beyond that number are closed after one request, and every request
+ * that opens a new one pays for TCP and TLS setup.
+ * <p/>
+ * The shared limiter's limit is specified by the configuration property {@link AVKey#RETRIEVAL_HOST_CONNECTION_LIMIT}.
+ * The Java HTTP client keeps up to five idle connections per host unless the <code>http.maxConnections</code> system
+ * property specifies otherwise, so a limit greater than five should be accompanied by that property.
+ *
+ * @version $Id$
+ */
+public class HostConnectionLimiter
+{
+    /** The default number of concurrent connections to each host. */
+    protected static final int DEFAULT_LIMIT = 5;
+
+    protected static HostConnectionLimiter instance;
+
+    protected final int limit;
+    protected final ConcurrentHashMap<String, Semaphore> semaphores = new ConcurrentHashMap<String, Semaphore>();
+
+    /**
+     * Returns the limiter shared by the retrievers, creating it if necessary.
+     *
+     * @return the shared limiter.
+     */
+    public static synchronized HostConnectionLimiter getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new HostConnectionLimiter(
+                Configuration.getIntegerValue(AVKey.RETRIEVAL_HOST_CONNECTION_LIMIT, DEFAULT_LIMIT));
+        }
+
+        return instance;
+    }
+
+    /**
+     * Constructs a limiter.
+     *
+     * @param limit the maximum number of concurrent connections to each host. Zero or less indicates no limit.
+     */
+    public HostConnectionLimiter(int limit)
+    {
+        this.limit = limit;
+    }
+
+    /** @return the maximum number of concurrent connections to each host, or zero or less if there's no limit. */
+    public int getLimit()
+    {
+        return this.limit;
+    }
+
+    /**
+     * Waits until a connection to the host of the specified URL may be opened.
+     *
+     * @param url the URL to connect to.
+     *
+     * @throws IllegalArgumentException if the URL is null.
+     * @throws InterruptedException     if the calling thread is interrupted while waiting.
+     */
+    public void acquire(URL url) throws InterruptedException
+    {
+        Semaphore semaphore = this.getSemaphore(url);
+        if (semaphore != null)
+            semaphore.acquire();
+    }
+
+    /**
+     * Indicates that a connection acquired by {@link #acquire(java.net.URL)} has been released.
+     *
+     * @param url the URL that was connected to.
+     *
+     * @throws IllegalArgumentException if the URL is null.
+     */
+    public void release(URL url)
+    {
+        Semaphore semaphore = this.getSemaphore(url);
+        if (semaphore != null)
+            semaphore.release();
+    }
+
+    /**
+     * Returns the number of connections currently acquired for the host of the specified URL.
+     *
+     * @param url a URL on the host.
+     *
+     * @return the number of connections acquired for the host.
+     *
+     * @throws IllegalArgumentException if the URL is null.
+     */
+    public int getConnectionCount(URL url)
+    {
+        Semaphore semaphore = this.getSemaphore(url);
+        return semaphore != null ? this.limit - semaphore.availablePermits() : 0;
+    }
+
+    protected Semaphore getSemaphore(URL url)
+    {
+        if (url == null)
+        {
+            String message = Logging.getMessage("nullValue.URLIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (this.limit <= 0)
+            return null;
+
+        String key = this.makeHostKey(url);
+        Semaphore semaphore = this.semaphores.get(key);
+        if (semaphore == null)
+        {
+            Semaphore newSemaphore = new Semaphore(this.limit);
+            semaphore = this.semaphores.putIfAbsent(key, newSemaphore);
+            if (semaphore == null)
+                semaphore = newSemaphore;
+        }
+
+        return semaphore;
+    }
+
+    protected String makeHostKey(URL url)
+    {
+        int port = url.getPort() >= 0 ? url.getPort() : url.getDefaultPort();
+        return url.getProtocol() + "://" + url.getHost().toLowerCase() + ":" + port;
+    }
+}
@@ -15,7 +15,7 @@ import gov.nasa.worldwind.util.*;
 import org.w3c.dom.Element;
 
 import javax.xml.xpath.XPath;
-import java.util.List;
+import java.util.*;
 
 /**
  * @author tag
@@ -151,6 +151,52 @@ abstract public class AbstractElevationModel extends WWObjectImpl implements Ele
         return new double[] {this.getElevations(sector, latLons, targetResolutions[0], elevations)};
     }
 
+    public double getElevations(Sector sector, double[] latLons, boolean radians, double targetResolution,
+        double[] buffer)
+    {
+        return this.getElevations(sector, this.makeLatLonList(latLons, radians), targetResolution, buffer);
+    }
+
+    public double getUnmappedElevations(Sector sector, double[] latLons, boolean radians, double targetResolution,
+        double[] buffer)
+    {
+        return this.getUnmappedElevations(sector, this.makeLatLonList(latLons, radians), targetResolution, buffer);
+    }
+
+    /**
+     * Creates a list of locations from packed latitude and longitude values. Used by the default implementations of
+     * the methods accepting packed locations, which subclasses override to avoid creating the list.
+     *
+     * @param latLons the locations, as consecutive latitude and longitude pairs. Pairs containing NaN become null.
+     * @param radians true if the latitudes and longitudes are in radians, false if they're in degrees.
+     *
+     * @return the list of locations.
+     *
+     * @throws IllegalArgumentException if the array of latitudes and longitudes is null.
+     */
+    protected List<LatLon> makeLatLonList(double[] latLons, boolean radians)
+    {
+        if (latLons == null)
+        {
+            String msg = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        ArrayList<LatLon> list = new ArrayList<LatLon>(latLons.length / 2);
+        for (int i = 0; i + 1 < latLons.length; i += 2)
+        {
+            if (Double.isNaN(latLons[i]) || Double.isNaN(latLons[i + 1]))
+                list.add(null);
+            else if (radians)
+                list.add(LatLon.fromRadians(latLons[i], latLons[i + 1]));
+            else
+                list.add(LatLon.fromDegrees(latLons[i], latLons[i + 1]));
+        }
+
+        return list;
+    }
+
     public double[] getBestResolutions(Sector sector)
     {
         return new double[] {this.getBestResolution(sector)};
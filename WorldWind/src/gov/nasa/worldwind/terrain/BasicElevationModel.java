@@ -65,7 +65,20 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
     protected int extremesLevel = -1;
     protected boolean extremesCachingEnabled = true;
     protected BufferWrapper extremes = null;
+    protected String extremesFileName;
+    protected long extremesChecksum; // the CRC-32 of the extreme elevations file, identifying the pyramid built over it
+    protected ElevationExtremesPyramid extremesPyramid;
+    // Guards the extremes pyramid, which is built and written under its own lock so tile reads aren't blocked.
+    protected final Object extremesPyramidLock = new Object();
     protected MemoryCache extremesLookupCache;
+    protected SlabAllocator elevationSlabs;
+    /** The process-wide allocators of native memory for cached elevations, keyed by slot size. */
+    protected static final Map<Integer, SlabAllocator> sharedElevationSlabs = new HashMap<Integer, SlabAllocator>();
+    protected CompressedTileCache compressedTileCache;
+    protected java.util.List<ElevationRequest> elevationRequests =
+        new java.util.concurrent.CopyOnWriteArrayList<ElevationRequest>();
+    /** The tiles whose prefetch tasks have not yet run. A prefetch task whose tile is not here has been cancelled. */
+    protected Set<TileKey> pendingPrefetches = Collections.synchronizedSet(new HashSet<TileKey>());
     // Model resource properties.
     protected static final int RESOURCE_ID_OGC_CAPABILITIES = 1;
 
@@ -133,6 +146,12 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 
         this.memoryCache = this.createMemoryCache(ElevationTile.class.getName());
 
+        b = (Boolean) params.getValue(AVKey.OFF_HEAP_ELEVATION_CACHE_ENABLED);
+        if (b != null && b)
+            this.elevationSlabs = this.createElevationSlabs();
+
+        this.compressedTileCache = CompressedTileCache.getSharedCache();
+
         this.setValue(AVKey.CONSTRUCTION_PARAMETERS, params.copy());
 
         // If any resources should be retrieved for this ElevationModel, start a task to retrieve those resources, and
@@ -223,13 +242,63 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         else
         {
             long size = Configuration.getLongValue(AVKey.ELEVATION_TILE_CACHE_SIZE, 20000000L);
-            MemoryCache mc = new BasicMemoryCache((long) (0.85 * size), size);
+            MemoryCache mc = WorldWind.getMemoryCacheSet().addCache(cacheName, (long) (0.85 * size), size);
             mc.setName("Elevation Tiles");
-            WorldWind.getMemoryCacheSet().addCache(cacheName, mc);
+            mc.addCacheListener(new SlotReleaser());
             return mc;
         }
     }
 
+    /**
+     * Returns the allocator of native memory slots used to hold the elevations of cached tiles when {@link
+     * AVKey#OFF_HEAP_ELEVATION_CACHE_ENABLED} is true. Each slot holds one tile of this model's elevation data type.
+     * Slabs are never freed, so models whose tiles have the same slot size share one process-wide allocator, just as
+     * they share the elevation tile memory cache. The allocator's capacity is the elevation tile cache size, so the
+     * native memory used matches the memory cache's accounting.
+     *
+     * @return the shared allocator for this model's slot size.
+     */
+    protected SlabAllocator createElevationSlabs()
+    {
+        Level level = this.levels.getFirstLevel();
+        int slotSize = level.getTileWidth() * level.getTileHeight() * WWBufferUtil.sizeOfPrimitiveType(
+            this.elevationDataType);
+
+        synchronized (sharedElevationSlabs)
+        {
+            SlabAllocator allocator = sharedElevationSlabs.get(slotSize);
+            if (allocator == null)
+            {
+                int slotsPerSlab = Math.max(1, Math.min(64, Integer.MAX_VALUE / slotSize));
+                long capacity = Configuration.getLongValue(AVKey.ELEVATION_TILE_CACHE_SIZE, 20000000L);
+                allocator = new SlabAllocator(slotSize, slotsPerSlab, capacity);
+                sharedElevationSlabs.put(slotSize, allocator);
+            }
+
+            return allocator;
+        }
+    }
+
+    /**
+     * Releases the memory cache's reference to a tile's native memory slot when the tile leaves the memory cache. The
+     * slot is reused once threads still reading the tile's elevations have released their references too.
+     */
+    protected static class SlotReleaser implements MemoryCache.CacheListener
+    {
+        public void entryRemoved(Object key, Object clientObject)
+        {
+            if (clientObject instanceof ElevationTile)
+                ((ElevationTile) clientObject).releaseSlot();
+        }
+
+        public void removalException(Throwable exception, Object key, Object clientObject)
+        {
+            String message = Logging.getMessage("BasicMemoryCache.ExceptionFromRemovalListener",
+                exception.getMessage());
+            Logging.logger().log(java.util.logging.Level.INFO, message);
+        }
+    }
+
     public LevelSet getLevels()
     {
         return this.levels;
@@ -404,15 +473,123 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         WorldWind.getTaskService().addTask(request);
     }
 
+    /**
+     * Requests a tile ahead of its need, such as one the view is predicted to see. The tile is loaded from the file
+     * store if it's there, otherwise it's retrieved at the specified priority. Requests for tiles that become visible
+     * while a prefetch of them is pending raise the pending retrieval to the highest priority.
+     *
+     * @param key      the key of the tile to request.
+     * @param priority the tile's retrieval priority, greater than zero. Lower values are retrieved first.
+     *
+     * @return true if the tile was requested, false if it's already in memory, is known to be absent, is already
+     *         requested, or the task service has no room for the request.
+     *
+     * @throws IllegalArgumentException if the key is null or the priority is not greater than zero.
+     */
+    public boolean prefetchTile(TileKey key, double priority)
+    {
+        if (key == null)
+        {
+            String msg = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (!(priority > 0))
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange", priority);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (this.areElevationsInMemory(key) || this.getLevels().isResourceAbsent(key))
+            return false;
+
+        if (WorldWind.getTaskService().isFull())
+            return false;
+
+        RequestTask task = new RequestTask(key, this, priority);
+        if (WorldWind.getTaskService().contains(task))
+            return false;
+
+        this.pendingPrefetches.add(key);
+        WorldWind.getTaskService().addTask(task);
+        return true;
+    }
+
+    /**
+     * Cancels the prefetches requested by {@link #prefetchTile(TileKey, double)} whose tasks have not yet run, such as
+     * those for tiles the view is no longer heading toward. Retrievals already in progress are not affected.
+     */
+    public void cancelPrefetches()
+    {
+        this.pendingPrefetches.clear();
+    }
+
+    /**
+     * Computes the keys of the tiles the model would draw elevations from for a sector at a target resolution.
+     *
+     * @param sector           the sector of interest.
+     * @param targetResolution the desired horizontal resolution, in radians of latitude.
+     *
+     * @return the keys of the tiles at the target resolution's level that intersect the sector. The list is empty if
+     *         the sector does not intersect the model's coverage.
+     *
+     * @throws IllegalArgumentException if the sector is null.
+     */
+    public List<TileKey> computeTileKeys(Sector sector, double targetResolution)
+    {
+        if (sector == null)
+        {
+            String msg = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        ArrayList<TileKey> keys = new ArrayList<TileKey>();
+
+        Sector intersection = this.getLevels().getSector().intersection(sector);
+        if (intersection == null)
+            return keys;
+
+        Level level = this.getTargetLevel(intersection, targetResolution);
+        if (level == null)
+            return keys;
+
+        LatLon delta = level.getTileDelta();
+        LatLon origin = this.getLevels().getTileOrigin();
+        int nwRow = Tile.computeRow(delta.getLatitude(), intersection.getMaxLatitude(), origin.getLatitude());
+        int nwCol = Tile.computeColumn(delta.getLongitude(), intersection.getMinLongitude(), origin.getLongitude());
+        int seRow = Tile.computeRow(delta.getLatitude(), intersection.getMinLatitude(), origin.getLatitude());
+        int seCol = Tile.computeColumn(delta.getLongitude(), intersection.getMaxLongitude(), origin.getLongitude());
+
+        for (int row = seRow; row <= nwRow; row++)
+        {
+            for (int col = nwCol; col <= seCol; col++)
+            {
+                keys.add(new TileKey(level.getLevelNumber(), row, col, level.getCacheName()));
+            }
+        }
+
+        return keys;
+    }
+
     protected static class RequestTask implements Runnable
     {
         protected final BasicElevationModel elevationModel;
         protected final TileKey tileKey;
+        protected final double priority; // zero for tiles needed now, otherwise the priority of a prefetch
 
         protected RequestTask(TileKey tileKey, BasicElevationModel elevationModel)
+        {
+            this(tileKey, elevationModel, 0);
+        }
+
+        protected RequestTask(TileKey tileKey, BasicElevationModel elevationModel, double priority)
         {
             this.elevationModel = elevationModel;
             this.tileKey = tileKey;
+            this.priority = priority;
         }
 
         public final void run()
@@ -420,6 +597,9 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
             if (Thread.currentThread().isInterrupted())
                 return; // the task was cancelled because it's a duplicate or for some other reason
 
+            if (this.priority > 0 && !this.elevationModel.pendingPrefetches.remove(this.tileKey))
+                return; // the prefetch was cancelled
+
             try
             {
                 // check to ensure load is still needed
@@ -427,6 +607,8 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
                     return;
 
                 ElevationTile tile = this.elevationModel.createTile(this.tileKey);
+                if (this.priority > 0)
+                    tile.setPriority(this.priority);
                 final URL url = this.elevationModel.getDataFileStore().findFile(tile.getPath(), false);
                 if (url != null && !this.elevationModel.isFileExpired(tile, url,
                     this.elevationModel.getDataFileStore()))
@@ -434,13 +616,17 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
                     if (this.elevationModel.loadElevations(tile, url))
                     {
                         this.elevationModel.levels.unmarkResourceAbsent(tile);
+                        this.elevationModel.checkElevationRequests();
                         this.elevationModel.firePropertyChange(AVKey.ELEVATION_MODEL, null, this);
                         return;
                     }
                     else
                     {
-                        // Assume that something's wrong with the file and delete it.
+                        // Assume that something's wrong with the file and delete it, along with any copy of its
+                        // contents in the compressed tile cache.
                         this.elevationModel.getDataFileStore().removeFile(url);
+                        if (this.elevationModel.compressedTileCache != null)
+                            this.elevationModel.compressedTileCache.remove(url.toExternalForm());
                         this.elevationModel.levels.markResourceAbsent(tile);
                         String message = Logging.getMessage("generic.DeletedCorruptDataFile", url);
                         Logging.logger().info(message);
@@ -491,6 +677,8 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 
         // The file has expired. Delete it.
         fileStore.removeFile(fileURL);
+        if (this.compressedTileCache != null)
+            this.compressedTileCache.remove(fileURL.toExternalForm());
         String message = Logging.getMessage("generic.DataFileExpired", fileURL);
         Logging.logger().fine(message);
         return true;
@@ -504,6 +692,10 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         if (elevations == null || elevations.length() == 0)
             return false;
 
+        // Level 0 tiles are never evicted, so they stay on the heap rather than hold a slot indefinitely.
+        if (this.elevationSlabs != null && tile.getLevelNumber() != 0)
+            elevations = this.copyElevationsToSlab(tile, elevations);
+
         tile.setElevations(elevations, this);
         this.addTileToCache(tile, elevations);
 
@@ -515,8 +707,37 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         // Level 0 tiles are held in the model itself; other levels are placed in the memory cache.
         if (tile.getLevelNumber() == 0)
             this.levelZeroTiles.put(tile.getTileKey(), tile);
-        else
-            this.getMemoryCache().add(tile.getTileKey(), tile, elevations.getSizeInBytes());
+        else if (!this.getMemoryCache().add(tile.getTileKey(), tile, elevations.getSizeInBytes()))
+            tile.releaseSlot(); // the cache won't release the slot of a tile it didn't accept
+    }
+
+    /**
+     * Copies a tile's elevations into a native memory slot and returns a view of the slot. The tile holds a reference
+     * to the slot until it is removed from the memory cache. If the elevations do not fit in a slot, or no slot is
+     * available, this returns the elevations unchanged.
+     *
+     * @param tile       the tile the elevations belong to.
+     * @param elevations the elevations to copy.
+     *
+     * @return a view of the slot containing the elevations, or the specified elevations if they were not copied.
+     */
+    protected BufferWrapper copyElevationsToSlab(ElevationTile tile, BufferWrapper elevations)
+    {
+        String dataType = WWBufferUtil.getPrimitiveType(elevations);
+        if (dataType == null || elevations.getSizeInBytes() > this.elevationSlabs.getSlotSize())
+            return elevations;
+
+        SlabAllocator.Slot slot = this.elevationSlabs.allocate();
+        if (slot == null)
+            return elevations;
+
+        ByteBuffer buffer = slot.getBuffer();
+        buffer.limit((int) elevations.getSizeInBytes());
+        BufferWrapper slabElevations = BufferWrapper.wrap(buffer, dataType, null);
+        slabElevations.putSubBuffer(0, elevations);
+        tile.slot = slot;
+
+        return slabElevations;
     }
 
     protected boolean areElevationsInMemory(TileKey key)
@@ -546,6 +767,8 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         {
             if (url.getPath().endsWith("tif"))
                 return this.makeTiffElevations(url);
+            else if (url.getPath().endsWith(QuantizedElevationCodec.SUFFIX))
+                return this.makeQuantizedElevations(url);
             else
                 return this.makeBilElevations(url);
         }
@@ -559,10 +782,18 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 
     protected BufferWrapper makeBilElevations(URL url) throws IOException
     {
-        ByteBuffer byteBuffer;
-        synchronized (this.fileLock)
+        // Look in the compressed tile cache before reading the file. BIL data is raw samples, so it's deflated there.
+        ByteBuffer byteBuffer = this.compressedTileCache != null ? this.compressedTileCache.get(url.toExternalForm())
+            : null;
+        if (byteBuffer == null)
         {
-            byteBuffer = WWIO.readURLContentToBuffer(url);
+            synchronized (this.fileLock)
+            {
+                byteBuffer = WWIO.readURLContentToBuffer(url);
+            }
+
+            if (byteBuffer != null && this.compressedTileCache != null)
+                this.compressedTileCache.put(url.toExternalForm(), byteBuffer, true);
         }
 
         // Setup parameters to instruct BufferWrapper on how to interpret the ByteBuffer.
@@ -572,6 +803,37 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         return BufferWrapper.wrap(byteBuffer, bufferParams);
     }
 
+    protected BufferWrapper makeQuantizedElevations(URL url) throws IOException
+    {
+        // Look in the compressed tile cache before reading the file. Quantized elevations are already compressed, so
+        // they're held there as is.
+        ByteBuffer byteBuffer = this.compressedTileCache != null ? this.compressedTileCache.get(url.toExternalForm())
+            : null;
+        if (byteBuffer == null)
+        {
+            synchronized (this.fileLock)
+            {
+                byteBuffer = WWIO.readURLContentToBuffer(url);
+            }
+
+            if (byteBuffer != null && this.compressedTileCache != null)
+                this.compressedTileCache.put(url.toExternalForm(), byteBuffer, false);
+        }
+
+        if (byteBuffer == null)
+            return null;
+
+        try
+        {
+            return QuantizedElevationCodec.decode(byteBuffer);
+        }
+        catch (IllegalArgumentException e)
+        {
+            // The codec logged why the tile is malformed. Return no elevations so that the file is treated as corrupt.
+            return null;
+        }
+    }
+
     protected BufferWrapper makeTiffElevations(URL url) throws IOException, URISyntaxException
     {
         File file = new File(url.toURI());
@@ -871,10 +1133,15 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
             postProcessor = new DownloadPostProcessor(tile, this);
         URLRetriever retriever = new HTTPRetriever(url, postProcessor);
         retriever.setValue(URLRetriever.EXTRACT_ZIP_ENTRY, "true"); // supports legacy elevation models
-        if (WorldWind.getRetrievalService().contains(retriever))
+        retriever.setValue(AVKey.ELEVATION_MODEL, this); // identifies the model's requests to the retrieval service
+
+        // Prefetched tiles carry their prefetch priority and leave pending requests as they are. Tiles needed now are
+        // retrieved at the highest priority, which also raises a pending prefetch of the same tile to that priority.
+        boolean prefetch = tile.getPriority() > 0 && tile.getPriority() < Double.MAX_VALUE;
+        if (prefetch && WorldWind.getRetrievalService().contains(retriever))
             return;
 
-        WorldWind.getRetrievalService().runRetriever(retriever, 0d);
+        WorldWind.getRetrievalService().runRetriever(retriever, prefetch ? tile.getPriority() : 0d);
     }
 
     protected static class DownloadPostProcessor extends AbstractRetrievalPostProcessor
@@ -938,7 +1205,9 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
                 // in the cache and create one if there isn't.
                 this.elevationModel.writeConfigurationFile(this.getFileStore());
 
-                // Fire a property change to denote that the model's backing data has changed.
+                // Request the downloaded tile's elevations if a pending elevation request needs them, and fire a
+                // property change to denote that the model's backing data has changed.
+                this.elevationModel.checkElevationRequests();
                 this.elevationModel.firePropertyChange(AVKey.ELEVATION_MODEL, null, this);
             }
 
@@ -1078,15 +1347,24 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 
             for (ElevationTile tile : this.tiles)
             {
-                BufferWrapper elevations = tile.getElevations();
-
-                int len = elevations.length();
-                if (len == 0)
+                BufferWrapper elevations = tile.acquireElevations();
+                if (elevations == null)
                     return null;
 
-                for (int i = 0; i < len; i++)
+                try
                 {
-                    this.elevationModel.determineExtremes(elevations.getDouble(i), this.extremes);
+                    int len = elevations.length();
+                    if (len == 0)
+                        return null;
+
+                    for (int i = 0; i < len; i++)
+                    {
+                        this.elevationModel.determineExtremes(elevations.getDouble(i), this.extremes);
+                    }
+                }
+                finally
+                {
+                    tile.releaseElevations();
                 }
             }
 
@@ -1347,6 +1625,311 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         return elevations.achievedResolution;
     }
 
+    @Override
+    public double getElevations(Sector sector, double[] latLons, boolean radians, double targetResolution,
+        double[] buffer)
+    {
+        return this.getElevations(sector, latLons, radians, targetResolution, buffer, true);
+    }
+
+    @Override
+    public double getUnmappedElevations(Sector sector, double[] latLons, boolean radians, double targetResolution,
+        double[] buffer)
+    {
+        return this.getElevations(sector, latLons, radians, targetResolution, buffer, false);
+    }
+
+    protected double getElevations(Sector sector, double[] latLons, boolean radians, double targetResolution,
+        double[] buffer, boolean mapMissingData)
+    {
+        if (sector == null)
+        {
+            String msg = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (latLons == null)
+        {
+            String msg = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (buffer == null)
+        {
+            String msg = Logging.getMessage("nullValue.ElevationsBufferIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        int numLocations = latLons.length / 2;
+        if (buffer.length < numLocations)
+        {
+            String msg = Logging.getMessage("ElevationModel.ElevationsBufferTooSmall", numLocations);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        Level targetLevel = this.getTargetLevel(sector, targetResolution);
+        if (targetLevel == null)
+            return Double.MAX_VALUE;
+
+        Elevations elevations = this.getElevations(sector, this.levels, targetLevel.getLevelNumber());
+        if (elevations == null)
+            return Double.MAX_VALUE;
+
+        if (this.intersects(sector) == -1)
+            return Double.MAX_VALUE;
+
+        // Mark the model as used this frame.
+        this.setValue(AVKey.FRAME_TIMESTAMP, System.currentTimeMillis());
+
+        // The tiles are ordered from highest resolution to lowest. Consecutive locations usually fall in the same
+        // tile, so the tile that provided the previous location is tried first. It's the right tile if it contains the
+        // location and is of the highest resolution present, since tiles of the same level don't overlap.
+        ElevationTile[] tiles = elevations.tiles != null
+            ? elevations.tiles.toArray(new ElevationTile[elevations.tiles.size()]) : new ElevationTile[0];
+        int numBestTiles = 0;
+        while (numBestTiles < tiles.length && tiles[numBestTiles].getLevelNumber() == tiles[0].getLevelNumber())
+        {
+            numBestTiles++;
+        }
+
+        Sector coverage = this.levels.getSector();
+        double missingDataSignal = this.getMissingDataSignal();
+        boolean missingDataTransparent = this.getMissingDataReplacement() == missingDataSignal;
+        double minElevation = Double.NaN; // determined when first needed
+        int tileIndex = -1;
+
+        for (int i = 0; i < numLocations; i++)
+        {
+            if (Double.isNaN(latLons[2 * i]) || Double.isNaN(latLons[2 * i + 1]))
+                continue;
+
+            // Sectors are tested in degrees and tiles are interpolated in radians, as they are for Angles, so that
+            // locations on tile boundaries resolve to the same tile as they do in the list method.
+            double lat, lon, latDegrees, lonDegrees;
+            if (radians)
+            {
+                lat = latLons[2 * i];
+                lon = latLons[2 * i + 1];
+                latDegrees = Math.toDegrees(lat);
+                lonDegrees = Math.toDegrees(lon);
+            }
+            else
+            {
+                latDegrees = latLons[2 * i];
+                lonDegrees = latLons[2 * i + 1];
+                lat = Math.toRadians(latDegrees);
+                lon = Math.toRadians(lonDegrees);
+            }
+
+            if (tileIndex < 0 || tileIndex >= numBestTiles
+                || !tiles[tileIndex].getSector().containsDegrees(latDegrees, lonDegrees))
+            {
+                tileIndex = -1;
+                for (int t = 0; t < tiles.length; t++)
+                {
+                    if (tiles[t].getSector().containsDegrees(latDegrees, lonDegrees))
+                    {
+                        tileIndex = t;
+                        break;
+                    }
+                }
+            }
+
+            boolean found = tileIndex >= 0;
+            double value = missingDataSignal;
+            if (found)
+            {
+                try
+                {
+                    value = this.lookupElevation(lat, lon, tiles[tileIndex]);
+                }
+                catch (Exception e)
+                {
+                    Logging.logger().log(java.util.logging.Level.SEVERE,
+                        Logging.getMessage("BasicElevationModel.ExceptionComputingElevation", latDegrees,
+                            lonDegrees), e);
+                    found = false;
+                    tileIndex = -1;
+                }
+            }
+
+            if (missingDataTransparent && (!found || value == missingDataSignal))
+                continue;
+
+            // Apply the same rules as getElevations(Sector, List, double, double[], boolean).
+            if (found && value != missingDataSignal)
+                buffer[i] = value;
+            else if (coverage.containsDegrees(latDegrees, lonDegrees))
+            {
+                if (!found)
+                {
+                    if (Double.isNaN(minElevation))
+                        minElevation = this.getExtremeElevations(sector)[0];
+                    buffer[i] = minElevation;
+                }
+                else if (mapMissingData)
+                    buffer[i] = this.getMissingDataReplacement();
+            }
+        }
+
+        return elevations.achievedResolution;
+    }
+
+    /**
+     * Requests the elevations within a sector at a specified resolution, and returns a future that completes when they
+     * are all in memory. Tiles not in memory are requested from the file cache or the network. Callers needing the best
+     * elevations may wait on the future rather than repeatedly call {@link #getElevations(gov.nasa.worldwind.geom.Sector,
+     * java.util.List, double, double[])} until its achieved resolution reaches the target resolution.
+     * <p/>
+     * The future's value is the resolution achieved by a subsequent call to <code>getElevations</code> with the same
+     * sector and target resolution, or {@link Double#MAX_VALUE} if this elevation model has no elevations in the
+     * sector. The future does not complete if a tile cannot be retrieved, so callers should wait with a timeout and
+     * cancel the future if they stop waiting. Tiles held only by the memory cache may be evicted after the future
+     * completes.
+     *
+     * @param sector           the sector in question.
+     * @param targetResolution the desired horizontal resolution, in radians.
+     *
+     * @return a future that completes when the elevations are in memory.
+     *
+     * @throws IllegalArgumentException if the sector is null.
+     */
+    public java.util.concurrent.Future<Double> requestElevations(Sector sector, double targetResolution)
+    {
+        if (sector == null)
+        {
+            String msg = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        ElevationRequest request = new ElevationRequest(sector, targetResolution);
+        this.elevationRequests.add(request);
+        this.checkElevationRequest(request);
+
+        return request;
+    }
+
+    /** Checks each pending elevation request, completing those whose elevations are now in memory. */
+    protected void checkElevationRequests()
+    {
+        for (ElevationRequest request : this.elevationRequests)
+        {
+            this.checkElevationRequest(request);
+        }
+    }
+
+    /**
+     * Completes an elevation request if its elevations are in memory, and otherwise requests the missing tiles.
+     *
+     * @param request the request to check.
+     */
+    protected void checkElevationRequest(ElevationRequest request)
+    {
+        if (request.isDone())
+            return;
+
+        Level targetLevel = this.getTargetLevel(request.sector, request.targetResolution);
+        if (targetLevel == null || this.intersects(request.sector) == -1)
+        {
+            request.complete(Double.MAX_VALUE);
+            return;
+        }
+
+        // Assembling the sector's elevations requests any tiles that aren't in memory.
+        Elevations elevations = this.getElevations(request.sector, this.levels, targetLevel.getLevelNumber());
+        if (elevations != null && elevations.achievedResolution <= targetLevel.getTexelSize())
+            request.complete(elevations.achievedResolution);
+    }
+
+    /**
+     * A pending request for the elevations within a sector. The request is completed by the elevation model when the
+     * tiles it needs are in memory.
+     */
+    protected class ElevationRequest implements java.util.concurrent.Future<Double>
+    {
+        protected final Sector sector;
+        protected final double targetResolution;
+        protected final java.util.concurrent.CountDownLatch latch = new java.util.concurrent.CountDownLatch(1);
+        protected Double resolution;
+        protected boolean done;
+        protected boolean cancelled;
+
+        public ElevationRequest(Sector sector, double targetResolution)
+        {
+            this.sector = sector;
+            this.targetResolution = targetResolution;
+        }
+
+        protected void complete(double resolution)
+        {
+            synchronized (this)
+            {
+                if (this.done)
+                    return;
+
+                this.done = true;
+                this.resolution = resolution;
+            }
+
+            elevationRequests.remove(this);
+            this.latch.countDown();
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            synchronized (this)
+            {
+                if (this.done)
+                    return false;
+
+                this.done = true;
+                this.cancelled = true;
+            }
+
+            elevationRequests.remove(this);
+            this.latch.countDown();
+            return true;
+        }
+
+        public synchronized boolean isCancelled()
+        {
+            return this.cancelled;
+        }
+
+        public synchronized boolean isDone()
+        {
+            return this.done;
+        }
+
+        public Double get() throws InterruptedException
+        {
+            this.latch.await();
+            return this.getResult();
+        }
+
+        public Double get(long timeout, java.util.concurrent.TimeUnit unit)
+            throws InterruptedException, java.util.concurrent.TimeoutException
+        {
+            if (!this.latch.await(timeout, unit))
+                throw new java.util.concurrent.TimeoutException();
+
+            return this.getResult();
+        }
+
+        protected synchronized Double getResult()
+        {
+            if (this.cancelled)
+                throw new java.util.concurrent.CancellationException();
+
+            return this.resolution;
+        }
+    }
+
     protected Level getTargetLevel(Sector sector, double targetSize)
     {
         Level lastLevel = this.levels.getLastLevel(sector); // finest resolution available
@@ -1370,14 +1953,53 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 
     protected double lookupElevation(Angle latitude, Angle longitude, final ElevationTile tile)
     {
-        BufferWrapper elevations = tile.getElevations();
+        return this.lookupElevation(latitude.radians, longitude.radians, tile);
+    }
+
+    /**
+     * Interpolates the elevation at a location within a tile.
+     *
+     * @param latitude  the location's latitude, in radians.
+     * @param longitude the location's longitude, in radians.
+     * @param tile      the tile containing the location.
+     *
+     * @return the elevation at the location, or the missing data signal if any of the surrounding samples is missing.
+     */
+    protected double lookupElevation(double latitude, double longitude, final ElevationTile tile)
+    {
+        BufferWrapper elevations = tile.acquireElevations();
+        if (elevations == null)
+            return this.getMissingDataSignal();
+
+        try
+        {
+            return this.lookupElevation(latitude, longitude, tile, elevations);
+        }
+        finally
+        {
+            tile.releaseElevations();
+        }
+    }
+
+    /**
+     * Interpolates the elevation at a location within a tile from elevations the caller has acquired from the tile.
+     *
+     * @param latitude   the location's latitude, in radians.
+     * @param longitude  the location's longitude, in radians.
+     * @param tile       the tile containing the location.
+     * @param elevations the tile's elevations.
+     *
+     * @return the elevation at the location, or the missing data signal if any of the surrounding samples is missing.
+     */
+    protected double lookupElevation(double latitude, double longitude, ElevationTile tile, BufferWrapper elevations)
+    {
         Sector sector = tile.getSector();
         final int tileHeight = tile.getHeight();
         final int tileWidth = tile.getWidth();
         final double sectorDeltaLat = sector.getDeltaLat().radians;
         final double sectorDeltaLon = sector.getDeltaLon().radians;
-        final double dLat = sector.getMaxLatitude().radians - latitude.radians;
-        final double dLon = longitude.radians - sector.getMinLongitude().radians;
+        final double dLat = sector.getMaxLatitude().radians - latitude;
+        final double dLon = longitude - sector.getMinLongitude().radians;
         final double sLat = dLat / sectorDeltaLat;
         final double sLon = dLon / sectorDeltaLon;
 
@@ -1499,6 +2121,7 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         }
 
         InputStream is = null;
+        long checksum = 0;
         try
         {
             is = this.getClass().getResourceAsStream("/" + extremesFileName);
@@ -1530,8 +2153,11 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
             AVList bufferParams = new AVListImpl();
             bufferParams.setValue(AVKey.DATA_TYPE, AVKey.INT16);
             bufferParams.setValue(AVKey.BYTE_ORDER, AVKey.BIG_ENDIAN); // Extremes are always saved in JVM byte order
-            this.extremes = BufferWrapper.wrap(WWIO.readStreamToBuffer(is, true),
-                bufferParams); // Read extremes to a direct ByteBuffer.
+            ByteBuffer buffer = WWIO.readStreamToBuffer(is, true); // Read extremes to a direct ByteBuffer.
+            java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+            crc.update(buffer.duplicate());
+            checksum = crc.getValue();
+            this.extremes = BufferWrapper.wrap(buffer, bufferParams);
         }
         catch (FileNotFoundException e)
         {
@@ -1553,6 +2179,14 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         {
             WWIO.closeStream(is, extremesFileName);
 
+            // Discard any pyramid built over the previous extremes.
+            synchronized (this.extremesPyramidLock)
+            {
+                this.extremesFileName = extremesFileName;
+                this.extremesChecksum = checksum;
+                this.extremesPyramid = null;
+            }
+
             // Clear the extreme elevations lookup cache.
             if (this.extremesLookupCache != null)
                 this.extremesLookupCache.clear();
@@ -1572,42 +2206,99 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         final int seCol = ElevationTile.computeColumn(delta.getLongitude(), sector.getMaxLongitude(),
             origin.getLongitude());
 
+        double[] extremes = this.getExtremesPyramid().getExtremes(seRow, nwRow, nwCol, seCol);
+
+        // Set to model's limits if for some reason a limit wasn't determined
+        if (extremes == null)
+            extremes = new double[] {this.getMinElevation(), this.getMaxElevation()};
+
+        return extremes;
+    }
+
+    /**
+     * Returns the min/max pyramid built over this elevation model's extreme elevations, creating the pyramid if it
+     * doesn't yet exist. The pyramid is read from the file store if a previous session saved it there from an extreme
+     * elevations file with the same checksum, and is otherwise built and saved alongside this elevation model's cached
+     * tiles. Building the pyramid holds the pyramid's own lock
+     * rather than the lock on this elevation model's files, so tile files are read meanwhile.
+     *
+     * @return the extreme elevations pyramid.
+     */
+    protected ElevationExtremesPyramid getExtremesPyramid()
+    {
+        synchronized (this.extremesPyramidLock)
+        {
+            if (this.extremesPyramid == null)
+                this.extremesPyramid = this.createExtremesPyramid();
+
+            return this.extremesPyramid;
+        }
+    }
+
+    protected ElevationExtremesPyramid createExtremesPyramid()
+    {
+        LatLon delta = this.levels.getLevel(this.extremesLevel).getTileDelta();
         final int nCols = ElevationTile.computeColumn(delta.getLongitude(), Angle.POS180, Angle.NEG180) + 1;
+        final int nRows = this.extremes.length() / (2 * nCols);
 
-        double min = Double.MAX_VALUE;
-        double max = -Double.MAX_VALUE;
+        String path = this.getExtremesPyramidPath();
+        FileStore fileStore = this.getDataFileStore();
+        if (path != null && fileStore != null)
+        {
+            java.net.URL url = fileStore.findFile(path, false);
+            if (url != null && !WWIO.isFileOutOfDate(url, this.getExpiryTime()))
+            {
+                try
+                {
+                    ByteBuffer buffer = WWIO.readURLContentToBuffer(url);
+                    ElevationExtremesPyramid pyramid = buffer != null ? ElevationExtremesPyramid.read(buffer,
+                        this.extremes, nRows, nCols, this.getMissingDataSignal(), this.getMissingDataReplacement(),
+                        this.extremesChecksum) : null;
+                    if (pyramid != null)
+                        return pyramid;
+                }
+                catch (IOException e)
+                {
+                    Logging.logger().log(java.util.logging.Level.WARNING,
+                        Logging.getMessage("generic.ExceptionAttemptingToReadFile", url), e);
+                }
+            }
+        }
 
-        for (int col = nwCol; col <= seCol; col++)
+        ElevationExtremesPyramid pyramid = new ElevationExtremesPyramid(this.extremes, nRows, nCols,
+            this.getMissingDataSignal(), this.getMissingDataReplacement(), this.extremesChecksum);
+
+        File file = path != null && fileStore != null ? fileStore.newFile(path) : null;
+        if (file != null)
         {
-            for (int row = seRow; row <= nwRow; row++)
+            try
+            {
+                pyramid.write(file);
+            }
+            catch (IOException e)
             {
-                int index = 2 * (row * nCols + col);
-                double a = this.extremes.getDouble(index);
-                double b = this.extremes.getDouble(index + 1);
-
-                if (a == this.getMissingDataSignal())
-                    a = this.getMissingDataReplacement();
-                if (b == this.getMissingDataSignal())
-                    b = this.getMissingDataReplacement();
-
-                if (a > max)
-                    max = a;
-                if (a < min)
-                    min = a;
-                if (b > max)
-                    max = b;
-                if (b < min)
-                    min = b;
+                Logging.logger().log(java.util.logging.Level.WARNING,
+                    Logging.getMessage("generic.ExceptionWhileWriting", file), e);
             }
         }
 
-        // Set to model's limits if for some reason a limit wasn't determined
-        if (min == Double.MAX_VALUE)
-            min = this.getMinElevation();
-        if (max == -Double.MAX_VALUE)
-            max = this.getMaxElevation();
+        return pyramid;
+    }
+
+    /**
+     * Returns the file store path of this elevation model's extreme elevations pyramid: a file named for the extreme
+     * elevations file, in the directory holding this elevation model's cached tiles.
+     *
+     * @return the pyramid's path, or null if this elevation model has no extreme elevations file or cache name.
+     */
+    protected String getExtremesPyramidPath()
+    {
+        String cacheName = this.levels.getFirstLevel().getCacheName();
+        if (this.extremesFileName == null || cacheName == null)
+            return null;
 
-        return new double[] {min, max};
+        String fileName = WWIO.replaceSuffix(WWIO.getFilename(this.extremesFileName), "_Pyramid.bin");
+        return WWIO.appendPathPart(cacheName, fileName);
     }
 
     /**
@@ -1635,7 +2326,11 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 
     protected static class ElevationTile extends gov.nasa.worldwind.util.Tile implements Cacheable
     {
-        protected BufferWrapper elevations; // the elevations themselves
+        protected volatile BufferWrapper elevations; // the elevations themselves
+        protected volatile SlabAllocator.Slot slot; // the native memory holding the elevations, if any
+        // true once the memory cache has released its reference to the slot
+        protected final java.util.concurrent.atomic.AtomicBoolean slotReleased =
+            new java.util.concurrent.atomic.AtomicBoolean();
         protected long updateTime = 0;
         protected double[] extremes = new double[2];
 
@@ -1644,11 +2339,72 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
             super(sector, level, row, col);
         }
 
+        /**
+         * Returns this tile's elevations without adding a reference to their native memory slot. Use {@link
+         * #acquireElevations()} to read the elevations themselves.
+         *
+         * @return this tile's elevations, or null if the tile has none or its slot has been released.
+         */
         public BufferWrapper getElevations()
         {
             return this.elevations;
         }
 
+        /**
+         * Returns this tile's elevations, adding a reference to their native memory slot if they are held in one so
+         * that the slot is not reused while the caller reads them. A caller that receives a non-null result must call
+         * {@link #releaseElevations()} when it is done with them.
+         *
+         * @return this tile's elevations, or null if the tile has none or its slot has been released.
+         */
+        public BufferWrapper acquireElevations()
+        {
+            // Elevations on the heap need no reference. The elevations are cleared before the slot is, so a tile
+            // whose slot has been released is seen here without elevations.
+            SlabAllocator.Slot slot = this.slot;
+            if (slot == null)
+                return this.elevations;
+
+            // A slot whose last reference has been released can't be acquired again, so once the reference is added
+            // the slot's memory is not reused until it's released.
+            if (!slot.getAllocator().acquire(slot))
+                return null;
+
+            BufferWrapper elevations = this.elevations;
+            if (elevations == null)
+                this.releaseSlotReference(slot);
+
+            return elevations;
+        }
+
+        /** Releases the reference added by {@link #acquireElevations()}. */
+        public void releaseElevations()
+        {
+            SlabAllocator.Slot slot = this.slot;
+            if (slot != null)
+                this.releaseSlotReference(slot);
+        }
+
+        /**
+         * Releases the memory cache's reference to this tile's native memory slot. The slot is reused, and this tile's
+         * elevations are cleared, once every reference added by {@link #acquireElevations()} is released too.
+         */
+        public void releaseSlot()
+        {
+            SlabAllocator.Slot slot = this.slot;
+            if (slot != null && this.slotReleased.compareAndSet(false, true))
+                this.releaseSlotReference(slot);
+        }
+
+        protected void releaseSlotReference(SlabAllocator.Slot slot)
+        {
+            if (slot.getAllocator().release(slot))
+            {
+                this.elevations = null;
+                this.slot = null;
+            }
+        }
+
         public void setElevations(BufferWrapper elevations, BasicElevationModel em)
         {
             this.elevations = elevations;
@@ -1702,12 +2458,29 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
             if (intersection == null)
                 return extremes;
 
+            BufferWrapper elevations = this.acquireElevations();
+            if (elevations == null)
+                return extremes;
+
+            try
+            {
+                return this.getExtremes(intersection, elevations, em, extremes);
+            }
+            finally
+            {
+                this.releaseElevations();
+            }
+        }
+
+        protected double[] getExtremes(Sector intersection, BufferWrapper elevations, BasicElevationModel em,
+            double[] extremes)
+        {
             LatLon[] corners = intersection.getCorners();
             int[] indices = new int[4];
             for (int i = 0; i < 4; i++)
             {
                 int k = this.computeElevationIndex(corners[i]);
-                indices[i] = k < 0 ? 0 : k > this.elevations.length() - 1 ? this.elevations.length() - 1 : k;
+                indices[i] = k < 0 ? 0 : k > elevations.length() - 1 ? elevations.length() - 1 : k;
             }
 
             int sw = indices[0];
@@ -1724,7 +2497,7 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
                 for (int i = 0; i < nCols; i++)
                 {
                     int k = nw + i;
-                    em.determineExtremes(this.elevations.getDouble(k), extremes);
+                    em.determineExtremes(elevations.getDouble(k), extremes);
                 }
 
                 nw += this.getWidth();
@@ -2207,6 +2980,8 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 
         WWXML.checkAndAppendBooleanElement(params, AVKey.RETRIEVE_PROPERTIES_FROM_SERVICE, context,
             "RetrievePropertiesFromService");
+        WWXML.checkAndAppendBooleanElement(params, AVKey.OFF_HEAP_ELEVATION_CACHE_ENABLED, context,
+            "OffHeapCacheEnabled");
 
         // Image format properties.
         WWXML.checkAndAppendTextElement(params, AVKey.IMAGE_FORMAT, context, "ImageFormat");
@@ -2276,7 +3051,9 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
      * AVKey#BYTE_ORDER}</td><td>DataType/@byteOrder</td><td>String</td></tr> <tr><td>{@link
      * AVKey#ELEVATION_EXTREMES_FILE}</td><td>ExtremeElevations/FileName</td><td>String</td></tr> <tr><td>{@link
      * AVKey#ELEVATION_MAX}</td><td>ExtremeElevations/@max</td><td>Double</td></tr> <tr><td>{@link
-     * AVKey#ELEVATION_MIN}</td><td>ExtremeElevations/@min</td><td>Double</td></tr> </table> This also parses common
+     * AVKey#ELEVATION_MIN}</td><td>ExtremeElevations/@min</td><td>Double</td></tr> <tr><td>{@link
+     * AVKey#OFF_HEAP_ELEVATION_CACHE_ENABLED}</td><td>OffHeapCacheEnabled</td><td>Boolean</td></tr> </table> This also
+     * parses common
      * elevation model and LevelSet configuration parameters by invoking {@link gov.nasa.worldwind.terrain.AbstractElevationModel#getElevationModelConfigParams(org.w3c.dom.Element,
      * gov.nasa.worldwind.avlist.AVList)} and {@link gov.nasa.worldwind.util.DataConfigurationUtils#getLevelSetConfigParams(org.w3c.dom.Element,
      * gov.nasa.worldwind.avlist.AVList)}.
@@ -2313,6 +3090,8 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
         WWXML.checkAndSetStringParam(domElement, params, AVKey.SERVICE_NAME, "Service/@serviceName", xpath);
         WWXML.checkAndSetBooleanParam(domElement, params, AVKey.RETRIEVE_PROPERTIES_FROM_SERVICE,
             "RetrievePropertiesFromService", xpath);
+        WWXML.checkAndSetBooleanParam(domElement, params, AVKey.OFF_HEAP_ELEVATION_CACHE_ENABLED,
+            "OffHeapCacheEnabled", xpath);
 
         // Image format properties.
         WWXML.checkAndSetStringParam(domElement, params, AVKey.IMAGE_FORMAT, "ImageFormat", xpath);
@@ -5,20 +5,43 @@
  */
 package gov.nasa.worldwind.terrain;
 
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.cache.*;
 import gov.nasa.worldwind.geom.*;
 import gov.nasa.worldwind.globes.ElevationModel;
 import gov.nasa.worldwind.util.Logging;
 
+import java.beans.*;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
+ * An elevation model composed of other elevation models. The extreme elevations of the compound model and of sectors
+ * within it are cached, and are recomputed when the enabled elevation models change or when one of them fires a
+ * property change event, as elevation models do when their data changes.
+ *
  * @author tag
  * @version $Id$
  */
 public class CompoundElevationModel extends AbstractElevationModel
 {
     protected CopyOnWriteArrayList<ElevationModel> elevationModels = new CopyOnWriteArrayList<ElevationModel>();
+    // The enabled elevation models, and the extremes versions of those that are compound models, when the cached
+    // extremes were computed. Null when the cached extremes are invalid.
+    protected ElevationModel[] extremesModels;
+    protected long[] extremesModelVersions;
+    protected long extremesVersion;
+    protected double[] elevationLimits;
+    protected MemoryCache extremesLookupCache;
+    // Discards the cached extremes when a contained elevation model's data changes.
+    protected final PropertyChangeListener extremesListener = new PropertyChangeListener()
+    {
+        public void propertyChange(PropertyChangeEvent event)
+        {
+            invalidateExtremes();
+        }
+    };
 
     public void dispose()
     {
@@ -90,6 +113,7 @@ public class CompoundElevationModel extends AbstractElevationModel
 
         this.elevationModels.removeAll(temp);
         this.elevationModels.addAll(temp);
+        this.invalidateExtremes();
     }
 
     /**
@@ -111,6 +135,7 @@ public class CompoundElevationModel extends AbstractElevationModel
         }
 
         this.elevationModels.add(em);
+        em.addPropertyChangeListener(this.extremesListener);
         this.sortElevationModels();
     }
 
@@ -139,6 +164,8 @@ public class CompoundElevationModel extends AbstractElevationModel
         }
 
         this.elevationModels.add(index, em); // the list's add method will throw exception for invalid index
+        em.addPropertyChangeListener(this.extremesListener);
+        this.invalidateExtremes();
     }
 
     public void removeElevationModel(ElevationModel em)
@@ -156,7 +183,9 @@ public class CompoundElevationModel extends AbstractElevationModel
                 ((CompoundElevationModel) child).removeElevationModel(em);
         }
 
-        this.elevationModels.remove(em);
+        if (this.elevationModels.remove(em))
+            em.removePropertyChangeListener(this.extremesListener);
+        this.invalidateExtremes();
     }
 
     public void removeElevationModel(int index)
@@ -168,7 +197,8 @@ public class CompoundElevationModel extends AbstractElevationModel
             throw new IllegalArgumentException(msg);
         }
 
-        this.elevationModels.remove(index);
+        this.elevationModels.remove(index).removePropertyChangeListener(this.extremesListener);
+        this.invalidateExtremes();
     }
 
     public void setElevationModel(int index, ElevationModel em)
@@ -187,7 +217,9 @@ public class CompoundElevationModel extends AbstractElevationModel
             throw new IllegalArgumentException(msg);
         }
 
-        this.elevationModels.set(index, em);
+        this.elevationModels.set(index, em).removePropertyChangeListener(this.extremesListener);
+        em.addPropertyChangeListener(this.extremesListener);
+        this.invalidateExtremes();
     }
 
     public List<ElevationModel> getElevationModels()
@@ -211,40 +243,123 @@ public class CompoundElevationModel extends AbstractElevationModel
         {
             em.setExpiryTime(expiryTime);
         }
+
+        this.invalidateExtremes();
     }
 
-    public double getMaxElevation() // TODO: probably want to cache the min and max rather than always compute them
+    /** Discards this model's cached extreme elevations, causing them to be recomputed when next requested. */
+    public synchronized void invalidateExtremes()
     {
-        double max = -Double.MAX_VALUE;
+        this.extremesModels = null;
+        this.extremesModelVersions = null;
+    }
 
+    /**
+     * Discards this model's cached extreme elevations if the enabled elevation models have changed since they were
+     * computed. Enabled models that are compound models are validated in turn.
+     *
+     * @return the version of this model's cached extremes, which changes whenever they're discarded.
+     */
+    protected synchronized long validateExtremes()
+    {
+        boolean valid = this.extremesModels != null;
+        int count = 0;
         for (ElevationModel em : this.elevationModels)
         {
             if (!em.isEnabled())
                 continue;
 
-            double m = em.getMaxElevation();
-            if (m > max)
-                max = m;
+            long version = em instanceof CompoundElevationModel ? ((CompoundElevationModel) em).validateExtremes() : 0;
+            if (valid && (count >= this.extremesModels.length || this.extremesModels[count] != em
+                || this.extremesModelVersions[count] != version))
+                valid = false;
+            count++;
+        }
+
+        if (valid && count == this.extremesModels.length)
+            return this.extremesVersion;
+
+        List<ElevationModel> models = new ArrayList<ElevationModel>();
+        for (ElevationModel em : this.elevationModels)
+        {
+            if (em.isEnabled())
+                models.add(em);
+        }
+
+        this.extremesModels = models.toArray(new ElevationModel[models.size()]);
+        this.extremesModelVersions = new long[this.extremesModels.length];
+        for (int i = 0; i < this.extremesModels.length; i++)
+        {
+            if (this.extremesModels[i] instanceof CompoundElevationModel)
+                this.extremesModelVersions[i] = ((CompoundElevationModel) this.extremesModels[i]).extremesVersion;
         }
 
-        return max == -Double.MAX_VALUE ? 0 : max;
+        this.elevationLimits = null;
+        if (this.extremesLookupCache != null)
+            this.extremesLookupCache.clear();
+
+        return ++this.extremesVersion;
     }
 
-    public double getMinElevation()
+    /**
+     * Returns the memory cache used to cache extreme elevations of sectors, initializing the cache if it doesn't yet
+     * exist. Like the extreme elevations lookup cache of {@link BasicElevationModel}, this is an instance level cache
+     * outside the World Wind memory cache set.
+     *
+     * @return the memory cache associated with the extreme elevations computations.
+     */
+    protected synchronized MemoryCache getExtremesLookupCache()
     {
-        double min = Double.MAX_VALUE;
+        if (this.extremesLookupCache == null)
+        {
+            long size = Configuration.getLongValue(AVKey.ELEVATION_EXTREMES_LOOKUP_CACHE_SIZE, 20000000L);
+            this.extremesLookupCache = new BasicMemoryCache((long) (0.85 * size), size);
+        }
 
-        for (ElevationModel em : this.elevationModels)
+        return this.extremesLookupCache;
+    }
+
+    /**
+     * Returns the minimum and maximum elevations of the enabled elevation models, computing them if they're not
+     * cached.
+     *
+     * @return a two-element array holding the minimum and maximum elevations. The caller must not modify it.
+     */
+    protected synchronized double[] getElevationLimits()
+    {
+        this.validateExtremes();
+
+        if (this.elevationLimits == null)
         {
-            if (!em.isEnabled())
-                continue;
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+
+            for (ElevationModel em : this.extremesModels)
+            {
+                double m = em.getMinElevation();
+                if (m < min)
+                    min = m;
+
+                m = em.getMaxElevation();
+                if (m > max)
+                    max = m;
+            }
 
-            double m = em.getMinElevation();
-            if (m < min)
-                min = m;
+            this.elevationLimits = new double[] {min == Double.MAX_VALUE ? 0 : min,
+                max == -Double.MAX_VALUE ? 0 : max};
         }
 
-        return min == Double.MAX_VALUE ? 0 : min;
+        return this.elevationLimits;
+    }
+
+    public double getMaxElevation()
+    {
+        return this.getElevationLimits()[1];
+    }
+
+    public double getMinElevation()
+    {
+        return this.getElevationLimits()[0];
     }
 
     public double[] getExtremeElevations(Angle latitude, Angle longitude)
@@ -289,7 +404,12 @@ public class CompoundElevationModel extends AbstractElevationModel
             throw new IllegalArgumentException(msg);
         }
 
-        double[] retVal = null;
+        long version = this.validateExtremes();
+
+        boolean cachingEnabled = this.isExtremesCachingEnabled();
+        double[] retVal = cachingEnabled ? (double[]) this.getExtremesLookupCache().getObject(sector) : null;
+        if (retVal != null)
+            return new double[] {retVal[0], retVal[1]}; // return defensive copy
 
         for (ElevationModel em : this.elevationModels)
         {
@@ -314,7 +434,27 @@ public class CompoundElevationModel extends AbstractElevationModel
             }
         }
 
-        return retVal == null ? new double[] {0, 0} : retVal;
+        if (retVal == null)
+            retVal = new double[] {0, 0};
+
+        if (cachingEnabled)
+            this.cacheExtremes(sector, retVal, version);
+
+        return retVal;
+    }
+
+    /**
+     * Caches the extreme elevations of a sector, unless the cached extremes have been discarded since they were
+     * computed.
+     *
+     * @param sector   the sector.
+     * @param extremes the sector's extreme elevations.
+     * @param version  the version of the cached extremes when the sector's extremes were computed.
+     */
+    protected synchronized void cacheExtremes(Sector sector, double[] extremes, long version)
+    {
+        if (this.extremesModels != null && this.extremesVersion == version)
+            this.getExtremesLookupCache().add(sector, new double[] {extremes[0], extremes[1]}, 64);
     }
 
     public double getBestResolution(Sector sector)
@@ -538,6 +678,84 @@ public class CompoundElevationModel extends AbstractElevationModel
         return this.doGetElevations(sector, latLons, targetResolutions, elevations, false);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * NOTE: This method returns only unmapped elevations if the compound model contains more than one elevation model,
+     * as does {@link #getElevations(gov.nasa.worldwind.geom.Sector, java.util.List, double, double[])}.
+     */
+    @Override
+    public double getElevations(Sector sector, double[] latLons, boolean radians, double targetResolution,
+        double[] buffer)
+    {
+        return this.doGetElevations(sector, latLons, radians, targetResolution, buffer, false);
+    }
+
+    @Override
+    public double getUnmappedElevations(Sector sector, double[] latLons, boolean radians, double targetResolution,
+        double[] buffer)
+    {
+        return this.doGetElevations(sector, latLons, radians, targetResolution, buffer, false);
+    }
+
+    protected double doGetElevations(Sector sector, double[] latLons, boolean radians, double targetResolution,
+        double[] buffer, boolean mapMissingData)
+    {
+        if (sector == null)
+        {
+            String msg = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (latLons == null)
+        {
+            String msg = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (buffer == null)
+        {
+            String msg = Logging.getMessage("nullValue.ElevationsBufferIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (buffer.length < latLons.length / 2)
+        {
+            String msg = Logging.getMessage("ElevationModel.ElevationsBufferTooSmall", latLons.length / 2);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        // Fill the buffer from lowest resolution model to highest, as doGetElevations does for lists of locations.
+        // Only the resolution achieved by the first model is returned, as with the list-based methods.
+        double resolutionAchieved = 0;
+        for (int i = 0; i < this.elevationModels.size(); i++)
+        {
+            ElevationModel em = this.elevationModels.get(i);
+
+            if (!em.isEnabled())
+                continue;
+
+            int c = em.intersects(sector);
+            if (c < 0) // no intersection
+                continue;
+
+            double r;
+            if (mapMissingData || this.elevationModels.size() == 1)
+                r = em.getElevations(sector, latLons, radians, targetResolution, buffer);
+            else
+                r = em.getUnmappedElevations(sector, latLons, radians, targetResolution, buffer);
+
+            if (i == 0)
+                resolutionAchieved = r;
+        }
+
+        return resolutionAchieved;
+    }
+
     protected double[] doGetElevations(Sector sector, List<? extends LatLon> latlons, double[] targetResolution,
         double[] buffer, boolean mapMissingData)
     {
@@ -689,6 +907,9 @@ public class CompoundElevationModel extends AbstractElevationModel
         {
             em.setExtremesCachingEnabled(enabled);
         }
+
+        if (!enabled)
+            this.invalidateExtremes();
     }
 
     @Override
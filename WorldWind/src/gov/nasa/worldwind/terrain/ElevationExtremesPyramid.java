@@ -0,0 +1,384 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.terrain;
+
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.nio.*;
+
+/**
+ * A quadtree pyramid of minimum and maximum elevations built over a grid of extreme elevations, such as the one an
+ * elevation model reads from its extreme elevations file. Each level of the pyramid holds the extremes of 2x2 cells of
+ * the level below, up to a single cell holding the extremes of the whole grid. The extremes of a range of grid cells
+ * are found by descending the pyramid only along the range's edges, so large ranges cost little more than small ones.
+ * <p/>
+ * The grid itself is the pyramid's finest level and is not copied. It holds a minimum and a maximum elevation per cell,
+ * in row major order. Grid values equal to the missing data signal are read as the missing data replacement. The
+ * coarser levels hold single precision values, rounded outward so that they never narrow the range of the values they
+ * summarize.
+ * <p/>
+ * A written pyramid records a checksum of the source of its grid, such as the extreme elevations file, and is read only
+ * for a grid with the same checksum.
+ *
+ * @version $Id$
+ */
+public class ElevationExtremesPyramid
+{
+    /** The magic number identifying persisted pyramids, the characters "WWEP". */
+    protected static final int MAGIC = 0x57574550;
+    protected static final int HEADER_SIZE = 40;
+
+    protected final BufferWrapper extremes;
+    protected final int numRows;
+    protected final int numColumns;
+    protected final double missingDataSignal;
+    protected final double missingDataReplacement;
+    protected final long sourceChecksum;
+    // The levels above the grid, finest first. Each holds a minimum and a maximum per cell, in row major order.
+    protected float[][] levels;
+    protected int[] levelRows;
+    protected int[] levelColumns;
+
+    /**
+     * Builds a pyramid over a grid of extreme elevations.
+     *
+     * @param extremes               the grid's minimum and maximum elevation per cell, in row major order.
+     * @param numRows                the number of rows in the grid.
+     * @param numColumns             the number of columns in the grid.
+     * @param missingDataSignal      the grid value denoting a missing elevation.
+     * @param missingDataReplacement the value to use in place of missing elevations.
+     * @param sourceChecksum         a checksum of the grid's source, written with the pyramid.
+     *
+     * @throws IllegalArgumentException if the extremes are null, the number of rows or columns is less than one, or
+     *                                  the extremes buffer is smaller than the grid.
+     */
+    public ElevationExtremesPyramid(BufferWrapper extremes, int numRows, int numColumns, double missingDataSignal,
+        double missingDataReplacement, long sourceChecksum)
+    {
+        this(extremes, numRows, numColumns, missingDataSignal, missingDataReplacement, sourceChecksum, true);
+    }
+
+    /**
+     * Reads a pyramid written by {@link #write(java.io.File)} and attaches it to its grid of extreme elevations.
+     *
+     * @param buffer                 the contents of the file written, from its position to its limit.
+     * @param extremes               the grid's minimum and maximum elevation per cell, in row major order.
+     * @param numRows                the number of rows in the grid.
+     * @param numColumns             the number of columns in the grid.
+     * @param missingDataSignal      the grid value denoting a missing elevation.
+     * @param missingDataReplacement the value to use in place of missing elevations.
+     * @param sourceChecksum         a checksum of the grid's source.
+     *
+     * @return the pyramid, or null if the file does not hold a pyramid for a grid of the specified size, missing data
+     *         values and source checksum.
+     *
+     * @throws IllegalArgumentException if the buffer or extremes are null, the number of rows or columns is less
+     *                                  than one, or the extremes buffer is smaller than the grid.
+     */
+    public static ElevationExtremesPyramid read(ByteBuffer buffer, BufferWrapper extremes, int numRows,
+        int numColumns, double missingDataSignal, double missingDataReplacement, long sourceChecksum)
+    {
+        if (buffer == null)
+        {
+            String message = Logging.getMessage("nullValue.BufferIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        buffer = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+        // Levels built with a different missing data replacement or from a changed source hold different extremes.
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != numRows
+            || buffer.getInt() != numColumns || buffer.getDouble() != missingDataSignal
+            || buffer.getDouble() != missingDataReplacement || buffer.getLong() != sourceChecksum)
+            return null;
+
+        ElevationExtremesPyramid pyramid = new ElevationExtremesPyramid(extremes, numRows, numColumns,
+            missingDataSignal, missingDataReplacement, sourceChecksum, false);
+        if (buffer.getInt() != pyramid.levelRows.length)
+            return null;
+
+        FloatBuffer floats = buffer.asFloatBuffer();
+        for (int level = 1; level < pyramid.levelRows.length; level++)
+        {
+            float[] values = new float[2 * pyramid.levelRows[level] * pyramid.levelColumns[level]];
+            if (floats.remaining() < values.length)
+                return null;
+
+            floats.get(values);
+            pyramid.levels[level] = values;
+        }
+
+        return pyramid;
+    }
+
+    // Creates a pyramid, leaving its levels null if they're to be read rather than built.
+    protected ElevationExtremesPyramid(BufferWrapper extremes, int numRows, int numColumns, double missingDataSignal,
+        double missingDataReplacement, long sourceChecksum, boolean build)
+    {
+        if (extremes == null)
+        {
+            String message = Logging.getMessage("nullValue.BufferIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (numRows < 1 || numColumns < 1)
+        {
+            String message = Logging.getMessage("generic.InvalidImageSize", numColumns, numRows);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (extremes.length() < 2 * numRows * numColumns)
+        {
+            String message = Logging.getMessage("ElevationModel.ElevationsBufferTooSmall", 2 * numRows * numColumns);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.extremes = extremes;
+        this.numRows = numRows;
+        this.numColumns = numColumns;
+        this.missingDataSignal = missingDataSignal;
+        this.missingDataReplacement = missingDataReplacement;
+        this.sourceChecksum = sourceChecksum;
+
+        this.computeLevelDimensions();
+        this.levels = new float[this.levelRows.length][];
+        for (int level = 1; build && level < this.levelRows.length; level++)
+        {
+            this.levels[level] = this.buildLevel(level);
+        }
+    }
+
+    /**
+     * Writes this pyramid's levels, but not its grid, to a file.
+     *
+     * @param file the file to write.
+     *
+     * @throws IllegalArgumentException if the file is null.
+     * @throws IOException              if the file cannot be written.
+     */
+    public void write(File file) throws IOException
+    {
+        if (file == null)
+        {
+            String message = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        int numValues = 0;
+        for (int level = 1; level < this.levels.length; level++)
+        {
+            numValues += this.levels[level].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 4 * numValues);
+        buffer.putInt(MAGIC);
+        buffer.putInt(this.numRows);
+        buffer.putInt(this.numColumns);
+        buffer.putDouble(this.missingDataSignal);
+        buffer.putDouble(this.missingDataReplacement);
+        buffer.putLong(this.sourceChecksum);
+        buffer.putInt(this.levels.length);
+
+        FloatBuffer floats = buffer.asFloatBuffer();
+        for (int level = 1; level < this.levels.length; level++)
+        {
+            floats.put(this.levels[level]);
+        }
+
+        buffer.rewind();
+        WWIO.saveBuffer(buffer, file, false);
+    }
+
+    public int getNumRows()
+    {
+        return this.numRows;
+    }
+
+    public int getNumColumns()
+    {
+        return this.numColumns;
+    }
+
+    /**
+     * Indicates the number of levels in this pyramid, including the grid it's built over.
+     *
+     * @return the number of levels.
+     */
+    public int getNumLevels()
+    {
+        return this.levelRows.length;
+    }
+
+    /**
+     * Returns the minimum and maximum elevation of a range of grid cells. The range is clipped to the grid.
+     *
+     * @param minRow    the range's first row.
+     * @param maxRow    the range's last row.
+     * @param minColumn the range's first column.
+     * @param maxColumn the range's last column.
+     *
+     * @return a two-element array holding the minimum and maximum elevation of the range, or null if the range holds
+     *         no grid cells.
+     */
+    public double[] getExtremes(int minRow, int maxRow, int minColumn, int maxColumn)
+    {
+        minRow = Math.max(minRow, 0);
+        maxRow = Math.min(maxRow, this.numRows - 1);
+        minColumn = Math.max(minColumn, 0);
+        maxColumn = Math.min(maxColumn, this.numColumns - 1);
+        if (minRow > maxRow || minColumn > maxColumn)
+            return null;
+
+        double[] extremes = WWUtil.defaultMinMix();
+        this.collectExtremes(this.levelRows.length - 1, 0, 0, minRow, maxRow, minColumn, maxColumn, extremes);
+
+        return extremes;
+    }
+
+    protected void collectExtremes(int level, int row, int col, int minRow, int maxRow, int minColumn,
+        int maxColumn, double[] extremes)
+    {
+        // The grid rows and columns covered by the cell.
+        int firstRow = row << level;
+        int lastRow = ((row + 1) << level) - 1;
+        int firstCol = col << level;
+        int lastCol = ((col + 1) << level) - 1;
+
+        if (firstRow > maxRow || lastRow < minRow || firstCol > maxColumn || lastCol < minColumn)
+            return;
+
+        if (level == 0 || (firstRow >= minRow && lastRow <= maxRow && firstCol >= minColumn && lastCol <= maxColumn))
+        {
+            double min = this.getMin(level, row, col);
+            double max = this.getMax(level, row, col);
+            if (extremes[0] > min)
+                extremes[0] = min;
+            if (extremes[1] < max)
+                extremes[1] = max;
+            return;
+        }
+
+        int childLevel = level - 1;
+        int lastChildRow = Math.min(2 * row + 1, this.levelRows[childLevel] - 1);
+        int lastChildCol = Math.min(2 * col + 1, this.levelColumns[childLevel] - 1);
+        for (int r = 2 * row; r <= lastChildRow; r++)
+        {
+            for (int c = 2 * col; c <= lastChildCol; c++)
+            {
+                this.collectExtremes(childLevel, r, c, minRow, maxRow, minColumn, maxColumn, extremes);
+            }
+        }
+    }
+
+    protected void computeLevelDimensions()
+    {
+        int numLevels = 1;
+        for (int rows = this.numRows, cols = this.numColumns; rows > 1 || cols > 1; numLevels++)
+        {
+            rows = (rows + 1) / 2;
+            cols = (cols + 1) / 2;
+        }
+
+        this.levelRows = new int[numLevels];
+        this.levelColumns = new int[numLevels];
+        this.levelRows[0] = this.numRows;
+        this.levelColumns[0] = this.numColumns;
+        for (int level = 1; level < numLevels; level++)
+        {
+            this.levelRows[level] = (this.levelRows[level - 1] + 1) / 2;
+            this.levelColumns[level] = (this.levelColumns[level - 1] + 1) / 2;
+        }
+    }
+
+    protected float[] buildLevel(int level)
+    {
+        int rows = this.levelRows[level];
+        int cols = this.levelColumns[level];
+        int childLevel = level - 1;
+        float[] values = new float[2 * rows * cols];
+
+        for (int row = 0; row < rows; row++)
+        {
+            int lastChildRow = Math.min(2 * row + 1, this.levelRows[childLevel] - 1);
+            for (int col = 0; col < cols; col++)
+            {
+                int lastChildCol = Math.min(2 * col + 1, this.levelColumns[childLevel] - 1);
+                double min = Double.MAX_VALUE;
+                double max = -Double.MAX_VALUE;
+
+                for (int r = 2 * row; r <= lastChildRow; r++)
+                {
+                    for (int c = 2 * col; c <= lastChildCol; c++)
+                    {
+                        min = Math.min(min, this.getMin(childLevel, r, c));
+                        max = Math.max(max, this.getMax(childLevel, r, c));
+                    }
+                }
+
+                int index = 2 * (row * cols + col);
+                values[index] = roundDown(min);
+                values[index + 1] = roundUp(max);
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Converts a value to the nearest float that is not greater than it.
+     *
+     * @param value the value to convert.
+     *
+     * @return the value as a float, rounded toward negative infinity.
+     */
+    protected static float roundDown(double value)
+    {
+        float f = (float) value;
+        return f > value ? Math.nextDown(f) : f;
+    }
+
+    /**
+     * Converts a value to the nearest float that is not less than it.
+     *
+     * @param value the value to convert.
+     *
+     * @return the value as a float, rounded toward positive infinity.
+     */
+    protected static float roundUp(double value)
+    {
+        float f = (float) value;
+        return f < value ? Math.nextUp(f) : f;
+    }
+
+    protected double getMin(int level, int row, int col)
+    {
+        if (level > 0)
+            return this.levels[level][2 * (row * this.levelColumns[level] + col)];
+
+        int index = 2 * (row * this.numColumns + col);
+        return Math.min(this.getGridValue(index), this.getGridValue(index + 1));
+    }
+
+    protected double getMax(int level, int row, int col)
+    {
+        if (level > 0)
+            return this.levels[level][2 * (row * this.levelColumns[level] + col) + 1];
+
+        int index = 2 * (row * this.numColumns + col);
+        return Math.max(this.getGridValue(index), this.getGridValue(index + 1));
+    }
+
+    protected double getGridValue(int index)
+    {
+        double value = this.extremes.getDouble(index);
+        return value == this.missingDataSignal ? this.missingDataReplacement : value;
+    }
+}
@@ -78,6 +78,11 @@ public class HighResolutionTerrain extends WWObjectImpl implements Terrain
 
     protected static final int DEFAULT_DENSITY = 3;
     protected static final long DEFAULT_CACHE_CAPACITY = (long) 200e6;
+    /**
+     * The longest time, in milliseconds, to wait for elevation models to receive data before asking them again. Tile
+     * requests are dropped when the task service is full, and asking again requests them again.
+     */
+    protected static final long MAX_ELEVATION_WAIT = 1000L;
 
     // User-specified fields.
     protected Globe globe;
@@ -1041,9 +1046,9 @@ public class HighResolutionTerrain extends WWObjectImpl implements Terrain
             if (resolutionsMeetCriteria(actualResolution, targetResolution))
                 break;
 
-            // Give the system a chance to retrieve data from the disk cache or the server. Also catches interrupts
-            // and throws interrupt exceptions.
-            Thread.sleep(this.timeout == null ? 5L : Math.min(this.timeout, 5L));
+            // Wait for the system to retrieve data from the disk cache or the server. Also catches interrupts and
+            // throws interrupt exceptions.
+            this.waitForElevations(sector, actualResolution, targetResolution);
 
             Long timeout = this.getTimeout();
             if (this.startTime.get() != null && timeout != null)
@@ -1054,6 +1059,73 @@ public class HighResolutionTerrain extends WWObjectImpl implements Terrain
         }
     }
 
+    /**
+     * Waits until the elevation models that have not achieved their target resolution within a sector have received
+     * the data they need, the current timeout is exceeded, or {@link #MAX_ELEVATION_WAIT} elapses. Waits only briefly
+     * for elevation models that are not {@link BasicElevationModel}s, since they can't indicate when their data
+     * arrives.
+     *
+     * @param sector           the sector in question.
+     * @param actualResolution the resolution achieved by each of the globe's elevation models.
+     * @param targetResolution the resolution required of each of the globe's elevation models.
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting.
+     */
+    protected void waitForElevations(Sector sector, double[] actualResolution, double[] targetResolution)
+        throws InterruptedException
+    {
+        ElevationModel em = this.globe.getElevationModel();
+        List<ElevationModel> models = em instanceof CompoundElevationModel
+            ? ((CompoundElevationModel) em).getElevationModels() : Arrays.asList(em);
+
+        ArrayList<Future<Double>> requests = new ArrayList<Future<Double>>();
+        try
+        {
+            for (int i = 0; i < actualResolution.length && i < models.size(); i++)
+            {
+                if (actualResolution[i] <= targetResolution[i])
+                    continue;
+
+                if (!(models.get(i) instanceof BasicElevationModel))
+                {
+                    Thread.sleep(this.timeout == null ? 5L : Math.min(this.timeout, 5L));
+                    return;
+                }
+
+                requests.add(((BasicElevationModel) models.get(i)).requestElevations(sector, targetResolution[i]));
+            }
+
+            long endTime = System.currentTimeMillis() + MAX_ELEVATION_WAIT;
+            Long timeout = this.getTimeout();
+            if (this.startTime.get() != null && timeout != null)
+                endTime = Math.min(endTime, this.startTime.get() + timeout);
+
+            for (Future<Double> request : requests)
+            {
+                long waitTime = endTime - System.currentTimeMillis();
+                if (waitTime <= 0)
+                    break;
+
+                request.get(waitTime, TimeUnit.MILLISECONDS);
+            }
+        }
+        catch (TimeoutException e)
+        {
+            // Return to the caller, which checks its timeout and asks the elevation models again.
+        }
+        catch (ExecutionException e)
+        {
+            // Elevation requests don't fail with exceptions, and asking the elevation models again is harmless.
+        }
+        finally
+        {
+            for (Future<Double> request : requests)
+            {
+                request.cancel(false);
+            }
+        }
+    }
+
     protected boolean resolutionsMeetCriteria(double[] actualResolution, double[] targetResolution)
     {
         for (int i = 0; i < actualResolution.length; i++)
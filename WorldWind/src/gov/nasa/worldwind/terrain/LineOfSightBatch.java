@@ -0,0 +1,1091 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.terrain;
+
+import gov.nasa.worldwind.exception.WWRuntimeException;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Computes the first terrain intersection of each of a large batch of rays, such as the rays of a line-of-sight or
+ * viewshed study. The rays are intersected with the terrain tiles of a {@link HighResolutionTerrain}.
+ * <p/>
+ * Rather than intersecting each ray independently, as {@link HighResolutionTerrain#intersect(java.util.List,
+ * gov.nasa.worldwind.terrain.HighResolutionTerrain.IntersectionCallback)} does, the batch first determines every tile
+ * the rays cross and builds each of them once, through the terrain's geometry cache. It then sorts the rays so that
+ * rays crossing the same tiles are intersected together, and intersects each ray with the float vertex grids of the
+ * tiles it crosses. Each step runs on several threads, which claim chunks of rays or tiles as they finish the previous
+ * ones. A ray's path, end points and intersection are computed in the thread's scratch arrays, without creating
+ * intermediate objects. The exception is the surface normal of a globe that is not an ellipsoid, which is requested
+ * from the globe.
+ * <p/>
+ * A ray is specified by its start and end positions, whose altitudes are relative to the terrain surface. A ray's
+ * intersection is the terrain intersection nearest its start, expressed as the fraction of the distance from the start
+ * to the end at which it occurs. Rays with an end outside the terrain's sector have no intersection. The tiles a ray
+ * crosses are determined from its great circle path, so rays whose end points are at very different altitudes may
+ * miss intersections with steep terrain adjacent to that path.
+ *
+ * @version $Id$
+ */
+public class LineOfSightBatch
+{
+    /** The intersections of a batch of rays with the terrain, and statistics describing their computation. */
+    public static class Result
+    {
+        protected final double[] parameters;
+        protected final double[] points;
+        protected int numTiles;
+        protected long elapsedTime;
+
+        protected Result(int numRays)
+        {
+            this.parameters = new double[numRays];
+            this.points = new double[3 * numRays];
+            Arrays.fill(this.parameters, Double.NaN);
+            Arrays.fill(this.points, Double.NaN);
+        }
+
+        /** @return the number of rays in the batch. */
+        public int getNumRays()
+        {
+            return this.parameters.length;
+        }
+
+        /**
+         * Indicates whether a ray intersects the terrain between its start and end.
+         *
+         * @param ray the index of the ray.
+         *
+         * @return true if the ray intersects the terrain, otherwise false.
+         */
+        public boolean isObstructed(int ray)
+        {
+            return !Double.isNaN(this.parameters[ray]);
+        }
+
+        /**
+         * Returns the location of a ray's first intersection with the terrain, as a fraction of the distance from the
+         * ray's start to its end.
+         *
+         * @param ray the index of the ray.
+         *
+         * @return a value between 0 and 1, or NaN if the ray does not intersect the terrain.
+         */
+        public double getIntersectionParameter(int ray)
+        {
+            return this.parameters[ray];
+        }
+
+        /**
+         * Returns the model coordinate point of a ray's first intersection with the terrain.
+         *
+         * @param ray the index of the ray.
+         *
+         * @return the point of intersection, or null if the ray does not intersect the terrain.
+         */
+        public Vec4 getIntersectionPoint(int ray)
+        {
+            if (!this.isObstructed(ray))
+                return null;
+
+            return new Vec4(this.points[3 * ray], this.points[3 * ray + 1], this.points[3 * ray + 2]);
+        }
+
+        /** @return the number of terrain tiles crossed by the rays. */
+        public int getNumTiles()
+        {
+            return this.numTiles;
+        }
+
+        /** @return the time taken to compute the intersections, in milliseconds. */
+        public long getElapsedTime()
+        {
+            return this.elapsedTime / 1000000L;
+        }
+
+        /** @return the number of rays intersected per second. */
+        public double getRaysPerSecond()
+        {
+            return this.elapsedTime > 0 ? this.getNumRays() / (this.elapsedTime / 1e9) : 0;
+        }
+    }
+
+    /** A unit of work performed for a range of items, such as rays or tiles, by one of the batch's threads. */
+    protected interface ChunkTask
+    {
+        void run(int start, int end, Worker worker) throws InterruptedException;
+    }
+
+    /** The state used by one thread, reused for each chunk of items the thread processes. */
+    protected static class Worker
+    {
+        protected int[] cells = new int[64]; // row and column of each cell crossed by the current ray
+        protected int numCells;
+        protected final double[] endPoints = new double[6]; // model coordinates of the current ray's start and end
+        protected final LongHashSet tileKeys = new LongHashSet();
+
+        protected void clearCells()
+        {
+            this.numCells = 0;
+        }
+
+        protected void addCell(int row, int col)
+        {
+            int n = 2 * this.numCells;
+            if (n > 0 && this.cells[n - 2] == row && this.cells[n - 1] == col)
+                return;
+
+            if (n + 2 > this.cells.length)
+                this.cells = Arrays.copyOf(this.cells, 2 * this.cells.length);
+
+            this.cells[n] = row;
+            this.cells[n + 1] = col;
+            this.numCells++;
+        }
+    }
+
+    /** A set of non-negative long values, held without boxing them. */
+    protected static class LongHashSet
+    {
+        protected long[] values = newTable(64);
+        protected int size;
+
+        protected static long[] newTable(int capacity)
+        {
+            long[] table = new long[capacity];
+            Arrays.fill(table, -1);
+            return table;
+        }
+
+        public void add(long value)
+        {
+            int mask = this.values.length - 1;
+            int i = hash(value) & mask;
+            while (this.values[i] != -1)
+            {
+                if (this.values[i] == value)
+                    return;
+                i = (i + 1) & mask;
+            }
+
+            this.values[i] = value;
+            if (++this.size > this.values.length / 2)
+                this.grow();
+        }
+
+        public int size()
+        {
+            return this.size;
+        }
+
+        public void clear()
+        {
+            this.values = newTable(64);
+            this.size = 0;
+        }
+
+        public long[] toArray(long[] array, int offset)
+        {
+            for (long value : this.values)
+            {
+                if (value != -1)
+                    array[offset++] = value;
+            }
+
+            return array;
+        }
+
+        protected void grow()
+        {
+            long[] old = this.values;
+            this.values = newTable(2 * old.length);
+            this.size = 0;
+            for (long value : old)
+            {
+                if (value != -1)
+                    this.add(value);
+            }
+        }
+
+        protected static int hash(long value)
+        {
+            long h = value * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /** The number of rays or tiles a thread claims at a time. */
+    protected static final int CHUNK_SIZE = 256;
+    /**
+     * The greatest distance, as a fraction of the terrain's tile size, by which the straight latitude and longitude
+     * path used to find the tiles a ray crosses may depart from the ray's great circle path. Rays too long to meet this
+     * are divided along their great circle.
+     */
+    protected static final double PATH_TOLERANCE = 0.05;
+
+    protected final HighResolutionTerrain terrain;
+    protected int numThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Constructs a batch intersector for a specified terrain.
+     *
+     * @param terrain the terrain to intersect rays with.
+     *
+     * @throws IllegalArgumentException if the terrain is null.
+     */
+    public LineOfSightBatch(HighResolutionTerrain terrain)
+    {
+        if (terrain == null)
+        {
+            String msg = Logging.getMessage("nullValue.TerrainIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.terrain = terrain;
+    }
+
+    /** @return the terrain rays are intersected with. */
+    public HighResolutionTerrain getTerrain()
+    {
+        return this.terrain;
+    }
+
+    /** @return the number of threads used to intersect a batch of rays. */
+    public int getNumThreads()
+    {
+        return this.numThreads;
+    }
+
+    /**
+     * Specifies the number of threads used to intersect a batch of rays. The default is the number of available
+     * processors.
+     *
+     * @param numThreads the number of threads.
+     *
+     * @throws IllegalArgumentException if the number of threads is less than 1.
+     */
+    public void setNumThreads(int numThreads)
+    {
+        if (numThreads < 1)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange", "numThreads < 1");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Intersects a batch of rays with the terrain.
+     *
+     * @param positions the ray end points, with each pair of positions forming a ray: the first ray is formed by
+     *                  positions[0] and positions[1], the second by positions[2] and positions[3], etc. Altitudes are
+     *                  relative to the terrain surface.
+     *
+     * @return the intersections of the rays.
+     *
+     * @throws IllegalArgumentException if the list of positions is null or contains an odd number of positions.
+     * @throws InterruptedException     if the operation is interrupted.
+     * @throws gov.nasa.worldwind.exception.WWTimeoutException
+     *                                  if terrain data retrieval for a tile exceeds the terrain's timeout.
+     */
+    public Result intersect(List<Position> positions) throws InterruptedException
+    {
+        if (positions == null)
+        {
+            String msg = Logging.getMessage("nullValue.PositionsListIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        double[] rays = new double[3 * positions.size()];
+        for (int i = 0; i < positions.size(); i++)
+        {
+            Position position = positions.get(i);
+            rays[3 * i] = position.getLatitude().degrees;
+            rays[3 * i + 1] = position.getLongitude().degrees;
+            rays[3 * i + 2] = position.getAltitude();
+        }
+
+        return this.intersect(rays);
+    }
+
+    /**
+     * Intersects a batch of rays with the terrain.
+     *
+     * @param rays the rays, as six values per ray: the latitude and longitude in degrees, and the altitude in meters
+     *             above the terrain, of the ray's start, followed by the same for the ray's end.
+     *
+     * @return the intersections of the rays.
+     *
+     * @throws IllegalArgumentException if the array of rays is null or its length is not a multiple of six.
+     * @throws InterruptedException     if the operation is interrupted.
+     * @throws gov.nasa.worldwind.exception.WWTimeoutException
+     *                                  if terrain data retrieval for a tile exceeds the terrain's timeout.
+     */
+    public Result intersect(final double[] rays) throws InterruptedException
+    {
+        if (rays == null)
+        {
+            String msg = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (rays.length % 6 != 0)
+        {
+            String msg = Logging.getMessage("generic.ArrayInvalidLength", rays.length);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        long startTime = System.nanoTime();
+        final int numRays = rays.length / 6;
+        final Result result = new Result(numRays);
+
+        Worker[] workers = new Worker[this.numThreads];
+        for (int i = 0; i < workers.length; i++)
+        {
+            workers[i] = new Worker();
+        }
+
+        ExecutorService service = this.numThreads > 1 ? Executors.newFixedThreadPool(this.numThreads) : null;
+        try
+        {
+            // Determine the tiles the rays cross, and a key locating each ray's midpoint for sorting.
+            final long[] sortKeys = new long[numRays];
+            this.runChunks(service, workers, numRays, new ChunkTask()
+            {
+                public void run(int start, int end, Worker worker)
+                {
+                    for (int ray = start; ray < end; ray++)
+                    {
+                        computeCells(rays, ray, worker);
+                        for (int i = 0; i < worker.numCells; i++)
+                        {
+                            worker.tileKeys.add(makeTileKey(worker.cells[2 * i], worker.cells[2 * i + 1]));
+                        }
+                        sortKeys[ray] = computeSortKey(rays, ray);
+                    }
+                }
+            });
+
+            final long[] tileKeys = this.mergeTileKeys(workers);
+            result.numTiles = tileKeys.length;
+
+            // Build each tile once.
+            final HighResolutionTerrain.RectTile[] tiles = new HighResolutionTerrain.RectTile[tileKeys.length];
+            this.runChunks(service, workers, tiles.length, new ChunkTask()
+            {
+                public void run(int start, int end, Worker worker) throws InterruptedException
+                {
+                    for (int i = start; i < end; i++)
+                    {
+                        tiles[i] = buildTile(tileKeys[i]);
+                    }
+                }
+            });
+
+            // Intersect the rays in the order of the tiles they cross.
+            final int[] order = this.sortRays(sortKeys);
+            this.runChunks(service, workers, numRays, new ChunkTask()
+            {
+                public void run(int start, int end, Worker worker) throws InterruptedException
+                {
+                    for (int i = start; i < end; i++)
+                    {
+                        intersectRay(rays, order[i], tileKeys, tiles, worker, result);
+                    }
+                }
+            });
+        }
+        finally
+        {
+            if (service != null)
+                service.shutdownNow();
+        }
+
+        result.elapsedTime = System.nanoTime() - startTime;
+
+        if (Logging.logger().isLoggable(java.util.logging.Level.FINE))
+        {
+            Logging.logger().fine(Logging.getMessage("LineOfSightBatch.Statistics", numRays, result.getNumTiles(),
+                result.getElapsedTime(), (long) result.getRaysPerSecond()));
+        }
+
+        return result;
+    }
+
+    /**
+     * Performs a task for a range of items on the batch's threads, with each thread claiming chunks of {@link
+     * #CHUNK_SIZE} items until none remain.
+     *
+     * @param service  the executor running the threads, or null to perform the task on the current thread.
+     * @param workers  the state of each thread.
+     * @param numItems the number of items.
+     * @param task     the task to perform.
+     *
+     * @throws InterruptedException if the operation is interrupted.
+     */
+    protected void runChunks(ExecutorService service, Worker[] workers, final int numItems, final ChunkTask task)
+        throws InterruptedException
+    {
+        int numChunks = (numItems + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (service == null || numChunks <= 1)
+        {
+            task.run(0, numItems, workers[0]);
+            return;
+        }
+
+        final AtomicInteger nextItem = new AtomicInteger();
+        final AtomicBoolean failed = new AtomicBoolean();
+        ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int i = 0; i < Math.min(workers.length, numChunks); i++)
+        {
+            final Worker worker = workers[i];
+            futures.add(service.submit(new Callable<Object>()
+            {
+                public Object call() throws Exception
+                {
+                    try
+                    {
+                        int start;
+                        while (!failed.get() && (start = nextItem.getAndAdd(CHUNK_SIZE)) < numItems)
+                        {
+                            task.run(start, Math.min(start + CHUNK_SIZE, numItems), worker);
+                        }
+                    }
+                    catch (Exception e)
+                    {
+                        failed.set(true);
+                        throw e;
+                    }
+
+                    return null;
+                }
+            }));
+        }
+
+        try
+        {
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof InterruptedException)
+                throw (InterruptedException) e.getCause();
+            else if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            else if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            else
+                throw new WWRuntimeException(e.getCause());
+        }
+        finally
+        {
+            failed.set(true);
+            for (Future<?> future : futures)
+            {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Combines the tile keys found by each thread, and clears the threads' sets of keys.
+     *
+     * @param workers the state of each thread.
+     *
+     * @return the distinct tile keys, in ascending order.
+     */
+    protected long[] mergeTileKeys(Worker[] workers)
+    {
+        int size = 0;
+        for (Worker worker : workers)
+        {
+            size += worker.tileKeys.size();
+        }
+
+        long[] keys = new long[size];
+        int offset = 0;
+        for (Worker worker : workers)
+        {
+            worker.tileKeys.toArray(keys, offset);
+            offset += worker.tileKeys.size();
+            worker.tileKeys.clear();
+        }
+
+        Arrays.sort(keys);
+
+        int numDistinct = 0;
+        for (int i = 0; i < keys.length; i++)
+        {
+            if (i == 0 || keys[i] != keys[i - 1])
+                keys[numDistinct++] = keys[i];
+        }
+
+        return Arrays.copyOf(keys, numDistinct);
+    }
+
+    /**
+     * Returns the order in which to intersect the rays, which is the order of their sort keys.
+     *
+     * @param sortKeys the sort key of each ray.
+     *
+     * @return the ray indices in ascending order of sort key.
+     */
+    protected int[] sortRays(long[] sortKeys)
+    {
+        // Pack each ray's index beneath as many high bits of its 62-bit sort key as fit in a positive long, and sort
+        // the packed values.
+        int indexBits = 64 - Long.numberOfLeadingZeros(Math.max(1, sortKeys.length - 1));
+        int keyShift = Math.max(0, indexBits - 1);
+
+        long[] packed = new long[sortKeys.length];
+        for (int i = 0; i < sortKeys.length; i++)
+        {
+            packed[i] = ((sortKeys[i] >>> keyShift) << indexBits) | i;
+        }
+        Arrays.sort(packed);
+
+        long indexMask = (1L << indexBits) - 1;
+        int[] order = new int[packed.length];
+        for (int i = 0; i < packed.length; i++)
+        {
+            order[i] = (int) (packed[i] & indexMask);
+        }
+
+        return order;
+    }
+
+    protected long makeTileKey(int row, int col)
+    {
+        return (long) row * this.terrain.numCols + col;
+    }
+
+    /**
+     * Computes a key for a ray such that rays with nearby midpoints have nearby keys. The key interleaves the bits of
+     * the row and column of the tile containing the midpoint.
+     *
+     * @param rays the rays.
+     * @param ray  the index of the ray.
+     *
+     * @return the ray's sort key.
+     */
+    protected long computeSortKey(double[] rays, int ray)
+    {
+        double row = this.computeRowCoordinate(0.5 * (rays[6 * ray] + rays[6 * ray + 3]));
+        double col = this.computeColumnCoordinate(0.5 * (rays[6 * ray + 1] + rays[6 * ray + 4]));
+
+        long r = (long) Math.max(0, Math.min(Integer.MAX_VALUE, row));
+        long c = (long) Math.max(0, Math.min(Integer.MAX_VALUE, col));
+
+        long key = 0;
+        for (int bit = 0; bit < 31; bit++)
+        {
+            key |= ((r >>> bit) & 1L) << (2 * bit + 1);
+            key |= ((c >>> bit) & 1L) << (2 * bit);
+        }
+
+        return key;
+    }
+
+    /**
+     * Computes a latitude's position in the terrain's rows of tiles. The integer part is the row index used by {@link
+     * HighResolutionTerrain#computeRow(gov.nasa.worldwind.geom.Sector, gov.nasa.worldwind.geom.Angle)}.
+     *
+     * @param latitude the latitude, in degrees.
+     *
+     * @return the row coordinate.
+     */
+    protected double computeRowCoordinate(double latitude)
+    {
+        Sector sector = this.terrain.sector;
+        double bot = sector.getMinLatitude().degrees;
+        double top = sector.getMaxLatitude().degrees;
+
+        return (latitude - bot) / (top - bot) * (this.terrain.numRows - 1);
+    }
+
+    /**
+     * Computes a longitude's position in the terrain's columns of tiles. The integer part is the column index used by
+     * {@link HighResolutionTerrain#computeColumn(gov.nasa.worldwind.geom.Sector, gov.nasa.worldwind.geom.Angle)}.
+     *
+     * @param longitude the longitude, in degrees.
+     *
+     * @return the column coordinate.
+     */
+    protected double computeColumnCoordinate(double longitude)
+    {
+        Sector sector = this.terrain.sector;
+        double left = sector.getMinLongitude().degrees;
+        double right = sector.getMaxLongitude().degrees;
+
+        return (longitude - left) / (right - left) * (this.terrain.numCols - 1);
+    }
+
+    /**
+     * Determines the tiles a ray crosses, in order from the ray's start to its end, and places their rows and columns
+     * in the worker's list of cells. Tiles outside the terrain's sector are omitted.
+     *
+     * @param rays   the rays.
+     * @param ray    the index of the ray.
+     * @param worker the state of the current thread.
+     */
+    protected void computeCells(double[] rays, int ray, Worker worker)
+    {
+        worker.clearCells();
+
+        double latA = rays[6 * ray];
+        double lonA = rays[6 * ray + 1];
+        double latB = rays[6 * ray + 3];
+        double lonB = rays[6 * ray + 4];
+
+        // The ends' unit vectors, with Z toward the north pole.
+        double cosLatA = Math.cos(Math.toRadians(latA));
+        double cosLatB = Math.cos(Math.toRadians(latB));
+        double ax = cosLatA * Math.cos(Math.toRadians(lonA));
+        double ay = cosLatA * Math.sin(Math.toRadians(lonA));
+        double az = Math.sin(Math.toRadians(latA));
+        double bx = cosLatB * Math.cos(Math.toRadians(lonB));
+        double by = cosLatB * Math.sin(Math.toRadians(lonB));
+        double bz = Math.sin(Math.toRadians(latB));
+
+        // Follow the ray's great circle path in segments short enough to be straight in latitude and longitude.
+        int numSegments = 1;
+        double cx = ay * bz - az * by;
+        double cy = az * bx - ax * bz;
+        double cz = ax * by - ay * bx;
+        double distance = Math.atan2(Math.sqrt(cx * cx + cy * cy + cz * cz), ax * bx + ay * by + az * bz);
+        double maxLength = this.computeMaxSegmentLength(Math.max(Math.abs(latA), Math.abs(latB)));
+        if (distance > maxLength)
+            numSegments = (int) Math.min(Math.ceil(distance / maxLength), 1000);
+
+        double lat0 = latA;
+        double lon0 = lonA;
+        for (int i = 1; i <= numSegments; i++)
+        {
+            double lat1 = latB;
+            double lon1 = lonB;
+            if (i < numSegments)
+            {
+                // Spherical linear interpolation between the ends' unit vectors.
+                double s = (double) i / numSegments;
+                double wA = Math.sin((1 - s) * distance) / Math.sin(distance);
+                double wB = Math.sin(s * distance) / Math.sin(distance);
+                double x = wA * ax + wB * bx;
+                double y = wA * ay + wB * by;
+                double z = wA * az + wB * bz;
+                lat1 = Math.toDegrees(Math.atan2(z, Math.sqrt(x * x + y * y)));
+                lon1 = Math.toDegrees(Math.atan2(y, x));
+            }
+
+            this.addSegmentCells(this.computeRowCoordinate(lat0), this.computeColumnCoordinate(lon0),
+                this.computeRowCoordinate(lat1), this.computeColumnCoordinate(lon1), worker);
+
+            lat0 = lat1;
+            lon0 = lon1;
+        }
+    }
+
+    /**
+     * Computes the length of the longest segment of a ray whose straight latitude and longitude path departs from its
+     * great circle path by less than {@link #PATH_TOLERANCE} tiles. The departure of a segment of length L, in
+     * radians, is about L<sup>2</sup> tan(latitude) / 8.
+     *
+     * @param latitude the greatest absolute latitude of the segment, in degrees.
+     *
+     * @return the segment length, in radians.
+     */
+    protected double computeMaxSegmentLength(double latitude)
+    {
+        double tileSize = Math.toRadians(Math.min(this.terrain.latTileSize,
+            this.terrain.lonTileSize * Math.cos(Math.toRadians(latitude))));
+
+        return Math.sqrt(8 * PATH_TOLERANCE * tileSize / Math.max(1, Math.tan(Math.toRadians(latitude))));
+    }
+
+    /**
+     * Adds the cells of the terrain's tile grid crossed by a straight segment, in order along the segment. Steps
+     * through the grid one cell boundary at a time, as described by Amanatides and Woo.
+     *
+     * @param r0     the row coordinate of the segment's start.
+     * @param c0     the column coordinate of the segment's start.
+     * @param r1     the row coordinate of the segment's end.
+     * @param c1     the column coordinate of the segment's end.
+     * @param worker the state of the current thread.
+     */
+    protected void addSegmentCells(double r0, double c0, double r1, double c1, Worker worker)
+    {
+        int row = (int) Math.floor(r0);
+        int col = (int) Math.floor(c0);
+        int rowEnd = (int) Math.floor(r1);
+        int colEnd = (int) Math.floor(c1);
+
+        double dr = r1 - r0;
+        double dc = c1 - c0;
+        int rowStep = dr > 0 ? 1 : -1;
+        int colStep = dc > 0 ? 1 : -1;
+        double rowDelta = dr != 0 ? 1 / Math.abs(dr) : Double.POSITIVE_INFINITY;
+        double colDelta = dc != 0 ? 1 / Math.abs(dc) : Double.POSITIVE_INFINITY;
+        double rowNext = dr != 0 ? (dr > 0 ? row + 1 - r0 : r0 - row) * rowDelta : Double.POSITIVE_INFINITY;
+        double colNext = dc != 0 ? (dc > 0 ? col + 1 - c0 : c0 - col) * colDelta : Double.POSITIVE_INFINITY;
+
+        this.addCell(row, col, worker);
+
+        int numRowSteps = Math.abs(rowEnd - row);
+        int numColSteps = Math.abs(colEnd - col);
+        while (numRowSteps > 0 || numColSteps > 0)
+        {
+            if (numColSteps == 0 || (numRowSteps > 0 && rowNext < colNext))
+            {
+                row += rowStep;
+                rowNext += rowDelta;
+                numRowSteps--;
+            }
+            else
+            {
+                col += colStep;
+                colNext += colDelta;
+                numColSteps--;
+            }
+
+            this.addCell(row, col, worker);
+        }
+    }
+
+    protected void addCell(int row, int col, Worker worker)
+    {
+        if (row >= 0 && col >= 0 && row < this.terrain.numRows && col < this.terrain.numCols)
+            worker.addCell(row, col);
+    }
+
+    /**
+     * Creates a terrain tile and computes its vertices, drawing them from the terrain's geometry cache if they're
+     * there. The terrain's timeout applies to the tile's construction.
+     *
+     * @param tileKey the tile's key.
+     *
+     * @return the tile.
+     *
+     * @throws InterruptedException if the operation is interrupted.
+     */
+    protected HighResolutionTerrain.RectTile buildTile(long tileKey) throws InterruptedException
+    {
+        int row = (int) (tileKey / this.terrain.numCols);
+        int col = (int) (tileKey % this.terrain.numCols);
+
+        HighResolutionTerrain.RectTile tile = this.terrain.createTile(row, col);
+        try
+        {
+            this.terrain.startTime.set(System.currentTimeMillis());
+            this.terrain.makeVerts(tile);
+        }
+        finally
+        {
+            this.terrain.startTime.set(null); // signals that no operation is active
+        }
+
+        return tile;
+    }
+
+    protected HighResolutionTerrain.RectTile findTile(int row, int col, long[] tileKeys,
+        HighResolutionTerrain.RectTile[] tiles)
+    {
+        int i = Arrays.binarySearch(tileKeys, this.makeTileKey(row, col));
+        return i >= 0 ? tiles[i] : null;
+    }
+
+    /**
+     * Computes the model coordinate point at one end of a ray. The point is interpolated from the vertices of the
+     * end's tile and offset along the surface normal, as {@link HighResolutionTerrain} computes a tile's surface
+     * points.
+     *
+     * @param rays        the rays.
+     * @param offset      the index of the end's latitude in the array of rays.
+     * @param tileKeys    the keys of the tiles crossed by the rays.
+     * @param tiles       the tiles crossed by the rays.
+     * @param point       the array in which to place the point's coordinates.
+     * @param pointOffset the index in the array of the point's X coordinate.
+     *
+     * @return true if the point was computed, false if the end is outside the terrain's sector or its tile has no
+     *         vertices.
+     */
+    protected boolean computeEndPoint(double[] rays, int offset, long[] tileKeys,
+        HighResolutionTerrain.RectTile[] tiles, double[] point, int pointOffset)
+    {
+        double lat = rays[offset];
+        double lon = rays[offset + 1];
+        if (!this.terrain.sector.containsDegrees(lat, lon))
+            return false;
+
+        int row = (int) this.computeRowCoordinate(lat);
+        int col = (int) this.computeColumnCoordinate(lon);
+        HighResolutionTerrain.RectTile tile = this.findTile(row, col, tileKeys, tiles);
+        if (tile == null || tile.ri == null || !tile.sector.containsDegrees(lat, lon))
+            return false;
+
+        double bottom = tile.sector.getMinLatitude().degrees;
+        double top = tile.sector.getMaxLatitude().degrees;
+        double left = tile.sector.getMinLongitude().degrees;
+        double right = tile.sector.getMaxLongitude().degrees;
+
+        double leftDecimal = (lon - left) / (right - left);
+        double bottomDecimal = (lat - bottom) / (top - bottom);
+        int r = (int) (bottomDecimal * tile.density);
+        int c = (int) (leftDecimal * tile.density);
+        double xDec = HighResolutionTerrain.createPosition(c, leftDecimal, tile.ri.density);
+        double yDec = HighResolutionTerrain.createPosition(r, bottomDecimal, tile.ri.density);
+
+        // The vertices of the grid cell containing the end, interpolated over the cell's triangle containing it.
+        float[] coords = tile.ri.vertices;
+        int n = tile.ri.density + 1;
+        int bL = (r * n + c) * 3;
+        int bR = bL + 3;
+        int tL = bL + n * 3;
+        int tR = tL + 3;
+        Vec4 rc = tile.ri.referenceCenter;
+        for (int i = 0; i < 3; i++)
+        {
+            double p;
+            if (xDec + yDec == 1)
+                p = coords[tL + i] * yDec + coords[bR + i] * xDec;
+            else if (xDec + yDec > 1)
+                p = coords[tR + i] + (coords[tL + i] - coords[tR + i]) * (1 - xDec)
+                    + (coords[bR + i] - coords[tR + i]) * (1 - yDec);
+            else
+                p = coords[bL + i] + (coords[bR + i] - coords[bL + i]) * xDec
+                    + (coords[tL + i] - coords[bL + i]) * yDec;
+
+            point[pointOffset + i] = p + (i == 0 ? rc.x : i == 1 ? rc.y : rc.z);
+        }
+
+        double metersOffset = rays[offset + 2];
+        if (metersOffset != 0)
+            this.applyOffset(point, pointOffset, metersOffset);
+
+        return true;
+    }
+
+    /**
+     * Moves a point along the globe's surface normal at the point, as {@link HighResolutionTerrain#applyOffset(Vec4,
+     * double)} does. The normal of an ellipsoidal globe is computed directly. Other globes are asked for their normal.
+     *
+     * @param point        the array containing the point's coordinates.
+     * @param pointOffset  the index in the array of the point's X coordinate.
+     * @param metersOffset the distance to move the point.
+     */
+    protected void applyOffset(double[] point, int pointOffset, double metersOffset)
+    {
+        double x = point[pointOffset];
+        double y = point[pointOffset + 1];
+        double z = point[pointOffset + 2];
+
+        double nx, ny, nz;
+        Globe globe = this.terrain.globe;
+        if (globe instanceof EllipsoidalGlobe && !(globe instanceof Globe2D))
+        {
+            double eqSquared = globe.getEquatorialRadius() * globe.getEquatorialRadius();
+            double polSquared = globe.getPolarRadius() * globe.getPolarRadius();
+            Vec4 center = globe.getCenter();
+            nx = (x - center.x) / eqSquared;
+            ny = (y - center.y) / polSquared;
+            nz = (z - center.z) / eqSquared;
+
+            double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            nx /= length;
+            ny /= length;
+            nz /= length;
+        }
+        else
+        {
+            Vec4 normal = globe.computeSurfaceNormalAtPoint(new Vec4(x, y, z));
+            nx = normal.x;
+            ny = normal.y;
+            nz = normal.z;
+        }
+
+        point[pointOffset] = x + metersOffset * nx;
+        point[pointOffset + 1] = y + metersOffset * ny;
+        point[pointOffset + 2] = z + metersOffset * nz;
+    }
+
+    /**
+     * Finds a ray's first intersection with the terrain and records it in the result.
+     *
+     * @param rays     the rays.
+     * @param ray      the index of the ray.
+     * @param tileKeys the keys of the tiles crossed by the rays.
+     * @param tiles    the tiles crossed by the rays.
+     * @param worker   the state of the current thread.
+     * @param result   the result in which to record the intersection.
+     *
+     * @throws InterruptedException if the operation is interrupted.
+     */
+    protected void intersectRay(double[] rays, int ray, long[] tileKeys, HighResolutionTerrain.RectTile[] tiles,
+        Worker worker, Result result) throws InterruptedException
+    {
+        double[] p = worker.endPoints;
+        if (!this.computeEndPoint(rays, 6 * ray, tileKeys, tiles, p, 0)
+            || !this.computeEndPoint(rays, 6 * ray + 3, tileKeys, tiles, p, 3))
+            return;
+
+        double ax = p[0];
+        double ay = p[1];
+        double az = p[2];
+        double dx = p[3] - ax;
+        double dy = p[4] - ay;
+        double dz = p[5] - az;
+        if (dx == 0 && dy == 0 && dz == 0)
+            return;
+
+        this.computeCells(rays, ray, worker);
+
+        // Test the tiles in order along the ray. An intersection's tile contains the intersection's location, so once
+        // one is found only the next tile, which shares an edge with it, may hold a nearer one.
+        double t = Double.NaN;
+        int cellsAfterHit = -1;
+        for (int i = 0; i < worker.numCells && cellsAfterHit < 1; i++)
+        {
+            HighResolutionTerrain.RectTile tile = this.findTile(worker.cells[2 * i], worker.cells[2 * i + 1],
+                tileKeys, tiles);
+            if (tile == null || tile.ri == null)
+                continue;
+
+            double tileT = intersectTile(tile.ri, ax, ay, az, dx, dy, dz);
+            if (!Double.isNaN(tileT) && (Double.isNaN(t) || tileT < t))
+                t = tileT;
+
+            if (!Double.isNaN(t))
+                cellsAfterHit++;
+        }
+
+        if (Double.isNaN(t))
+            return;
+
+        result.parameters[ray] = t;
+        result.points[3 * ray] = ax + t * dx;
+        result.points[3 * ray + 1] = ay + t * dy;
+        result.points[3 * ray + 2] = az + t * dz;
+    }
+
+    /**
+     * Intersects a segment with the triangles of a tile's vertex grid. The triangles are those intersected by {@link
+     * HighResolutionTerrain#intersect(gov.nasa.worldwind.terrain.HighResolutionTerrain.RectTile,
+     * gov.nasa.worldwind.geom.Line)}, and the intersection test is the same, but is performed relative to the tile's
+     * reference center without creating intermediate objects.
+     *
+     * @param ri the tile's vertices.
+     * @param ox the X coordinate of the segment's start.
+     * @param oy the Y coordinate of the segment's start.
+     * @param oz the Z coordinate of the segment's start.
+     * @param dx the X component of the vector from the segment's start to its end.
+     * @param dy the Y component of the vector from the segment's start to its end.
+     * @param dz the Z component of the vector from the segment's start to its end.
+     *
+     * @return the nearest intersection, as a fraction of the distance from the segment's start to its end, or NaN if
+     *         the segment does not intersect the tile.
+     */
+    protected static double intersectTile(HighResolutionTerrain.RenderInfo ri, double ox, double oy, double oz,
+        double dx, double dy, double dz)
+    {
+        // Express the segment's start relative to the tile's reference center, as the vertices are.
+        ox -= ri.referenceCenter.x;
+        oy -= ri.referenceCenter.y;
+        oz -= ri.referenceCenter.z;
+
+        float[] coords = ri.vertices;
+        int n = ri.density + 1;
+        double nearest = Double.NaN;
+
+        for (int j = 0; j < n - 1; j++)
+        {
+            for (int i = 0; i < n - 1; i++)
+            {
+                int a = (j * n + i) * 3;
+                int b = a + 3;
+                int c = b + n * 3;
+                int d = c - 3;
+
+                double t = intersectTriangle(coords, a, b, c, ox, oy, oz, dx, dy, dz);
+                if (!Double.isNaN(t) && (Double.isNaN(nearest) || t < nearest))
+                    nearest = t;
+
+                t = intersectTriangle(coords, a, c, d, ox, oy, oz, dx, dy, dz);
+                if (!Double.isNaN(t) && (Double.isNaN(nearest) || t < nearest))
+                    nearest = t;
+            }
+        }
+
+        return nearest;
+    }
+
+    /**
+     * Intersects a segment with a triangle using the method of Moller and Trumbore, as {@link
+     * Triangle#intersect(gov.nasa.worldwind.geom.Line, gov.nasa.worldwind.geom.Vec4, gov.nasa.worldwind.geom.Vec4,
+     * gov.nasa.worldwind.geom.Vec4)} does.
+     *
+     * @return the intersection, as a fraction of the distance from the segment's start to its end, or NaN if the
+     *         segment does not intersect the triangle.
+     */
+    protected static double intersectTriangle(float[] coords, int a, int b, int c, double ox, double oy, double oz,
+        double dx, double dy, double dz)
+    {
+        double vax = coords[a];
+        double vay = coords[a + 1];
+        double vaz = coords[a + 2];
+
+        double edge1x = coords[b] - vax;
+        double edge1y = coords[b + 1] - vay;
+        double edge1z = coords[b + 2] - vaz;
+
+        double edge2x = coords[c] - vax;
+        double edge2y = coords[c + 1] - vay;
+        double edge2z = coords[c + 2] - vaz;
+
+        double pvecx = (dy * edge2z) - (dz * edge2y);
+        double pvecy = (dz * edge2x) - (dx * edge2z);
+        double pvecz = (dx * edge2y) - (dy * edge2x);
+
+        double det = edge1x * pvecx + edge1y * pvecy + edge1z * pvecz;
+        if (det > -1e-7 && det < 1e-7) // the segment lies in the plane of the triangle
+            return Double.NaN;
+
+        double detInv = 1d / det;
+
+        double tvecx = ox - vax;
+        double tvecy = oy - vay;
+        double tvecz = oz - vaz;
+
+        double u = detInv * (tvecx * pvecx + tvecy * pvecy + tvecz * pvecz);
+        if (u < 0 || u > 1)
+            return Double.NaN;
+
+        double qvecx = (tvecy * edge1z) - (tvecz * edge1y);
+        double qvecy = (tvecz * edge1x) - (tvecx * edge1z);
+        double qvecz = (tvecx * edge1y) - (tvecy * edge1x);
+
+        double v = detInv * (dx * qvecx + dy * qvecy + dz * qvecz);
+        if (v < 0 || u + v > 1)
+            return Double.NaN;
+
+        double t = detInv * (edge2x * qvecx + edge2y * qvecy + edge2z * qvecz);
+        if (t < 0 || t > 1)
+            return Double.NaN;
+
+        return t;
+    }
+}
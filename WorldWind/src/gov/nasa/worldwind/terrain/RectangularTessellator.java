@@ -21,6 +21,7 @@ import java.awt.*;
 import java.nio.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.*;
 
 /**
  * @author tag
@@ -366,6 +367,93 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         }
     }
 
+    /** The vertices of a tile built on a worker thread, waiting for the rendering thread to make their render info. */
+    protected static class BuiltVertices
+    {
+        protected final int density;
+        protected final FloatBuffer vertices;
+        protected final Vec4 referenceCenter;
+        protected final long time;
+
+        public BuiltVertices(int density, FloatBuffer vertices, Vec4 referenceCenter)
+        {
+            this.density = density;
+            this.vertices = vertices;
+            this.referenceCenter = referenceCenter;
+            this.time = System.currentTimeMillis();
+        }
+    }
+
+    /** Builds a tile's vertices on a task service thread. Tasks for the same tile are equal. */
+    protected static class BuildVertsTask implements Runnable
+    {
+        protected final RectangularTessellator tessellator;
+        protected final CacheKey cacheKey;
+        protected final RectTile tile;
+        protected final Globe globe;
+        protected final double verticalExaggeration;
+        protected final boolean makeSkirts;
+
+        public BuildVertsTask(RectangularTessellator tessellator, CacheKey cacheKey, RectTile tile, Globe globe,
+            double verticalExaggeration, boolean makeSkirts)
+        {
+            this.tessellator = tessellator;
+            this.cacheKey = cacheKey;
+            this.tile = tile;
+            this.globe = globe;
+            this.verticalExaggeration = verticalExaggeration;
+            this.makeSkirts = makeSkirts;
+        }
+
+        public void run()
+        {
+            if (Thread.currentThread().isInterrupted())
+                return; // the task was cancelled because it's a duplicate or for some other reason
+
+            this.tessellator.buildVertsInBackground(this);
+        }
+
+        public boolean equals(Object o)
+        {
+            if (this == o)
+                return true;
+            if (o == null || getClass() != o.getClass())
+                return false;
+
+            BuildVertsTask that = (BuildVertsTask) o;
+            return this.tessellator == that.tessellator && this.cacheKey.equals(that.cacheKey);
+        }
+
+        public int hashCode()
+        {
+            return this.cacheKey.hashCode();
+        }
+    }
+
+    /**
+     * Arrays reused by each thread that builds tile vertices. The locations of a tile's vertices form a grid whose rows
+     * share a latitude and whose columns share a longitude, so only one row and one column of angles is computed.
+     */
+    protected static class VertexScratch
+    {
+        protected Angle[] latitudes;
+        protected Angle[] longitudes;
+        protected double[] latLons;
+        protected double[] elevations;
+
+        protected void setDensity(int density)
+        {
+            int size = density + 3;
+            if (this.latitudes != null && this.latitudes.length == size)
+                return;
+
+            this.latitudes = new Angle[size];
+            this.longitudes = new Angle[size];
+            this.latLons = new double[2 * size * size];
+            this.elevations = new double[size * size];
+        }
+    }
+
     protected static class TopLevelTiles
     {
         protected ArrayList<RectTile> topLevels;
@@ -384,6 +472,19 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
     protected static final int DEFAULT_DENSITY = 20;
     protected static final String CACHE_NAME = "Terrain";
     protected static final String CACHE_ID = RectangularTessellator.class.getName();
+    /** The delay, in milliseconds, of the redraw requested while tile vertices are being built in the background. */
+    protected static final int BACKGROUND_BUILD_REDRAW_DELAY = 50;
+    /** The greatest number of vertex buffers held for reuse by background builds. */
+    protected static final int MAX_POOLED_VERTEX_BUFFERS = 32;
+
+    protected static final ThreadLocal<VertexScratch> vertexScratch = new ThreadLocal<VertexScratch>()
+    {
+        @Override
+        protected VertexScratch initialValue()
+        {
+            return new VertexScratch();
+        }
+    };
 
     // Tri-strip indices and texture coordinates. These depend only on density and can therefore be statically cached.
     protected static final HashMap<Integer, FloatBuffer> textureCoords = new HashMap<Integer, FloatBuffer>();
@@ -407,6 +508,16 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
     protected Globe globe;
     protected int density = DEFAULT_DENSITY;
     protected long updateFrequency = 2000; // milliseconds
+    protected boolean buildVertsInBackground = Configuration.getBooleanValue(
+        AVKey.RECTANGULAR_TESSELLATOR_BUILD_IN_BACKGROUND, false);
+    /** Vertices built in the background and not yet used. */
+    protected final ConcurrentHashMap<CacheKey, BuiltVertices> builtVertices =
+        new ConcurrentHashMap<CacheKey, BuiltVertices>();
+    /** The tiles whose vertices are being built in the background. */
+    protected final Set<CacheKey> pendingBuilds =
+        Collections.newSetFromMap(new ConcurrentHashMap<CacheKey, Boolean>());
+    /** Vertex buffers of background builds whose contents have been copied to a tile's existing buffer. */
+    protected final ConcurrentLinkedQueue<FloatBuffer> vertexBufferPool = new ConcurrentLinkedQueue<FloatBuffer>();
 
     public SectorGeometryList tessellate(DrawContext dc)
     {
@@ -427,13 +538,15 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         if (!WorldWind.getMemoryCacheSet().containsCache(CACHE_ID))
         {
             long size = Configuration.getLongValue(AVKey.SECTOR_GEOMETRY_CACHE_SIZE, 10000000L);
-            MemoryCache cache = new BasicMemoryCache((long) (0.85 * size), size);
+            MemoryCache cache = WorldWind.getMemoryCacheSet().addCache(CACHE_ID, (long) (0.85 * size), size);
             cache.setName(CACHE_NAME);
-            WorldWind.getMemoryCacheSet().addCache(CACHE_ID, cache);
         }
 
         this.maxLevel = Configuration.getIntegerValue(AVKey.RECTANGULAR_TESSELLATOR_MAX_LEVEL, DEFAULT_MAX_LEVEL);
 
+        if (this.isBuildVertsInBackground())
+            this.discardUnusedBuiltVertices();
+
         TopLevelTiles topLevels = (TopLevelTiles) this.topLevelTilesCache.get(dc.getGlobe().getStateKey(dc));
         if (topLevels == null)
         {
@@ -458,6 +571,11 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
             this.makeVerts(dc, (RectTile) tile);
         }
 
+        // Draw again when the tiles being built in the background are ready.
+        if (!this.pendingBuilds.isEmpty()
+            && (dc.getRedrawRequested() == 0 || dc.getRedrawRequested() > BACKGROUND_BUILD_REDRAW_DELAY))
+            dc.setRedrawRequested(BACKGROUND_BUILD_REDRAW_DELAY);
+
         // Make a copy of the SGL because the tessellator may be called multiple times per frame with a different globe.
         // See SceneController2D.
         SectorGeometryList sgl = new SectorGeometryList(this.currentTiles);
@@ -549,19 +667,57 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         this.updateFrequency = updateFrequency;
     }
 
-    protected void selectVisibleTiles(DrawContext dc, RectTile tile)
+    /**
+     * Indicates whether tile vertices are built on the task service's threads rather than the rendering thread.
+     *
+     * @return true if tile vertices are built in the background, otherwise false.
+     *
+     * @see #setBuildVertsInBackground(boolean)
+     */
+    public boolean isBuildVertsInBackground()
     {
-        if (dc.is2DGlobe() && this.skipTile(dc, tile.getSector()))
-            return;
+        return this.buildVertsInBackground;
+    }
 
-        Extent extent = tile.getExtent();
-        if (extent != null && !extent.intersects(this.currentFrustum))
+    /**
+     * Specifies whether tile vertices are built on the task service's threads rather than the rendering thread. When
+     * true, a tile whose vertices are not yet built is drawn as its parent tile, and a tile whose vertices are out of
+     * date is drawn with them until new ones are built. The tiles at the top of the tile hierarchy, and tiles whose
+     * parent has no vertices, are still built when first needed. The default is false, or the value of the {@link
+     * AVKey#RECTANGULAR_TESSELLATOR_BUILD_IN_BACKGROUND} configuration property.
+     *
+     * @param buildVertsInBackground true to build tile vertices in the background, otherwise false.
+     */
+    public void setBuildVertsInBackground(boolean buildVertsInBackground)
+    {
+        this.buildVertsInBackground = buildVertsInBackground;
+    }
+
+    protected void selectVisibleTiles(DrawContext dc, RectTile tile)
+    {
+        if (!this.isTileVisible(dc, tile))
             return;
 
         if (this.currentLevel < this.maxLevel - 1 && !this.atBestResolution(dc, tile) && this.needToSplit(dc, tile))
         {
-            ++this.currentLevel;
             RectTile[] subtiles = this.split(dc, tile);
+
+            // Draw this tile rather than its children until their vertices are built.
+            if (this.isBuildVertsInBackground() && !this.isVertsAvailable(dc, subtiles)
+                && this.isVertsAvailable(dc, tile))
+            {
+                for (RectTile child : subtiles)
+                {
+                    if (this.isTileVisible(dc, child))
+                        this.requestVerts(dc, child, this.createCacheKey(dc, child));
+                }
+
+                this.currentCoverage = tile.getSector().union(this.currentCoverage);
+                this.currentTiles.add(tile);
+                return;
+            }
+
+            ++this.currentLevel;
             for (RectTile child : subtiles)
             {
                 this.selectVisibleTiles(dc, child);
@@ -573,6 +729,41 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         this.currentTiles.add(tile);
     }
 
+    protected boolean isTileVisible(DrawContext dc, RectTile tile)
+    {
+        if (dc.is2DGlobe() && this.skipTile(dc, tile.getSector()))
+            return false;
+
+        Extent extent = tile.getExtent();
+        return extent == null || extent.intersects(this.currentFrustum);
+    }
+
+    /**
+     * Indicates whether the vertices of each visible tile of a group are cached or have been built in the background.
+     *
+     * @param dc    the current draw context.
+     * @param tiles the tiles in question.
+     *
+     * @return true if all the visible tiles have vertices, otherwise false.
+     */
+    protected boolean isVertsAvailable(DrawContext dc, RectTile[] tiles)
+    {
+        for (RectTile tile : tiles)
+        {
+            if (this.isTileVisible(dc, tile) && !this.isVertsAvailable(dc, tile))
+                return false;
+        }
+
+        return true;
+    }
+
+    protected boolean isVertsAvailable(DrawContext dc, RectTile tile)
+    {
+        CacheKey cacheKey = this.createCacheKey(dc, tile);
+
+        return WorldWind.getMemoryCache(CACHE_ID).contains(cacheKey) || this.builtVertices.containsKey(cacheKey);
+    }
+
     protected boolean atBestResolution(DrawContext dc, RectTile tile)
     {
         double bestResolution = dc.getGlobe().getElevationModel().getBestResolution(tile.getSector());
@@ -652,10 +843,149 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         if (tile.ri != null && tile.ri.time >= System.currentTimeMillis() - this.getUpdateFrequency())
             return;
 
+        if (this.isBuildVertsInBackground())
+        {
+            if (this.useBuiltVerts(dc, tile, cacheKey))
+                return;
+
+            // Draw out of date vertices until new ones are built. Tiles with no vertices can't wait.
+            if (tile.ri != null)
+            {
+                this.requestVerts(dc, tile, cacheKey);
+                return;
+            }
+        }
+
         if (this.buildVerts(dc, tile, this.makeTileSkirts))
             cache.add(cacheKey, tile.ri, tile.ri.getSizeInBytes());
     }
 
+    /**
+     * Makes a tile's render info from vertices built in the background, if they're available. The vertices are copied
+     * to the tile's existing render info if it has one.
+     *
+     * @param dc       the current draw context.
+     * @param tile     the tile.
+     * @param cacheKey the tile's cache key.
+     *
+     * @return true if vertices built in the background were used, otherwise false.
+     */
+    protected boolean useBuiltVerts(DrawContext dc, RectTile tile, CacheKey cacheKey)
+    {
+        BuiltVertices built = this.builtVertices.remove(cacheKey);
+        if (built == null)
+            return false;
+
+        if (tile.ri != null && tile.ri.vertices != null && tile.ri.density == built.density)
+        {
+            tile.ri.vertices.rewind();
+            tile.ri.vertices.put(built.vertices);
+            tile.ri.vertices.rewind();
+            tile.ri.update(dc);
+            this.releaseVertexBuffer(built.vertices);
+        }
+        else
+        {
+            tile.ri = new RenderInfo(dc, built.density, built.vertices, built.referenceCenter);
+            WorldWind.getMemoryCache(CACHE_ID).add(cacheKey, tile.ri, tile.ri.getSizeInBytes());
+        }
+
+        return true;
+    }
+
+    /**
+     * Starts building a tile's vertices on a task service thread, unless they're already being built or the task
+     * service is full.
+     *
+     * @param dc       the current draw context.
+     * @param tile     the tile.
+     * @param cacheKey the tile's cache key.
+     */
+    protected void requestVerts(DrawContext dc, RectTile tile, CacheKey cacheKey)
+    {
+        if (this.builtVertices.containsKey(cacheKey) || WorldWind.getTaskService().isFull()
+            || !this.pendingBuilds.add(cacheKey))
+            return;
+
+        try
+        {
+            WorldWind.getTaskService().addTask(new BuildVertsTask(this, cacheKey, tile, dc.getGlobe(),
+                dc.getVerticalExaggeration(), this.makeTileSkirts));
+        }
+        catch (RuntimeException e)
+        {
+            this.pendingBuilds.remove(cacheKey);
+            throw e;
+        }
+    }
+
+    /**
+     * Builds a tile's vertices on a task service thread and holds them until the rendering thread uses them.
+     *
+     * @param task the task describing the tile.
+     */
+    protected void buildVertsInBackground(BuildVertsTask task)
+    {
+        try
+        {
+            int density = task.tile.density;
+            FloatBuffer verts = this.acquireVertexBuffer(density);
+            Vec4 refCenter = this.buildVertices(task.globe, task.verticalExaggeration, task.tile, task.makeSkirts,
+                verts);
+            this.builtVertices.put(task.cacheKey, new BuiltVertices(density, verts, refCenter));
+        }
+        catch (Exception e)
+        {
+            Logging.logger().log(java.util.logging.Level.SEVERE,
+                Logging.getMessage("RectangularTessellator.ExceptionBuildingVertices", task.tile.sector), e);
+        }
+        finally
+        {
+            this.pendingBuilds.remove(task.cacheKey);
+        }
+    }
+
+    /**
+     * Discards the vertices built in the background that have gone unused for longer than the update frequency, since
+     * they would be rebuilt before being used.
+     */
+    protected void discardUnusedBuiltVertices()
+    {
+        long expiryTime = System.currentTimeMillis() - this.getUpdateFrequency();
+        for (Iterator<BuiltVertices> iter = this.builtVertices.values().iterator(); iter.hasNext(); )
+        {
+            BuiltVertices built = iter.next();
+            if (built.time < expiryTime)
+            {
+                iter.remove();
+                this.releaseVertexBuffer(built.vertices);
+            }
+        }
+    }
+
+    protected FloatBuffer acquireVertexBuffer(int density)
+    {
+        int size = 3 * (density + 3) * (density + 3);
+
+        FloatBuffer buffer;
+        while ((buffer = this.vertexBufferPool.poll()) != null)
+        {
+            if (buffer.capacity() == size)
+            {
+                buffer.clear();
+                return buffer;
+            }
+        }
+
+        return Buffers.newDirectFloatBuffer(size);
+    }
+
+    protected void releaseVertexBuffer(FloatBuffer buffer)
+    {
+        if (this.vertexBufferPool.size() < MAX_POOLED_VERTEX_BUFFERS)
+            this.vertexBufferPool.offer(buffer);
+    }
+
     public boolean buildVerts(DrawContext dc, RectTile tile, boolean makeSkirts)
     {
         int density = tile.density;
@@ -674,11 +1004,56 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
             verts.rewind();
         }
 
-        ArrayList<LatLon> latlons = this.computeLocations(tile);
-        double[] elevations = new double[latlons.size()];
-        dc.getGlobe().getElevations(tile.sector, latlons, tile.getResolution(), elevations);
+        Vec4 refCenter = this.buildVertices(dc.getGlobe(), dc.getVerticalExaggeration(), tile, makeSkirts, verts);
 
-        double verticalExaggeration = dc.getVerticalExaggeration();
+        if (tile.ri != null)
+        {
+            tile.ri.update(dc);
+            return false;
+        }
+
+        tile.ri = new RenderInfo(dc, density, verts, refCenter);
+        return true;
+    }
+
+    /**
+     * Computes the vertices of a tile. Uses neither a draw context nor OpenGL, so may be called on any thread. The
+     * location and elevation arrays are reused by each thread.
+     *
+     * @param globe                the globe the tile belongs to.
+     * @param verticalExaggeration the vertical exaggeration to apply to elevations.
+     * @param tile                 the tile.
+     * @param makeSkirts           true to make the tile's skirts, otherwise false.
+     * @param verts                the buffer in which to place the vertices, relative to the returned reference
+     *                             center.
+     *
+     * @return the vertices' reference center.
+     */
+    protected Vec4 buildVertices(Globe globe, double verticalExaggeration, RectTile tile, boolean makeSkirts,
+        FloatBuffer verts)
+    {
+        int density = tile.density;
+        VertexScratch scratch = vertexScratch.get();
+        scratch.setDensity(density);
+
+        Angle[] latitudes = scratch.latitudes;
+        Angle[] longitudes = scratch.longitudes;
+        this.computeLocations(tile, latitudes, longitudes);
+
+        double[] latLons = scratch.latLons;
+        int k = 0;
+        for (Angle latitude : latitudes)
+        {
+            for (Angle longitude : longitudes)
+            {
+                latLons[k++] = latitude.radians;
+                latLons[k++] = longitude.radians;
+            }
+        }
+
+        double[] elevations = scratch.elevations;
+        Arrays.fill(elevations, 0);
+        globe.getElevations(tile.sector, latLons, true, tile.getResolution(), elevations);
 
         // When making skirts, apply vertical exaggeration to the skirt depth only if the exaggeration is 0 or less. If
         // applied to positive exaggerations, the skirt base might rise above the terrain at positive elevations if the
@@ -697,12 +1072,10 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
 
         int ie = 0;
         int iv = 0;
-        Iterator<LatLon> latLonIter = latlons.iterator();
         for (int j = 0; j <= density + 2; j++)
         {
             for (int i = 0; i <= density + 2; i++)
             {
-                LatLon latlon = latLonIter.next();
                 double elevation = verticalExaggeration * elevations[ie++];
 
                 // Tile edges use min elevation to draw the skirts
@@ -710,7 +1083,7 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
                     (j == 0 || j >= tile.density + 2 || i == 0 || i >= tile.density + 2))
                     elevation = exaggeratedMinElevation;
 
-                Vec4 p = globe.computePointFromPosition(latlon.getLatitude(), latlon.getLongitude(), elevation);
+                Vec4 p = globe.computePointFromPosition(latitudes[j], longitudes[i], elevation);
                 verts.put(iv++, (float) (p.x - refCenter.x));
                 verts.put(iv++, (float) (p.y - refCenter.y));
                 verts.put(iv++, (float) (p.z - refCenter.z));
@@ -719,14 +1092,7 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
 
         verts.rewind();
 
-        if (tile.ri != null)
-        {
-            tile.ri.update(dc);
-            return false;
-        }
-
-        tile.ri = new RenderInfo(dc, density, verts, refCenter);
-        return true;
+        return refCenter;
     }
 
     protected ArrayList<LatLon> computeLocations(RectTile tile)
@@ -734,32 +1100,43 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
         int density = tile.density;
         int numVertices = (density + 3) * (density + 3);
 
-        Angle latMax = tile.sector.getMaxLatitude();
-        Angle dLat = tile.sector.getDeltaLat().divide(density);
-        Angle lat = tile.sector.getMinLatitude();
-
-        Angle lonMin = tile.sector.getMinLongitude();
-        Angle lonMax = tile.sector.getMaxLongitude();
-        Angle dLon = tile.sector.getDeltaLon().divide(density);
+        Angle[] latitudes = new Angle[density + 3];
+        Angle[] longitudes = new Angle[density + 3];
+        this.computeLocations(tile, latitudes, longitudes);
 
         ArrayList<LatLon> latlons = new ArrayList<LatLon>(numVertices);
-        for (int j = 0; j <= density + 2; j++)
+        for (Angle lat : latitudes)
         {
-            Angle lon = lonMin;
-            for (int i = 0; i <= density + 2; i++)
+            for (Angle lon : longitudes)
             {
                 latlons.add(new LatLon(lat, lon));
+            }
+        }
 
-                if (i > density)
-                    lon = lonMax;
-                else if (i != 0)
-                    lon = lon.add(dLon);
+        return latlons;
+    }
 
-                if (lon.degrees < -180)
-                    lon = Angle.NEG180;
-                else if (lon.degrees > 180)
-                    lon = Angle.POS180;
-            }
+    /**
+     * Computes the latitudes of the rows and the longitudes of the columns of a tile's vertices, including the rows and
+     * columns of the tile's skirts.
+     *
+     * @param tile       the tile.
+     * @param latitudes  an array of the tile's density plus 3 elements in which to place the latitudes, from south to
+     *                   north.
+     * @param longitudes an array of the tile's density plus 3 elements in which to place the longitudes, from west to
+     *                   east.
+     */
+    protected void computeLocations(RectTile tile, Angle[] latitudes, Angle[] longitudes)
+    {
+        int density = tile.density;
+
+        Angle latMax = tile.sector.getMaxLatitude();
+        Angle dLat = tile.sector.getDeltaLat().divide(density);
+        Angle lat = tile.sector.getMinLatitude();
+
+        for (int j = 0; j <= density + 2; j++)
+        {
+            latitudes[j] = lat;
 
             if (j > density)
                 lat = latMax;
@@ -767,7 +1144,25 @@ public class RectangularTessellator extends WWObjectImpl implements Tessellator
                 lat = lat.add(dLat);
         }
 
-        return latlons;
+        Angle lonMin = tile.sector.getMinLongitude();
+        Angle lonMax = tile.sector.getMaxLongitude();
+        Angle dLon = tile.sector.getDeltaLon().divide(density);
+        Angle lon = lonMin;
+
+        for (int i = 0; i <= density + 2; i++)
+        {
+            longitudes[i] = lon;
+
+            if (i > density)
+                lon = lonMax;
+            else if (i != 0)
+                lon = lon.add(dLon);
+
+            if (lon.degrees < -180)
+                lon = Angle.NEG180;
+            else if (lon.degrees > 180)
+                lon = Angle.POS180;
+        }
     }
 
     protected void renderMultiTexture(DrawContext dc, RectTile tile, int numTextureUnits)
@@ -0,0 +1,583 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.terrain;
+
+import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.data.*;
+import gov.nasa.worldwind.exception.WWRuntimeException;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Computes the viewshed of an observer: the cells of a regular grid around the observer from which the observer can be
+ * seen, given the terrain of a {@link HighResolutionTerrain}. The result is a {@link ByteBufferRaster} holding {@link
+ * #VISIBLE}, {@link #NOT_VISIBLE} or {@link #NO_DATA} for each cell, which may be written with {@link
+ * #write(gov.nasa.worldwind.data.DataRaster, java.io.File)} or any other {@link DataRasterWriter} accepting byte
+ * rasters.
+ * <p/>
+ * The grid's cells have the requested resolution in meters at the observer's location. Rather than intersect a ray
+ * with the terrain for each cell, the viewshed is computed with the R2 algorithm of Franklin and Ray: a ray is swept
+ * from the observer to each cell on the edge of the grid, and each cell the ray passes through is visible when its
+ * elevation angle, seen from the observer, is no less than the greatest elevation angle of the terrain between it and
+ * the observer along that ray. A cell is visible if any of the rays passing through it finds it visible. The elevation
+ * angles account for the curvature of the globe. Both the terrain sampling and the sweep run on several threads, the
+ * sweep dividing the rays into sectors around the observer.
+ *
+ * @version $Id$
+ */
+public class Viewshed
+{
+    /** The value of cells from which the observer can be seen. */
+    public static final byte VISIBLE = 1;
+    /** The value of cells from which the observer cannot be seen. */
+    public static final byte NOT_VISIBLE = 0;
+    /** The value of cells outside the viewshed's radius or outside the terrain's sector. */
+    public static final byte NO_DATA = -1;
+
+    /** The greatest number of cells along each side of the viewshed's grid. */
+    protected static final int MAX_GRID_SIZE = 16385;
+
+    /** The grid of a viewshed computation and the values computed for its cells. */
+    protected static class Grid
+    {
+        /** The number of cells along each side of the grid. The observer is at the center cell. */
+        protected int size;
+        /** The row and column of the center cell. */
+        protected int center;
+        /** The radius of the viewshed, in cells. */
+        protected double radius;
+        protected double centerLatitude;
+        protected double centerLongitude;
+        /** The latitude and longitude distances between cell centers, in radians. */
+        protected double latSpacing;
+        protected double lonSpacing;
+        protected Sector sector;
+        protected Vec4 observerPoint;
+        protected Vec4 up;
+        /** The tangent of the elevation angle of each cell's terrain, seen from the observer. NaN outside the grid. */
+        protected float[] groundSlopes;
+        /** The tangent of the elevation angle of each cell's target height, seen from the observer. */
+        protected float[] targetSlopes;
+        protected byte[] values;
+    }
+
+    protected final HighResolutionTerrain terrain;
+    protected int numThreads = Runtime.getRuntime().availableProcessors();
+    protected double targetHeight;
+
+    /**
+     * Constructs a viewshed calculator for a specified terrain.
+     *
+     * @param terrain the terrain whose visibility is computed.
+     *
+     * @throws IllegalArgumentException if the terrain is null.
+     */
+    public Viewshed(HighResolutionTerrain terrain)
+    {
+        if (terrain == null)
+        {
+            String msg = Logging.getMessage("nullValue.TerrainIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.terrain = terrain;
+    }
+
+    /** @return the terrain whose visibility is computed. */
+    public HighResolutionTerrain getTerrain()
+    {
+        return this.terrain;
+    }
+
+    /** @return the number of threads used to compute a viewshed. */
+    public int getNumThreads()
+    {
+        return this.numThreads;
+    }
+
+    /**
+     * Specifies the number of threads used to compute a viewshed. The default is the number of available processors.
+     *
+     * @param numThreads the number of threads.
+     *
+     * @throws IllegalArgumentException if the number of threads is less than 1.
+     */
+    public void setNumThreads(int numThreads)
+    {
+        if (numThreads < 1)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange", "numThreads < 1");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.numThreads = numThreads;
+    }
+
+    /** @return the height above the terrain, in meters, at which each cell is seen from the observer. */
+    public double getTargetHeight()
+    {
+        return this.targetHeight;
+    }
+
+    /**
+     * Specifies the height above the terrain, in meters, at which each cell is seen from the observer. The default is
+     * 0, which determines whether the terrain surface itself is visible.
+     *
+     * @param targetHeight the target height, in meters.
+     */
+    public void setTargetHeight(double targetHeight)
+    {
+        this.targetHeight = targetHeight;
+    }
+
+    /**
+     * Computes the viewshed of an observer.
+     *
+     * @param observer   the observer's position. Its altitude is relative to the terrain surface.
+     * @param radius     the greatest distance from the observer, in meters, for which visibility is computed.
+     * @param resolution the distance between the raster's cells, in meters.
+     *
+     * @return a single-band raster of 8-bit cell values, centered on the observer, whose pixel format is {@link
+     *         AVKey#IMAGE}. Its missing data signal is {@link #NO_DATA}.
+     *
+     * @throws IllegalArgumentException if the observer is null or outside the terrain's sector, if the radius or
+     *                                  resolution is not positive, or if the radius spans too many cells.
+     * @throws InterruptedException     if the current thread is interrupted.
+     */
+    public ByteBufferRaster compute(Position observer, double radius, double resolution) throws InterruptedException
+    {
+        if (observer == null)
+        {
+            String msg = Logging.getMessage("nullValue.PositionIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (radius <= 0 || resolution <= 0)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange", "radius <= 0 or resolution <= 0");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (2 * Math.ceil(radius / resolution) + 1 > MAX_GRID_SIZE)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange", "radius / resolution");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (!this.terrain.getSector().contains(observer))
+        {
+            String msg = Logging.getMessage("Viewshed.ObserverOutsideTerrain", observer);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        long startTime = System.currentTimeMillis();
+
+        final Grid grid = this.createGrid(observer, radius, resolution);
+        ExecutorService service = this.numThreads > 1 ? Executors.newFixedThreadPool(this.numThreads) : null;
+        try
+        {
+            // Determine the elevation angle of each cell in bands of rows.
+            ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+            int bandSize = Math.max(1, grid.size / (4 * this.numThreads));
+            for (int row = 0; row < grid.size; row += bandSize)
+            {
+                final int start = row;
+                final int end = Math.min(row + bandSize, grid.size);
+                tasks.add(new Callable<Object>()
+                {
+                    public Object call() throws Exception
+                    {
+                        computeSlopes(grid, start, end);
+                        return null;
+                    }
+                });
+            }
+            this.invokeAll(service, tasks);
+
+            // Sweep rays to the cells on the grid's edge in sectors around the observer.
+            tasks.clear();
+            int numEdgeCells = 4 * (grid.size - 1);
+            int sectorSize = Math.max(1, numEdgeCells / (4 * this.numThreads));
+            for (int cell = 0; cell < numEdgeCells; cell += sectorSize)
+            {
+                final int start = cell;
+                final int end = Math.min(cell + sectorSize, numEdgeCells);
+                tasks.add(new Callable<Object>()
+                {
+                    public Object call() throws Exception
+                    {
+                        sweep(grid, start, end);
+                        return null;
+                    }
+                });
+            }
+            this.invokeAll(service, tasks);
+        }
+        finally
+        {
+            if (service != null)
+                service.shutdownNow();
+        }
+
+        ByteBufferRaster raster = this.createRaster(grid);
+
+        if (Logging.logger().isLoggable(java.util.logging.Level.FINE))
+        {
+            Logging.logger().fine(Logging.getMessage("Viewshed.Statistics", grid.values.length, observer,
+                System.currentTimeMillis() - startTime));
+        }
+
+        return raster;
+    }
+
+    /**
+     * Writes a viewshed raster to a file with the first of this class' {@link #getDataRasterWriters() writers} able to
+     * write it in the format indicated by the file's suffix.
+     *
+     * @param raster the raster to write.
+     * @param file   the file to write.
+     *
+     * @throws IllegalArgumentException if the raster or file is null, or if no writer can write the raster to the file.
+     * @throws IOException              if an error occurs writing the file.
+     */
+    public void write(DataRaster raster, File file) throws IOException
+    {
+        if (raster == null)
+        {
+            String msg = Logging.getMessage("nullValue.RasterIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (file == null)
+        {
+            String msg = Logging.getMessage("nullValue.FileIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        String suffix = WWIO.getSuffix(file.getPath());
+        for (DataRasterWriter writer : this.getDataRasterWriters())
+        {
+            if (writer.canWrite(raster, suffix, file))
+            {
+                writer.write(raster, suffix, file);
+                return;
+            }
+        }
+
+        String msg = Logging.getMessage("DataRaster.CannotWrite", raster, suffix, file);
+        Logging.logger().severe(msg);
+        throw new IllegalArgumentException(msg);
+    }
+
+    /** @return the writers with which {@link #write(gov.nasa.worldwind.data.DataRaster, java.io.File)} may write. */
+    protected DataRasterWriter[] getDataRasterWriters()
+    {
+        return new DataRasterWriter[]
+            {
+                new GeotiffRasterWriter()
+            };
+    }
+
+    protected Grid createGrid(Position observer, double radius, double resolution)
+    {
+        Grid grid = new Grid();
+        grid.center = (int) Math.ceil(radius / resolution);
+        grid.size = 2 * grid.center + 1;
+        grid.radius = radius / resolution;
+
+        // Space the cells by the resolution at the observer's location.
+        double globeRadius = this.terrain.getGlobe().getRadiusAt(observer);
+        grid.centerLatitude = observer.getLatitude().radians;
+        grid.centerLongitude = observer.getLongitude().radians;
+        grid.latSpacing = resolution / globeRadius;
+        grid.lonSpacing = resolution / (globeRadius * Math.max(Math.cos(grid.centerLatitude), 1e-6));
+
+        double halfLat = (grid.center + 0.5) * grid.latSpacing;
+        double halfLon = (grid.center + 0.5) * grid.lonSpacing;
+        grid.sector = Sector.fromRadians(grid.centerLatitude - halfLat, grid.centerLatitude + halfLat,
+            grid.centerLongitude - halfLon, grid.centerLongitude + halfLon);
+
+        grid.observerPoint = this.terrain.getSurfacePoint(observer);
+        grid.up = this.terrain.getGlobe().computeSurfaceNormalAtLocation(observer.getLatitude(),
+            observer.getLongitude());
+
+        int numCells = grid.size * grid.size;
+        grid.groundSlopes = new float[numCells];
+        grid.targetSlopes = this.targetHeight != 0 ? new float[numCells] : grid.groundSlopes;
+        grid.values = new byte[numCells];
+
+        return grid;
+    }
+
+    /**
+     * Computes the elevation angle tangents of the cells in a band of the grid's rows, and marks the cells outside the
+     * viewshed's radius or the terrain's sector as having no data.
+     *
+     * @param grid  the viewshed's grid.
+     * @param start the first row of the band.
+     * @param end   the row following the band.
+     *
+     * @throws InterruptedException if the current thread is interrupted.
+     */
+    protected void computeSlopes(Grid grid, int start, int end) throws InterruptedException
+    {
+        try
+        {
+            this.doComputeSlopes(grid, start, end);
+        }
+        finally
+        {
+            this.terrain.startTime.set(null); // signals that no operation is active
+        }
+    }
+
+    protected void doComputeSlopes(Grid grid, int start, int end) throws InterruptedException
+    {
+        // Neighboring cells usually share a terrain tile, so keep the most recent one rather than look up each cell's.
+        HighResolutionTerrain.RectTile tile = null;
+        int tileRow = -1;
+        int tileCol = -1;
+        Sector sector = this.terrain.getSector();
+
+        for (int row = start; row < end; row++)
+        {
+            if (Thread.currentThread().isInterrupted())
+                throw new InterruptedException();
+
+            Angle latitude = Angle.fromRadians(grid.centerLatitude + (grid.center - row) * grid.latSpacing);
+            for (int col = 0; col < grid.size; col++)
+            {
+                int cell = row * grid.size + col;
+                int dr = row - grid.center;
+                int dc = col - grid.center;
+
+                if (dr == 0 && dc == 0)
+                {
+                    // The sweep starts beyond the observer's cell, which neither obstructs nor needs a slope.
+                    grid.groundSlopes[cell] = Float.NEGATIVE_INFINITY;
+                    grid.targetSlopes[cell] = Float.NEGATIVE_INFINITY;
+                    grid.values[cell] = VISIBLE;
+                    continue;
+                }
+
+                Angle longitude = Angle.fromRadians(grid.centerLongitude + dc * grid.lonSpacing);
+                boolean inside = dr * dr + dc * dc <= grid.radius * grid.radius && sector.contains(latitude, longitude);
+                if (inside)
+                {
+                    // Assign the cell to a tile as the terrain does, since locations on tile edges are in two tiles.
+                    int r = this.terrain.computeRow(sector, latitude);
+                    int c = this.terrain.computeColumn(sector, longitude);
+                    if (tile == null || r != tileRow || c != tileCol)
+                    {
+                        // Each tile's construction is a terrain operation subject to the terrain's timeout.
+                        this.terrain.startTime.set(System.currentTimeMillis());
+                        tile = this.terrain.createTile(r, c);
+                        tileRow = r;
+                        tileCol = c;
+                    }
+                }
+
+                Vec4 point = inside ? this.terrain.getSurfacePoint(tile, latitude, longitude, 0) : null;
+                if (point == null)
+                {
+                    grid.groundSlopes[cell] = Float.NaN;
+                    grid.targetSlopes[cell] = Float.NaN;
+                    grid.values[cell] = NO_DATA;
+                    continue;
+                }
+
+                grid.groundSlopes[cell] = this.computeSlope(grid, point);
+                if (grid.targetSlopes != grid.groundSlopes)
+                {
+                    grid.targetSlopes[cell] = this.computeSlope(grid,
+                        this.terrain.getSurfacePoint(tile, latitude, longitude, this.targetHeight));
+                }
+                grid.values[cell] = NOT_VISIBLE;
+            }
+        }
+    }
+
+    /**
+     * Computes the tangent of the elevation angle of a point seen from the observer, relative to the plane tangent to
+     * the globe at the observer's location.
+     *
+     * @param grid  the viewshed's grid.
+     * @param point the point.
+     *
+     * @return the tangent of the point's elevation angle.
+     */
+    protected float computeSlope(Grid grid, Vec4 point)
+    {
+        double x = point.x - grid.observerPoint.x;
+        double y = point.y - grid.observerPoint.y;
+        double z = point.z - grid.observerPoint.z;
+        double vertical = x * grid.up.x + y * grid.up.y + z * grid.up.z;
+        double horizontal = Math.sqrt(Math.max(x * x + y * y + z * z - vertical * vertical, 0));
+
+        return (float) (vertical / horizontal);
+    }
+
+    /**
+     * Sweeps rays from the observer to a range of the cells on the grid's edge, which are numbered clockwise from the
+     * grid's upper left corner. Cells a ray finds visible are marked as such.
+     *
+     * @param grid  the viewshed's grid.
+     * @param start the first edge cell.
+     * @param end   the edge cell following the range.
+     *
+     * @throws InterruptedException if the current thread is interrupted.
+     */
+    protected void sweep(Grid grid, int start, int end) throws InterruptedException
+    {
+        int n = grid.size;
+        int last = n - 1;
+
+        for (int edgeCell = start; edgeCell < end; edgeCell++)
+        {
+            if (Thread.currentThread().isInterrupted())
+                throw new InterruptedException();
+
+            int side = edgeCell / last;
+            int offset = edgeCell % last;
+            int row = side == 0 ? 0 : side == 1 ? offset : side == 2 ? last : last - offset;
+            int col = side == 0 ? offset : side == 1 ? last : side == 2 ? last - offset : 0;
+
+            this.sweepRay(grid, row - grid.center, col - grid.center);
+        }
+    }
+
+    /**
+     * Sweeps a ray from the observer to a cell on the grid's edge. At each step along the ray's major axis the ray
+     * passes through one cell, which is visible if its target is at least as high as the highest terrain so far. The
+     * terrain at the step is interpolated between the two cells the ray passes between.
+     *
+     * @param grid the viewshed's grid.
+     * @param dr   the row of the edge cell relative to the observer.
+     * @param dc   the column of the edge cell relative to the observer.
+     */
+    protected void sweepRay(Grid grid, int dr, int dc)
+    {
+        int n = grid.size;
+        int numSteps = Math.max(Math.abs(dr), Math.abs(dc));
+        boolean rowMajor = Math.abs(dr) >= Math.abs(dc);
+        double stepLength = Math.sqrt(dr * dr + dc * dc) / numSteps;
+        float[] ground = grid.groundSlopes;
+        float[] target = grid.targetSlopes;
+        byte[] values = grid.values;
+
+        float maxSlope = Float.NEGATIVE_INFINITY;
+        for (int step = 1; step <= numSteps && (step - 1) * stepLength <= grid.radius; step++)
+        {
+            double r = grid.center + (double) dr * step / numSteps;
+            double c = grid.center + (double) dc * step / numSteps;
+
+            int cell = (int) Math.round(r) * n + (int) Math.round(c);
+            if (target[cell] >= maxSlope)
+                values[cell] = VISIBLE;
+
+            // Interpolate the terrain between the cells on either side of the ray.
+            double minor = rowMajor ? c : r;
+            int m0 = (int) Math.floor(minor);
+            int m1 = Math.min(m0 + 1, n - 1);
+            int major = (int) Math.round(rowMajor ? r : c);
+            float s0 = ground[rowMajor ? major * n + m0 : m0 * n + major];
+            float s1 = ground[rowMajor ? major * n + m1 : m1 * n + major];
+
+            float slope;
+            if (Float.isNaN(s0))
+                slope = s1;
+            else if (Float.isNaN(s1))
+                slope = s0;
+            else
+                slope = (float) (s0 + (minor - m0) * (s1 - s0));
+
+            if (slope > maxSlope)
+                maxSlope = slope;
+        }
+    }
+
+    protected ByteBufferRaster createRaster(Grid grid)
+    {
+        AVList params = new AVListImpl();
+        params.setValue(AVKey.WIDTH, grid.size);
+        params.setValue(AVKey.HEIGHT, grid.size);
+        params.setValue(AVKey.SECTOR, grid.sector);
+        params.setValue(AVKey.PIXEL_FORMAT, AVKey.IMAGE);
+        params.setValue(AVKey.DATA_TYPE, AVKey.INT8);
+        params.setValue(AVKey.BYTE_ORDER, AVKey.BIG_ENDIAN);
+        params.setValue(AVKey.MISSING_DATA_SIGNAL, (double) NO_DATA);
+
+        ByteBufferRaster raster = (ByteBufferRaster) ByteBufferRaster.createGeoreferencedRaster(params);
+        raster.getByteBuffer().put(grid.values);
+        raster.getByteBuffer().rewind();
+
+        return raster;
+    }
+
+    /**
+     * Runs tasks on a thread pool, or on the current thread if the pool is null, and waits for them to complete. If a
+     * task fails, its exception is thrown by this method.
+     *
+     * @param service the thread pool, or null to run the tasks on the current thread.
+     * @param tasks   the tasks to run.
+     *
+     * @throws InterruptedException if the current thread or a task is interrupted.
+     */
+    protected void invokeAll(ExecutorService service, List<Callable<Object>> tasks) throws InterruptedException
+    {
+        try
+        {
+            if (service == null)
+            {
+                for (Callable<Object> task : tasks)
+                {
+                    task.call();
+                }
+                return;
+            }
+
+            for (Future<Object> future : service.invokeAll(tasks))
+            {
+                future.get();
+            }
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof InterruptedException)
+                throw (InterruptedException) e.getCause();
+            else if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            else if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            else
+                throw new WWRuntimeException(e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new WWRuntimeException(e);
+        }
+    }
+}
@@ -12,17 +12,53 @@ import java.awt.geom.*;
 import java.util.*;
 
 /**
- * A simple clutter filter that compares bounding rectangles to each other.
+ * A simple clutter filter that compares bounding rectangles to each other. Shapes are considered front to back, and a
+ * shape is drawn only if its bounds do not intersect those of a shape already drawn. The bounds of drawn shapes are
+ * held in a {@link ScreenRegionGrid}, so each shape is compared only with the drawn shapes near it.
+ * <p/>
+ * By default the filter gives precedence to the shapes it drew in the previous frame, so labels at nearly the same
+ * distance from the eye don't flicker as the view moves. See {@link DeclutteringHistory}.
  *
  * @author tag
  * @version $Id$
  */
 public class BasicClutterFilter implements ClutterFilter
 {
-    protected List<Rectangle2D> rectList = new ArrayList<Rectangle2D>();
+    protected ScreenRegionGrid regions = new ScreenRegionGrid();
+    protected DeclutteringHistory history = new DeclutteringHistory();
+    protected boolean enableStability = true;
+
+    /**
+     * Indicates whether the filter gives precedence to the shapes it drew in the previous frame.
+     *
+     * @return true (the default) if shapes drawn in the previous frame take precedence, otherwise false.
+     */
+    public boolean isEnableStability()
+    {
+        return this.enableStability;
+    }
+
+    /**
+     * Specifies whether the filter gives precedence to the shapes it drew in the previous frame. When false, shapes
+     * take precedence strictly by their distance from the eye.
+     *
+     * @param enableStability true if shapes drawn in the previous frame take precedence, otherwise false.
+     */
+    public void setEnableStability(boolean enableStability)
+    {
+        this.enableStability = enableStability;
+
+        if (!enableStability)
+            this.history.clear();
+    }
 
     public void apply(DrawContext dc, List<Declutterable> shapes)
     {
+        this.regions.reset(dc.getView() != null ? dc.getView().getViewport() : null);
+
+        if (this.isEnableStability())
+            shapes = this.history.order(shapes);
+
         for (Declutterable shape : shapes)
         {
             Rectangle2D bounds = shape.getBounds(dc);
@@ -35,16 +71,23 @@ public class BasicClutterFilter implements ClutterFilter
             if (intersectingRegion == null)
             {
                 dc.addOrderedRenderable(shape);
-                this.rectList.add(bounds);
+                this.regions.add(bounds);
+
+                if (this.isEnableStability() && !dc.isPickingMode())
+                    this.history.add(shape);
             }
         }
 
+        // The pick pass considers the same shapes as the following draw pass, so only drawing ends the frame.
+        if (this.isEnableStability() && !dc.isPickingMode())
+            this.history.endFrame();
+
         this.clear();
     }
 
     protected void clear()
     {
-        this.rectList.clear();
+        this.regions.clear();
     }
 
     /**
@@ -52,20 +95,10 @@ public class BasicClutterFilter implements ClutterFilter
      *
      * @param rectangle the region to test.
      *
-     * @return true if the region intersects one or more other regions in the filter, otherwise false.
+     * @return the first region added to the filter that intersects the specified region, or null if none do.
      */
     protected Rectangle2D intersects(Rectangle2D rectangle)
     {
-        if (rectangle == null)
-            return null;
-
-        // Performs a simple linear search. This is a performance bottleneck for very large lists.
-        for (Rectangle2D rect : this.rectList)
-        {
-            if (rectangle.intersects(rect))
-                return rect;
-        }
-
-        return null;
+        return this.regions.intersects(rectangle);
     }
 }
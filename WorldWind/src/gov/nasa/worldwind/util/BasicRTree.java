@@ -0,0 +1,1501 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.terrain.*;
+
+import java.util.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Implements a dynamic R*-tree that indexes items by the sectors bounding them. Unlike {@link BasicQuadTree}, the tree
+ * adapts to the distribution of its items rather than subdividing a fixed region, and items are found by their
+ * bounding sectors rather than by the cells they fall in, so a search returns only the items whose sectors intersect
+ * the search region. Clustered items and items of large extent are therefore indexed as efficiently as uniformly
+ * distributed points.
+ * <p/>
+ * Items are inserted with the R*-tree's choice of subtree, forced reinsertion and split, which keep the nodes' bounds
+ * small and little overlapping as items are added and removed. Many items are more quickly added with {@link
+ * #bulkLoad(java.util.Map)}, which packs the tree with the Sort-Tile-Recursive algorithm.
+ * <p/>
+ * Besides the sector and location searches of <code>BasicQuadTree</code>, the tree finds the items nearest a location
+ * and the items whose sectors are within a frustum. Searches hold a read lock and may run concurrently with one
+ * another. Changes to the tree hold a write lock.
+ * <p/>
+ * An item may be added with more than one sector, for example an item spanning the dateline, and is removed with all
+ * of its sectors. Searches return each intersecting item once.
+ * <p/>
+ * Sectors are assumed to be normalized to +/- 90 degrees latitude and +/- 180 degrees longitude.
+ *
+ * @version $Id$
+ */
+public class BasicRTree<T> implements Iterable<T>
+{
+    protected static final int DEFAULT_MAX_ENTRIES = 16;
+    /** The fraction of an overflowing node's children that are reinserted rather than splitting the node. */
+    protected static final double REINSERT_FRACTION = 0.3;
+    /**
+     * The size in degrees above which bounds are not culled by a frustum, since the box computed for a sector that
+     * large may not enclose it.
+     */
+    protected static final double MAX_CULLED_SIZE = 90;
+
+    /** The bounds of a node or an entry, and the node holding it. */
+    protected static class Bounds
+    {
+        protected Node parent;
+        protected double minLat;
+        protected double maxLat;
+        protected double minLon;
+        protected double maxLon;
+        // The extent last computed to test the bounds against a frustum. Replaced rather than modified, so that
+        // concurrent searches see either the former or the new extent.
+        protected CachedExtent extent;
+    }
+
+    /** A tree node. The children of a leaf node, whose height is 0, are entries, and those of other nodes are nodes. */
+    protected static class Node extends Bounds
+    {
+        protected final int height; // the number of levels below the node
+        protected final Bounds[] children;
+        protected int numChildren;
+
+        public Node(int height, int capacity)
+        {
+            this.height = height;
+            this.children = new Bounds[capacity + 1]; // Room for one child beyond the capacity before a split.
+        }
+    }
+
+    /** An item and one of its sectors, held by a leaf node. */
+    protected static class Entry<T> extends Bounds
+    {
+        protected final T item;
+
+        public Entry(T item, double minLat, double maxLat, double minLon, double maxLon)
+        {
+            this.item = item;
+            this.minLat = minLat;
+            this.maxLat = maxLat;
+            this.minLon = minLon;
+            this.maxLon = maxLon;
+        }
+    }
+
+    /** A box bounding a node or entry on a particular globe. */
+    protected static class CachedExtent
+    {
+        protected final Object globeStateKey;
+        protected final double verticalExaggeration;
+        protected final Extent extent;
+
+        public CachedExtent(Object globeStateKey, double verticalExaggeration, Extent extent)
+        {
+            this.globeStateKey = globeStateKey;
+            this.verticalExaggeration = verticalExaggeration;
+            this.extent = extent;
+        }
+    }
+
+    /** A node or entry to visit during a nearest item search, ordered by its distance from the search location. */
+    protected static class Candidate implements Comparable<Candidate>
+    {
+        protected final Bounds bounds;
+        protected final double distance;
+
+        public Candidate(Bounds bounds, double distance)
+        {
+            this.bounds = bounds;
+            this.distance = distance;
+        }
+
+        public int compareTo(Candidate that)
+        {
+            return Double.compare(this.distance, that.distance);
+        }
+    }
+
+    protected static final Comparator<Bounds> MIN_LAT_ORDER = new Comparator<Bounds>()
+    {
+        public int compare(Bounds a, Bounds b)
+        {
+            return a.minLat < b.minLat ? -1 : a.minLat > b.minLat ? 1 : Double.compare(a.maxLat, b.maxLat);
+        }
+    };
+
+    protected static final Comparator<Bounds> MAX_LAT_ORDER = new Comparator<Bounds>()
+    {
+        public int compare(Bounds a, Bounds b)
+        {
+            return a.maxLat < b.maxLat ? -1 : a.maxLat > b.maxLat ? 1 : Double.compare(a.minLat, b.minLat);
+        }
+    };
+
+    protected static final Comparator<Bounds> MIN_LON_ORDER = new Comparator<Bounds>()
+    {
+        public int compare(Bounds a, Bounds b)
+        {
+            return a.minLon < b.minLon ? -1 : a.minLon > b.minLon ? 1 : Double.compare(a.maxLon, b.maxLon);
+        }
+    };
+
+    protected static final Comparator<Bounds> MAX_LON_ORDER = new Comparator<Bounds>()
+    {
+        public int compare(Bounds a, Bounds b)
+        {
+            return a.maxLon < b.maxLon ? -1 : a.maxLon > b.maxLon ? 1 : Double.compare(a.minLon, b.minLon);
+        }
+    };
+
+    protected static final Comparator<Bounds> CENTER_LAT_ORDER = new Comparator<Bounds>()
+    {
+        public int compare(Bounds a, Bounds b)
+        {
+            return Double.compare(a.minLat + a.maxLat, b.minLat + b.maxLat);
+        }
+    };
+
+    protected static final Comparator<Bounds> CENTER_LON_ORDER = new Comparator<Bounds>()
+    {
+        public int compare(Bounds a, Bounds b)
+        {
+            return Double.compare(a.minLon + a.maxLon, b.minLon + b.maxLon);
+        }
+    };
+
+    protected final int maxEntries;
+    protected final int minEntries;
+    protected Node root;
+    protected Map<T, List<Entry<T>>> entries = new HashMap<T, List<Entry<T>>>(); // the entries of each item
+    protected final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // The heights at which a node has been reinserted during the current insertion, one bit per height.
+    protected int reinsertedHeights;
+    // The bounds of the two nodes of each possible split, computed by computeGroupBounds.
+    protected final double[] lowBounds;
+    protected final double[] highBounds;
+
+    /** Constructs an empty tree whose nodes hold at most 16 children. */
+    public BasicRTree()
+    {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Constructs an empty tree whose nodes hold a specified maximum number of children. Nodes other than the root hold
+     * at least 40% of that number.
+     *
+     * @param maxEntries the maximum number of children of a node.
+     *
+     * @throws IllegalArgumentException if <code>maxEntries</code> is less than 4.
+     */
+    public BasicRTree(int maxEntries)
+    {
+        if (maxEntries < 4)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "maxEntries < 4");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.maxEntries = maxEntries;
+        this.minEntries = Math.max(2, (int) (0.4 * maxEntries));
+        this.root = new Node(0, maxEntries);
+        this.lowBounds = new double[4 * (maxEntries + 2)];
+        this.highBounds = new double[4 * (maxEntries + 2)];
+    }
+
+    /**
+     * Indicates whether the tree contains any items.
+     *
+     * @return true if the tree contains items, otherwise false.
+     */
+    public boolean hasItems()
+    {
+        this.lock.readLock().lock();
+        try
+        {
+            return !this.entries.isEmpty();
+        }
+        finally
+        {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of items in the tree.
+     *
+     * @return the number of items.
+     */
+    public int size()
+    {
+        this.lock.readLock().lock();
+        try
+        {
+            return this.entries.size();
+        }
+        finally
+        {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Indicates whether an item is contained in the tree.
+     *
+     * @param item the item to check. If null, false is returned.
+     *
+     * @return true if the item is in the tree, otherwise false.
+     */
+    public boolean contains(T item)
+    {
+        if (item == null)
+            return false;
+
+        this.lock.readLock().lock();
+        try
+        {
+            return this.entries.containsKey(item);
+        }
+        finally
+        {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds an item to the tree with a sector bounding it. An item added more than once is found by any of its sectors.
+     *
+     * @param item   the item to add.
+     * @param sector the sector bounding the item.
+     *
+     * @throws IllegalArgumentException if either the item or the sector is null.
+     */
+    public void add(T item, Sector sector)
+    {
+        if (item == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (sector == null)
+        {
+            String message = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.lock.writeLock().lock();
+        try
+        {
+            this.insert(this.addEntry(item, sector.getMinLatitude().degrees, sector.getMaxLatitude().degrees,
+                sector.getMinLongitude().degrees, sector.getMaxLongitude().degrees), 0);
+        }
+        finally
+        {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds an item to the tree with the sectors bounding it. This does nothing if the iterable is empty or contains
+     * only null sectors.
+     *
+     * @param item    the item to add.
+     * @param sectors the sectors bounding the item.
+     *
+     * @throws IllegalArgumentException if either the item or the iterable is null.
+     */
+    public void add(T item, Iterable<? extends Sector> sectors)
+    {
+        if (sectors == null)
+        {
+            String message = Logging.getMessage("nullValue.SectorListIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.lock.writeLock().lock();
+        try
+        {
+            for (Sector sector : sectors)
+            {
+                if (sector != null)
+                    this.add(item, sector);
+            }
+        }
+        finally
+        {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds an item to the tree at a location or within a region, specified as they are to {@link
+     * BasicQuadTree#add(Object, double[])}.
+     *
+     * @param item       the item to add.
+     * @param itemCoords an array specifying the region or location of the item. If the array's length is 2 it
+     *                   represents a location in [latitude, longitude]. If its length is 4 it represents a region in
+     *                   [minimum latitude, maximum latitude, minimum longitude, maximum longitude].
+     *
+     * @throws IllegalArgumentException if either <code>item</code> or <code>itemCoords</code> is null, or if the
+     *                                  array's length is neither 2 nor 4.
+     */
+    public void add(T item, double[] itemCoords)
+    {
+        if (item == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (itemCoords == null)
+        {
+            String message = Logging.getMessage("nullValue.CoordinatesAreNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (itemCoords.length != 2 && itemCoords.length != 4)
+        {
+            String message = Logging.getMessage("generic.ArrayInvalidLength", itemCoords.length);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.lock.writeLock().lock();
+        try
+        {
+            if (itemCoords.length == 2)
+                this.insert(this.addEntry(item, itemCoords[0], itemCoords[0], itemCoords[1], itemCoords[1]), 0);
+            else
+                this.insert(this.addEntry(item, itemCoords[0], itemCoords[1], itemCoords[2], itemCoords[3]), 0);
+        }
+        finally
+        {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds many items to the tree at once, and rebuilds the tree with the Sort-Tile-Recursive (STR) packing algorithm.
+     * This is much faster than adding the items one at a time, and the packed nodes are fuller and overlap less, so
+     * searches of the packed tree are also faster. Items already in the tree are kept. Items may be added
+     * individually afterwards.
+     *
+     * @param items the items to add, each mapped to the sectors bounding it. Null sectors are ignored.
+     *
+     * @throws IllegalArgumentException if the map is null or contains a null item or null sector list.
+     */
+    public void bulkLoad(Map<? extends T, ? extends Iterable<? extends Sector>> items)
+    {
+        if (items == null)
+        {
+            String message = Logging.getMessage("nullValue.MapIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        for (Map.Entry<? extends T, ? extends Iterable<? extends Sector>> item : items.entrySet())
+        {
+            if (item.getKey() == null)
+            {
+                String message = Logging.getMessage("nullValue.ObjectIsNull");
+                Logging.logger().severe(message);
+                throw new IllegalArgumentException(message);
+            }
+
+            if (item.getValue() == null)
+            {
+                String message = Logging.getMessage("nullValue.SectorListIsNull");
+                Logging.logger().severe(message);
+                throw new IllegalArgumentException(message);
+            }
+        }
+
+        this.lock.writeLock().lock();
+        try
+        {
+            for (Map.Entry<? extends T, ? extends Iterable<? extends Sector>> item : items.entrySet())
+            {
+                for (Sector sector : item.getValue())
+                {
+                    if (sector != null)
+                        this.addEntry(item.getKey(), sector.getMinLatitude().degrees, sector.getMaxLatitude().degrees,
+                            sector.getMinLongitude().degrees, sector.getMaxLongitude().degrees);
+                }
+            }
+
+            List<Bounds> allEntries = new ArrayList<Bounds>();
+            for (List<Entry<T>> itemEntries : this.entries.values())
+            {
+                allEntries.addAll(itemEntries);
+            }
+
+            this.root = this.pack(allEntries);
+        }
+        finally
+        {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an item and all of its sectors from the tree. This does nothing if the item is null or not in the tree.
+     *
+     * @param item the item to remove.
+     */
+    public void remove(T item)
+    {
+        if (item == null)
+            return;
+
+        this.lock.writeLock().lock();
+        try
+        {
+            List<Entry<T>> itemEntries = this.entries.remove(item);
+            if (itemEntries == null)
+                return;
+
+            for (Entry<T> entry : itemEntries)
+            {
+                Node leaf = entry.parent;
+                removeChild(leaf, entry);
+                this.condense(leaf);
+            }
+        }
+        finally
+        {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /** Removes all items from the tree. */
+    public void clear()
+    {
+        this.lock.writeLock().lock();
+        try
+        {
+            this.entries.clear();
+            this.root = new Node(0, this.maxEntries);
+        }
+        finally
+        {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns an iterator over the tree's items. The iterator does not support removal.
+     *
+     * @return an iterator over a copy of the tree's items.
+     */
+    public Iterator<T> iterator()
+    {
+        this.lock.readLock().lock();
+        try
+        {
+            return Collections.unmodifiableList(new ArrayList<T>(this.entries.keySet())).iterator();
+        }
+        finally
+        {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds and returns the items whose sectors contain a specified location.
+     *
+     * @param location the location of interest.
+     * @param outItems a {@link Set} in which to place the items. If null, a new set is created.
+     *
+     * @return the set of intersecting items. The same set passed as the <code>outItems</code> argument is returned, or
+     *         a new set if that argument is null.
+     *
+     * @throws IllegalArgumentException if <code>location</code> is null.
+     */
+    public Set<T> getItemsAtLocation(LatLon location, Set<T> outItems)
+    {
+        if (location == null)
+        {
+            String message = Logging.getMessage("nullValue.LatLonIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        return this.getItemsAtLocation(Arrays.asList(location), outItems);
+    }
+
+    /**
+     * Finds and returns the items whose sectors contain any of specified locations.
+     *
+     * @param locations the locations of interest.
+     * @param outItems  a {@link Set} in which to place the items. If null, a new set is created.
+     *
+     * @return the set of intersecting items. The same set passed as the <code>outItems</code> argument is returned, or
+     *         a new set if that argument is null.
+     *
+     * @throws IllegalArgumentException if <code>locations</code> is null.
+     */
+    public Set<T> getItemsAtLocation(Iterable<LatLon> locations, Set<T> outItems)
+    {
+        if (locations == null)
+        {
+            String message = Logging.getMessage("nullValue.LatLonListIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (outItems == null)
+            outItems = new HashSet<T>();
+
+        this.lock.readLock().lock();
+        try
+        {
+            for (LatLon location : locations)
+            {
+                if (location == null)
+                    continue;
+
+                double lat = location.getLatitude().degrees;
+                double lon = location.getLongitude().degrees;
+                this.search(this.root, lat, lat, lon, lon, outItems);
+            }
+        }
+        finally
+        {
+            this.lock.readLock().unlock();
+        }
+
+        return outItems;
+    }
+
+    /**
+     * Finds and returns the items intersecting a specified sector.
+     *
+     * @param testSector the sector of interest.
+     * @param outItems   a {@link Set} in which to place the items. If null, a new set is created.
+     *
+     * @return the set of intersecting items. The same set passed as the <code>outItems</code> argument is returned, or
+     *         a new set if that argument is null.
+     *
+     * @throws IllegalArgumentException if <code>testSector</code> is null.
+     */
+    public Set<T> getItemsInRegion(Sector testSector, Set<T> outItems)
+    {
+        if (testSector == null)
+        {
+            String message = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        return this.getItemsInRegions(Arrays.asList(testSector), outItems);
+    }
+
+    /**
+     * Finds and returns the items intersecting a specified collection of sectors.
+     *
+     * @param testSectors the sectors of interest.
+     * @param outItems    a {@link Set} in which to place the items. If null, a new set is created.
+     *
+     * @return the set of intersecting items. The same set passed as the <code>outItems</code> argument is returned, or
+     *         a new set if that argument is null.
+     *
+     * @throws IllegalArgumentException if <code>testSectors</code> is null.
+     */
+    public Set<T> getItemsInRegions(Iterable<Sector> testSectors, Set<T> outItems)
+    {
+        if (testSectors == null)
+        {
+            String message = Logging.getMessage("nullValue.SectorListIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (outItems == null)
+            outItems = new HashSet<T>();
+
+        this.lock.readLock().lock();
+        try
+        {
+            for (Sector testSector : testSectors)
+            {
+                if (testSector != null)
+                    this.search(this.root, testSector.getMinLatitude().degrees, testSector.getMaxLatitude().degrees,
+                        testSector.getMinLongitude().degrees, testSector.getMaxLongitude().degrees, outItems);
+            }
+        }
+        finally
+        {
+            this.lock.readLock().unlock();
+        }
+
+        return outItems;
+    }
+
+    /**
+     * Finds and returns the items intersecting a specified collection of {@link gov.nasa.worldwind.terrain.SectorGeometry}.
+     * This method is a convenience for finding the items intersecting the current visible regions.
+     *
+     * @param geometryList the list of sector geometry.
+     * @param outItems     a {@link Set} in which to place the items. If null, a new set is created.
+     *
+     * @return the set of intersecting items. The same set passed as the <code>outItems</code> argument is returned, or
+     *         a new set if that argument is null.
+     *
+     * @throws IllegalArgumentException if <code>geometryList</code> is null.
+     */
+    public Set<T> getItemsInRegions(SectorGeometryList geometryList, Set<T> outItems)
+    {
+        if (geometryList == null)
+        {
+            String message = Logging.getMessage("nullValue.SectorGeometryListIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        List<Sector> testSectors = new ArrayList<Sector>(geometryList.size());
+        for (SectorGeometry geometry : geometryList)
+        {
+            if (geometry != null)
+                testSectors.add(geometry.getSector());
+        }
+
+        return this.getItemsInRegions(testSectors, outItems);
+    }
+
+    /**
+     * Finds and returns the items whose sectors are within a specified frustum, such as the view frustum or the pick
+     * frustums. A sector is within the frustum if the box bounding it on the specified globe, between the globe's
+     * minimum and maximum elevations in the sector, intersects the frustum. Sectors larger than 90 degrees in either
+     * dimension are always considered within the frustum.
+     * <p/>
+     * The boxes are computed when first needed and are kept until the globe's state key or the vertical exaggeration
+     * changes.
+     *
+     * @param frustum              the frustum of interest, in model coordinates.
+     * @param globe                the globe the items are on.
+     * @param verticalExaggeration the vertical exaggeration of the globe's elevations.
+     * @param outItems             a {@link Set} in which to place the items. If null, a new set is created.
+     *
+     * @return the set of intersecting items. The same set passed as the <code>outItems</code> argument is returned, or
+     *         a new set if that argument is null.
+     *
+     * @throws IllegalArgumentException if either the frustum or the globe is null.
+     */
+    public Set<T> getItemsInFrustum(Frustum frustum, Globe globe, double verticalExaggeration, Set<T> outItems)
+    {
+        if (frustum == null)
+        {
+            String message = Logging.getMessage("nullValue.FrustumIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (globe == null)
+        {
+            String message = Logging.getMessage("nullValue.GlobeIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (outItems == null)
+            outItems = new HashSet<T>();
+
+        this.lock.readLock().lock();
+        try
+        {
+            this.search(this.root, frustum, globe, globe.getGlobeStateKey(), verticalExaggeration, outItems);
+        }
+        finally
+        {
+            this.lock.readLock().unlock();
+        }
+
+        return outItems;
+    }
+
+    /**
+     * Finds and returns the items nearest a specified location, in order of increasing distance. An item's distance is
+     * that of the nearest point of its sectors. Distances are measured in degrees, with longitude differences scaled by
+     * the cosine of the location's latitude and measured across the dateline when that is shorter. This approximates
+     * the great circle distance near the location, and is exact in ordering items along a meridian or near the
+     * equator.
+     *
+     * @param location the location of interest.
+     * @param numItems the number of items to find. Fewer are found if the tree holds fewer items.
+     * @param outItems a {@link List} to which to append the items. If null, a new list is created.
+     *
+     * @return the list of nearest items. The same list passed as the <code>outItems</code> argument is returned, or a
+     *         new list if that argument is null.
+     *
+     * @throws IllegalArgumentException if the location is null or the number of items is less than 1.
+     */
+    @SuppressWarnings({"unchecked"})
+    public List<T> getNearestItems(LatLon location, int numItems, List<T> outItems)
+    {
+        if (location == null)
+        {
+            String message = Logging.getMessage("nullValue.LatLonIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (numItems < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "numItems < 1");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (outItems == null)
+            outItems = new ArrayList<T>(numItems);
+
+        double lat = location.getLatitude().degrees;
+        double lon = location.getLongitude().degrees;
+        double cosLat = Math.cos(location.getLatitude().radians);
+
+        this.lock.readLock().lock();
+        try
+        {
+            // Visit nodes and entries nearest first. A node is no farther than anything below it, so entries are
+            // removed from the queue in order of distance.
+            Set<T> found = new HashSet<T>();
+            PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>();
+            queue.add(new Candidate(this.root, 0));
+
+            while (!queue.isEmpty() && found.size() < numItems)
+            {
+                Bounds bounds = queue.poll().bounds;
+                if (bounds instanceof Entry)
+                {
+                    T item = ((Entry<T>) bounds).item;
+                    if (found.add(item))
+                        outItems.add(item);
+                    continue;
+                }
+
+                Node node = (Node) bounds;
+                for (int i = 0; i < node.numChildren; i++)
+                {
+                    Bounds child = node.children[i];
+                    queue.add(new Candidate(child, distance(lat, lon, cosLat, child)));
+                }
+            }
+        }
+        finally
+        {
+            this.lock.readLock().unlock();
+        }
+
+        return outItems;
+    }
+
+    @SuppressWarnings({"unchecked"})
+    protected void search(Node node, double minLat, double maxLat, double minLon, double maxLon, Set<T> outItems)
+    {
+        for (int i = 0; i < node.numChildren; i++)
+        {
+            Bounds child = node.children[i];
+            if (child.maxLon < minLon || child.minLon > maxLon || child.maxLat < minLat || child.minLat > maxLat)
+                continue;
+
+            if (node.height == 0)
+                outItems.add(((Entry<T>) child).item);
+            else
+                this.search((Node) child, minLat, maxLat, minLon, maxLon, outItems);
+        }
+    }
+
+    @SuppressWarnings({"unchecked"})
+    protected void search(Node node, Frustum frustum, Globe globe, Object globeStateKey, double verticalExaggeration,
+        Set<T> outItems)
+    {
+        for (int i = 0; i < node.numChildren; i++)
+        {
+            Bounds child = node.children[i];
+            if (!this.intersects(child, frustum, globe, globeStateKey, verticalExaggeration))
+                continue;
+
+            if (node.height == 0)
+                outItems.add(((Entry<T>) child).item);
+            else
+                this.search((Node) child, frustum, globe, globeStateKey, verticalExaggeration, outItems);
+        }
+    }
+
+    /**
+     * Indicates whether a node's or an entry's bounds intersect a frustum, computing and caching the box bounding them
+     * on the globe if the cached box is absent or out of date.
+     *
+     * @param bounds               the node or entry.
+     * @param frustum              the frustum.
+     * @param globe                the globe.
+     * @param globeStateKey        the globe's current state key.
+     * @param verticalExaggeration the vertical exaggeration.
+     *
+     * @return true if the bounds intersect the frustum or are too large to test, otherwise false.
+     */
+    protected boolean intersects(Bounds bounds, Frustum frustum, Globe globe, Object globeStateKey,
+        double verticalExaggeration)
+    {
+        if (bounds.maxLat - bounds.minLat > MAX_CULLED_SIZE || bounds.maxLon - bounds.minLon > MAX_CULLED_SIZE)
+            return true;
+
+        CachedExtent cached = bounds.extent;
+        if (cached == null || cached.verticalExaggeration != verticalExaggeration
+            || !cached.globeStateKey.equals(globeStateKey))
+        {
+            Sector sector = Sector.fromDegrees(bounds.minLat, bounds.maxLat, bounds.minLon, bounds.maxLon);
+            cached = new CachedExtent(globeStateKey, verticalExaggeration,
+                Sector.computeBoundingBox(globe, verticalExaggeration, sector));
+            bounds.extent = cached;
+        }
+
+        return frustum.intersects(cached.extent);
+    }
+
+    /**
+     * Computes the distance used by {@link #getNearestItems(gov.nasa.worldwind.geom.LatLon, int, java.util.List)}
+     * between a location and the nearest point of a node's or an entry's bounds. The distance to a node's bounds is no
+     * greater than the distance to the bounds of anything below it.
+     *
+     * @param lat    the location's latitude, in degrees.
+     * @param lon    the location's longitude, in degrees.
+     * @param cosLat the cosine of the location's latitude.
+     * @param bounds the node or entry.
+     *
+     * @return the distance in degrees.
+     */
+    protected static double distance(double lat, double lon, double cosLat, Bounds bounds)
+    {
+        double dLat = lat < bounds.minLat ? bounds.minLat - lat : lat > bounds.maxLat ? lat - bounds.maxLat : 0;
+
+        double dLon = 0;
+        if (lon < bounds.minLon || lon > bounds.maxLon)
+        {
+            // The distance east to the bounds' west edge or west to their east edge, possibly across the dateline.
+            double east = bounds.minLon - lon;
+            double west = lon - bounds.maxLon;
+            dLon = Math.min(east < 0 ? east + 360 : east, west < 0 ? west + 360 : west) * cosLat;
+        }
+
+        return Math.sqrt(dLat * dLat + dLon * dLon);
+    }
+
+    //**************************************************************//
+    //********************  Insertion  *****************************//
+    //**************************************************************//
+
+    protected Entry<T> addEntry(T item, double minLat, double maxLat, double minLon, double maxLon)
+    {
+        Entry<T> entry = new Entry<T>(item, minLat, maxLat, minLon, maxLon);
+
+        List<Entry<T>> itemEntries = this.entries.get(item);
+        if (itemEntries == null)
+        {
+            itemEntries = new ArrayList<Entry<T>>(1);
+            this.entries.put(item, itemEntries);
+        }
+        itemEntries.add(entry);
+
+        return entry;
+    }
+
+    /**
+     * Inserts an entry or a node among the children of the nodes at a specified height.
+     *
+     * @param child  the entry or node to insert.
+     * @param height the height of the child's new parent: 0 for an entry, and one more than the node's height for a
+     *               node.
+     */
+    protected void insert(Bounds child, int height)
+    {
+        this.reinsertedHeights = 0;
+        this.doInsert(child, height);
+    }
+
+    /**
+     * Inserts an entry or a node, and treats the overflow of the nodes it's inserted in. The first node to overflow at
+     * each height has some of its children reinserted, which often finds them a better place in the tree. Other nodes
+     * that overflow are split.
+     *
+     * @param child  the entry or node to insert.
+     * @param height the height of the child's new parent.
+     */
+    protected void doInsert(Bounds child, int height)
+    {
+        Node node = this.chooseSubtree(child, height);
+        node.children[node.numChildren++] = child;
+        child.parent = node;
+
+        for (; node != null; node = node.parent)
+        {
+            if (node.numChildren > this.maxEntries)
+            {
+                int heightBit = 1 << node.height;
+                if (node != this.root && (this.reinsertedHeights & heightBit) == 0)
+                {
+                    this.reinsertedHeights |= heightBit;
+                    this.reinsert(node);
+                    return;
+                }
+
+                this.split(node);
+            }
+            else
+            {
+                computeBounds(node);
+            }
+        }
+    }
+
+    /**
+     * Returns the node at a specified height in which to insert an entry or node. At the level above the leaves the
+     * child whose overlap with its siblings increases least is chosen, and above that the child whose area increases
+     * least.
+     *
+     * @param bounds the bounds of the entry or node to insert.
+     * @param height the height of the node to return.
+     *
+     * @return the chosen node.
+     */
+    protected Node chooseSubtree(Bounds bounds, int height)
+    {
+        Node node = this.root;
+        while (node.height > height)
+        {
+            node = node.height == 1 ? this.chooseLeaf(node, bounds) : this.chooseChild(node, bounds);
+        }
+
+        return node;
+    }
+
+    /**
+     * Returns the child whose bounds need the least enlargement to include specified bounds, or of those the child of
+     * least area.
+     *
+     * @param node   the node whose children are considered.
+     * @param bounds the bounds to include.
+     *
+     * @return the chosen child.
+     */
+    protected Node chooseChild(Node node, Bounds bounds)
+    {
+        Node best = null;
+        double bestEnlargement = Double.MAX_VALUE;
+        double bestArea = Double.MAX_VALUE;
+
+        for (int i = 0; i < node.numChildren; i++)
+        {
+            Node child = (Node) node.children[i];
+            double area = area(child);
+            double enlargement = unionArea(child, bounds) - area;
+
+            if (enlargement < bestEnlargement || (enlargement == bestEnlargement && area < bestArea))
+            {
+                best = child;
+                bestEnlargement = enlargement;
+                bestArea = area;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Returns the leaf whose overlap with the other leaves increases least if its bounds are enlarged to include
+     * specified bounds. Ties are resolved as they are by {@link #chooseChild(Node, Bounds)}. Leaves that need no
+     * enlargement have no overlap increase, so if there are any the smallest of them is chosen without computing
+     * overlaps.
+     *
+     * @param node   the node whose children, which are leaves, are considered.
+     * @param bounds the bounds to include.
+     *
+     * @return the chosen leaf.
+     */
+    protected Node chooseLeaf(Node node, Bounds bounds)
+    {
+        Node best = null;
+        double bestArea = Double.MAX_VALUE;
+        for (int i = 0; i < node.numChildren; i++)
+        {
+            Node child = (Node) node.children[i];
+            if (child.minLat <= bounds.minLat && child.maxLat >= bounds.maxLat && child.minLon <= bounds.minLon
+                && child.maxLon >= bounds.maxLon && area(child) < bestArea)
+            {
+                best = child;
+                bestArea = area(child);
+            }
+        }
+
+        if (best != null)
+            return best;
+
+        double bestOverlapIncrease = Double.MAX_VALUE;
+        double bestEnlargement = Double.MAX_VALUE;
+        for (int i = 0; i < node.numChildren; i++)
+        {
+            Node child = (Node) node.children[i];
+            double minLat = Math.min(child.minLat, bounds.minLat);
+            double maxLat = Math.max(child.maxLat, bounds.maxLat);
+            double minLon = Math.min(child.minLon, bounds.minLon);
+            double maxLon = Math.max(child.maxLon, bounds.maxLon);
+
+            double overlapIncrease = 0;
+            for (int j = 0; j < node.numChildren; j++)
+            {
+                if (j != i)
+                {
+                    Bounds other = node.children[j];
+                    overlapIncrease += overlap(minLat, maxLat, minLon, maxLon, other)
+                        - overlap(child.minLat, child.maxLat, child.minLon, child.maxLon, other);
+                }
+            }
+
+            double area = area(child);
+            double enlargement = (maxLat - minLat) * (maxLon - minLon) - area;
+
+            if (overlapIncrease < bestOverlapIncrease || (overlapIncrease == bestOverlapIncrease
+                && (enlargement < bestEnlargement || (enlargement == bestEnlargement && area < bestArea))))
+            {
+                best = child;
+                bestOverlapIncrease = overlapIncrease;
+                bestEnlargement = enlargement;
+                bestArea = area;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Removes from an overflowing node the children whose centers are farthest from the node's center, and inserts them
+     * again nearest first.
+     *
+     * @param node the overflowing node.
+     */
+    protected void reinsert(Node node)
+    {
+        computeBounds(node);
+        double centerLat = node.minLat + node.maxLat;
+        double centerLon = node.minLon + node.maxLon;
+
+        // Sort the children by decreasing distance with an insertion sort, which is fast for so few children.
+        int n = node.numChildren;
+        Bounds[] children = Arrays.copyOf(node.children, n);
+        double[] distances = new double[n];
+        for (int i = 0; i < n; i++)
+        {
+            Bounds child = children[i];
+            double distance = centerDistance(child, centerLat, centerLon);
+            int j = i - 1;
+            for (; j >= 0 && distances[j] < distance; j--)
+            {
+                children[j + 1] = children[j];
+                distances[j + 1] = distances[j];
+            }
+            children[j + 1] = child;
+            distances[j + 1] = distance;
+        }
+
+        int numReinserted = Math.max(1, (int) (REINSERT_FRACTION * this.maxEntries));
+        Arrays.fill(node.children, null);
+        node.numChildren = 0;
+        for (int i = numReinserted; i < n; i++)
+        {
+            node.children[node.numChildren++] = children[i];
+        }
+
+        for (Node p = node; p != null; p = p.parent)
+        {
+            computeBounds(p);
+        }
+
+        for (int i = numReinserted - 1; i >= 0; i--)
+        {
+            this.doInsert(children[i], node.height);
+        }
+    }
+
+    /**
+     * Computes the squared distance between the center of a node or entry and a point, with both doubled.
+     *
+     * @param bounds    the node or entry.
+     * @param centerLat twice the point's latitude.
+     * @param centerLon twice the point's longitude.
+     *
+     * @return four times the squared distance in degrees.
+     */
+    protected static double centerDistance(Bounds bounds, double centerLat, double centerLon)
+    {
+        double dLat = bounds.minLat + bounds.maxLat - centerLat;
+        double dLon = bounds.minLon + bounds.maxLon - centerLon;
+
+        return dLat * dLat + dLon * dLon;
+    }
+
+    /**
+     * Splits an overflowing node in two with the R*-tree split, and adds the new node to the node's parent. Splits the
+     * root by adding a new root. The children are sorted by their minimum and by their maximum along the axis on which
+     * the possible splits have the least total margin, and split where the two nodes overlap least, or of those where
+     * their total area is least.
+     *
+     * @param node the node to split.
+     */
+    @SuppressWarnings({"unchecked"})
+    protected void split(Node node)
+    {
+        int n = node.numChildren;
+        Bounds[][] orders = new Bounds[4][];
+        double[] marginSums = new double[4];
+        Comparator[] comparators = {MIN_LAT_ORDER, MAX_LAT_ORDER, MIN_LON_ORDER, MAX_LON_ORDER};
+        for (int i = 0; i < 4; i++)
+        {
+            orders[i] = Arrays.copyOf(node.children, n);
+            Arrays.sort(orders[i], comparators[i]);
+            marginSums[i] = this.computeMarginSum(orders[i]);
+        }
+        int firstOrder = marginSums[0] + marginSums[1] <= marginSums[2] + marginSums[3] ? 0 : 2;
+
+        Bounds[] children = null;
+        int splitIndex = this.minEntries;
+        double bestOverlap = Double.MAX_VALUE;
+        double bestArea = Double.MAX_VALUE;
+        double[] low = this.lowBounds;
+        double[] high = this.highBounds;
+        for (int i = firstOrder; i < firstOrder + 2; i++)
+        {
+            this.computeGroupBounds(orders[i]);
+
+            for (int k = this.minEntries; k <= n - this.minEntries; k++)
+            {
+                int a = 4 * k;
+                double overlap = Math.max(0, Math.min(low[a + 1], high[a + 1]) - Math.max(low[a], high[a]))
+                    * Math.max(0, Math.min(low[a + 3], high[a + 3]) - Math.max(low[a + 2], high[a + 2]));
+                double area = (low[a + 1] - low[a]) * (low[a + 3] - low[a + 2])
+                    + (high[a + 1] - high[a]) * (high[a + 3] - high[a + 2]);
+
+                if (children == null || overlap < bestOverlap || (overlap == bestOverlap && area < bestArea))
+                {
+                    children = orders[i];
+                    splitIndex = k;
+                    bestOverlap = overlap;
+                    bestArea = area;
+                }
+            }
+        }
+
+        Node sibling = new Node(node.height, this.maxEntries);
+        Arrays.fill(node.children, null);
+        node.numChildren = 0;
+        for (int i = 0; i < n; i++)
+        {
+            Node target = i < splitIndex ? node : sibling;
+            target.children[target.numChildren++] = children[i];
+            children[i].parent = target;
+        }
+        computeBounds(node);
+        computeBounds(sibling);
+
+        if (node.parent == null)
+        {
+            Node newRoot = new Node(node.height + 1, this.maxEntries);
+            newRoot.children[newRoot.numChildren++] = node;
+            newRoot.children[newRoot.numChildren++] = sibling;
+            node.parent = newRoot;
+            sibling.parent = newRoot;
+            this.root = newRoot;
+        }
+        else
+        {
+            Node parent = node.parent;
+            parent.children[parent.numChildren++] = sibling;
+            sibling.parent = parent;
+        }
+    }
+
+    /**
+     * Computes the total margin of the two nodes of each allowed split of an ordered sequence of children.
+     *
+     * @param children the ordered children.
+     *
+     * @return the total margin.
+     */
+    protected double computeMarginSum(Bounds[] children)
+    {
+        this.computeGroupBounds(children);
+
+        double sum = 0;
+        for (int k = this.minEntries; k <= children.length - this.minEntries; k++)
+        {
+            int a = 4 * k;
+            sum += this.lowBounds[a + 1] - this.lowBounds[a] + this.lowBounds[a + 3] - this.lowBounds[a + 2]
+                + this.highBounds[a + 1] - this.highBounds[a] + this.highBounds[a + 3] - this.highBounds[a + 2];
+        }
+
+        return sum;
+    }
+
+    /**
+     * Computes the bounds of the first <code>k</code> children and of the remaining children, for every
+     * <code>k</code>. The bounds of the first <code>k</code> children are placed in the tree's low bounds array,
+     * starting at index <code>4 * k</code>, as minimum latitude, maximum latitude, minimum longitude and maximum
+     * longitude. The bounds of the children from index <code>k</code> on are placed in the high bounds array at the
+     * same index.
+     *
+     * @param children the ordered children.
+     */
+    protected void computeGroupBounds(Bounds[] children)
+    {
+        int n = children.length;
+        double[] low = this.lowBounds;
+        double[] high = this.highBounds;
+
+        low[4] = children[0].minLat;
+        low[5] = children[0].maxLat;
+        low[6] = children[0].minLon;
+        low[7] = children[0].maxLon;
+        for (int k = 2; k <= n; k++)
+        {
+            Bounds b = children[k - 1];
+            int a = 4 * k;
+            low[a] = Math.min(low[a - 4], b.minLat);
+            low[a + 1] = Math.max(low[a - 3], b.maxLat);
+            low[a + 2] = Math.min(low[a - 2], b.minLon);
+            low[a + 3] = Math.max(low[a - 1], b.maxLon);
+        }
+
+        int last = 4 * (n - 1);
+        high[last] = children[n - 1].minLat;
+        high[last + 1] = children[n - 1].maxLat;
+        high[last + 2] = children[n - 1].minLon;
+        high[last + 3] = children[n - 1].maxLon;
+        for (int k = n - 2; k >= 0; k--)
+        {
+            Bounds b = children[k];
+            int a = 4 * k;
+            high[a] = Math.min(high[a + 4], b.minLat);
+            high[a + 1] = Math.max(high[a + 5], b.maxLat);
+            high[a + 2] = Math.min(high[a + 6], b.minLon);
+            high[a + 3] = Math.max(high[a + 7], b.maxLon);
+        }
+    }
+
+    //**************************************************************//
+    //********************  Bulk Loading  **************************//
+    //**************************************************************//
+
+    /**
+     * Builds a tree holding specified entries with the Sort-Tile-Recursive algorithm.
+     *
+     * @param entries the entries.
+     *
+     * @return the root of the tree.
+     */
+    protected Node pack(List<Bounds> entries)
+    {
+        if (entries.isEmpty())
+            return new Node(0, this.maxEntries);
+
+        List<Bounds> level = entries;
+        int height = 0;
+        do
+        {
+            level = this.packLevel(level, height++);
+        }
+        while (level.size() > 1);
+
+        Node root = (Node) level.get(0);
+        root.parent = null;
+
+        return root;
+    }
+
+    /**
+     * Packs the entries or nodes of one level of the tree into nodes. The children are sorted by longitude into
+     * vertical slices of about the square root of the number of nodes, and the children of each slice are sorted by
+     * latitude into nodes. Children are divided evenly among the slices and among the nodes of each slice, so that
+     * every node other than the root holds at least the minimum number of children.
+     *
+     * @param children the entries or nodes to pack.
+     * @param height   the height of the nodes to create.
+     *
+     * @return the new nodes.
+     */
+    protected List<Bounds> packLevel(List<Bounds> children, int height)
+    {
+        int n = children.size();
+        int numNodes = (n + this.maxEntries - 1) / this.maxEntries;
+        int numSlices = (int) Math.ceil(Math.sqrt(numNodes));
+
+        Bounds[] sorted = children.toArray(new Bounds[n]);
+        Arrays.sort(sorted, CENTER_LON_ORDER);
+
+        List<Bounds> nodes = new ArrayList<Bounds>(numNodes + numSlices);
+        for (int s = 0; s < numSlices; s++)
+        {
+            int sliceStart = (int) ((long) s * n / numSlices);
+            int sliceEnd = (int) ((long) (s + 1) * n / numSlices);
+            int sliceSize = sliceEnd - sliceStart;
+            if (sliceSize == 0)
+                continue;
+
+            Arrays.sort(sorted, sliceStart, sliceEnd, CENTER_LAT_ORDER);
+
+            int numSliceNodes = (sliceSize + this.maxEntries - 1) / this.maxEntries;
+            for (int i = 0; i < numSliceNodes; i++)
+            {
+                Node node = new Node(height, this.maxEntries);
+                int start = sliceStart + i * sliceSize / numSliceNodes;
+                int end = sliceStart + (i + 1) * sliceSize / numSliceNodes;
+                for (int j = start; j < end; j++)
+                {
+                    node.children[node.numChildren++] = sorted[j];
+                    sorted[j].parent = node;
+                }
+                computeBounds(node);
+                nodes.add(node);
+            }
+        }
+
+        return nodes;
+    }
+
+    //**************************************************************//
+    //********************  Removal  *******************************//
+    //**************************************************************//
+
+    protected static void removeChild(Node node, Bounds child)
+    {
+        for (int i = 0; i < node.numChildren; i++)
+        {
+            if (node.children[i] == child)
+            {
+                node.children[i] = node.children[--node.numChildren];
+                node.children[node.numChildren] = null;
+                child.parent = null;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes the nodes between a leaf and the root that hold too few children, and reinserts their children. Shrinks
+     * the bounds of the remaining ancestors, and removes a root with a single child node.
+     *
+     * @param leaf the leaf an entry was removed from.
+     */
+    protected void condense(Node leaf)
+    {
+        List<Node> removed = new ArrayList<Node>();
+
+        for (Node node = leaf; node != this.root; )
+        {
+            Node parent = node.parent;
+            if (node.numChildren < this.minEntries)
+            {
+                removeChild(parent, node);
+                removed.add(node);
+            }
+            else
+            {
+                computeBounds(node);
+            }
+            node = parent;
+        }
+        computeBounds(this.root);
+
+        while (this.root.height > 0 && this.root.numChildren == 1)
+        {
+            this.root = (Node) this.root.children[0];
+            this.root.parent = null;
+        }
+
+        if (this.root.height > 0 && this.root.numChildren == 0)
+            this.root = new Node(0, this.maxEntries);
+
+        for (Node node : removed)
+        {
+            for (int i = 0; i < node.numChildren; i++)
+            {
+                this.insertOrphan(node.children[i], node.height);
+            }
+        }
+    }
+
+    /**
+     * Inserts an entry or node whose parent was removed from the tree, or the entries below it if the tree is no longer
+     * tall enough to hold the node at its height.
+     *
+     * @param child        the entry or node to insert.
+     * @param parentHeight the height of the child's former parent.
+     */
+    protected void insertOrphan(Bounds child, int parentHeight)
+    {
+        if (parentHeight <= this.root.height)
+        {
+            this.insert(child, parentHeight);
+            return;
+        }
+
+        Node node = (Node) child;
+        for (int i = 0; i < node.numChildren; i++)
+        {
+            this.insertOrphan(node.children[i], parentHeight - 1);
+        }
+    }
+
+    //**************************************************************//
+    //********************  Bounds  ********************************//
+    //**************************************************************//
+
+    protected static void computeBounds(Node node)
+    {
+        node.minLat = Double.MAX_VALUE;
+        node.maxLat = -Double.MAX_VALUE;
+        node.minLon = Double.MAX_VALUE;
+        node.maxLon = -Double.MAX_VALUE;
+
+        for (int i = 0; i < node.numChildren; i++)
+        {
+            Bounds child = node.children[i];
+            node.minLat = Math.min(node.minLat, child.minLat);
+            node.maxLat = Math.max(node.maxLat, child.maxLat);
+            node.minLon = Math.min(node.minLon, child.minLon);
+            node.maxLon = Math.max(node.maxLon, child.maxLon);
+        }
+
+        node.extent = null;
+    }
+
+    protected static double area(Bounds bounds)
+    {
+        return (bounds.maxLat - bounds.minLat) * (bounds.maxLon - bounds.minLon);
+    }
+
+    protected static double unionArea(Bounds a, Bounds b)
+    {
+        return (Math.max(a.maxLat, b.maxLat) - Math.min(a.minLat, b.minLat))
+            * (Math.max(a.maxLon, b.maxLon) - Math.min(a.minLon, b.minLon));
+    }
+
+    protected static double overlap(double minLat, double maxLat, double minLon, double maxLon, Bounds other)
+    {
+        double dLat = Math.min(maxLat, other.maxLat) - Math.max(minLat, other.minLat);
+        double dLon = Math.min(maxLon, other.maxLon) - Math.max(minLon, other.minLon);
+
+        return dLat > 0 && dLon > 0 ? dLat * dLon : 0;
+    }
+}
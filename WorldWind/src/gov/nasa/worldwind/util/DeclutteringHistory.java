@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.render.*;
+
+import java.util.*;
+
+/**
+ * Remembers the shapes a clutter filter drew in the previous frame so that the filter can give them precedence in the
+ * current one. Shapes at nearly the same distance from the eye otherwise trade places in the front-to-back order as the
+ * view moves, and the labels the filter keeps flicker between them. The precedence is limited to a relative distance
+ * tolerance, so a shape that becomes clearly nearer the eye than one drawn in the previous frame still displaces it.
+ * <p/>
+ * Ordered renderables are typically created anew each frame, so shapes are identified by the object they represent:
+ * the placemark of a {@link PointPlacemark.OrderedPlacemark}, the text of a {@link DeclutterableText}, or otherwise
+ * the shape itself.
+ *
+ * @version $Id$
+ */
+public class DeclutteringHistory
+{
+    protected Set<Object> previousShapes = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    protected Set<Object> currentShapes = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    protected double distanceTolerance = 0.1;
+
+    /**
+     * Indicates the relative distance within which shapes drawn in the previous frame take precedence over nearer
+     * shapes.
+     *
+     * @return the distance tolerance, as a fraction of distance from the eye. The default is 0.1.
+     */
+    public double getDistanceTolerance()
+    {
+        return this.distanceTolerance;
+    }
+
+    /**
+     * Specifies the relative distance within which shapes drawn in the previous frame take precedence over nearer
+     * shapes. A shape drawn in the previous frame precedes another shape unless its distance from the eye exceeds the
+     * other's by more than this fraction of its own distance.
+     *
+     * @param distanceTolerance the distance tolerance, as a fraction of distance from the eye.
+     *
+     * @throws IllegalArgumentException if the tolerance is less than 0.
+     */
+    public void setDistanceTolerance(double distanceTolerance)
+    {
+        if (distanceTolerance < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "distanceTolerance < 0");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.distanceTolerance = distanceTolerance;
+    }
+
+    /**
+     * Orders shapes so that those drawn in the previous frame precede the shapes less than the distance tolerance
+     * nearer the eye. The specified shapes are expected in front-to-back order, and the shapes drawn in the previous
+     * frame and the others each keep their order.
+     *
+     * @param shapes the shapes to order, in front-to-back order.
+     *
+     * @return the shapes in precedence order. This is the specified list if no shape was drawn in the previous frame.
+     */
+    public List<Declutterable> order(List<Declutterable> shapes)
+    {
+        if (shapes == null || this.previousShapes.isEmpty())
+            return shapes;
+
+        List<Declutterable> previous = new ArrayList<Declutterable>();
+        List<Declutterable> others = new ArrayList<Declutterable>(shapes.size());
+        for (Declutterable shape : shapes)
+        {
+            if (this.previousShapes.contains(this.getKey(shape)))
+                previous.add(shape);
+            else
+                others.add(shape);
+        }
+
+        if (previous.isEmpty())
+            return shapes;
+
+        // Merge the two lists as if the previously drawn shapes were nearer the eye by the tolerance.
+        List<Declutterable> ordered = new ArrayList<Declutterable>(shapes.size());
+        int i = 0;
+        int j = 0;
+        while (i < previous.size() && j < others.size())
+        {
+            Declutterable shape = previous.get(i);
+            if (shape.getDistanceFromEye() * (1 - this.distanceTolerance) <= others.get(j).getDistanceFromEye())
+            {
+                ordered.add(shape);
+                i++;
+            }
+            else
+            {
+                ordered.add(others.get(j++));
+            }
+        }
+
+        ordered.addAll(previous.subList(i, previous.size()));
+        ordered.addAll(others.subList(j, others.size()));
+
+        return ordered;
+    }
+
+    /**
+     * Records that a shape is drawn in the current frame.
+     *
+     * @param shape the shape drawn.
+     */
+    public void add(Declutterable shape)
+    {
+        if (shape != null)
+            this.currentShapes.add(this.getKey(shape));
+    }
+
+    /** Ends the current frame. The shapes recorded during it take precedence in the next one. */
+    public void endFrame()
+    {
+        Set<Object> shapes = this.previousShapes;
+        this.previousShapes = this.currentShapes;
+        this.currentShapes = shapes;
+        this.currentShapes.clear();
+    }
+
+    /** Forgets the shapes drawn in the previous and current frames. */
+    public void clear()
+    {
+        this.previousShapes.clear();
+        this.currentShapes.clear();
+    }
+
+    protected Object getKey(Declutterable shape)
+    {
+        if (shape instanceof PointPlacemark.OrderedPlacemark)
+            return ((PointPlacemark.OrderedPlacemark) shape).getPlacemark();
+
+        if (shape instanceof DeclutterableText)
+            return ((DeclutterableText) shape).getText();
+
+        return shape;
+    }
+}
@@ -19,7 +19,11 @@ import java.io.*;
  * values. Each row corresponding to a latitude, with the first row corresponding to +90 degrees (90 North). The integer
  * values must be in centimeters.
  * <p/>
- * Once constructed, the instance can be passed to {@link gov.nasa.worldwind.globes.EllipsoidalGlobe#applyEGMA96Offsets(String)}
+ * Finer geoid grids of the same layout, such as the 2.5 minute EGM2008 grid, can be used by specifying the grid
+ * interval, the data type of the grid's values and the number of meters per unit. Grid files on the local file system
+ * are memory mapped rather than read, so only the regions of the grid in which offsets are computed are loaded.
+ * <p/>
+ * Once constructed, the instance can be passed to {@link gov.nasa.worldwind.globes.EllipsoidalGlobe#applyEGMA96Offsets(EGM96)}
  * to apply the offets to elevations produced by the globe.
  *
  * @author tag
@@ -29,6 +33,11 @@ public class EGM96
 {
     protected String offsetsFilePath;
     protected BufferWrapper deltas;
+    protected double intervalDegrees;
+    protected int numRows;
+    protected int numCols;
+    protected String dataType;
+    protected double metersPerUnit;
 
     /**
      * Construct an instance.
@@ -37,6 +46,25 @@ public class EGM96
      *                        description of the file.
      */
     public EGM96(String offsetsFilePath) throws IOException
+    {
+        this(offsetsFilePath, INTERVAL, AVKey.INT16, 0.01);
+    }
+
+    /**
+     * Construct an instance for a geoid grid of a specified interval and data type. The grid must have a row for every
+     * interval of latitude from +90 to -90 degrees, inclusive, and a column for every interval of longitude from 0
+     * degrees up to but not including 360 degrees. Values are in big-endian byte order.
+     *
+     * @param offsetsFilePath a path pointing to a file with the geoid offsets.
+     * @param interval        the grid interval, in both latitude and longitude.
+     * @param dataType        the data type of the grid's values, either {@link AVKey#INT16} or {@link AVKey#FLOAT32}.
+     * @param metersPerUnit   the number of meters per unit of the grid's values.
+     *
+     * @throws IllegalArgumentException if the path, interval or data type is null, or the interval does not evenly
+     *                                  divide 90 degrees.
+     * @throws IOException              if the file cannot be read.
+     */
+    public EGM96(String offsetsFilePath, Angle interval, String dataType, double metersPerUnit) throws IOException
     {
         if (offsetsFilePath == null)
         {
@@ -45,12 +73,81 @@ public class EGM96
             throw new IllegalArgumentException(msg);
         }
 
+        if (interval == null)
+        {
+            String msg = Logging.getMessage("nullValue.AngleIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        double numIntervals = 90 / interval.degrees;
+        if (interval.degrees <= 0 || Math.abs(numIntervals - Math.rint(numIntervals)) > 1e-9)
+        {
+            String msg = Logging.getMessage("generic.AngleOutOfRange", interval);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (dataType == null)
+        {
+            String msg = Logging.getMessage("nullValue.DataTypeIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
         this.offsetsFilePath = offsetsFilePath;
+        this.intervalDegrees = interval.degrees;
+        this.numRows = 2 * (int) Math.rint(numIntervals) + 1;
+        this.numCols = 4 * (int) Math.rint(numIntervals);
+        this.dataType = dataType;
+        this.metersPerUnit = metersPerUnit;
 
         this.loadOffsetFile();
     }
 
     protected void loadOffsetFile() throws IOException
+    {
+        AVList bufferParams = new AVListImpl();
+        bufferParams.setValue(AVKey.DATA_TYPE, this.dataType);
+        bufferParams.setValue(AVKey.BYTE_ORDER, AVKey.BIG_ENDIAN);
+
+        // Map the file if it's on the local file system, either directly or as a class path resource.
+        File file = new File(this.offsetsFilePath);
+        if (!file.exists())
+        {
+            java.net.URL url = EGM96.class.getResource("/" + this.offsetsFilePath);
+            file = url != null && "file".equals(url.getProtocol()) ? WWIO.convertURLToFile(url) : null;
+        }
+
+        if (file != null)
+        {
+            try
+            {
+                this.deltas = BufferWrapper.wrap(WWIO.mapFile(file), bufferParams);
+            }
+            catch (IOException e)
+            {
+                String msg = Logging.getMessage("generic.ExceptionAttemptingToReadFile", this.offsetsFilePath);
+                Logging.logger().log(java.util.logging.Level.SEVERE, msg, e);
+                throw e;
+            }
+        }
+        else
+        {
+            this.deltas = this.readOffsetStream(bufferParams);
+        }
+
+        if (this.deltas.length() < this.numRows * this.numCols)
+        {
+            String msg = Logging.getMessage("EGM96.OffsetsFileTooSmall", this.offsetsFilePath,
+                this.numRows * this.numCols);
+            Logging.logger().severe(msg);
+            this.deltas = null;
+            throw new WWRuntimeException(msg);
+        }
+    }
+
+    protected BufferWrapper readOffsetStream(AVList bufferParams) throws IOException
     {
         InputStream is = WWIO.openFileOrResourceStream(this.offsetsFilePath, EGM96.class);
         if (is == null)
@@ -62,10 +159,7 @@ public class EGM96
 
         try
         {
-            AVList bufferParams = new AVListImpl();
-            bufferParams.setValue(AVKey.DATA_TYPE, AVKey.INT16);
-            bufferParams.setValue(AVKey.BYTE_ORDER, AVKey.BIG_ENDIAN);
-            this.deltas = BufferWrapper.wrap(WWIO.readStreamToBuffer(is, true), bufferParams);
+            return BufferWrapper.wrap(WWIO.readStreamToBuffer(is, true), bufferParams);
         }
         catch (IOException e)
         {
@@ -105,59 +199,117 @@ public class EGM96
             throw new IllegalArgumentException(msg);
         }
 
+        return this.getOffsetDegrees(latitude.degrees, longitude.degrees);
+    }
+
+    /**
+     * Computes the geoid offsets of a list of locations.
+     *
+     * @param latitudes  the locations' latitudes, in degrees.
+     * @param longitudes the locations' longitudes, in degrees.
+     * @param offsets    an array in which to return the offsets, in meters. It must be at least as long as the
+     *                   latitudes array. Locations whose latitude or longitude is NaN have an offset of zero.
+     *
+     * @throws IllegalArgumentException if any array is null, the longitudes array is shorter than the latitudes
+     *                                  array, or the offsets array is shorter than the latitudes array.
+     */
+    public void getOffsets(double[] latitudes, double[] longitudes, double[] offsets)
+    {
+        if (latitudes == null || longitudes == null)
+        {
+            String msg = Logging.getMessage("nullValue.LatLonListIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (offsets == null)
+        {
+            String msg = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (longitudes.length < latitudes.length || offsets.length < latitudes.length)
+        {
+            String msg = Logging.getMessage("generic.ArrayInvalidLength", latitudes.length);
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        for (int i = 0; i < latitudes.length; i++)
+        {
+            double lat = latitudes[i];
+            double lon = longitudes[i];
+            offsets[i] = Double.isNaN(lat) || Double.isNaN(lon) ? 0 : this.getOffsetDegrees(lat, lon);
+        }
+    }
+
+    /**
+     * Computes the geoid offset at a location specified in degrees. This is the primitive form of {@link
+     * #getOffset(gov.nasa.worldwind.geom.Angle, gov.nasa.worldwind.geom.Angle)} for callers holding packed
+     * coordinates.
+     *
+     * @param latitude  the location's latitude, in degrees.
+     * @param longitude the location's longitude, in degrees.
+     *
+     * @return the geoid offset, in meters.
+     */
+    public double getOffsetDegrees(double latitude, double longitude)
+    {
         // Return 0 for all offsets if the file failed to load. A log message of the failure will have been generated
         // by the load method.
         if (this.deltas == null)
             return 0;
 
-        double lat = latitude.degrees;
-        double lon = longitude.degrees >= 0 ? longitude.degrees : longitude.degrees + 360;
+        double lat = latitude;
+        double lon = longitude >= 0 ? longitude : longitude + 360;
 
-        int topRow = (int) ((90 - lat) / INTERVAL.degrees);
+        int topRow = (int) ((90 - lat) / this.intervalDegrees);
         if (lat <= -90)
-            topRow = NUM_ROWS - 2;
+            topRow = this.numRows - 2;
         int bottomRow = topRow + 1;
 
         // Note that the number of columns does not repeat the column at 0 longitude, so we must force the right
         // column to 0 for any longitude that's less than one interval from 360, and force the left column to the
         // last column of the grid.
-        int leftCol = (int) (lon / INTERVAL.degrees);
+        int leftCol = (int) (lon / this.intervalDegrees);
         int rightCol = leftCol + 1;
-        if (lon >= 360 - INTERVAL.degrees)
+        if (lon >= 360 - this.intervalDegrees)
         {
-            leftCol = NUM_COLS - 1;
+            leftCol = this.numCols - 1;
             rightCol = 0;
         }
 
-        double latTop = 90 - topRow * INTERVAL.degrees;
-        double lonLeft = leftCol * INTERVAL.degrees;
+        double latTop = 90 - topRow * this.intervalDegrees;
+        double lonLeft = leftCol * this.intervalDegrees;
 
         double ul = this.gePostOffset(topRow, leftCol);
         double ll = this.gePostOffset(bottomRow, leftCol);
         double lr = this.gePostOffset(bottomRow, rightCol);
         double ur = this.gePostOffset(topRow, rightCol);
 
-        double u = (lon - lonLeft) / INTERVAL.degrees;
-        double v = (latTop - lat) / INTERVAL.degrees;
+        double u = (lon - lonLeft) / this.intervalDegrees;
+        double v = (latTop - lat) / this.intervalDegrees;
 
-        double pll = (1.0 - u) * (1.0 - v);
-        double plr = u * (1.0 - v);
-        double pur = u * v;
-        double pul = (1.0 - u) * v;
+        // v is measured down from the top row, so the top posts take the weight 1 - v.
+        double pll = (1.0 - u) * v;
+        double plr = u * v;
+        double pur = u * (1.0 - v);
+        double pul = (1.0 - u) * (1.0 - v);
 
         double offset = pll * ll + plr * lr + pur * ur + pul * ul;
 
-        return offset / 100d; // convert centimeters to meters
+        return offset * this.metersPerUnit; // convert grid units to meters
     }
 
     protected double gePostOffset(int row, int col)
     {
-        int k = row * NUM_COLS + col;
+        int k = row * this.numCols + col;
 
         if (k >= this.deltas.length())
             System.out.println(k);
 
-        return this.deltas.getInt(k);
+        return this.deltas.getDouble(k);
     }
 //
 //    public static void main(String[] args)
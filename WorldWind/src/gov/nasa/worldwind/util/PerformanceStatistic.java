@@ -19,6 +19,9 @@ public class PerformanceStatistic implements Comparable<PerformanceStatistic>
     public static final String IMAGE_TILE_COUNT = "gov.nasa.worldwind.perfstat.ImageTileCount";
     public static final String TERRAIN_TILE_COUNT = "gov.nasa.worldwind.perfstat.TerrainTileCount";
     public static final String MEMORY_CACHE = "gov.nasa.worldwind.perfstat.MemoryCache";
+    public static final String ORDERED_RENDERABLES_CULLED = "gov.nasa.worldwind.perfstat.OrderedRenderablesCulled";
+    public static final String ORDERED_RENDERABLES_DRAWN = "gov.nasa.worldwind.perfstat.OrderedRenderablesDrawn";
+    public static final String ORDERED_RENDERABLES_QUEUED = "gov.nasa.worldwind.perfstat.OrderedRenderablesQueued";
     public static final String PICK_TIME = "gov.nasa.worldwind.perfstat.PickTime";
     public static final String JVM_HEAP = "gov.nasa.worldwind.perfstat.JvmHeap";
     public static final String JVM_HEAP_USED = "gov.nasa.worldwind.perfstat.JvmHeapUsed";
@@ -101,4 +104,19 @@ public class PerformanceStatistic implements Comparable<PerformanceStatistic>
     {
         return this.displayString + " " + this.value.toString();
     }
+
+    /**
+     * Computes a cache's hit ratio as a percentage of its lookups.
+     *
+     * @param hitCount  the number of lookups that found their item.
+     * @param missCount the number of lookups that did not find their item.
+     *
+     * @return the hit ratio in percent, or 0 if there have been no lookups.
+     */
+    public static int computeHitRatio(long hitCount, long missCount)
+    {
+        long lookups = hitCount + missCount;
+
+        return lookups > 0 ? (int) (100 * hitCount / lookups) : 0;
+    }
 }
@@ -21,6 +21,10 @@ import java.util.List;
  * Provides a clutter filter that rearranges {@link PointPlacemark} labels to avoid overlap. When placemarks overlap,
  * only their label and a line to their position are drawn. The placemark's icon is not drawn for overlapping
  * placemarks.
+ * <p/>
+ * The regions of drawn placemarks are held in a {@link ScreenRegionGrid}, so each placemark is compared only with the
+ * regions near it. By default the filter gives precedence to the placemarks that claimed regions in the previous frame,
+ * so the placemarks drawn don't flicker as the view moves. See {@link DeclutteringHistory}.
  *
  * @author tag
  * @version $Id$
@@ -28,12 +32,46 @@ import java.util.List;
 public class PlacemarkClutterFilter implements ClutterFilter
 {
     /** Holds the rectangles of the regions already drawn. */
-    protected List<Rectangle2D> rectList = new ArrayList<Rectangle2D>();
+    protected ScreenRegionGrid regions = new ScreenRegionGrid();
     /** Maintains a list of regions and the shapes associated with each region. */
     protected Map<Rectangle2D, List<Declutterable>> shapeMap = new HashMap<Rectangle2D, List<Declutterable>>();
+    /** Holds the shapes that claimed regions in the previous frame. */
+    protected DeclutteringHistory history = new DeclutteringHistory();
+    protected boolean enableStability = true;
+
+    /**
+     * Indicates whether the filter gives precedence to the shapes that claimed regions in the previous frame.
+     *
+     * @return true (the default) if shapes that claimed regions in the previous frame take precedence, otherwise
+     *         false.
+     */
+    public boolean isEnableStability()
+    {
+        return this.enableStability;
+    }
+
+    /**
+     * Specifies whether the filter gives precedence to the shapes that claimed regions in the previous frame. When
+     * false, shapes take precedence strictly by their distance from the eye.
+     *
+     * @param enableStability true if shapes that claimed regions in the previous frame take precedence, otherwise
+     *                        false.
+     */
+    public void setEnableStability(boolean enableStability)
+    {
+        this.enableStability = enableStability;
+
+        if (!enableStability)
+            this.history.clear();
+    }
 
     public void apply(DrawContext dc, List<Declutterable> shapes)
     {
+        this.regions.reset(dc.getView() != null ? dc.getView().getViewport() : null);
+
+        if (this.isEnableStability())
+            shapes = this.history.order(shapes);
+
         for (Declutterable shape : shapes)
         {
             Rectangle2D bounds = shape.getBounds(dc);
@@ -50,9 +88,16 @@ public class PlacemarkClutterFilter implements ClutterFilter
                 double x = bounds.getX() - 0.5 * bounds.getWidth();
                 double y = bounds.getY() - 0.5 * bounds.getHeight();
                 this.addShape(new Rectangle.Double(x, y, w, h), shape);
+
+                if (this.isEnableStability() && !dc.isPickingMode())
+                    this.history.add(shape);
             }
         }
 
+        // The pick pass considers the same shapes as the following draw pass, so only drawing ends the frame.
+        if (this.isEnableStability() && !dc.isPickingMode())
+            this.history.endFrame();
+
         this.render(dc);
         this.clear();
     }
@@ -60,7 +105,7 @@ public class PlacemarkClutterFilter implements ClutterFilter
     /** Release all the resources used in the most recent filter application. */
     protected void clear()
     {
-        this.rectList.clear();
+        this.regions.clear();
         this.shapeMap.clear();
     }
 
@@ -69,21 +114,11 @@ public class PlacemarkClutterFilter implements ClutterFilter
      *
      * @param rectangle the region to test.
      *
-     * @return the intersected region if the input region intersects one or more other regions in the filter, otherwise
-     * false.
+     * @return the first region added to the filter that intersects the input region, or null if none do.
      */
     protected Rectangle2D intersects(Rectangle2D rectangle)
     {
-        if (rectangle == null)
-            return null;
-
-        for (Rectangle2D rect : this.rectList)
-        {
-            if (rectangle.intersects(rect))
-                return rect;
-        }
-
-        return null;
+        return this.regions.intersects(rectangle);
     }
 
     /**
@@ -100,7 +135,7 @@ public class PlacemarkClutterFilter implements ClutterFilter
         {
             shapeList = new ArrayList<Declutterable>(1);
             this.shapeMap.put(rectangle, shapeList);
-            this.rectList.add(rectangle);
+            this.regions.add(rectangle);
         }
 
         shapeList.add(shape);
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.util;
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Holds screen regions in a uniform grid of cells so that the regions intersecting a rectangle are found by examining
+ * only the regions sharing its cells. Used by the clutter filters to find the regions already claimed by drawn shapes.
+ * <p/>
+ * The grid covers the bounds it's reset to, typically the viewport. Regions extending beyond the bounds are held in the
+ * grid's edge cells, so they're found just as regions within the bounds are, only less efficiently. The grid's cell
+ * arrays are kept from one use to the next, so a grid reset each frame does not allocate once it's reached the frame's
+ * number of regions.
+ *
+ * @version $Id$
+ */
+public class ScreenRegionGrid
+{
+    protected static final double DEFAULT_CELL_SIZE = 32;
+    protected static final Rectangle DEFAULT_BOUNDS = new Rectangle(0, 0, 1024, 1024);
+
+    protected final double cellSize;
+    protected double minX;
+    protected double minY;
+    protected int numColumns;
+    protected int numRows;
+    /** The regions in the order added. */
+    protected List<Rectangle2D> regions = new ArrayList<Rectangle2D>();
+    /** The indices of the regions overlapping each cell, in the order added. */
+    protected int[][] cells = new int[0][];
+    protected int[] cellCounts = new int[0];
+
+    /** Creates a grid with cells 32 pixels on a side, covering a 1024 by 1024 pixel area. */
+    public ScreenRegionGrid()
+    {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Creates a grid with a specified cell size, covering a 1024 by 1024 pixel area.
+     *
+     * @param cellSize the width and height of the grid's cells, in pixels.
+     *
+     * @throws IllegalArgumentException if the cell size is not greater than zero.
+     */
+    public ScreenRegionGrid(double cellSize)
+    {
+        if (!(cellSize > 0))
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", cellSize);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.cellSize = cellSize;
+        this.reset(null);
+    }
+
+    public double getCellSize()
+    {
+        return this.cellSize;
+    }
+
+    /**
+     * Removes all regions from the grid and resizes the grid to cover specified bounds.
+     *
+     * @param bounds the screen area the grid is to cover. The grid's current area is kept if null or empty.
+     */
+    public void reset(Rectangle bounds)
+    {
+        this.regions.clear();
+
+        if (bounds == null || bounds.isEmpty())
+            bounds = this.numColumns > 0 ? null : DEFAULT_BOUNDS;
+
+        if (bounds != null)
+        {
+            this.minX = bounds.getMinX();
+            this.minY = bounds.getMinY();
+            this.numColumns = Math.max(1, (int) Math.ceil(bounds.getWidth() / this.cellSize));
+            this.numRows = Math.max(1, (int) Math.ceil(bounds.getHeight() / this.cellSize));
+        }
+
+        int numCells = this.numColumns * this.numRows;
+        if (this.cellCounts.length < numCells)
+        {
+            this.cells = Arrays.copyOf(this.cells, numCells);
+            this.cellCounts = new int[numCells];
+        }
+        else
+        {
+            Arrays.fill(this.cellCounts, 0);
+        }
+    }
+
+    /** Removes all regions from the grid. */
+    public void clear()
+    {
+        this.regions.clear();
+        Arrays.fill(this.cellCounts, 0);
+    }
+
+    public int size()
+    {
+        return this.regions.size();
+    }
+
+    /**
+     * Returns the regions in the grid.
+     *
+     * @return the regions, in the order added.
+     */
+    public List<Rectangle2D> getRegions()
+    {
+        return Collections.unmodifiableList(this.regions);
+    }
+
+    /**
+     * Adds a region to the grid.
+     *
+     * @param region the region to add.
+     *
+     * @throws IllegalArgumentException if the region is null.
+     */
+    public void add(Rectangle2D region)
+    {
+        if (region == null)
+        {
+            String message = Logging.getMessage("nullValue.RectangleIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        int index = this.regions.size();
+        this.regions.add(region);
+
+        int minCol = this.column(region.getMinX());
+        int maxCol = this.column(region.getMaxX());
+        int minRow = this.row(region.getMinY());
+        int maxRow = this.row(region.getMaxY());
+
+        for (int row = minRow; row <= maxRow; row++)
+        {
+            for (int col = minCol; col <= maxCol; col++)
+            {
+                int cell = row * this.numColumns + col;
+                int[] indices = this.cells[cell];
+                int count = this.cellCounts[cell];
+                if (indices == null || count == indices.length)
+                {
+                    indices = indices == null ? new int[4] : Arrays.copyOf(indices, 2 * count);
+                    this.cells[cell] = indices;
+                }
+                indices[count] = index;
+                this.cellCounts[cell] = count + 1;
+            }
+        }
+    }
+
+    /**
+     * Finds the first region added to the grid that intersects a specified rectangle. Intersection is determined by
+     * {@link Rectangle2D#intersects(Rectangle2D)}, so this returns the region a search of the regions in the order
+     * added would.
+     *
+     * @param rectangle the rectangle to test.
+     *
+     * @return the first region added that intersects the rectangle, or null if none do or the rectangle is null.
+     */
+    public Rectangle2D intersects(Rectangle2D rectangle)
+    {
+        if (rectangle == null || this.regions.isEmpty())
+            return null;
+
+        int minCol = this.column(rectangle.getMinX());
+        int maxCol = this.column(rectangle.getMaxX());
+        int minRow = this.row(rectangle.getMinY());
+        int maxRow = this.row(rectangle.getMaxY());
+
+        int first = Integer.MAX_VALUE;
+        for (int row = minRow; row <= maxRow; row++)
+        {
+            for (int col = minCol; col <= maxCol; col++)
+            {
+                int cell = row * this.numColumns + col;
+                int[] indices = this.cells[cell];
+                int count = this.cellCounts[cell];
+
+                // Indices are in the order added, so the remainder of the cell cannot improve on a match found.
+                for (int i = 0; i < count && indices[i] < first; i++)
+                {
+                    if (rectangle.intersects(this.regions.get(indices[i])))
+                        first = indices[i];
+                }
+            }
+        }
+
+        return first != Integer.MAX_VALUE ? this.regions.get(first) : null;
+    }
+
+    protected int column(double x)
+    {
+        int col = (int) Math.floor((x - this.minX) / this.cellSize);
+        return col < 0 ? 0 : col >= this.numColumns ? this.numColumns - 1 : col;
+    }
+
+    protected int row(double y)
+    {
+        int row = (int) Math.floor((y - this.minY) / this.cellSize);
+        return row < 0 ? 0 : row >= this.numRows ? this.numRows - 1 : row;
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An executor that runs tasks on threads it creates as needed, limiting the number of tasks that run at once with a
+ * semaphore rather than with a fixed number of threads. Tasks submitted while the limit is reached wait in the
+ * executor's queue, and a thread that finishes a task runs the next queued task before it exits.
+ * <p/>
+ * By default the threads are virtual threads when the Java runtime provides them (Java 21 and later), and daemon
+ * platform threads otherwise. Virtual threads make it practical to have hundreds of tasks blocked on network or disk
+ * I/O at once. Use {@link #isVirtualThreadSupported()} to determine which is used.
+ * <p/>
+ * As with {@link ThreadPoolExecutor}, subclasses may override {@link #beforeExecute(Thread, Runnable)} and {@link
+ * #afterExecute(Runnable, Throwable)}, which are called on the thread running the task.
+ *
+ * @version $Id$
+ */
+public class ThreadPerTaskExecutor extends AbstractExecutorService
+{
+    /** A semaphore whose number of permits can be reduced. */
+    protected static class LimitSemaphore extends Semaphore
+    {
+        private static final long serialVersionUID = 1L;
+
+        public LimitSemaphore(int permits)
+        {
+            super(permits);
+        }
+
+        @Override
+        public void reducePermits(int reduction)
+        {
+            super.reducePermits(reduction);
+        }
+    }
+
+    protected static final ThreadFactory virtualThreadFactory = createVirtualThreadFactory();
+
+    protected final BlockingQueue<Runnable> queue;
+    protected final ThreadFactory threadFactory;
+    protected final LimitSemaphore permits;
+    protected int maxConcurrency;
+    protected final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+    protected final AtomicInteger numThreads = new AtomicInteger();
+    protected volatile boolean shutdown;
+
+    /**
+     * Indicates whether the Java runtime provides virtual threads.
+     *
+     * @return true if executors created without a thread factory use virtual threads, otherwise false.
+     */
+    public static boolean isVirtualThreadSupported()
+    {
+        return virtualThreadFactory != null;
+    }
+
+    /**
+     * Creates a factory for virtual threads. Virtual threads are created by reflection because they are not part of
+     * the Java version this library is compiled for.
+     *
+     * @return the thread factory, or null if the Java runtime doesn't provide virtual threads.
+     */
+    protected static ThreadFactory createVirtualThreadFactory()
+    {
+        try
+        {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        }
+        catch (Exception e)
+        {
+            // Virtual threads are absent, or are a preview feature that isn't enabled.
+            return null;
+        }
+    }
+
+    /**
+     * Creates an executor that runs its tasks on virtual threads if the Java runtime provides them, and otherwise on
+     * daemon platform threads of minimum priority.
+     *
+     * @param maxConcurrency the maximum number of tasks to run at once.
+     * @param queue          the queue holding tasks that are waiting to run.
+     *
+     * @throws IllegalArgumentException if the concurrency limit is less than 1 or the queue is null.
+     */
+    public ThreadPerTaskExecutor(int maxConcurrency, BlockingQueue<Runnable> queue)
+    {
+        this(maxConcurrency, queue, virtualThreadFactory != null ? virtualThreadFactory : new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Creates an executor that runs its tasks on threads created by a specified factory.
+     *
+     * @param maxConcurrency the maximum number of tasks to run at once.
+     * @param queue          the queue holding tasks that are waiting to run.
+     * @param threadFactory  the factory creating the threads that run tasks.
+     *
+     * @throws IllegalArgumentException if the concurrency limit is less than 1 or the queue or factory is null.
+     */
+    public ThreadPerTaskExecutor(int maxConcurrency, BlockingQueue<Runnable> queue, ThreadFactory threadFactory)
+    {
+        if (maxConcurrency < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "maxConcurrency < 1");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (queue == null)
+        {
+            String message = Logging.getMessage("nullValue.QueueIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (threadFactory == null)
+        {
+            String message = Logging.getMessage("nullValue.FactoryIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.maxConcurrency = maxConcurrency;
+        this.queue = queue;
+        this.threadFactory = threadFactory;
+        this.permits = new LimitSemaphore(maxConcurrency);
+    }
+
+    /** @return the maximum number of tasks run at once. */
+    public synchronized int getMaxConcurrency()
+    {
+        return this.maxConcurrency;
+    }
+
+    /**
+     * Specifies the maximum number of tasks run at once. If the limit is reduced below the number of running tasks,
+     * those tasks continue but no further tasks are started until enough of them finish.
+     *
+     * @param maxConcurrency the maximum number of tasks to run at once.
+     *
+     * @throws IllegalArgumentException if the concurrency limit is less than 1.
+     */
+    public void setMaxConcurrency(int maxConcurrency)
+    {
+        if (maxConcurrency < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", "maxConcurrency < 1");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        synchronized (this)
+        {
+            int change = maxConcurrency - this.maxConcurrency;
+            this.maxConcurrency = maxConcurrency;
+
+            if (change > 0)
+                this.permits.release(change);
+            else if (change < 0)
+                this.permits.reducePermits(-change);
+        }
+
+        this.startThreads();
+    }
+
+    /** @return the queue holding the tasks waiting to run. */
+    public BlockingQueue<Runnable> getQueue()
+    {
+        return this.queue;
+    }
+
+    /** @return the number of tasks currently running. */
+    public int getActiveCount()
+    {
+        return this.numThreads.get();
+    }
+
+    /**
+     * Queues a task and starts a thread to run it if fewer than the maximum number of tasks are running.
+     *
+     * @param runnable the task to run.
+     *
+     * @throws IllegalArgumentException   if the task is null.
+     * @throws RejectedExecutionException if the executor has been shut down or the queue is full.
+     */
+    public void execute(Runnable runnable)
+    {
+        if (runnable == null)
+        {
+            String message = Logging.getMessage("nullValue.RunnableIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (this.shutdown || !this.queue.offer(runnable))
+            throw new RejectedExecutionException(runnable.toString());
+
+        this.startThreads();
+    }
+
+    /** Starts a thread for each queued task, as far as the concurrency limit allows. */
+    protected void startThreads()
+    {
+        while (!this.queue.isEmpty() && this.permits.tryAcquire())
+        {
+            Runnable runnable = this.queue.poll();
+            if (runnable == null)
+            {
+                this.permits.release();
+                continue;
+            }
+
+            this.numThreads.incrementAndGet();
+            try
+            {
+                this.threadFactory.newThread(this.createWorker(runnable)).start();
+            }
+            catch (RuntimeException e)
+            {
+                this.threadExited();
+                throw e;
+            }
+            catch (Error e)
+            {
+                this.threadExited();
+                throw e;
+            }
+        }
+    }
+
+    protected Runnable createWorker(final Runnable firstTask)
+    {
+        return new Runnable()
+        {
+            public void run()
+            {
+                runTasks(firstTask);
+            }
+        };
+    }
+
+    /**
+     * Runs a task, then any queued tasks, on the current thread. Releases the thread's permit when the queue is
+     * empty.
+     *
+     * @param firstTask the first task to run.
+     */
+    protected void runTasks(Runnable firstTask)
+    {
+        Thread thread = Thread.currentThread();
+        this.threads.add(thread);
+
+        try
+        {
+            Runnable task = firstTask;
+            while (task != null)
+            {
+                this.runTask(thread, task);
+
+                // Give up this thread's permit if the concurrency limit has been reduced below the running count.
+                if (this.permits.availablePermits() < 0)
+                    break;
+
+                Thread.interrupted(); // don't let a cancelled task's interrupt affect the next task
+                task = this.queue.poll();
+            }
+        }
+        finally
+        {
+            this.threads.remove(thread);
+            this.threadExited();
+
+            // Run any task queued after this thread found the queue empty but before it released its permit.
+            if (!this.queue.isEmpty())
+                this.startThreads();
+        }
+    }
+
+    protected void runTask(Thread thread, Runnable task)
+    {
+        this.beforeExecute(thread, task);
+
+        Throwable throwable = null;
+        try
+        {
+            task.run();
+        }
+        catch (RuntimeException e)
+        {
+            throwable = e;
+            throw e;
+        }
+        catch (Error e)
+        {
+            throwable = e;
+            throw e;
+        }
+        finally
+        {
+            this.afterExecute(task, throwable);
+        }
+    }
+
+    protected void threadExited()
+    {
+        this.permits.release();
+
+        if (this.numThreads.decrementAndGet() == 0)
+        {
+            synchronized (this.threads)
+            {
+                this.threads.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Called on the task's thread before the task runs.
+     *
+     * @param thread   the thread running the task.
+     * @param runnable the task.
+     */
+    protected void beforeExecute(Thread thread, Runnable runnable)
+    {
+    }
+
+    /**
+     * Called on the task's thread after the task runs.
+     *
+     * @param runnable  the task.
+     * @param throwable the exception that terminated the task, or null if it completed normally.
+     */
+    protected void afterExecute(Runnable runnable, Throwable throwable)
+    {
+    }
+
+    public void shutdown()
+    {
+        this.shutdown = true;
+    }
+
+    public List<Runnable> shutdownNow()
+    {
+        this.shutdown = true;
+
+        ArrayList<Runnable> tasks = new ArrayList<Runnable>();
+        this.queue.drainTo(tasks);
+
+        for (Thread thread : this.threads)
+        {
+            thread.interrupt();
+        }
+
+        return tasks;
+    }
+
+    public boolean isShutdown()
+    {
+        return this.shutdown;
+    }
+
+    public boolean isTerminated()
+    {
+        return this.shutdown && this.numThreads.get() == 0 && this.queue.isEmpty();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        synchronized (this.threads)
+        {
+            while (!this.isTerminated())
+            {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                    return false;
+
+                TimeUnit.NANOSECONDS.timedWait(this.threads, remaining);
+            }
+        }
+
+        return true;
+    }
+}
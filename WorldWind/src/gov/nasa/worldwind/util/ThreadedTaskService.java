@@ -11,6 +11,10 @@ import gov.nasa.worldwind.avlist.AVKey;
 import java.util.concurrent.*;
 
 /**
+ * Runs tasks on a fixed-size pool of threads, or, if the configuration property {@link AVKey#TASK_THREAD_MODE} is
+ * {@link AVKey#THREAD_MODE_VIRTUAL}, each on its own virtual thread with the number run at once limited by {@link
+ * AVKey#TASK_CONCURRENCY_LIMIT}. See {@link ThreadPerTaskExecutor}.
+ *
  * @author Tom Gaskins
  * @version $Id$
  */
@@ -18,12 +22,14 @@ public class ThreadedTaskService extends WWObjectImpl implements TaskService, Th
 {
     static final private int DEFAULT_CORE_POOL_SIZE = 1;
     static final private int DEFAULT_QUEUE_SIZE = 10;
+    static final private int DEFAULT_CONCURRENCY_LIMIT = 100;
     private static final String RUNNING_THREAD_NAME_PREFIX = Logging.getMessage(
         "ThreadedTaskService.RunningThreadNamePrefix");
     private static final String IDLE_THREAD_NAME_PREFIX = Logging.getMessage(
         "ThreadedTaskService.IdleThreadNamePrefix");
     private ConcurrentLinkedQueue<Runnable> activeTasks; // tasks currently allocated a thread
-    private TaskExecutor executor; // thread pool for running retrievers
+    private ExecutorService executor; // runs the tasks; a TaskExecutor or a VirtualTaskExecutor
+    private BlockingQueue<Runnable> queue; // the executor's queue of tasks waiting for a thread
 
     public ThreadedTaskService()
     {
@@ -31,7 +37,23 @@ public class ThreadedTaskService extends WWObjectImpl implements TaskService, Th
         Integer queueSize = Configuration.getIntegerValue(AVKey.TASK_QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
 
         // this.executor runs the tasks, each in their own thread
-        this.executor = new TaskExecutor(poolSize, queueSize);
+        String threadMode = Configuration.getStringValue(AVKey.TASK_THREAD_MODE, AVKey.THREAD_MODE_POOLED);
+        if (AVKey.THREAD_MODE_VIRTUAL.equals(threadMode))
+        {
+            if (!ThreadPerTaskExecutor.isVirtualThreadSupported())
+                Logging.logger().warning(Logging.getMessage("ThreadPerTaskExecutor.VirtualThreadsUnavailable"));
+
+            VirtualTaskExecutor virtualExecutor = new VirtualTaskExecutor(
+                Configuration.getIntegerValue(AVKey.TASK_CONCURRENCY_LIMIT, DEFAULT_CONCURRENCY_LIMIT), queueSize);
+            this.executor = virtualExecutor;
+            this.queue = virtualExecutor.getQueue();
+        }
+        else
+        {
+            TaskExecutor poolExecutor = new TaskExecutor(poolSize, queueSize);
+            this.executor = poolExecutor;
+            this.queue = poolExecutor.getQueue();
+        }
 
         // this.activeTasks holds the list of currently executing tasks
         this.activeTasks = new ConcurrentLinkedQueue<Runnable>();
@@ -88,65 +110,92 @@ public class ThreadedTaskService extends WWObjectImpl implements TaskService, Th
 
         protected void beforeExecute(Thread thread, Runnable runnable)
         {
-            if (thread == null)
-            {
-                String msg = Logging.getMessage("nullValue.ThreadIsNull");
-                Logging.logger().fine(msg);
-                throw new IllegalArgumentException(msg);
-            }
-
-            if (runnable == null)
-            {
-                String msg = Logging.getMessage("nullValue.RunnableIsNull");
-                Logging.logger().fine(msg);
-                throw new IllegalArgumentException(msg);
-            }
-
-            if (ThreadedTaskService.this.activeTasks.contains(runnable))
-            {
-                // Duplicate requests are simply interrupted here. The task itself must check the thread's isInterrupted
-                // flag and actually terminate the task.
-                String message = Logging.getMessage("ThreadedTaskService.CancellingDuplicateTask", runnable);
-                Logging.logger().finer(message);
-                thread.interrupt();
-                return;
-            }
-
-            ThreadedTaskService.this.activeTasks.add(runnable);
-
-            if (RUNNING_THREAD_NAME_PREFIX != null)
-                thread.setName(RUNNING_THREAD_NAME_PREFIX + runnable);
-            thread.setPriority(Thread.MIN_PRIORITY);
-            thread.setUncaughtExceptionHandler(ThreadedTaskService.this);
-
+            ThreadedTaskService.this.beforeExecute(thread, runnable);
             super.beforeExecute(thread, runnable);
         }
 
         protected void afterExecute(Runnable runnable, Throwable throwable)
         {
-            if (runnable == null)
-            {
-                String msg = Logging.getMessage("nullValue.RunnableIsNull");
-                Logging.logger().fine(msg);
-                throw new IllegalArgumentException(msg);
-            }
-
             super.afterExecute(runnable, throwable);
+            ThreadedTaskService.this.afterExecute(runnable, throwable);
+        }
+    }
+
+    /** Runs each task on its own virtual thread, limiting the number run at once. */
+    private class VirtualTaskExecutor extends ThreadPerTaskExecutor
+    {
+        private VirtualTaskExecutor(int concurrencyLimit, int queueSize)
+        {
+            super(concurrencyLimit, new ArrayBlockingQueue<Runnable>(queueSize));
+        }
 
-            ThreadedTaskService.this.activeTasks.remove(runnable);
+        protected void beforeExecute(Thread thread, Runnable runnable)
+        {
+            ThreadedTaskService.this.beforeExecute(thread, runnable);
+        }
 
-            if (throwable == null && IDLE_THREAD_NAME_PREFIX != null)
-                Thread.currentThread().setName(IDLE_THREAD_NAME_PREFIX);
+        protected void afterExecute(Runnable runnable, Throwable throwable)
+        {
+            ThreadedTaskService.this.afterExecute(runnable, throwable);
         }
     }
 
+    private void beforeExecute(Thread thread, Runnable runnable)
+    {
+        if (thread == null)
+        {
+            String msg = Logging.getMessage("nullValue.ThreadIsNull");
+            Logging.logger().fine(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (runnable == null)
+        {
+            String msg = Logging.getMessage("nullValue.RunnableIsNull");
+            Logging.logger().fine(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (this.activeTasks.contains(runnable))
+        {
+            // Duplicate requests are simply interrupted here. The task itself must check the thread's isInterrupted
+            // flag and actually terminate the task.
+            String message = Logging.getMessage("ThreadedTaskService.CancellingDuplicateTask", runnable);
+            Logging.logger().finer(message);
+            thread.interrupt();
+            return;
+        }
+
+        this.activeTasks.add(runnable);
+
+        if (RUNNING_THREAD_NAME_PREFIX != null)
+            thread.setName(RUNNING_THREAD_NAME_PREFIX + runnable);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.setUncaughtExceptionHandler(ThreadedTaskService.this);
+    }
+
+    private void afterExecute(Runnable runnable, Throwable throwable)
+    {
+        if (runnable == null)
+        {
+            String msg = Logging.getMessage("nullValue.RunnableIsNull");
+            Logging.logger().fine(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.activeTasks.remove(runnable);
+
+        if (throwable == null && IDLE_THREAD_NAME_PREFIX != null)
+            Thread.currentThread().setName(IDLE_THREAD_NAME_PREFIX);
+    }
+
     public synchronized boolean contains(Runnable runnable)
     {
         //noinspection SimplifiableIfStatement
         if (runnable == null)
             return false;
 
-        return (this.activeTasks.contains(runnable) || this.executor.getQueue().contains(runnable));
+        return (this.activeTasks.contains(runnable) || this.queue.contains(runnable));
     }
 
     /**
@@ -166,19 +215,31 @@ public class ThreadedTaskService extends WWObjectImpl implements TaskService, Th
         }
 
         // Do not queue duplicates.
-        if (this.activeTasks.contains(runnable) || this.executor.getQueue().contains(runnable))
+        if (this.activeTasks.contains(runnable) || this.queue.contains(runnable))
             return;
 
-        this.executor.execute(runnable);
+        try
+        {
+            this.executor.execute(runnable);
+        }
+        catch (RejectedExecutionException e)
+        {
+            // A virtual thread executor's queue is full. Abandon the task, as the thread pool does.
+            Logging.logger().fine(Logging.getMessage("ThreadedTaskService.ResourceRejected", runnable));
+        }
     }
 
     public boolean isFull()
     {
-        return this.executor.getQueue().remainingCapacity() == 0;
+        return this.queue.remainingCapacity() == 0;
     }
 
     public boolean hasActiveTasks()
     {
+        // Virtual threads are not listed by Thread.enumerate.
+        if (this.executor instanceof ThreadPerTaskExecutor)
+            return !this.activeTasks.isEmpty();
+
         Thread[] threads = new Thread[Thread.activeCount()];
         int numThreads = Thread.enumerate(threads);
         for (int i = 0; i < numThreads; i++)
@@ -562,6 +562,41 @@ public class WWBufferUtil
         return -1;
     }
 
+    /**
+     * Returns the primitive data type stored in the specified buffer, or null if the buffer's type is unrecognized.
+     * Recognized buffers are those created by {@link BufferWrapper#wrap(java.nio.ByteBuffer, Object, Object)}.
+     *
+     * @param buffer the buffer to examine.
+     *
+     * @return the buffer's primitive data type, one of {@link gov.nasa.worldwind.avlist.AVKey#INT8}, {@link
+     *         gov.nasa.worldwind.avlist.AVKey#INT16}, {@link gov.nasa.worldwind.avlist.AVKey#INT32}, {@link
+     *         gov.nasa.worldwind.avlist.AVKey#FLOAT32} or {@link gov.nasa.worldwind.avlist.AVKey#FLOAT64}.
+     *
+     * @throws IllegalArgumentException if the buffer is null.
+     */
+    public static String getPrimitiveType(BufferWrapper buffer)
+    {
+        if (buffer == null)
+        {
+            String message = Logging.getMessage("nullValue.BufferIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (buffer instanceof BufferWrapper.ByteBufferWrapper)
+            return AVKey.INT8;
+        else if (buffer instanceof BufferWrapper.ShortBufferWrapper)
+            return AVKey.INT16;
+        else if (buffer instanceof BufferWrapper.IntBufferWrapper)
+            return AVKey.INT32;
+        else if (buffer instanceof BufferWrapper.FloatBufferWrapper)
+            return AVKey.FLOAT32;
+        else if (buffer instanceof BufferWrapper.DoubleBufferWrapper)
+            return AVKey.FLOAT64;
+
+        return null;
+    }
+
     /**
      * Returns the minimum and maximum floating point values in the specified buffer. Values equivalent to the specified
      * <code>missingDataSignal</code> are ignored. This returns null if the buffer is empty or contains only missing
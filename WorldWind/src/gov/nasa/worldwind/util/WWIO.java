@@ -1215,7 +1215,16 @@ public class WWIO
             // Determine whether the file can be treated like a File, e.g., a jar entry.
             URI uri = url.toURI();
             if (uri.isOpaque())
-                return false; // TODO: Determine how to check the date of non-Files
+            {
+                // A jar entry reports the time of its jar, so it's never considered out of date. Other opaque URLs,
+                // such as those of files packed in a tile archive, report their modification time through their
+                // connection, or zero if it's unknown.
+                if ("jar".equals(url.getProtocol()))
+                    return false;
+
+                long lastModified = url.openConnection().getLastModified();
+                return lastModified != 0 && lastModified < expiryTime;
+            }
 
             File file = new File(uri);
 
@@ -1226,6 +1235,11 @@ public class WWIO
             Logging.logger().log(Level.SEVERE, "WWIO.ExceptionValidatingFileExpiration", url);
             return false;
         }
+        catch (IOException e)
+        {
+            Logging.logger().log(Level.SEVERE, "WWIO.ExceptionValidatingFileExpiration", url);
+            return false;
+        }
     }
 
     public static Proxy configureProxy()
@@ -1373,6 +1387,7 @@ public class WWIO
         mimeTypeToSuffixMap.put("application/dxf", "dxf");
         mimeTypeToSuffixMap.put("application/octet-stream", "bin");
         mimeTypeToSuffixMap.put("application/pdf", "pdf");
+        mimeTypeToSuffixMap.put("application/qel", "qel");
         mimeTypeToSuffixMap.put("application/rss+xml", "xml");
         mimeTypeToSuffixMap.put("application/rtf", "rtf");
         mimeTypeToSuffixMap.put("application/sla", "slt");
@@ -1451,6 +1466,7 @@ public class WWIO
         suffixToMimeTypeMap.put("mpg", "video/mpeg");
         suffixToMimeTypeMap.put("pdf", "application/pdf");
         suffixToMimeTypeMap.put("png", "image/png");
+        suffixToMimeTypeMap.put("qel", "application/qel");
         suffixToMimeTypeMap.put("rgb", "image/x-rgb");
         suffixToMimeTypeMap.put("rtf", "application/rtf");
         suffixToMimeTypeMap.put("rtx", "text/richtext");
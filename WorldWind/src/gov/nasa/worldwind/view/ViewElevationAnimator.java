@@ -118,17 +118,7 @@ public class ViewElevationAnimator extends DoubleAnimator
 
         if (this.useMidZoom)
         {
-            double value;
-            zoomInterpolant = this.zoomInterpolant(interpolant, ZOOM_START, ZOOM_STOP, MAX_SMOOTHING);
-            if (interpolant <= .5)
-            {
-                value = nextDouble(zoomInterpolant, this.begin, this.end);
-            }
-            else
-            {
-                value = nextDouble(zoomInterpolant, this.end, this.trueEndZoom);
-            }
-            this.propertyAccessor.setDouble(value);
+            this.propertyAccessor.setDouble(this.computeZoom(interpolant));
         }
         else
         {
@@ -138,6 +128,35 @@ public class ViewElevationAnimator extends DoubleAnimator
 
     }
 
+    /**
+     * Computes the zoom at the given interpolant without applying it, so the remainder of the animation can be
+     * predicted.
+     *
+     * @param interpolant A value between 0 and 1.
+     *
+     * @return the zoom that {@link #set(double)} would apply for the interpolant.
+     */
+    public double computeZoom(double interpolant)
+    {
+        final int MAX_SMOOTHING = 1;
+        final double ZOOM_START = 0.0;
+        final double ZOOM_STOP = 1.0;
+
+        if (this.useMidZoom)
+        {
+            double zoomInterpolant = this.zoomInterpolant(interpolant, ZOOM_START, ZOOM_STOP, MAX_SMOOTHING);
+            if (interpolant <= .5)
+                return nextDouble(zoomInterpolant, this.begin, this.end);
+            else
+                return nextDouble(zoomInterpolant, this.end, this.trueEndZoom);
+        }
+        else
+        {
+            return this.nextDouble(
+                AnimationSupport.basicInterpolant(interpolant, ZOOM_START, ZOOM_STOP, MAX_SMOOTHING));
+        }
+    }
+
     private double zoomInterpolant(double interpolant, double startInterpolant, double stopInterpolant,
             int maxSmoothing)
     {
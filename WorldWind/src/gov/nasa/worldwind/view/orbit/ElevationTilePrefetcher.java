@@ -0,0 +1,555 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.view.orbit;
+
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.event.*;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+import gov.nasa.worldwind.terrain.*;
+import gov.nasa.worldwind.util.*;
+
+import java.util.*;
+
+/**
+ * Requests the elevation tiles the view is about to need, so terrain is ready when the view arrives rather than
+ * sharpening after it does. While an {@link OrbitView} flies to a position, the remainder of the flight is sampled from
+ * its {@link FlyToOrbitViewAnimator}. Otherwise the view's motion since the previous frame is extrapolated a short time
+ * ahead. The tiles covering each predicted view's footprint, at the resolution the terrain is drawn at from there, are
+ * requested from the enabled {@link BasicElevationModel}s of the globe at a priority below that of visible tiles.
+ * Requests that have not yet started are cancelled when a new flight begins or the view turns back.
+ * <p/>
+ * Prefetching is bounded by a bandwidth budget, the bytes per second it may request, and a memory budget, the bytes it
+ * may request for one flight or one continuous motion of the view. The budgets' defaults are read from the
+ * configuration keys {@link AVKey#ELEVATION_PREFETCH_BANDWIDTH_BUDGET} and
+ * {@link AVKey#ELEVATION_PREFETCH_MEMORY_BUDGET}.
+ * <p/>
+ * A prefetcher is attached to a WorldWindow by adding it as a rendering listener:
+ * <pre>
+ * wwd.addRenderingListener(new ElevationTilePrefetcher(wwd));
+ * </pre>
+ *
+ * @version $Id$
+ */
+public class ElevationTilePrefetcher implements RenderingListener
+{
+    protected static final long DEFAULT_BANDWIDTH_BUDGET = 1000000; // bytes per second
+    protected static final long DEFAULT_MEMORY_BUDGET = 20000000; // bytes
+    protected static final long DEFAULT_UPDATE_INTERVAL = 250; // milliseconds
+    protected static final long DEFAULT_PREDICTION_TIME = 2000; // milliseconds
+    protected static final int DEFAULT_NUM_SAMPLES = 8;
+    protected static final int DEFAULT_MAX_REQUESTS_PER_UPDATE = 4;
+    /** The approximate screen distance between the terrain's vertices, in pixels. */
+    protected static final double DEFAULT_PIXELS_PER_POST = 10;
+
+    /** A predicted state of the view: where it looks, from how far, and how obliquely. */
+    protected static class PredictedView
+    {
+        protected final Position center;
+        protected final double zoom;
+        protected final Angle pitch;
+
+        public PredictedView(Position center, double zoom, Angle pitch)
+        {
+            this.center = center;
+            this.zoom = zoom;
+            this.pitch = pitch;
+        }
+    }
+
+    protected final WorldWindow wwd;
+    protected long bandwidthBudget;
+    protected long memoryBudget;
+    protected long updateInterval = DEFAULT_UPDATE_INTERVAL;
+    protected long predictionTime = DEFAULT_PREDICTION_TIME;
+    protected int numSamples = DEFAULT_NUM_SAMPLES;
+    protected int maxRequestsPerUpdate = DEFAULT_MAX_REQUESTS_PER_UPDATE;
+    protected double pixelsPerPost = DEFAULT_PIXELS_PER_POST;
+
+    protected long lastUpdateTime;
+    protected double bandwidthAvailable; // bytes that may be requested now
+    // The fly-to animator being followed, or the view being extrapolated, or null if the view is not moving.
+    protected Object episode;
+    protected long memoryUsed; // bytes requested during the current episode
+    protected Set<TileKey> requestedKeys = new HashSet<TileKey>();
+    // The elevation models prefetched from during the current episode.
+    protected Set<BasicElevationModel> prefetchModels = new HashSet<BasicElevationModel>();
+    protected Position lastCenter;
+    protected double lastZoom;
+    protected long lastViewTime;
+    // The view's motion between the previous two predictions, in degrees of latitude and longitude and meters of zoom.
+    protected double lastDLat;
+    protected double lastDLon;
+    protected double lastDZoom;
+
+    /**
+     * Creates a prefetcher for a WorldWindow. The prefetcher does nothing until added to the window as a rendering
+     * listener.
+     *
+     * @param wwd the window whose view's motion is followed.
+     *
+     * @throws IllegalArgumentException if the window is null.
+     */
+    public ElevationTilePrefetcher(WorldWindow wwd)
+    {
+        if (wwd == null)
+        {
+            String message = Logging.getMessage("nullValue.WorldWindow");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.wwd = wwd;
+        this.bandwidthBudget = Configuration.getLongValue(AVKey.ELEVATION_PREFETCH_BANDWIDTH_BUDGET,
+            DEFAULT_BANDWIDTH_BUDGET);
+        this.memoryBudget = Configuration.getLongValue(AVKey.ELEVATION_PREFETCH_MEMORY_BUDGET, DEFAULT_MEMORY_BUDGET);
+    }
+
+    public WorldWindow getWorldWindow()
+    {
+        return this.wwd;
+    }
+
+    /**
+     * Indicates the number of bytes per second the prefetcher may request.
+     *
+     * @return the bandwidth budget, in bytes per second.
+     */
+    public long getBandwidthBudget()
+    {
+        return this.bandwidthBudget;
+    }
+
+    /**
+     * Specifies the number of bytes per second the prefetcher may request. Zero disables prefetching.
+     *
+     * @param bandwidthBudget the bandwidth budget, in bytes per second.
+     *
+     * @throws IllegalArgumentException if the budget is negative.
+     */
+    public void setBandwidthBudget(long bandwidthBudget)
+    {
+        if (bandwidthBudget < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", bandwidthBudget);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.bandwidthBudget = bandwidthBudget;
+    }
+
+    /**
+     * Indicates the number of bytes the prefetcher may request during one flight or one continuous motion of the
+     * view.
+     *
+     * @return the memory budget, in bytes.
+     */
+    public long getMemoryBudget()
+    {
+        return this.memoryBudget;
+    }
+
+    /**
+     * Specifies the number of bytes the prefetcher may request during one flight or one continuous motion of the view.
+     * Zero disables prefetching.
+     *
+     * @param memoryBudget the memory budget, in bytes.
+     *
+     * @throws IllegalArgumentException if the budget is negative.
+     */
+    public void setMemoryBudget(long memoryBudget)
+    {
+        if (memoryBudget < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", memoryBudget);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.memoryBudget = memoryBudget;
+    }
+
+    public long getUpdateInterval()
+    {
+        return this.updateInterval;
+    }
+
+    /**
+     * Specifies the minimum time between predictions.
+     *
+     * @param updateInterval the update interval, in milliseconds.
+     *
+     * @throws IllegalArgumentException if the interval is negative.
+     */
+    public void setUpdateInterval(long updateInterval)
+    {
+        if (updateInterval < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", updateInterval);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.updateInterval = updateInterval;
+    }
+
+    public long getPredictionTime()
+    {
+        return this.predictionTime;
+    }
+
+    /**
+     * Specifies how far ahead the view's motion is extrapolated when it's not flying to a position.
+     *
+     * @param predictionTime the prediction time, in milliseconds.
+     *
+     * @throws IllegalArgumentException if the time is negative.
+     */
+    public void setPredictionTime(long predictionTime)
+    {
+        if (predictionTime < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", predictionTime);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.predictionTime = predictionTime;
+    }
+
+    public int getNumSamples()
+    {
+        return this.numSamples;
+    }
+
+    /**
+     * Specifies the number of views predicted along the view's path.
+     *
+     * @param numSamples the number of predicted views.
+     *
+     * @throws IllegalArgumentException if the number is less than one.
+     */
+    public void setNumSamples(int numSamples)
+    {
+        if (numSamples < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", numSamples);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.numSamples = numSamples;
+    }
+
+    public int getMaxRequestsPerUpdate()
+    {
+        return this.maxRequestsPerUpdate;
+    }
+
+    /**
+     * Specifies the maximum number of tiles requested per prediction. This keeps prefetch requests from filling the
+     * task service ahead of requests for visible tiles.
+     *
+     * @param maxRequestsPerUpdate the maximum number of tiles requested per prediction.
+     *
+     * @throws IllegalArgumentException if the number is less than one.
+     */
+    public void setMaxRequestsPerUpdate(int maxRequestsPerUpdate)
+    {
+        if (maxRequestsPerUpdate < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", maxRequestsPerUpdate);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.maxRequestsPerUpdate = maxRequestsPerUpdate;
+    }
+
+    public void stageChanged(RenderingEvent event)
+    {
+        if (event == null || !RenderingEvent.BEFORE_RENDERING.equals(event.getStage()))
+            return;
+
+        try
+        {
+            this.update(System.currentTimeMillis());
+        }
+        catch (Exception e)
+        {
+            // Prefetching is advisory. Failures must not interfere with rendering.
+            Logging.logger().log(java.util.logging.Level.FINE,
+                Logging.getMessage("ElevationTilePrefetcher.ExceptionPrefetching"), e);
+        }
+    }
+
+    /**
+     * Predicts the view's coming states and requests the elevation tiles they need, within the prefetcher's budgets.
+     * Does nothing if less than the update interval has passed since the previous update.
+     *
+     * @param time the current time, in milliseconds.
+     */
+    protected void update(long time)
+    {
+        if (this.lastUpdateTime != 0 && time - this.lastUpdateTime < this.updateInterval)
+            return;
+
+        long elapsed = this.lastUpdateTime != 0 ? time - this.lastUpdateTime : 0;
+        this.lastUpdateTime = time;
+
+        // The bandwidth budget accrues while unused, up to one second's worth.
+        this.bandwidthAvailable = Math.min(this.bandwidthBudget,
+            this.bandwidthAvailable + this.bandwidthBudget * elapsed / 1000d);
+
+        View view = this.wwd.getView();
+        Model model = this.wwd.getModel();
+        if (view == null || model == null || model.getGlobe() == null)
+            return;
+
+        List<PredictedView> predictedViews = this.predictViews(view, time);
+        if (predictedViews == null || predictedViews.isEmpty())
+            return;
+
+        List<BasicElevationModel> elevationModels = new ArrayList<BasicElevationModel>();
+        this.collectElevationModels(model.getGlobe().getElevationModel(), elevationModels);
+        if (elevationModels.isEmpty())
+            return;
+
+        this.requestTiles(view, model.getGlobe(), predictedViews, elevationModels);
+    }
+
+    /**
+     * Predicts the view's coming states. The remainder of a flight is sampled from its animator. Otherwise the view's
+     * motion since the previous prediction is extrapolated.
+     *
+     * @param view the view.
+     * @param time the current time, in milliseconds.
+     *
+     * @return the predicted views, soonest first, or null if the view's states cannot be predicted.
+     */
+    protected List<PredictedView> predictViews(View view, long time)
+    {
+        FlyToOrbitViewAnimator animator = null;
+        if (view.getViewInputHandler() instanceof OrbitViewInputHandler)
+            animator = ((OrbitViewInputHandler) view.getViewInputHandler()).getFlyToAnimator();
+
+        if (animator != null)
+        {
+            this.lastCenter = null;
+            this.beginEpisode(animator);
+            return this.predictFlight(animator);
+        }
+
+        if (view instanceof OrbitView)
+            return this.predictMotion(view, ((OrbitView) view).getCenterPosition(), ((OrbitView) view).getZoom(),
+                view.getPitch(), time);
+
+        Position eyePosition = view.getEyePosition();
+        return eyePosition != null ? this.predictMotion(view, new Position(eyePosition, 0),
+            eyePosition.getElevation(), Angle.ZERO, time) : null;
+    }
+
+    protected List<PredictedView> predictFlight(FlyToOrbitViewAnimator animator)
+    {
+        List<PredictedView> predictedViews = new ArrayList<PredictedView>(this.numSamples);
+
+        double interpolant = animator.getInterpolant();
+        for (int i = 1; i <= this.numSamples; i++)
+        {
+            double t = interpolant + (1 - interpolant) * i / this.numSamples;
+            predictedViews.add(new PredictedView(animator.computeCenterPosition(t), animator.computeZoom(t),
+                animator.computePitch(t)));
+        }
+
+        return predictedViews;
+    }
+
+    protected List<PredictedView> predictMotion(View view, Position center, double zoom, Angle pitch, long time)
+    {
+        if (center == null || pitch == null)
+            return null;
+
+        Position lastCenter = this.lastCenter;
+        double lastZoom = this.lastZoom;
+        long elapsed = time - this.lastViewTime;
+        this.lastCenter = center;
+        this.lastZoom = zoom;
+        this.lastViewTime = time;
+
+        if (lastCenter == null || elapsed <= 0)
+            return null;
+
+        double dLat = center.getLatitude().degrees - lastCenter.getLatitude().degrees;
+        double dLon = Angle.normalizedDegreesLongitude(
+            center.getLongitude().degrees - lastCenter.getLongitude().degrees);
+        double dZoom = zoom - lastZoom;
+        boolean reversed = dLat * this.lastDLat + dLon * this.lastDLon < 0 || dZoom * this.lastDZoom < 0;
+        this.lastDLat = dLat;
+        this.lastDLon = dLon;
+        this.lastDZoom = dZoom;
+
+        if (dLat == 0 && dLon == 0 && dZoom == 0)
+        {
+            // The view is still. Whatever it needs is being requested as visible tiles.
+            this.beginEpisode(null);
+            return null;
+        }
+
+        // Tiles prefetched ahead of the view are behind it once it turns back, so the motion starts a new episode.
+        if (reversed)
+            this.beginEpisode(null);
+        this.beginEpisode(view);
+
+        List<PredictedView> predictedViews = new ArrayList<PredictedView>(this.numSamples);
+        for (int i = 1; i <= this.numSamples; i++)
+        {
+            double s = (double) this.predictionTime * i / this.numSamples / elapsed;
+            double lat = Angle.normalizedDegreesLatitude(center.getLatitude().degrees + s * dLat);
+            double lon = Angle.normalizedDegreesLongitude(center.getLongitude().degrees + s * dLon);
+            double z = Math.max(zoom + s * dZoom, 1);
+            predictedViews.add(new PredictedView(Position.fromDegrees(lat, lon, center.getElevation()), z, pitch));
+        }
+
+        return predictedViews;
+    }
+
+    /**
+     * Starts a new flight or motion of the view if the specified one differs from the current one. The memory budget
+     * applies to each separately. Prefetches requested during the previous episode that have not yet started are
+     * cancelled, since they were predicted for a path the view is no longer on.
+     *
+     * @param episode the animator of the flight, or the view if it's moving on its own, or null if it's still.
+     */
+    protected void beginEpisode(Object episode)
+    {
+        if (this.episode == episode)
+            return;
+
+        this.episode = episode;
+        this.memoryUsed = 0;
+        this.requestedKeys.clear();
+
+        for (BasicElevationModel elevationModel : this.prefetchModels)
+        {
+            elevationModel.cancelPrefetches();
+        }
+        this.prefetchModels.clear();
+    }
+
+    protected void collectElevationModels(ElevationModel elevationModel, List<BasicElevationModel> models)
+    {
+        if (elevationModel == null || !elevationModel.isEnabled())
+            return;
+
+        if (elevationModel instanceof BasicElevationModel)
+        {
+            models.add((BasicElevationModel) elevationModel);
+        }
+        else if (elevationModel instanceof CompoundElevationModel)
+        {
+            for (ElevationModel em : ((CompoundElevationModel) elevationModel).getElevationModels())
+            {
+                this.collectElevationModels(em, models);
+            }
+        }
+    }
+
+    protected void requestTiles(View view, Globe globe, List<PredictedView> predictedViews,
+        List<BasicElevationModel> elevationModels)
+    {
+        int numRequests = 0;
+
+        for (int i = 0; i < predictedViews.size(); i++)
+        {
+            PredictedView predictedView = predictedViews.get(i);
+            Sector footprint = this.computeFootprint(view, globe, predictedView);
+            double resolution = this.computeResolution(view, globe, predictedView);
+            double priority = 1 + i; // sooner views first, all after visible tiles
+
+            for (BasicElevationModel elevationModel : elevationModels)
+            {
+                long tileSize = this.estimateTileSize(elevationModel);
+
+                for (TileKey key : elevationModel.computeTileKeys(footprint, resolution))
+                {
+                    if (this.requestedKeys.contains(key))
+                        continue;
+
+                    if (tileSize > this.bandwidthAvailable || this.memoryUsed + tileSize > this.memoryBudget)
+                        return;
+
+                    if (WorldWind.getTaskService().isFull())
+                        return;
+
+                    this.requestedKeys.add(key);
+                    if (elevationModel.prefetchTile(key, priority))
+                    {
+                        this.prefetchModels.add(elevationModel);
+                        this.bandwidthAvailable -= tileSize;
+                        this.memoryUsed += tileSize;
+                        if (++numRequests >= this.maxRequestsPerUpdate)
+                            return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the sector a predicted view sees. The sector is centered on the view's center and extends as far as the
+     * view's field of view reaches along its pitch, but not beyond the horizon.
+     *
+     * @param view          the view.
+     * @param globe         the globe viewed.
+     * @param predictedView the predicted view.
+     *
+     * @return the sector the predicted view sees.
+     */
+    protected Sector computeFootprint(View view, Globe globe, PredictedView predictedView)
+    {
+        double halfFov = view.getFieldOfView().radians / 2;
+        double pitch = Math.min(predictedView.pitch.radians, Math.PI / 2 - halfFov - 0.01);
+        double altitude = Math.max(predictedView.zoom * Math.cos(pitch), 1);
+
+        double radius = predictedView.zoom * Math.tan(halfFov) / Math.cos(pitch + halfFov);
+        double horizon = Math.sqrt(altitude * (2 * globe.getRadius() + altitude));
+
+        return Sector.boundingSector(globe, predictedView.center, Math.min(radius, horizon));
+    }
+
+    /**
+     * Computes the resolution the terrain is drawn at from a predicted view, in radians of latitude between elevation
+     * posts.
+     *
+     * @param view          the view.
+     * @param globe         the globe viewed.
+     * @param predictedView the predicted view.
+     *
+     * @return the predicted view's terrain resolution, in radians.
+     */
+    protected double computeResolution(View view, Globe globe, PredictedView predictedView)
+    {
+        return this.pixelsPerPost * view.computePixelSizeAtDistance(predictedView.zoom) / globe.getRadius();
+    }
+
+    /**
+     * Estimates the bytes an elevation model's tile occupies once retrieved.
+     *
+     * @param elevationModel the elevation model.
+     *
+     * @return the estimated tile size, in bytes.
+     */
+    protected long estimateTileSize(BasicElevationModel elevationModel)
+    {
+        int bytesPerSample = AVKey.INT8.equals(elevationModel.getElevationDataType()) ? 1
+            : AVKey.INT16.equals(elevationModel.getElevationDataType()) ? 2 : 4;
+        Level level = elevationModel.getLevels().getFirstLevel();
+
+        return (long) level.getTileWidth() * level.getTileHeight() * bytesPerSample;
+    }
+}
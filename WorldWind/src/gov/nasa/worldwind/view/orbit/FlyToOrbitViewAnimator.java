@@ -25,6 +25,7 @@ public class FlyToOrbitViewAnimator extends CompoundAnimator
     AngleAnimator pitchAnimator;
     AngleAnimator rollAnimator;
     BasicOrbitView orbitView;
+    double interpolant;
 
     public FlyToOrbitViewAnimator(OrbitView orbitView, Interpolator interpolator, int altitudeMode,
         PositionAnimator centerAnimator, DoubleAnimator zoomAnimator,
@@ -141,6 +142,67 @@ public class FlyToOrbitViewAnimator extends CompoundAnimator
         }
     }
 
+    @Override
+    protected void setImpl(double interpolant)
+    {
+        this.interpolant = interpolant;
+        super.setImpl(interpolant);
+    }
+
+    /**
+     * Indicates the interpolant most recently applied by this animator.
+     *
+     * @return the most recent interpolant, between 0 and 1.
+     */
+    public double getInterpolant()
+    {
+        return this.interpolant;
+    }
+
+    /**
+     * Computes the view's center position at an interpolant without applying it, so the remainder of the flight can
+     * be predicted.
+     *
+     * @param interpolant A value between 0 and 1.
+     *
+     * @return the center position at the interpolant.
+     */
+    public Position computeCenterPosition(double interpolant)
+    {
+        if (this.centerAnimator instanceof OnSurfacePositionAnimator)
+            return ((OnSurfacePositionAnimator) this.centerAnimator).nextPosition(interpolant);
+
+        return Position.interpolateGreatCircle(interpolant, this.centerAnimator.getBegin(),
+            this.centerAnimator.getEnd());
+    }
+
+    /**
+     * Computes the view's zoom at an interpolant without applying it.
+     *
+     * @param interpolant A value between 0 and 1.
+     *
+     * @return the zoom at the interpolant.
+     */
+    public double computeZoom(double interpolant)
+    {
+        return this.zoomAnimator.computeZoom(interpolant);
+    }
+
+    /**
+     * Computes the view's pitch at an interpolant without applying it.
+     *
+     * @param interpolant A value between 0 and 1.
+     *
+     * @return the pitch at the interpolant, or the view's current pitch if this animator does not change the pitch.
+     */
+    public Angle computePitch(double interpolant)
+    {
+        if (this.pitchAnimator == null)
+            return this.orbitView.getPitch();
+
+        return Angle.mix(interpolant, this.pitchAnimator.getBegin(), this.pitchAnimator.getEnd());
+    }
+
     @Override
     public void stop()
     {
@@ -1239,6 +1239,18 @@ public class OrbitViewInputHandler extends BasicViewInputHandler
         this.gotoAnimControl.stopAnimations();
     }
 
+    /**
+     * Returns the animator of the view's current fly-to, if one is running.
+     *
+     * @return the running fly-to animator, or null if the view is not flying to a position.
+     */
+    public FlyToOrbitViewAnimator getFlyToAnimator()
+    {
+        Animator animator = this.gotoAnimControl.get(VIEW_ANIM_PAN);
+        return animator instanceof FlyToOrbitViewAnimator && animator.hasNext() ? (FlyToOrbitViewAnimator) animator
+            : null;
+    }
+
     public boolean isAnimating()
     {
         return (this.uiAnimControl.hasActiveAnimation() || this.gotoAnimControl.hasActiveAnimation());
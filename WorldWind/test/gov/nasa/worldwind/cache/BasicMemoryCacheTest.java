@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.avlist.AVKey;
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+/**
+ * @version $Id$
+ */
+public class BasicMemoryCacheTest
+{
+    public static class Tests extends TestCase
+    {
+        /** Tests that the LRU policy evicts the least recently retrieved entries first. */
+        public void testLRUEviction()
+        {
+            BasicMemoryCache cache = new BasicMemoryCache(70, 100, AVKey.EVICTION_POLICY_LRU);
+
+            for (int i = 0; i < 10; i++)
+            {
+                cache.add(i, "item " + i, 10);
+            }
+
+            cache.getObject(0);
+            cache.getObject(2);
+            cache.add(10, "item 10", 10);
+
+            assertTrue("Recently used item evicted ", cache.contains(0));
+            assertTrue("Recently used item evicted ", cache.contains(2));
+            assertFalse("Least recently used item retained ", cache.contains(1));
+            assertFalse("Least recently used item retained ", cache.contains(3));
+            assertFalse("Least recently used item retained ", cache.contains(4));
+            assertTrue("Newest item evicted ", cache.contains(10));
+            assertEquals("Used capacity incorrect ", 80, cache.getUsedCapacity());
+            assertEquals("Eviction count incorrect ", 3, cache.getEvictionCount());
+            assertEquals("Evicted capacity incorrect ", 30, cache.getEvictedCapacity());
+            assertEquals("Insertion count incorrect ", 11, cache.getInsertionCount());
+        }
+
+        /** Tests that the CLOCK policy gives referenced entries a second chance. */
+        public void testClockEviction()
+        {
+            BasicMemoryCache cache = new BasicMemoryCache(80, 100, AVKey.EVICTION_POLICY_CLOCK);
+
+            for (int i = 0; i < 10; i++)
+            {
+                cache.add(i, "item " + i, 10);
+            }
+
+            cache.getObject(0);
+            cache.add(10, "item 10", 10);
+
+            assertTrue("Referenced item evicted ", cache.contains(0));
+            assertFalse("Unreferenced item retained ", cache.contains(1));
+            assertFalse("Unreferenced item retained ", cache.contains(2));
+            assertTrue("Unreferenced item evicted out of order ", cache.contains(3));
+        }
+
+        /** Tests the hit and miss counters. */
+        public void testHitAndMissCounts()
+        {
+            BasicMemoryCache cache = new BasicMemoryCache(80, 100);
+
+            cache.add("a", "a", 10);
+            cache.getObject("a");
+            cache.getObject("a");
+            cache.getObject("b");
+
+            assertEquals("Hit count incorrect ", 2, cache.getHitCount());
+            assertEquals("Miss count incorrect ", 1, cache.getMissCount());
+        }
+
+        /** Tests that replacing and removing entries keeps the usage list consistent. */
+        public void testReplaceAndRemove()
+        {
+            BasicMemoryCache cache = new BasicMemoryCache(10, 30);
+
+            cache.add("a", "a1", 10);
+            cache.add("b", "b", 10);
+            cache.add("a", "a2", 10);
+            cache.remove("b");
+            cache.add("c", "c", 10);
+            cache.add("d", "d", 10);
+            assertEquals("Used capacity incorrect ", 30, cache.getUsedCapacity());
+
+            cache.add("e", "e", 10);
+            assertFalse("Least recently used item retained ", cache.contains("a"));
+            assertTrue("Newest item evicted ", cache.contains("e"));
+
+            cache.clear();
+            assertEquals("Cache not empty ", 0, cache.getNumObjects());
+            assertEquals("Used capacity not zero ", 0, cache.getUsedCapacity());
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * @version $Id$
+ */
+public class CompressedTileCacheTest
+{
+    public static class Tests extends TestCase
+    {
+        /** Tests that deflated data is restored exactly and occupies less of the cache than its original size. */
+        public void testDeflatedRoundTrip()
+        {
+            MemoryCache memoryCache = new BasicMemoryCache(100000, 200000);
+            CompressedTileCache cache = new CompressedTileCache(memoryCache);
+
+            ByteBuffer data = ByteBuffer.allocate(16384);
+            for (int i = 0; i < data.capacity() / 2; i++)
+            {
+                data.putShort((short) (i / 64));
+            }
+            data.flip();
+
+            cache.put("tile", data, true);
+            assertEquals("Source buffer position changed ", 0, data.position());
+            assertTrue("Data not deflated ", memoryCache.getUsedCapacity() < data.capacity() / 2);
+
+            ByteBuffer restored = cache.get("tile");
+            assertNotNull("Data not found ", restored);
+            assertEquals("Restored data incorrect ", data, restored);
+        }
+
+        /** Tests that data which does not shrink when deflated is stored as is. */
+        public void testIncompressibleData()
+        {
+            MemoryCache memoryCache = new BasicMemoryCache(100000, 200000);
+            CompressedTileCache cache = new CompressedTileCache(memoryCache);
+
+            byte[] bytes = new byte[4096];
+            new Random(1).nextBytes(bytes);
+            ByteBuffer data = ByteBuffer.allocateDirect(bytes.length);
+            data.put(bytes).flip();
+
+            cache.put("tile", data, true);
+            assertEquals("Restored data incorrect ", ByteBuffer.wrap(bytes), cache.get("tile"));
+
+            cache.remove("tile");
+            assertNull("Data not removed ", cache.get("tile"));
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.WWIO;
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.io.*;
+import java.net.URL;
+
+/**
+ * @version $Id$
+ */
+public class IndexedDataFileStoreTest
+{
+    public static class Tests extends TestCase
+    {
+        protected File storeDir;
+
+        @Override
+        public void setUp() throws IOException
+        {
+            this.storeDir = File.createTempFile("IndexedDataFileStoreTest", "");
+            this.storeDir.delete();
+            this.storeDir.mkdirs();
+        }
+
+        @Override
+        public void tearDown() throws IOException
+        {
+            WWIO.deleteDirectory(this.storeDir);
+            this.storeDir.delete();
+        }
+
+        protected static void writeFile(File file) throws IOException
+        {
+            file.getParentFile().mkdirs();
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(1);
+            out.close();
+        }
+
+        protected static IndexedDataFileStore createStore(File dir) throws InterruptedException
+        {
+            IndexedDataFileStore store = new IndexedDataFileStore(dir);
+            for (int i = 0; i < 100 && !store.isIndexComplete(); i++)
+            {
+                Thread.sleep(50);
+            }
+
+            assertTrue("Index not complete ", store.isIndexComplete());
+            return store;
+        }
+
+        /** Tests that files present when the store is created are found and that absent files are not. */
+        public void testFindIndexedFile() throws Exception
+        {
+            File file = new File(this.storeDir, "Earth/Layer/0/0/0_0.dds");
+            writeFile(file);
+
+            IndexedDataFileStore store = createStore(this.storeDir);
+
+            URL url = store.findFile("Earth/Layer/0/0/0_0.dds", false);
+            assertEquals("File URL incorrect ", file.toURI().toURL(), url);
+            assertNotNull("Directory not found ", store.findFile("Earth/Layer", false));
+            assertTrue("File not contained ", store.containsFile("Earth/Layer/0/0/0_0.dds"));
+            assertNull("Absent file found ", store.findFile("Earth/Layer/0/0/0_1.dds", false));
+            assertFalse("Absent file contained ", store.containsFile("Earth/Layer/0/0/0_1.dds"));
+        }
+
+        /** Tests that files created and removed through the store are reflected in the index. */
+        public void testNewAndRemovedFiles() throws Exception
+        {
+            IndexedDataFileStore store = createStore(this.storeDir);
+
+            File file = store.newFile("Earth/Layer/1/2/2_3.dds");
+            assertNotNull("File not created ", file);
+            assertNull("Unwritten file found ", store.findFile("Earth/Layer/1/2/2_3.dds", false));
+
+            writeFile(file);
+            URL url = store.findFile("Earth/Layer/1/2/2_3.dds", false);
+            assertEquals("File URL incorrect ", file.toURI().toURL(), url);
+
+            store.removeFile(url);
+            assertFalse("File not deleted ", file.exists());
+            assertNull("Removed file found ", store.findFile("Earth/Layer/1/2/2_3.dds", false));
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
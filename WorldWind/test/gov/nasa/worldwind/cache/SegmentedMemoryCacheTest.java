@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @version $Id$
+ */
+public class SegmentedMemoryCacheTest
+{
+    public static class Tests extends TestCase
+    {
+        /** Tests that adds beyond the capacity evict down to the low water level and notify listeners. */
+        public void testEviction()
+        {
+            SegmentedMemoryCache cache = new SegmentedMemoryCache(50, 100, 4);
+            final AtomicLong removedSize = new AtomicLong();
+            cache.addCacheListener(new MemoryCache.CacheListener()
+            {
+                public void entryRemoved(Object key, Object clientObject)
+                {
+                    removedSize.addAndGet(10);
+                }
+
+                public void removalException(Throwable exception, Object key, Object clientObject)
+                {
+                }
+            });
+
+            for (int i = 0; i < 10; i++)
+            {
+                assertTrue("Item not added ", cache.add(i, "item " + i, 10));
+            }
+            assertEquals("Used capacity incorrect ", 100, cache.getUsedCapacity());
+            assertEquals("Item count incorrect ", 10, cache.getNumObjects());
+
+            cache.add(10, "item 10", 10);
+            assertTrue("Used capacity above low water ", cache.getUsedCapacity() <= 50 + 10);
+            assertEquals("Removal notifications incorrect ", 110 - cache.getUsedCapacity(), removedSize.get());
+            assertTrue("Newest item evicted ", cache.contains(10));
+        }
+
+        /** Tests that recently accessed entries survive eviction. */
+        public void testReferencedEntriesRetained()
+        {
+            SegmentedMemoryCache cache = new SegmentedMemoryCache(80, 100, 1);
+
+            for (int i = 0; i < 10; i++)
+            {
+                cache.add(i, "item " + i, 10);
+            }
+
+            cache.getObject(0);
+            cache.getObject(1);
+            cache.add(10, "item 10", 10);
+
+            assertTrue("Referenced item evicted ", cache.contains(0));
+            assertTrue("Referenced item evicted ", cache.contains(1));
+            assertFalse("Unreferenced item retained ", cache.contains(2));
+        }
+
+        /** Tests replacement, removal and clearing of entries. */
+        public void testReplaceRemoveAndClear()
+        {
+            SegmentedMemoryCache cache = new SegmentedMemoryCache(800, 1000);
+
+            cache.add("a", "first", 10);
+            cache.add("a", "second", 20);
+            assertEquals("Replacement not stored ", "second", cache.getObject("a"));
+            assertEquals("Used capacity incorrect ", 20, cache.getUsedCapacity());
+
+            cache.add("b", "b", 30);
+            cache.remove("a");
+            assertNull("Item not removed ", cache.getObject("a"));
+            assertEquals("Used capacity incorrect ", 30, cache.getUsedCapacity());
+
+            cache.clear();
+            assertEquals("Cache not empty ", 0, cache.getNumObjects());
+            assertEquals("Used capacity not zero ", 0, cache.getUsedCapacity());
+        }
+
+        /** Tests that concurrent adds and removes leave the used capacity consistent with the cache contents. */
+        public void testConcurrentAccess() throws InterruptedException
+        {
+            final SegmentedMemoryCache cache = new SegmentedMemoryCache(5000, 10000);
+            List<Thread> threads = new ArrayList<Thread>();
+
+            for (int t = 0; t < 8; t++)
+            {
+                final int seed = t;
+                threads.add(new Thread(new Runnable()
+                {
+                    public void run()
+                    {
+                        Random random = new Random(seed);
+                        for (int i = 0; i < 20000; i++)
+                        {
+                            Integer key = random.nextInt(2000);
+                            if (random.nextInt(4) == 0)
+                                cache.remove(key);
+                            else if (cache.getObject(key) == null)
+                                cache.add(key, key, 1 + key % 10);
+                        }
+                    }
+                }));
+            }
+
+            for (Thread thread : threads)
+            {
+                thread.start();
+            }
+            for (Thread thread : threads)
+            {
+                thread.join();
+            }
+
+            long size = 0;
+            for (int key = 0; key < 2000; key++)
+            {
+                if (cache.contains(key))
+                    size += 1 + key % 10;
+            }
+            assertEquals("Used capacity inconsistent ", size, cache.getUsedCapacity());
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @version $Id$
+ */
+public class SlabAllocatorTest
+{
+    public static class Tests extends TestCase
+    {
+        /** Tests that allocation stops at the capacity and that slots do not overlap. */
+        public void testAllocationWithinCapacity()
+        {
+            SlabAllocator allocator = new SlabAllocator(16, 4, 128);
+            SlabAllocator.Slot[] slots = new SlabAllocator.Slot[8];
+
+            for (int i = 0; i < slots.length; i++)
+            {
+                slots[i] = allocator.allocate();
+                assertNotNull("Slot not allocated ", slots[i]);
+                ByteBuffer buffer = slots[i].getBuffer();
+                assertTrue("Slot not direct ", buffer.isDirect());
+                assertEquals("Slot size incorrect ", 16, buffer.remaining());
+                while (buffer.hasRemaining())
+                {
+                    buffer.put((byte) i);
+                }
+            }
+
+            assertNull("Capacity exceeded ", allocator.allocate());
+            assertEquals("Used capacity incorrect ", 128, allocator.getUsedCapacity());
+
+            for (int i = 0; i < slots.length; i++)
+            {
+                ByteBuffer buffer = slots[i].getBuffer();
+                while (buffer.hasRemaining())
+                {
+                    assertEquals("Slots overlap ", (byte) i, buffer.get());
+                }
+            }
+        }
+
+        /** Tests that a slot is reused only after its last reference is released. */
+        public void testReferenceCounting()
+        {
+            SlabAllocator allocator = new SlabAllocator(16, 1, 16);
+            SlabAllocator.Slot slot = allocator.allocate();
+            assertEquals("Allocated slot reference count incorrect ", 1, slot.getReferenceCount());
+            slot.getBuffer().put(0, (byte) 7);
+
+            assertTrue("Reference not acquired ", allocator.acquire(slot));
+            assertFalse("Slot freed while referenced ", allocator.release(slot));
+            assertNull("Referenced slot reused ", allocator.allocate());
+            assertEquals("Used capacity incorrect ", 16, allocator.getUsedCapacity());
+
+            assertTrue("Slot not freed by last release ", allocator.release(slot));
+            assertEquals("Freed slot reference count incorrect ", 0, slot.getReferenceCount());
+            assertFalse("Reference acquired to free slot ", allocator.acquire(slot));
+            assertFalse("Free slot released ", allocator.release(slot));
+            assertEquals("Used capacity incorrect ", 0, allocator.getUsedCapacity());
+
+            // Test that the freed slot's memory is reused by a new slot, and that the freed slot stays free.
+            SlabAllocator.Slot reused = allocator.allocate();
+            assertNotNull("Freed slot not reused ", reused);
+            assertEquals("Freed slot memory not reused ", (byte) 7, reused.getBuffer().get(0));
+            assertFalse("Reference acquired to reused slot through freed slot ", allocator.acquire(slot));
+            assertEquals("Reused slot reference count incorrect ", 1, reused.getReferenceCount());
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
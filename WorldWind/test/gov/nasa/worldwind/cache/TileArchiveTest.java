@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.WWIO;
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
+/**
+ * @version $Id$
+ */
+public class TileArchiveTest
+{
+    public static class Tests extends TestCase
+    {
+        protected File dir;
+
+        @Override
+        public void setUp() throws IOException
+        {
+            this.dir = File.createTempFile("TileArchiveTest", "");
+            this.dir.delete();
+            this.dir.mkdirs();
+        }
+
+        @Override
+        public void tearDown() throws IOException
+        {
+            WWIO.deleteDirectory(this.dir);
+            this.dir.delete();
+        }
+
+        protected static ByteBuffer makeData(int length, int seed)
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            for (int i = 0; i < length; i++)
+            {
+                buffer.put((byte) (i + seed));
+            }
+            buffer.flip();
+            return buffer;
+        }
+
+        /** Tests that files written to an archive are read back, before and after the archive is reopened. */
+        public void testPutAndReopen() throws IOException
+        {
+            TileArchive archive = new TileArchive(this.dir, "tiles", 1000);
+            for (int i = 0; i < 20; i++)
+            {
+                archive.put("Earth/Layer/0/0/0_" + i + ".dds", makeData(100, i), 1000L + i);
+            }
+            archive.remove("Earth/Layer/0/0/0_3.dds");
+
+            assertEquals("File count incorrect ", 19, archive.getFileCount());
+            assertEquals("Data incorrect ", makeData(100, 7), archive.get("Earth/Layer/0/0/0_7.dds"));
+
+            // Save the index part way through, so that reopening uses both the index and a volume scan.
+            archive.flush();
+            archive.put("Earth/Layer/0/0/0_7.dds", makeData(50, 99), 2000L);
+            archive.close();
+
+            archive = new TileArchive(this.dir, "tiles", 1000);
+            assertEquals("File count incorrect ", 19, archive.getFileCount());
+            assertFalse("Removed file found ", archive.contains("Earth/Layer/0/0/0_3.dds"));
+            assertEquals("Data incorrect ", makeData(100, 12), archive.get("Earth/Layer/0/0/0_12.dds"));
+            assertEquals("Replaced data incorrect ", makeData(50, 99), archive.get("Earth/Layer/0/0/0_7.dds"));
+            assertEquals("Modification time incorrect ", 2000L, archive.getLastModified("Earth/Layer/0/0/0_7.dds"));
+            archive.close();
+        }
+
+        /** Tests that compaction reclaims replaced records and preserves live ones. */
+        public void testCompact() throws IOException
+        {
+            TileArchive archive = new TileArchive(this.dir, "tiles", 1000);
+            for (int i = 0; i < 10; i++)
+            {
+                archive.put("0_" + i + ".bil", makeData(100, i), 0);
+                archive.put("0_" + i + ".bil", makeData(100, i + 1), 0);
+            }
+
+            assertTrue("Garbage not counted ", archive.getGarbageFraction() > 0.4);
+            long size = archive.getTotalBytes();
+
+            archive.compact();
+            assertEquals("Garbage not reclaimed ", 0d, archive.getGarbageFraction());
+            assertTrue("Archive not smaller ", archive.getTotalBytes() < size);
+            for (int i = 0; i < 10; i++)
+            {
+                assertEquals("Data incorrect ", makeData(100, i + 1), archive.get("0_" + i + ".bil"));
+            }
+            archive.close();
+
+            archive = new TileArchive(this.dir, "tiles", 1000);
+            assertEquals("File count incorrect ", 10, archive.getFileCount());
+            assertEquals("Data incorrect ", makeData(100, 5), archive.get("0_4.bil"));
+            archive.close();
+        }
+
+        /** Tests that records appended after a volume is mapped are read without remapping it for each record. */
+        public void testReadAppendedRecords() throws IOException
+        {
+            TileArchive archive = new TileArchive(this.dir, "tiles");
+            for (int i = 0; i < 4; i++)
+            {
+                archive.put("0_" + i + ".bil", makeData(100, i), 0);
+            }
+
+            assertEquals("Data incorrect ", makeData(100, 0), archive.get("0_0.bil"));
+            TileArchive.Volume volume = archive.state.volumes.get(0);
+            ByteBuffer mapping = volume.mapping;
+            assertEquals("Volume not mapped whole ", volume.length, mapping.capacity());
+
+            archive.put("0_4.bil", makeData(100, 4), 0);
+            assertEquals("Appended data incorrect ", makeData(100, 4), archive.get("0_4.bil"));
+            assertSame("Volume remapped before doubling ", mapping, volume.mapping);
+
+            for (int i = 5; i < 8; i++)
+            {
+                archive.put("0_" + i + ".bil", makeData(100, i), 0);
+            }
+            assertEquals("Appended data incorrect ", makeData(100, 7), archive.get("0_7.bil"));
+            assertNotSame("Volume not remapped after doubling ", mapping, volume.mapping);
+            assertEquals("Volume not mapped whole ", volume.length, volume.mapping.capacity());
+            archive.close();
+        }
+
+        /** Tests that compaction leaves the old volumes in place until the reads in progress on them complete. */
+        public void testCompactWaitsForReads() throws IOException
+        {
+            TileArchive archive = new TileArchive(this.dir, "tiles");
+            archive.put("0_0.bil", makeData(100, 0), 0);
+            archive.put("0_0.bil", makeData(100, 1), 0);
+
+            TileArchive.State oldState = archive.acquireState();
+            File oldVolume = oldState.volumes.get(0).file;
+            archive.compact();
+
+            assertTrue("Volume deleted during a read ", oldVolume.exists());
+            assertTrue("Volume closed during a read ", oldState.volumes.get(0).channel.isOpen());
+            TileArchive.Entry entry = oldState.index.get("0_0.bil");
+            assertEquals("Data incorrect ", makeData(100, 1), oldState.volumes.get(0).read(entry.offset, entry.length));
+
+            archive.releaseState(oldState);
+            assertFalse("Volume not closed after the read ", oldState.volumes.get(0).channel.isOpen());
+            assertFalse("Volume not deleted after the read ", oldVolume.exists());
+            assertEquals("Data incorrect ", makeData(100, 1), archive.get("0_0.bil"));
+            archive.close();
+        }
+
+        /** Tests that an archive whose compaction was interrupted opens with the generation its index names. */
+        public void testInterruptedCompaction() throws IOException
+        {
+            TileArchive archive = new TileArchive(this.dir, "tiles");
+            for (int i = 0; i < 10; i++)
+            {
+                archive.put("0_" + i + ".bil", makeData(100, i), 0);
+            }
+            archive.close();
+
+            // Leave a new generation holding only some of the records, as a compaction interrupted before writing its
+            // index does.
+            File partialDir = new File(this.dir, "partial");
+            TileArchive partial = new TileArchive(partialDir, "tiles");
+            partial.put("0_0.bil", makeData(100, 0), 0);
+            partial.close();
+            File partialVolume = new File(this.dir, "tiles.1.0.wwa");
+            WWIO.saveBuffer(WWIO.readFileToBuffer(new File(partialDir, "tiles.0.0.wwa")), partialVolume);
+
+            archive = new TileArchive(this.dir, "tiles");
+            assertEquals("Records lost ", 10, archive.getFileCount());
+            assertEquals("Data incorrect ", makeData(100, 9), archive.get("0_9.bil"));
+            assertFalse("Partial generation not deleted ", partialVolume.exists());
+            archive.close();
+
+            // Test that without an index the earliest generation is kept.
+            new File(this.dir, "tiles.wwi").delete();
+            WWIO.saveBuffer(WWIO.readFileToBuffer(new File(partialDir, "tiles.0.0.wwa")), partialVolume);
+
+            archive = new TileArchive(this.dir, "tiles");
+            assertEquals("Records lost without an index ", 10, archive.getFileCount());
+            assertFalse("Partial generation not deleted ", partialVolume.exists());
+            archive.close();
+        }
+
+        /** Tests that a directory of files is imported and that archived files can be read through their URLs. */
+        public void testImportDirectory() throws IOException
+        {
+            File source = new File(this.dir, "source");
+            File file = new File(source, "Earth/Layer/2/5/5_6.png");
+            file.getParentFile().mkdirs();
+            WWIO.saveBuffer(makeData(64, 3), file);
+
+            TileArchive archive = new TileArchive(new File(this.dir, "archive"), "tiles");
+            assertEquals("Import count incorrect ", 1, archive.importDirectory(source, null, true));
+            assertFalse("Imported file not deleted ", file.exists());
+
+            URL url = archive.makeURL("Earth/Layer/2/5/5_6.png");
+            assertNotNull("URL not created ", url);
+            assertEquals("File name incorrect ", "Earth/Layer/2/5/5_6.png", TileArchive.getFileName(url));
+            assertEquals("URL data incorrect ", makeData(64, 3), WWIO.readURLContentToBuffer(url));
+            assertNull("URL created for absent file ", archive.makeURL("Earth/Layer/2/5/5_7.png"));
+            archive.close();
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
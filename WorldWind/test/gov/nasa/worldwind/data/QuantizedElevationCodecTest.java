@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.data;
+
+import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.util.*;
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.io.File;
+import java.nio.*;
+import java.util.Random;
+
+/**
+ * @version $Id$
+ */
+public class QuantizedElevationCodecTest
+{
+    public static class Tests extends TestCase
+    {
+        protected static final int WIDTH = 150;
+        protected static final int HEIGHT = 150;
+        protected static final double MISSING_DATA_SIGNAL = Short.MIN_VALUE;
+
+        /**
+         * Creates terrain-like elevations: a smooth surface with noise, a cliff and a few missing samples.
+         *
+         * @param dataType the elevations' data type.
+         *
+         * @return the elevations.
+         */
+        protected static BufferWrapper createElevations(String dataType)
+        {
+            ByteBuffer byteBuffer = ByteBuffer.allocate(WIDTH * HEIGHT * (AVKey.INT16.equals(dataType) ? 2 : 4));
+            BufferWrapper elevations = BufferWrapper.wrap(byteBuffer, dataType, AVKey.LITTLE_ENDIAN);
+
+            Random random = new Random(1);
+            for (int j = 0; j < HEIGHT; j++)
+            {
+                for (int i = 0; i < WIDTH; i++)
+                {
+                    double value = 1500 + 800 * Math.sin(j / 20.0) * Math.cos(i / 30.0) + 5 * random.nextGaussian();
+                    if (i > 100)
+                        value -= 3000;
+                    if (random.nextInt(500) == 0)
+                        value = MISSING_DATA_SIGNAL;
+
+                    elevations.putDouble(j * WIDTH + i, AVKey.INT16.equals(dataType) ? Math.round(value) : value);
+                }
+            }
+
+            return elevations;
+        }
+
+        /** Tests that 16-bit integer elevations are decoded exactly, and to 16-bit integers. */
+        public void testIntegerElevationsLossless()
+        {
+            BufferWrapper elevations = createElevations(AVKey.INT16);
+            ByteBuffer encoded = QuantizedElevationCodec.encode(elevations, WIDTH, HEIGHT, MISSING_DATA_SIGNAL, 0.1);
+            BufferWrapper decoded = QuantizedElevationCodec.decode(encoded);
+
+            assertEquals("Data type incorrect ", AVKey.INT16, WWBufferUtil.getPrimitiveType(decoded));
+            assertEquals("Length incorrect ", elevations.length(), decoded.length());
+            for (int i = 0; i < elevations.length(); i++)
+            {
+                assertEquals("Elevation incorrect at " + i + " ", elevations.getDouble(i), decoded.getDouble(i));
+            }
+
+            assertTrue("Encoded size " + encoded.remaining() + " not less than half of BIL size ",
+                encoded.remaining() < WIDTH * HEIGHT);
+        }
+
+        /** Tests that floating point elevations are decoded within the quantization precision. */
+        public void testFloatElevationsQuantized()
+        {
+            BufferWrapper elevations = createElevations(AVKey.FLOAT32);
+            ByteBuffer encoded = QuantizedElevationCodec.encode(elevations, WIDTH, HEIGHT, MISSING_DATA_SIGNAL, 0.1);
+            BufferWrapper decoded = QuantizedElevationCodec.decode(encoded);
+
+            assertEquals("Data type incorrect ", AVKey.FLOAT32, WWBufferUtil.getPrimitiveType(decoded));
+            for (int i = 0; i < elevations.length(); i++)
+            {
+                if (elevations.getDouble(i) == MISSING_DATA_SIGNAL)
+                    assertEquals("Missing elevation not preserved ", MISSING_DATA_SIGNAL, decoded.getDouble(i));
+                else
+                    assertEquals("Elevation incorrect at " + i + " ", elevations.getDouble(i), decoded.getDouble(i),
+                        0.05 + 1e-3);
+            }
+        }
+
+        /** Tests that a tile of a single elevation, and a tile of missing elevations, are decoded exactly. */
+        public void testUniformElevations()
+        {
+            ShortBuffer buffer = ShortBuffer.allocate(WIDTH * HEIGHT);
+            for (int i = 0; i < buffer.capacity(); i++)
+            {
+                buffer.put(i, (short) 42);
+            }
+            BufferWrapper elevations = new BufferWrapper.ShortBufferWrapper(buffer);
+
+            BufferWrapper decoded = QuantizedElevationCodec.decode(
+                QuantizedElevationCodec.encode(elevations, WIDTH, HEIGHT, MISSING_DATA_SIGNAL, 1));
+            assertEquals("Uniform elevation incorrect ", 42d, decoded.getDouble(WIDTH * HEIGHT - 1));
+
+            decoded = QuantizedElevationCodec.decode(
+                QuantizedElevationCodec.encode(elevations, WIDTH, HEIGHT, 42, 1));
+            assertEquals("Missing elevation incorrect ", 42d, decoded.getDouble(WIDTH * HEIGHT - 1));
+        }
+
+        /** Tests that the writer writes a tile that the codec decodes. */
+        public void testWriter() throws Exception
+        {
+            BufferWrapper elevations = createElevations(AVKey.INT16);
+            BufferWrapperRaster raster = new BufferWrapperRaster(WIDTH, HEIGHT, Sector.fromDegrees(0, 1, 0, 1),
+                elevations);
+            raster.setTransparentValue(MISSING_DATA_SIGNAL);
+
+            QuantizedElevationRasterWriter writer = new QuantizedElevationRasterWriter();
+            File file = File.createTempFile("QuantizedElevationCodecTest", ".qel");
+            try
+            {
+                assertTrue("Writer cannot write raster ", writer.canWrite(raster, ".qel", file));
+                assertFalse("Writer accepts BIL suffix ", writer.canWrite(raster, ".bil", file));
+                writer.write(raster, ".qel", file);
+
+                BufferWrapper decoded = QuantizedElevationCodec.decode(WWIO.readFileToBuffer(file));
+                for (int i = 0; i < elevations.length(); i++)
+                {
+                    assertEquals("Elevation incorrect at " + i + " ", elevations.getDouble(i), decoded.getDouble(i));
+                }
+            }
+            finally
+            {
+                file.delete();
+            }
+        }
+
+        /** Tests that buffers other than quantized elevation tiles are rejected. */
+        public void testInvalidBuffer()
+        {
+            try
+            {
+                QuantizedElevationCodec.decode(ByteBuffer.allocate(100));
+                fail("Invalid buffer accepted ");
+            }
+            catch (IllegalArgumentException e)
+            {
+                // Expected
+            }
+        }
+
+        /** Tests that a tile whose data ends before all of its samples are decoded is rejected. */
+        public void testTruncatedBuffer()
+        {
+            ByteBuffer encoded = QuantizedElevationCodec.encode(createElevations(AVKey.INT16), WIDTH, HEIGHT,
+                MISSING_DATA_SIGNAL, 1);
+
+            // Cut the data short both by less than the smallest possible encoding and by just a few bytes.
+            int[] lengths = new int[] {QuantizedElevationCodec.HEADER_SIZE + 10, encoded.limit() - 4};
+            for (int length : lengths)
+            {
+                ByteBuffer truncated = encoded.duplicate();
+                truncated.limit(length);
+                try
+                {
+                    QuantizedElevationCodec.decode(truncated);
+                    fail("Truncated buffer of length " + length + " accepted ");
+                }
+                catch (IllegalArgumentException e)
+                {
+                    // Expected
+                }
+            }
+        }
+
+        /** Tests that a tile whose header holds an invalid width or height is rejected. */
+        public void testInvalidHeader()
+        {
+            ByteBuffer encoded = QuantizedElevationCodec.encode(createElevations(AVKey.INT16), WIDTH, HEIGHT,
+                MISSING_DATA_SIGNAL, 1);
+
+            // The width and height follow the magic number, version and data type.
+            int[][] sizes = new int[][] {{0, HEIGHT}, {WIDTH, -1}, {QuantizedElevationCodec.MAX_DIMENSION + 1, HEIGHT},
+                {65536, 65536}};
+            for (int[] size : sizes)
+            {
+                ByteBuffer invalid = ByteBuffer.allocate(encoded.limit());
+                invalid.put(encoded.duplicate()).flip();
+                invalid.putInt(6, size[0]);
+                invalid.putInt(10, size[1]);
+                try
+                {
+                    QuantizedElevationCodec.decode(invalid);
+                    fail("Size " + size[0] + " x " + size[1] + " accepted ");
+                }
+                catch (IllegalArgumentException e)
+                {
+                    // Expected
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
@@ -5,7 +5,9 @@
  */
 package gov.nasa.worldwind.layers;
 
-import gov.nasa.worldwind.BasicModel;
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.geom.*;
 import gov.nasa.worldwind.render.*;
 import gov.nasa.worldwind.view.orbit.BasicOrbitView;
 
@@ -386,6 +388,98 @@ public class RenderableLayerTest extends junit.framework.TestCase
         }
     }
 
+    /*************************************************************************************************************/
+    /** Spatial Index Tests **/
+    /** ****************************************************************************************************** */
+
+    public void testSpatialIndexVisitsVisibleRenderables()
+    {
+        SectorRenderable a = new SectorRenderable(Sector.fromDegrees(10, 11, 10, 11));
+        SectorRenderable b = new SectorRenderable(Sector.fromDegrees(-50, -49, 100, 101));
+        SectorRenderable c = new SectorRenderable(Sector.fromDegrees(12, 13, 12, 13));
+        Renderable unbounded = new Polyline(); // Polyline has no sector, and is visited in every frame.
+
+        RenderableLayer layer = new RenderableLayer();
+        layer.addRenderables(Arrays.asList(c, b, unbounded));
+        layer.setEnableSpatialIndex(true);
+        layer.addRenderable(0, a);
+
+        DrawContext dc = new DrawContextImpl();
+        dc.setModel(new BasicModel());
+        dc.setVisibleSector(Sector.fromDegrees(0, 20, 0, 20));
+
+        // Test that the layer visits the visible renderables in the layer's order.
+        assertEquals("", Arrays.<Renderable>asList(a, c, unbounded), layer.getVisibleRenderables(dc));
+
+        // Test that a moved renderable is found at its new sector once the layer is told it changed.
+        b.sector = Sector.fromDegrees(5, 6, 5, 6);
+        layer.updateRenderable(b);
+        assertEquals("", Arrays.<Renderable>asList(a, c, b, unbounded), layer.getVisibleRenderables(dc));
+
+        layer.removeRenderable(c);
+        assertEquals("", Arrays.<Renderable>asList(a, b, unbounded), layer.getVisibleRenderables(dc));
+
+        // Test that the layer visits every renderable when the index is disabled.
+        layer.setEnableSpatialIndex(false);
+        assertEquals("", layer.getRenderables(), layer.getVisibleRenderables(dc));
+    }
+
+    public void testSpatialIndexNotUsedWithoutVisibleSector()
+    {
+        RenderableLayer layer = new RenderableLayer();
+        layer.setEnableSpatialIndex(true);
+        layer.addRenderable(new SectorRenderable(Sector.fromDegrees(10, 11, 10, 11)));
+
+        assertEquals("", layer.getRenderables(), layer.getVisibleRenderables(new DrawContextImpl()));
+    }
+
+    public void testSpatialIndexCountsDuplicateRenderables()
+    {
+        SectorRenderable a = new SectorRenderable(Sector.fromDegrees(10, 11, 10, 11));
+
+        RenderableLayer layer = new RenderableLayer();
+        layer.setEnableSpatialIndex(true);
+        layer.addRenderable(a);
+        layer.addRenderable(a);
+
+        DrawContext dc = new DrawContextImpl();
+        dc.setModel(new BasicModel());
+        dc.setVisibleSector(Sector.fromDegrees(0, 20, 0, 20));
+
+        // Test that a renderable added twice remains indexed until it's been removed twice.
+        layer.removeRenderable(a);
+        assertEquals("", Arrays.<Renderable>asList(a), layer.getVisibleRenderables(dc));
+
+        layer.removeRenderable(a);
+        assertEquals("", Collections.<Renderable>emptyList(), layer.getVisibleRenderables(dc));
+    }
+
+    public void testSpatialIndexExpandsElevatedSectors()
+    {
+        LocatableRenderable ground = new LocatableRenderable(Position.fromDegrees(30, 30, 0));
+        LocatableRenderable elevated = new LocatableRenderable(Position.fromDegrees(30, 30, 100e3));
+
+        // A great circle arc between these positions passes north of latitude 49.
+        Path path = new Path(Position.fromDegrees(40, 0, 0), Position.fromDegrees(40, 90, 0));
+        path.setPathType(AVKey.GREAT_CIRCLE);
+        path.setAltitudeMode(WorldWind.CLAMP_TO_GROUND);
+
+        RenderableLayer layer = new RenderableLayer();
+        layer.setEnableSpatialIndex(true);
+        layer.addRenderables(Arrays.<Renderable>asList(ground, elevated, path));
+
+        DrawContext dc = new DrawContextImpl();
+        dc.setModel(new BasicModel());
+
+        // Test that a renderable above the terrain is visited when it's beyond the visible terrain, but within view.
+        dc.setVisibleSector(Sector.fromDegrees(20, 25, 25, 35));
+        assertEquals("", Arrays.<Renderable>asList(elevated), layer.getVisibleRenderables(dc));
+
+        // Test that a great circle path is visited where its arc leaves the sector of its positions.
+        dc.setVisibleSector(Sector.fromDegrees(48, 49, 40, 50));
+        assertEquals("", Arrays.<Renderable>asList(path), layer.getVisibleRenderables(dc));
+    }
+
     /*************************************************************************************************************/
     /** Helper Methods **/
     /** ****************************************************************************************************** */
@@ -410,6 +504,44 @@ public class RenderableLayerTest extends junit.framework.TestCase
         }
     }
 
+    private static class SectorRenderable implements GeographicExtent
+    {
+        protected Sector sector;
+
+        public SectorRenderable(Sector sector)
+        {
+            this.sector = sector;
+        }
+
+        public Sector getSector()
+        {
+            return this.sector;
+        }
+
+        public void render(DrawContext dc)
+        {
+        }
+    }
+
+    private static class LocatableRenderable implements Locatable, Renderable
+    {
+        protected Position position;
+
+        public LocatableRenderable(Position position)
+        {
+            this.position = position;
+        }
+
+        public Position getPosition()
+        {
+            return this.position;
+        }
+
+        public void render(DrawContext dc)
+        {
+        }
+    }
+
     private static Collection<Renderable> createExampleIterable()
     {
         //noinspection RedundantArrayCreation
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.layers;
+
+import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.cache.*;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.util.*;
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import javax.imageio.ImageIO;
+import java.awt.image.*;
+import java.io.*;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
+/**
+ * @version $Id$
+ */
+public class TiledImageLayerTest
+{
+    public static class Tests extends TestCase
+    {
+        protected File dir;
+
+        @Override
+        public void setUp() throws IOException
+        {
+            this.dir = File.createTempFile("TiledImageLayerTest", "");
+            this.dir.delete();
+            this.dir.mkdirs();
+        }
+
+        @Override
+        public void tearDown() throws IOException
+        {
+            WWIO.deleteDirectory(this.dir);
+            this.dir.delete();
+        }
+
+        protected static AVList createParams()
+        {
+            AVList params = new AVListImpl();
+            params.setValue(AVKey.SECTOR, Sector.FULL_SPHERE);
+            params.setValue(AVKey.LEVEL_ZERO_TILE_DELTA, LatLon.fromDegrees(36, 36));
+            params.setValue(AVKey.TILE_ORIGIN, LatLon.fromDegrees(-90, -180));
+            params.setValue(AVKey.NUM_LEVELS, 2);
+            params.setValue(AVKey.TILE_WIDTH, 16);
+            params.setValue(AVKey.TILE_HEIGHT, 16);
+            params.setValue(AVKey.DATA_CACHE_NAME, "Earth/TiledImageLayerTest");
+            params.setValue(AVKey.DATASET_NAME, "TiledImageLayerTest");
+            params.setValue(AVKey.FORMAT_SUFFIX, ".png");
+            params.setValue(AVKey.NETWORK_RETRIEVAL_ENABLED, false);
+            return params;
+        }
+
+        /** Tests that an image tile packed in a file store's archive is read through its archive URL. */
+        public void testPackedImageTile() throws Exception
+        {
+            BasicTiledImageLayer layer = new BasicTiledImageLayer(createParams());
+            PackedDataFileStore fileStore = new PackedDataFileStore(this.dir);
+            layer.setDataFileStore(fileStore);
+
+            Level level = layer.getLevels().getFirstLevel();
+            TileKey key = new TileKey(0, 1, 2, level.getCacheName());
+            TextureTile tile = new TextureTile(layer.getLevels().computeSectorForKey(key), level, 1, 2);
+            String fileName = tile.getPathBase() + ".png";
+
+            BufferedImage expected = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+            expected.setRGB(3, 5, 0xff8000);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ImageIO.write(expected, "png", bytes);
+            fileStore.getArchive().put(fileName, ByteBuffer.wrap(bytes.toByteArray()), System.currentTimeMillis());
+
+            URL url = fileStore.findFile(fileName, false);
+            assertEquals("Tile not packed ", fileName, TileArchive.getFileName(url));
+
+            BufferedImage image = layer.requestImage(tile, "image/png");
+            assertNotNull("Packed tile not read ", image);
+            assertEquals("Image width incorrect ", 16, image.getWidth());
+            assertEquals("Image height incorrect ", 16, image.getHeight());
+            assertEquals("Image data incorrect ", 0xff8000, image.getRGB(3, 5) & 0xffffff);
+            assertFalse("Tile marked absent ", layer.getLevels().isResourceAbsent(tile));
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.render;
+
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.awt.*;
+import java.util.*;
+
+/**
+ * @version $Id$
+ */
+public class OrderedRenderableQueueTest
+{
+    /** An ordered renderable at a fixed distance, numbered in the order created. */
+    protected static class TestRenderable implements OrderedRenderable
+    {
+        protected final double distance;
+        protected final int sequence;
+
+        public TestRenderable(double distance, int sequence)
+        {
+            this.distance = distance;
+            this.sequence = sequence;
+        }
+
+        public double getDistanceFromEye()
+        {
+            return this.distance;
+        }
+
+        public void pick(DrawContext dc, Point pickPoint)
+        {
+        }
+
+        public void render(DrawContext dc)
+        {
+        }
+
+        @Override
+        public String toString()
+        {
+            return this.sequence + " at " + this.distance;
+        }
+    }
+
+    /** Orders renderables as the draw context's priority queue did: farthest first, then in the order added. */
+    protected static final Comparator<TestRenderable> DRAW_ORDER = new Comparator<TestRenderable>()
+    {
+        public int compare(TestRenderable a, TestRenderable b)
+        {
+            return a.distance > b.distance ? -1 : a.distance == b.distance
+                ? (a.sequence < b.sequence ? -1 : a.sequence == b.sequence ? 0 : 1) : 1;
+        }
+    };
+
+    public static class Tests extends TestCase
+    {
+        protected Random random = new Random(1);
+        protected int sequence;
+
+        protected TestRenderable add(OrderedRenderableQueue queue, PriorityQueue<TestRenderable> expected)
+        {
+            // Include many equal distances and negative distances.
+            double distance = this.random.nextInt(3) == 0 ? this.random.nextInt(10)
+                : 1e6 * this.random.nextDouble() - 1e3;
+            TestRenderable renderable = new TestRenderable(distance, this.sequence++);
+            queue.add(renderable, distance, 0, null);
+            expected.add(renderable);
+
+            return renderable;
+        }
+
+        protected void assertPoll(OrderedRenderableQueue queue, PriorityQueue<TestRenderable> expected)
+        {
+            TestRenderable next = expected.poll();
+            int index = queue.poll();
+            assertTrue("Queue empty early ", index >= 0);
+            assertSame("Renderable out of order ", next, queue.getRenderable(index));
+        }
+
+        /** Tests that renderables are delivered farthest first, and in the order added when equally distant. */
+        public void testOrder()
+        {
+            for (int n : new int[] {0, 1, 10, 47, 48, 1000, 20000})
+            {
+                OrderedRenderableQueue queue = new OrderedRenderableQueue();
+                PriorityQueue<TestRenderable> expected = new PriorityQueue<TestRenderable>(10, DRAW_ORDER);
+                for (int i = 0; i < n; i++)
+                {
+                    this.add(queue, expected);
+                }
+
+                while (!expected.isEmpty())
+                {
+                    this.assertPoll(queue, expected);
+                }
+
+                assertTrue("Queue not empty ", queue.isEmpty());
+                assertEquals("Empty queue polled ", -1, queue.poll());
+            }
+        }
+
+        /** Tests that renderables added and removed while the queue is read are delivered in order. */
+        public void testInterleavedAddsAndRemovals()
+        {
+            OrderedRenderableQueue queue = new OrderedRenderableQueue();
+            PriorityQueue<TestRenderable> expected = new PriorityQueue<TestRenderable>(10, DRAW_ORDER);
+
+            for (int frame = 0; frame < 3; frame++)
+            {
+                for (int i = 0; i < 5000; i++)
+                {
+                    this.add(queue, expected);
+                }
+
+                // Remove some entries, as the clutter filter does, and add others back.
+                int numRemaining = queue.sortRemaining();
+                assertEquals("Number remaining incorrect ", expected.size(), numRemaining);
+                for (int i = 0; i < numRemaining; i += 3)
+                {
+                    int index = queue.getRemaining(i);
+                    expected.remove((TestRenderable) queue.getRenderable(index));
+                    queue.remove(index);
+                }
+                for (int i = 0; i < 500; i++)
+                {
+                    this.add(queue, expected);
+                }
+
+                // Poll with a few or many additions between polls.
+                int numPolled = 0;
+                while (!expected.isEmpty())
+                {
+                    this.assertPoll(queue, expected);
+
+                    int numAdded = this.random.nextInt(100) == 0 ? 300 : this.random.nextInt(20) == 0 ? 1 : 0;
+                    for (int i = 0; i < numAdded && numPolled < 5000; i++)
+                    {
+                        this.add(queue, expected);
+                    }
+                    numPolled++;
+                }
+
+                assertTrue("Queue not empty ", queue.isEmpty());
+                queue.clear();
+            }
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.render;
+
+import gov.nasa.worldwind.geom.Sector;
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.util.*;
+
+/**
+ * @version $Id$
+ */
+public class SurfaceObjectTileBuilderTest
+{
+    /** A surface renderable with a sector and a state number that the test changes. */
+    protected static class TestObject implements SurfaceRenderable
+    {
+        protected Sector sector;
+        protected int state;
+
+        public TestObject(Sector sector)
+        {
+            this.sector = sector;
+        }
+
+        public List<Sector> getSectors(DrawContext dc)
+        {
+            return Arrays.asList(this.sector);
+        }
+
+        public Object getStateKey(DrawContext dc)
+        {
+            return this.state;
+        }
+
+        public void render(DrawContext dc)
+        {
+        }
+    }
+
+    public static class Tests extends TestCase
+    {
+        protected SurfaceObjectTileBuilder builder;
+        protected DrawContext dc;
+        protected SurfaceObjectTileBuilder.SurfaceObjectTile eastTile;
+        protected SurfaceObjectTileBuilder.SurfaceObjectTile westTile;
+
+        @Override
+        protected void setUp() throws Exception
+        {
+            this.builder = new SurfaceObjectTileBuilder();
+            this.builder.currentInfo = new SurfaceObjectTileBuilder.TileInfo(this.builder.getLevelSet(512, 512),
+                "SurfaceObjectTileBuilderTest", 512, 512);
+            this.dc = new DrawContextImpl();
+
+            this.eastTile = new SurfaceObjectTileBuilder.SurfaceObjectTile(Sector.fromDegrees(0, 36, 0, 36),
+                this.builder.currentInfo.levelSet.getFirstLevel(), 2, 5, "SurfaceObjectTileBuilderTest");
+            this.westTile = new SurfaceObjectTileBuilder.SurfaceObjectTile(Sector.fromDegrees(0, 36, -36, 0),
+                this.builder.currentInfo.levelSet.getFirstLevel(), 2, 4, "SurfaceObjectTileBuilderTest");
+        }
+
+        /**
+         * Assembles the surface renderables for a frame, and marks as updated the tiles that need to be updated.
+         *
+         * @param objects the frame's surface renderables.
+         *
+         * @return the tiles that needed to be updated.
+         */
+        protected Set<SurfaceObjectTileBuilder.SurfaceObjectTile> frame(TestObject... objects)
+        {
+            this.builder.currentSurfaceObjects.clear();
+            this.builder.currentSurfaceObjects.addAll(Arrays.asList(objects));
+            this.builder.updateObjectInfo(this.dc);
+
+            Set<SurfaceObjectTileBuilder.SurfaceObjectTile> dirtyTiles =
+                new HashSet<SurfaceObjectTileBuilder.SurfaceObjectTile>();
+            for (SurfaceObjectTileBuilder.SurfaceObjectTile tile : Arrays.asList(this.eastTile, this.westTile))
+            {
+                if (this.builder.isTileDirty(tile))
+                {
+                    dirtyTiles.add(tile);
+                    tile.lastUpdateFrameNumber = this.builder.currentInfo.frameNumber;
+                }
+            }
+
+            return dirtyTiles;
+        }
+
+        /** Tests that only the tiles intersecting changed surface renderables need to be updated. */
+        public void testDirtyTiles()
+        {
+            TestObject a = new TestObject(Sector.fromDegrees(10, 11, 10, 11));
+            TestObject b = new TestObject(Sector.fromDegrees(10, 11, -11, -10));
+            TestObject c = new TestObject(Sector.fromDegrees(20, 21, -21, -20));
+
+            assertEquals("New tiles not updated ", 2, this.frame(a, b, c).size());
+            assertTrue("Unchanged tiles updated ", this.frame(a, b, c).isEmpty());
+
+            a.state++;
+            assertEquals("Changed state did not update only its tile ", Collections.singleton(this.eastTile),
+                this.frame(a, b, c));
+
+            b.sector = Sector.fromDegrees(12, 13, -11, -10);
+            assertEquals("Moved object did not update only its tile ", Collections.singleton(this.westTile),
+                this.frame(a, b, c));
+
+            assertEquals("Removed object did not update only its tile ", Collections.singleton(this.westTile),
+                this.frame(a, b));
+
+            assertEquals("Reordered objects did not update only their tile ", Collections.singleton(this.eastTile),
+                this.frame(b, a));
+
+            // The east tile's texture is out of date if it's not updated while its object changes.
+            a.state++;
+            this.frame(b, a);
+            this.eastTile.lastUpdateFrameNumber--;
+            assertTrue("Out of date tile not updated ", this.frame(b, a).contains(this.eastTile));
+        }
+
+        /** Tests that tiles last updated before the oldest dirty sector retained are updated. */
+        public void testDiscardedDirtySectors()
+        {
+            TestObject a = new TestObject(Sector.fromDegrees(10, 11, -11, -10));
+            this.frame(a);
+
+            // Change an object in the west tile without updating the east tile.
+            for (int i = 0; i < SurfaceObjectTileBuilder.MAX_DIRTY_SECTORS; i++)
+            {
+                a.state++;
+                this.builder.currentSurfaceObjects.clear();
+                this.builder.currentSurfaceObjects.add(a);
+                this.builder.updateObjectInfo(this.dc);
+            }
+
+            assertTrue("Dirty sectors not discarded ",
+                this.builder.currentInfo.dirtySectors.size() <= SurfaceObjectTileBuilder.MAX_DIRTY_SECTORS);
+            assertEquals("Tiles not updated after dirty sectors discarded ", 2, this.frame(a).size());
+        }
+
+        /** Tests that releasing the surface renderables drops the references to them and updates their tiles. */
+        public void testReleaseObjectInfo()
+        {
+            TestObject a = new TestObject(Sector.fromDegrees(10, 11, 10, 11));
+            TestObject b = new TestObject(Sector.fromDegrees(10, 11, -11, -10));
+            this.frame(a, b);
+            assertTrue("Unchanged tiles updated ", this.frame(a, b).isEmpty());
+
+            this.builder.releaseObjectInfo(this.dc, this.builder.currentInfo);
+            assertTrue("Object info retained ", this.builder.currentInfo.objectInfoMap.isEmpty());
+            assertEquals("Object sectors retained ", 0, this.builder.currentInfo.objectTree.size());
+            assertEquals("Released objects did not update their tiles ", 2, this.frame().size());
+        }
+
+        /** Tests that sub-tiles found with the R-tree hold the same objects, in the same order, as the list scan. */
+        public void testAddIntersectingObjects()
+        {
+            List<TestObject> objects = new ArrayList<TestObject>();
+            Random random = new Random(1);
+            for (int i = 0; i < 500; i++)
+            {
+                double lat = 36 * random.nextDouble();
+                double lon = 36 * random.nextDouble();
+                objects.add(new TestObject(Sector.fromDegrees(lat, Math.min(36, lat + 2), lon, Math.min(36, lon + 2))));
+            }
+            this.frame(objects.toArray(new TestObject[objects.size()]));
+
+            SurfaceObjectTileBuilder.SurfaceObjectTile parent = this.eastTile;
+            for (TestObject object : objects)
+            {
+                parent.addSurfaceObject(object, object.sector);
+            }
+
+            for (SurfaceObjectTileBuilder.SurfaceObjectTile subTile : this.createSubTiles(parent))
+            {
+                List<SurfaceRenderable> expected = new ArrayList<SurfaceRenderable>();
+                for (TestObject object : objects)
+                {
+                    if (subTile.getSector().intersects(object.sector))
+                        expected.add(object);
+                }
+
+                this.builder.addIntersectingObjects(this.dc, parent, subTile);
+                assertEquals("Sub-tile objects incorrect ", expected, subTile.getObjectList());
+            }
+        }
+
+        protected List<SurfaceObjectTileBuilder.SurfaceObjectTile> createSubTiles(
+            SurfaceObjectTileBuilder.SurfaceObjectTile tile)
+        {
+            List<SurfaceObjectTileBuilder.SurfaceObjectTile> subTiles =
+                new ArrayList<SurfaceObjectTileBuilder.SurfaceObjectTile>();
+            for (Sector sector : tile.getSector().subdivide())
+            {
+                subTiles.add(new SurfaceObjectTileBuilder.SurfaceObjectTile(sector,
+                    this.builder.currentInfo.levelSet.getLevel(1), 0, 0, "SurfaceObjectTileBuilderTest"));
+            }
+
+            return subTiles;
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
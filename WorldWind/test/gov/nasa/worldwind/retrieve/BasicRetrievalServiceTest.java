@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.avlist.AVKey;
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * @version $Id$
+ */
+public class BasicRetrievalServiceTest
+{
+    /** A retriever that records its name when it runs, and optionally waits for a latch. */
+    protected static class TestRetriever extends WWObjectImpl implements Retriever
+    {
+        protected final String name;
+        protected final List<String> runOrder;
+        protected final CountDownLatch latch;
+        protected long submitTime;
+        protected long beginTime;
+        protected long endTime;
+        protected int staleRequestLimit = -1;
+
+        public TestRetriever(String name, List<String> runOrder, CountDownLatch latch)
+        {
+            this.name = name;
+            this.runOrder = runOrder;
+            this.latch = latch;
+        }
+
+        public Retriever call() throws Exception
+        {
+            if (this.latch != null)
+                this.latch.await();
+
+            this.runOrder.add(this.name);
+            return this;
+        }
+
+        public boolean equals(Object o)
+        {
+            return o instanceof TestRetriever && this.name.equals(((TestRetriever) o).name);
+        }
+
+        public int hashCode()
+        {
+            return this.name.hashCode();
+        }
+
+        public ByteBuffer getBuffer()
+        {
+            return null;
+        }
+
+        public int getContentLength()
+        {
+            return 0;
+        }
+
+        public int getContentLengthRead()
+        {
+            return 0;
+        }
+
+        public String getName()
+        {
+            return this.name;
+        }
+
+        public String getState()
+        {
+            return null;
+        }
+
+        public String getContentType()
+        {
+            return null;
+        }
+
+        public long getExpirationTime()
+        {
+            return 0;
+        }
+
+        public long getSubmitTime()
+        {
+            return this.submitTime;
+        }
+
+        public void setSubmitTime(long submitTime)
+        {
+            this.submitTime = submitTime;
+        }
+
+        public long getBeginTime()
+        {
+            return this.beginTime;
+        }
+
+        public void setBeginTime(long beginTime)
+        {
+            this.beginTime = beginTime;
+        }
+
+        public long getEndTime()
+        {
+            return this.endTime;
+        }
+
+        public void setEndTime(long endTime)
+        {
+            this.endTime = endTime;
+        }
+
+        public int getConnectTimeout()
+        {
+            return 0;
+        }
+
+        public int getReadTimeout()
+        {
+            return 0;
+        }
+
+        public void setReadTimeout(int readTimeout)
+        {
+        }
+
+        public void setConnectTimeout(int connectTimeout)
+        {
+        }
+
+        public int getStaleRequestLimit()
+        {
+            return this.staleRequestLimit;
+        }
+
+        public void setStaleRequestLimit(int staleRequestLimit)
+        {
+            this.staleRequestLimit = staleRequestLimit;
+        }
+    }
+
+    public static class Tests extends TestCase
+    {
+        protected BasicRetrievalService service;
+        protected List<String> runOrder;
+        protected CountDownLatch blockerLatch;
+        protected RetrievalFuture blocker;
+
+        @Override
+        public void setUp() throws InterruptedException
+        {
+            this.service = new BasicRetrievalService();
+            this.service.setRetrieverPoolSize(1);
+            this.runOrder = Collections.synchronizedList(new ArrayList<String>());
+
+            // Occupy the only thread so that subsequent requests queue.
+            this.blockerLatch = new CountDownLatch(1);
+            this.blocker = this.service.runRetriever(new TestRetriever("blocker", this.runOrder, this.blockerLatch),
+                1d);
+            for (int i = 0; i < 100 && this.service.getNumRetrieversActive() == 0; i++)
+            {
+                Thread.sleep(10);
+            }
+        }
+
+        @Override
+        public void tearDown()
+        {
+            this.service.shutdown(true);
+        }
+
+        protected TestRetriever createRetriever(String name, Object layer)
+        {
+            TestRetriever retriever = new TestRetriever(name, this.runOrder, null);
+            retriever.setValue(AVKey.LAYER, layer);
+            return retriever;
+        }
+
+        protected void runQueuedRetrievals(RetrievalFuture last) throws Exception
+        {
+            this.blockerLatch.countDown();
+            last.get(5, TimeUnit.SECONDS);
+            this.runOrder.remove("blocker");
+        }
+
+        /** Tests that a request for a pending retrieval is not queued again. */
+        public void testDuplicateDetection() throws Exception
+        {
+            RetrievalFuture future = this.service.runRetriever(this.createRetriever("a", "layer"), 1d);
+            assertNotNull("Request not queued ", future);
+            assertNull("Duplicate queued ", this.service.runRetriever(this.createRetriever("a", "layer"), 1d));
+            assertTrue("Request not contained ", this.service.contains(this.createRetriever("a", "layer")));
+            assertEquals("Queue depth incorrect ", 1, this.service.getNumRetrieversQueued());
+            assertEquals("Duplicate count incorrect ", 1, this.service.getNumDuplicateRequests());
+
+            this.runQueuedRetrievals(future);
+            assertEquals("Run order incorrect ", Arrays.asList("a"), this.runOrder);
+            assertFalse("Completed request contained ", this.service.contains(this.createRetriever("a", "layer")));
+        }
+
+        /** Tests that a repeated request changes the priority of the pending retrieval. */
+        public void testReprioritization() throws Exception
+        {
+            this.service.runRetriever(this.createRetriever("a", "layer"), 5d);
+            RetrievalFuture last = this.service.runRetriever(this.createRetriever("b", "layer"), 3d);
+            this.service.runRetriever(this.createRetriever("a", "layer"), 1d);
+
+            this.runQueuedRetrievals(last);
+            assertEquals("Run order incorrect ", Arrays.asList("a", "b"), this.runOrder);
+        }
+
+        /** Tests that the retrievals of different layers are run in turn. */
+        public void testLayerFairness() throws Exception
+        {
+            this.service.runRetriever(this.createRetriever("a1", "layerA"), 1d);
+            this.service.runRetriever(this.createRetriever("a2", "layerA"), 2d);
+            RetrievalFuture last = this.service.runRetriever(this.createRetriever("a3", "layerA"), 3d);
+            this.service.runRetriever(this.createRetriever("b1", "layerB"), 10d);
+
+            this.runQueuedRetrievals(last);
+            assertEquals("Run order incorrect ", Arrays.asList("a1", "b1", "a2", "a3"), this.runOrder);
+        }
+
+        /** Tests that retrievals not requested again within their stale request limit are cancelled. */
+        public void testStaleRequestCancellation() throws Exception
+        {
+            TestRetriever stale = this.createRetriever("stale", "layer");
+            stale.setStaleRequestLimit(50);
+            RetrievalFuture staleFuture = this.service.runRetriever(stale, 1d);
+            RetrievalFuture last = this.service.runRetriever(this.createRetriever("current", "layer"), 2d);
+
+            Thread.sleep(200);
+            this.runQueuedRetrievals(last);
+
+            assertTrue("Stale request not cancelled ", staleFuture.isCancelled());
+            assertEquals("Run order incorrect ", Arrays.asList("current"), this.runOrder);
+            assertEquals("Cancelled count incorrect ", 1, this.service.getNumRetrievalsCancelled());
+            assertEquals("Queue depth incorrect ", 0, this.service.getNumRetrieversQueued());
+        }
+
+        /** Tests that a cancelled pending retrieval is removed from the queue and not run. */
+        public void testCancellation() throws Exception
+        {
+            RetrievalFuture future = this.service.runRetriever(this.createRetriever("a", "layer"), 1d);
+            RetrievalFuture last = this.service.runRetriever(this.createRetriever("b", "layer"), 2d);
+            future.cancel(false);
+            assertEquals("Queue depth incorrect ", 1, this.service.getNumRetrieversQueued());
+
+            this.runQueuedRetrievals(last);
+            assertEquals("Run order incorrect ", Arrays.asList("b"), this.runOrder);
+            assertEquals("Started count incorrect ", 2, this.service.getNumRetrievalsStarted());
+        }
+
+        /** Tests that retrievals run when the service is configured to run them on their own threads. */
+        public void testVirtualThreadMode() throws Exception
+        {
+            Configuration.setValue(AVKey.RETRIEVAL_THREAD_MODE, AVKey.THREAD_MODE_VIRTUAL);
+            BasicRetrievalService virtualService;
+            try
+            {
+                virtualService = new BasicRetrievalService();
+            }
+            finally
+            {
+                Configuration.removeKey(AVKey.RETRIEVAL_THREAD_MODE);
+            }
+
+            try
+            {
+                virtualService.setRetrieverPoolSize(2);
+                assertEquals("Concurrency limit incorrect ", 2, virtualService.getRetrieverPoolSize());
+
+                ArrayList<RetrievalFuture> futures = new ArrayList<RetrievalFuture>();
+                for (int i = 0; i < 10; i++)
+                {
+                    futures.add(virtualService.runRetriever(this.createRetriever("r" + i, "layer"), i + 1));
+                }
+
+                for (RetrievalFuture future : futures)
+                {
+                    future.get(5, TimeUnit.SECONDS);
+                }
+
+                assertEquals("Retrievals not run ", 10, this.runOrder.size());
+                for (int i = 0; i < 100 && virtualService.hasActiveTasks(); i++)
+                {
+                    Thread.sleep(10);
+                }
+                assertFalse("Service has active tasks ", virtualService.hasActiveTasks());
+            }
+            finally
+            {
+                virtualService.shutdown(true);
+            }
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
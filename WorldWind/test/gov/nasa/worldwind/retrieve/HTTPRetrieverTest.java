@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.retrieve;
+
+import com.sun.net.httpserver.*;
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @version $Id$
+ */
+public class HTTPRetrieverTest
+{
+    public static class Tests extends TestCase
+    {
+        protected HttpServer server;
+        protected final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+        protected final AtomicInteger activeRequests = new AtomicInteger();
+        protected final AtomicInteger maxActiveRequests = new AtomicInteger();
+
+        @Override
+        public void setUp() throws IOException
+        {
+            this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            this.server.setExecutor(Executors.newCachedThreadPool());
+            this.server.createContext("/", new HttpHandler()
+            {
+                public void handle(HttpExchange exchange) throws IOException
+                {
+                    int active = activeRequests.incrementAndGet();
+                    synchronized (maxActiveRequests)
+                    {
+                        maxActiveRequests.set(Math.max(maxActiveRequests.get(), active));
+                    }
+
+                    clientPorts.add(exchange.getRemoteAddress().getPort());
+                    try
+                    {
+                        Thread.sleep(20);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+
+                    boolean missing = exchange.getRequestURI().getPath().contains("missing");
+                    byte[] body = (missing ? "no such tile" : "tile").getBytes("UTF-8");
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain");
+                    exchange.sendResponseHeaders(missing ? 404 : 200, body.length);
+                    exchange.getResponseBody().write(body);
+                    exchange.close();
+
+                    activeRequests.decrementAndGet();
+                }
+            });
+            this.server.start();
+        }
+
+        @Override
+        public void tearDown()
+        {
+            this.server.stop(0);
+            ((ExecutorService) this.server.getExecutor()).shutdownNow();
+        }
+
+        protected URL makeURL(String path) throws MalformedURLException
+        {
+            return new URL("http://127.0.0.1:" + this.server.getAddress().getPort() + path);
+        }
+
+        /** Tests that sequential requests, including ones answered with an error, reuse a single connection. */
+        public void testConnectionReuse() throws Exception
+        {
+            for (int i = 0; i < 10; i++)
+            {
+                HTTPRetriever retriever = new HTTPRetriever(this.makeURL(i % 2 == 0 ? "/tile" : "/missing"), null);
+                retriever.call();
+
+                if (i % 2 == 0)
+                {
+                    assertEquals("Response code incorrect ", 200, retriever.getResponseCode());
+                    assertEquals("Content length incorrect ", 4, retriever.getBuffer().remaining());
+                }
+                else
+                {
+                    assertEquals("Response code incorrect ", 404, retriever.getResponseCode());
+                }
+            }
+
+            assertEquals("Connections not reused ", 1, this.clientPorts.size());
+        }
+
+        /** Tests that concurrent retrievals are limited by the host connection limit. */
+        public void testHostConnectionLimit() throws Exception
+        {
+            final HostConnectionLimiter limiter = new HostConnectionLimiter(2);
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            List<Future<Retriever>> futures = new ArrayList<Future<Retriever>>();
+
+            for (int i = 0; i < 16; i++)
+            {
+                futures.add(executor.submit(new HTTPRetriever(this.makeURL("/tile" + i), null)
+                {
+                    @Override
+                    protected HostConnectionLimiter getHostConnectionLimiter()
+                    {
+                        return limiter;
+                    }
+                }));
+            }
+
+            for (Future<Retriever> future : futures)
+            {
+                assertEquals("Retrieval failed ", Retriever.RETRIEVER_STATE_SUCCESSFUL, future.get().getState());
+            }
+            executor.shutdown();
+
+            assertTrue("Connection limit exceeded ", this.maxActiveRequests.get() <= 2);
+            assertEquals("Connections not released ", 0, limiter.getConnectionCount(this.makeURL("/")));
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.terrain;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.cache.*;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.util.*;
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * @version $Id$
+ */
+public class BasicElevationModelTest
+{
+    /**
+     * An elevation model whose tiles are computed rather than retrieved. Elevations are a linear function of location
+     * that differs by level, so tiles of the same level agree on their shared edges. The level one tile at row 0,
+     * column 1 is absent until made available, so locations within it fall back to level zero. One sample of each tile
+     * is missing.
+     */
+    protected static class TestElevationModel extends SyntheticElevationModel
+    {
+        protected volatile boolean absentTileAvailable;
+        protected volatile boolean absentTileRequested;
+
+        public TestElevationModel()
+        {
+            super(createParams());
+        }
+
+        protected static AVList createParams()
+        {
+            return createParams(Sector.fromDegrees(0, 10, 0, 10), LatLon.fromDegrees(10, 10), 2, 16,
+                "BasicElevationModelTest", 1200);
+        }
+
+        @Override
+        protected double computeElevation(TileKey key, int i, int j, double latitude, double longitude)
+        {
+            return j == 3 && i == 7 ? this.getMissingDataSignal() : 1000 * key.getLevelNumber() + 10 * latitude
+                + longitude;
+        }
+
+        @Override
+        protected boolean isTileAvailable(TileKey key)
+        {
+            return !this.isAbsentTile(key) || this.absentTileAvailable;
+        }
+
+        @Override
+        protected void requestTile(TileKey key)
+        {
+            if (this.isAbsentTile(key))
+                this.absentTileRequested = true;
+        }
+
+        protected boolean isAbsentTile(TileKey key)
+        {
+            return key.getLevelNumber() == 1 && key.getRow() == 0 && key.getColumn() == 1;
+        }
+
+        /** Makes the absent tile available, as a tile retrieval does. */
+        public void makeAbsentTileAvailable()
+        {
+            this.absentTileAvailable = true;
+            this.checkElevationRequests();
+        }
+    }
+
+    public static class Tests extends TestCase
+    {
+        protected TestElevationModel elevationModel;
+        protected Sector sector;
+        protected List<LatLon> locations;
+        protected double[] latLons;
+
+        @Override
+        public void setUp()
+        {
+            this.elevationModel = new TestElevationModel();
+
+            // Include locations outside the model's coverage, and on tile boundaries.
+            this.sector = Sector.fromDegrees(-2, 12, -2, 12);
+            this.locations = new ArrayList<LatLon>();
+            Random random = new Random(1);
+            for (int i = 0; i < 1000; i++)
+            {
+                this.locations.add(LatLon.fromDegrees(-2 + 14 * random.nextDouble(), -2 + 14 * random.nextDouble()));
+            }
+            this.locations.add(LatLon.fromDegrees(5, 5));
+            this.locations.add(LatLon.fromDegrees(0, 10));
+            this.locations.add(LatLon.fromDegrees(10, 0));
+
+            this.latLons = new double[2 * this.locations.size()];
+            for (int i = 0; i < this.locations.size(); i++)
+            {
+                this.latLons[2 * i] = this.locations.get(i).getLatitude().degrees;
+                this.latLons[2 * i + 1] = this.locations.get(i).getLongitude().degrees;
+            }
+        }
+
+        protected double[] createBuffer()
+        {
+            double[] buffer = new double[this.locations.size()];
+            Arrays.fill(buffer, -1);
+            return buffer;
+        }
+
+        protected void assertElevationsEqual(double[] expected, double[] actual)
+        {
+            for (int i = 0; i < expected.length; i++)
+            {
+                assertEquals("Elevation incorrect at " + this.locations.get(i) + " ", expected[i], actual[i], 1e-9);
+            }
+        }
+
+        /** Tests that elevations of locations in degrees match those of the LatLon list. */
+        public void testElevationsInDegrees()
+        {
+            double[] expected = this.createBuffer();
+            double expectedResolution = this.elevationModel.getElevations(this.sector, this.locations, 0, expected);
+
+            double[] actual = this.createBuffer();
+            double resolution = this.elevationModel.getElevations(this.sector, this.latLons, false, 0, actual);
+
+            assertEquals("Resolution incorrect ", expectedResolution, resolution);
+            this.assertElevationsEqual(expected, actual);
+        }
+
+        /** Tests that elevations of locations in radians match those of the LatLon list. */
+        public void testElevationsInRadians()
+        {
+            double[] radians = new double[this.latLons.length];
+            for (int i = 0; i < radians.length; i++)
+            {
+                radians[i] = Math.toRadians(this.latLons[i]);
+            }
+
+            double[] expected = this.createBuffer();
+            this.elevationModel.getElevations(this.sector, this.locations, 0, expected);
+
+            double[] actual = this.createBuffer();
+            this.elevationModel.getElevations(this.sector, radians, true, 0, actual);
+
+            this.assertElevationsEqual(expected, actual);
+        }
+
+        /** Tests that unmapped elevations match those of the LatLon list. */
+        public void testUnmappedElevations()
+        {
+            this.elevationModel.setMissingDataReplacement(-500);
+
+            double[] expected = this.createBuffer();
+            this.elevationModel.getUnmappedElevations(this.sector, this.locations, 0, expected);
+
+            double[] actual = this.createBuffer();
+            this.elevationModel.getUnmappedElevations(this.sector, this.latLons, false, 0, actual);
+
+            this.assertElevationsEqual(expected, actual);
+        }
+
+        /** Tests that locations whose coordinates are NaN are skipped, as are null locations in the LatLon list. */
+        public void testNaNLocations()
+        {
+            this.latLons[0] = Double.NaN;
+            this.latLons[3] = Double.NaN;
+            this.locations.set(0, null);
+            this.locations.set(1, null);
+
+            double[] expected = this.createBuffer();
+            this.elevationModel.getElevations(this.sector, this.locations, 0, expected);
+
+            double[] actual = this.createBuffer();
+            this.elevationModel.getElevations(this.sector, this.latLons, false, 0, actual);
+
+            assertEquals("First location not skipped ", -1d, actual[0]);
+            assertEquals("Second location not skipped ", -1d, actual[1]);
+            for (int i = 2; i < expected.length; i++)
+            {
+                assertEquals("Elevation incorrect ", expected[i], actual[i], 1e-9);
+            }
+        }
+
+        /** Tests that an elevation request completes when the tiles it needs arrive. */
+        public void testRequestElevations() throws Exception
+        {
+            Sector requestSector = Sector.fromDegrees(1, 4, 6, 9);
+            Future<Double> request = this.elevationModel.requestElevations(requestSector, 0);
+            assertFalse("Request completed without its tile ", request.isDone());
+            assertTrue("Missing tile not requested ", this.elevationModel.absentTileRequested);
+
+            try
+            {
+                request.get(50, TimeUnit.MILLISECONDS);
+                fail("Request completed without its tile ");
+            }
+            catch (TimeoutException e)
+            {
+                // Expected
+            }
+
+            new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    elevationModel.makeAbsentTileAvailable();
+                }
+            }).start();
+
+            double expectedResolution = this.elevationModel.getLevels().getLevel(1).getTexelSize();
+            assertEquals("Resolution incorrect ", expectedResolution, request.get(5, TimeUnit.SECONDS));
+            assertEquals("Elevations not resolved ", expectedResolution,
+                this.elevationModel.getElevations(requestSector, this.locations, 0, this.createBuffer()));
+            assertTrue("Request not removed ", this.elevationModel.elevationRequests.isEmpty());
+
+            request = this.elevationModel.requestElevations(requestSector, 0);
+            assertTrue("Request for resident tiles not completed ", request.isDone());
+        }
+
+        /** Tests that a cancelled elevation request is discarded. */
+        public void testCancelElevationRequest() throws Exception
+        {
+            Future<Double> request = this.elevationModel.requestElevations(Sector.fromDegrees(1, 4, 6, 9), 0);
+            assertTrue("Request not cancelled ", request.cancel(false));
+            assertTrue("Request not cancelled ", request.isCancelled());
+            assertTrue("Request not removed ", this.elevationModel.elevationRequests.isEmpty());
+
+            try
+            {
+                request.get();
+                fail("Cancelled request returned a value ");
+            }
+            catch (CancellationException e)
+            {
+                // Expected
+            }
+
+            this.elevationModel.makeAbsentTileAvailable();
+            assertFalse("Cancelled request completed ", request.cancel(false));
+        }
+
+        /** Tests that the keys of the tiles needed for a sector are those of the target level's intersecting tiles. */
+        public void testComputeTileKeys()
+        {
+            Sector sector = Sector.fromDegrees(1, 6, 1, 4);
+
+            List<TileKey> keys = this.elevationModel.computeTileKeys(sector, Angle.fromDegrees(0.1).radians);
+            assertEquals("Number of fine keys incorrect ", 2, keys.size());
+            for (TileKey key : keys)
+            {
+                assertEquals("Fine key level incorrect ", 1, key.getLevelNumber());
+                assertEquals("Fine key column incorrect ", 0, key.getColumn());
+            }
+            assertFalse("Fine keys not distinct ", keys.get(0).equals(keys.get(1)));
+
+            keys = this.elevationModel.computeTileKeys(sector, Angle.fromDegrees(5).radians);
+            assertEquals("Number of coarse keys incorrect ", 1, keys.size());
+            assertEquals("Coarse key level incorrect ", 0, keys.get(0).getLevelNumber());
+
+            assertTrue("Keys computed outside coverage ",
+                this.elevationModel.computeTileKeys(Sector.fromDegrees(20, 30, 20, 30), 0.001).isEmpty());
+        }
+
+        /** Tests that a buffer smaller than the number of locations is rejected. */
+        public void testBufferTooSmall()
+        {
+            try
+            {
+                this.elevationModel.getElevations(this.sector, this.latLons, false, 0, new double[1]);
+                fail("Small buffer accepted ");
+            }
+            catch (IllegalArgumentException e)
+            {
+                // Expected
+            }
+        }
+
+        /** Tests that an evicted tile's native memory slot is not reused while a reader still holds its elevations. */
+        public void testSlotHeldByReader()
+        {
+            Level level = this.elevationModel.getLevels().getLevel(1);
+            BasicElevationModel.ElevationTile tile = this.elevationModel.createTile(
+                new TileKey(1, 0, 0, level.getCacheName()));
+            int slotSize = tile.getWidth() * tile.getHeight() * 2;
+            this.elevationModel.elevationSlabs = new SlabAllocator(slotSize, 1, slotSize);
+            ShortBuffer buffer = ShortBuffer.allocate(tile.getWidth() * tile.getHeight());
+            while (buffer.hasRemaining())
+            {
+                buffer.put((short) 100);
+            }
+            buffer.rewind();
+            tile.setElevations(this.elevationModel.copyElevationsToSlab(tile,
+                new BufferWrapper.ShortBufferWrapper(buffer)), this.elevationModel);
+            SlabAllocator.Slot slot = tile.slot;
+            assertNotNull("Tile has no slot ", slot);
+
+            BufferWrapper elevations = tile.acquireElevations();
+            tile.releaseSlot();
+            assertSame("Slot released while read ", slot, tile.slot);
+            assertEquals("Slot reference count incorrect ", 1, slot.getReferenceCount());
+            assertNull("Slot reused while read ", this.elevationModel.elevationSlabs.allocate());
+            assertEquals("Elevations overwritten while read ", 100d, elevations.getDouble(0));
+
+            tile.releaseElevations();
+            assertNull("Slot not released ", tile.slot);
+            assertNull("Released elevations still visible ", tile.acquireElevations());
+            assertEquals("Slot not freed ", 0, slot.getReferenceCount());
+            assertNotNull("Freed slot not reused ", this.elevationModel.elevationSlabs.allocate());
+        }
+
+        /** Tests that a tile the memory cache rejects releases its native memory slot. */
+        public void testRejectedTileReleasesSlot()
+        {
+            Level level = this.elevationModel.getLevels().getLevel(1);
+            BasicElevationModel.ElevationTile tile = this.elevationModel.createTile(
+                new TileKey(1, 0, 0, level.getCacheName()));
+            int slotSize = tile.getWidth() * tile.getHeight() * 2;
+            this.elevationModel.elevationSlabs = new SlabAllocator(slotSize, 1, slotSize);
+            this.elevationModel.memoryCache = new BasicMemoryCache(1, 2);
+
+            BufferWrapper elevations = this.elevationModel.copyElevationsToSlab(tile,
+                new BufferWrapper.ShortBufferWrapper(ShortBuffer.allocate(tile.getWidth() * tile.getHeight())));
+            tile.setElevations(elevations, this.elevationModel);
+            SlabAllocator.Slot slot = tile.slot;
+            assertNotNull("Tile has no slot ", slot);
+
+            this.elevationModel.addTileToCache(tile, elevations);
+            assertEquals("Rejected tile's slot not freed ", 0, slot.getReferenceCount());
+            assertNull("Rejected tile still holds its slot ", tile.slot);
+            assertEquals("Slot memory leaked ", 0, this.elevationModel.elevationSlabs.getUsedCapacity());
+        }
+
+        /** Tests that models with the same tile size share one allocator sized to the elevation tile cache. */
+        public void testElevationSlabsShared()
+        {
+            SlabAllocator allocator = this.elevationModel.createElevationSlabs();
+            assertSame("Allocator not shared ", allocator, new TestElevationModel().createElevationSlabs());
+            assertEquals("Allocator capacity incorrect ",
+                (long) Configuration.getLongValue(AVKey.ELEVATION_TILE_CACHE_SIZE, 20000000L), allocator.getCapacity());
+        }
+
+        /** Tests that a corrupt file's contents are removed from the compressed tile cache along with the file. */
+        public void testCorruptFileRemovedFromCompressedCache() throws Exception
+        {
+            File storeDir = File.createTempFile("BasicElevationModelTest", "");
+            storeDir.delete();
+            storeDir.mkdirs();
+
+            try
+            {
+                BasicElevationModel model = new BasicElevationModel(TestElevationModel.createParams())
+                {
+                    @Override
+                    protected void downloadElevations(Tile tile)
+                    {
+                        // Nothing to retrieve.
+                    }
+                };
+                model.compressedTileCache = new CompressedTileCache(new BasicMemoryCache(100000, 200000));
+
+                // An empty file holds no elevations, so it's treated as corrupt.
+                TileKey key = new TileKey(1, 0, 0, model.getLevels().getLevel(1).getCacheName());
+                File file = new File(storeDir, model.createTile(key).getPath());
+                file.getParentFile().mkdirs();
+                new FileOutputStream(file).close();
+
+                IndexedDataFileStore fileStore = new IndexedDataFileStore(storeDir);
+                for (int i = 0; i < 100 && !fileStore.isIndexComplete(); i++)
+                {
+                    Thread.sleep(50);
+                }
+                model.setDataFileStore(fileStore);
+                String address = file.toURI().toURL().toExternalForm();
+                model.compressedTileCache.put(address, ByteBuffer.allocate(0), false);
+
+                new BasicElevationModel.RequestTask(key, model).run();
+
+                assertFalse("Corrupt file not deleted ", file.exists());
+                assertNull("Corrupt file still in compressed cache ", model.compressedTileCache.get(address));
+            }
+            finally
+            {
+                WWIO.deleteDirectory(storeDir);
+                storeDir.delete();
+            }
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
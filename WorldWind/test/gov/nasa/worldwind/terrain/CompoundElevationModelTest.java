@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.terrain;
+
+import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.geom.Sector;
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.nio.*;
+
+/**
+ * @version $Id$
+ */
+public class CompoundElevationModelTest
+{
+    public static class Tests extends TestCase
+    {
+        protected static void addElevations(LocalElevationModel model, Sector sector, float elevation)
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(4 * 4 * 4).order(ByteOrder.nativeOrder());
+            while (buffer.hasRemaining())
+            {
+                buffer.putFloat(elevation);
+            }
+            buffer.flip();
+
+            AVList params = new AVListImpl();
+            params.setValue(AVKey.DATA_TYPE, AVKey.FLOAT32);
+            params.setValue(AVKey.BYTE_ORDER, ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? AVKey.BIG_ENDIAN
+                : AVKey.LITTLE_ENDIAN);
+            model.addElevations(buffer, sector, 4, 4, params);
+        }
+
+        /** Tests that cached sector extremes are recomputed when a contained model's elevations change. */
+        public void testExtremesFollowChildChanges()
+        {
+            LocalElevationModel local = new LocalElevationModel()
+            {
+                @Override
+                public boolean isExtremesCachingEnabled()
+                {
+                    return true;
+                }
+            };
+            addElevations(local, Sector.fromDegrees(0, 10, 0, 10), 100);
+
+            CompoundElevationModel model = new CompoundElevationModel();
+            model.addElevationModel(local);
+
+            Sector sector = Sector.fromDegrees(0, 20, 0, 20);
+            assertEquals("Initial maximum incorrect ", 100d, model.getExtremeElevations(sector)[1]);
+
+            addElevations(local, Sector.fromDegrees(10, 20, 10, 20), 500);
+            assertEquals("Maximum not updated ", 500d, model.getExtremeElevations(sector)[1]);
+            assertEquals("Model maximum not updated ", 500d, model.getMaxElevation());
+
+            model.removeElevationModel(local);
+            addElevations(local, Sector.fromDegrees(10, 20, 10, 20), 900);
+            assertEquals("Removed model still contributes ", 0d, model.getExtremeElevations(sector)[1]);
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
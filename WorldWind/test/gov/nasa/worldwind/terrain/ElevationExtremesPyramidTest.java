@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.terrain;
+
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.util.BufferWrapper;
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.io.File;
+import java.nio.*;
+import java.util.Random;
+
+/**
+ * @version $Id$
+ */
+public class ElevationExtremesPyramidTest
+{
+    public static class Tests extends TestCase
+    {
+        protected static final int ROWS = 37;
+        protected static final int COLUMNS = 71;
+        protected static final double MISSING_DATA_SIGNAL = Short.MIN_VALUE;
+        protected static final double MISSING_DATA_REPLACEMENT = -5;
+        protected static final long CHECKSUM = 12345;
+
+        protected BufferWrapper extremes;
+
+        @Override
+        public void setUp()
+        {
+            ByteBuffer byteBuffer = ByteBuffer.allocate(4 * ROWS * COLUMNS);
+            this.extremes = BufferWrapper.wrap(byteBuffer, AVKey.INT16, AVKey.BIG_ENDIAN);
+
+            Random random = new Random(1);
+            for (int i = 0; i < ROWS * COLUMNS; i++)
+            {
+                int min = random.nextInt(10000) - 3000;
+                int max = min + random.nextInt(2000);
+                this.extremes.putDouble(2 * i, random.nextInt(50) == 0 ? MISSING_DATA_SIGNAL : min);
+                this.extremes.putDouble(2 * i + 1, max);
+            }
+        }
+
+        protected double[] bruteForceExtremes(int minRow, int maxRow, int minCol, int maxCol)
+        {
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+
+            for (int row = minRow; row <= maxRow; row++)
+            {
+                for (int col = minCol; col <= maxCol; col++)
+                {
+                    for (int n = 0; n < 2; n++)
+                    {
+                        double value = this.extremes.getDouble(2 * (row * COLUMNS + col) + n);
+                        if (value == MISSING_DATA_SIGNAL)
+                            value = MISSING_DATA_REPLACEMENT;
+                        min = Math.min(min, value);
+                        max = Math.max(max, value);
+                    }
+                }
+            }
+
+            return new double[] {min, max};
+        }
+
+        protected void assertExtremes(ElevationExtremesPyramid pyramid, Random random)
+        {
+            for (int i = 0; i < 500; i++)
+            {
+                int minRow = random.nextInt(ROWS);
+                int maxRow = minRow + random.nextInt(ROWS - minRow);
+                int minCol = random.nextInt(COLUMNS);
+                int maxCol = minCol + random.nextInt(COLUMNS - minCol);
+
+                double[] expected = this.bruteForceExtremes(minRow, maxRow, minCol, maxCol);
+                double[] actual = pyramid.getExtremes(minRow, maxRow, minCol, maxCol);
+                String range = "rows " + minRow + "-" + maxRow + ", columns " + minCol + "-" + maxCol + " ";
+                assertEquals("Minimum incorrect for " + range, expected[0], actual[0]);
+                assertEquals("Maximum incorrect for " + range, expected[1], actual[1]);
+            }
+        }
+
+        /** Tests that the pyramid's extremes match those found by scanning the grid. */
+        public void testExtremes()
+        {
+            ElevationExtremesPyramid pyramid = new ElevationExtremesPyramid(this.extremes, ROWS, COLUMNS,
+                MISSING_DATA_SIGNAL, MISSING_DATA_REPLACEMENT, CHECKSUM);
+
+            assertEquals("Number of levels incorrect ", 8, pyramid.getNumLevels());
+            this.assertExtremes(pyramid, new Random(2));
+
+            double[] expected = this.bruteForceExtremes(0, ROWS - 1, 0, COLUMNS - 1);
+            double[] actual = pyramid.getExtremes(-10, ROWS + 10, -10, COLUMNS + 10);
+            assertEquals("Clipped minimum incorrect ", expected[0], actual[0]);
+            assertEquals("Clipped maximum incorrect ", expected[1], actual[1]);
+
+            assertNull("Empty range has extremes ", pyramid.getExtremes(5, 4, 0, COLUMNS - 1));
+        }
+
+        /**
+         * Tests that a written pyramid is read back, and is rejected when its grid, missing data values or source
+         * checksum differ.
+         */
+        public void testPersistence() throws Exception
+        {
+            ElevationExtremesPyramid pyramid = new ElevationExtremesPyramid(this.extremes, ROWS, COLUMNS,
+                MISSING_DATA_SIGNAL, MISSING_DATA_REPLACEMENT, CHECKSUM);
+
+            File file = File.createTempFile("ElevationExtremesPyramidTest", ".bin");
+            try
+            {
+                pyramid.write(file);
+                ByteBuffer buffer = gov.nasa.worldwind.util.WWIO.readFileToBuffer(file);
+
+                ElevationExtremesPyramid read = ElevationExtremesPyramid.read(buffer, this.extremes, ROWS, COLUMNS,
+                    MISSING_DATA_SIGNAL, MISSING_DATA_REPLACEMENT, CHECKSUM);
+                assertNotNull("Pyramid not read ", read);
+                this.assertExtremes(read, new Random(3));
+
+                assertNull("Pyramid of different size accepted ", ElevationExtremesPyramid.read(buffer,
+                    this.extremes, ROWS - 1, COLUMNS, MISSING_DATA_SIGNAL, MISSING_DATA_REPLACEMENT, CHECKSUM));
+                assertNull("Pyramid of different replacement accepted ", ElevationExtremesPyramid.read(buffer,
+                    this.extremes, ROWS, COLUMNS, MISSING_DATA_SIGNAL, 0, CHECKSUM));
+                assertNull("Pyramid of different source accepted ", ElevationExtremesPyramid.read(buffer,
+                    this.extremes, ROWS, COLUMNS, MISSING_DATA_SIGNAL, MISSING_DATA_REPLACEMENT, CHECKSUM + 1));
+            }
+            finally
+            {
+                file.delete();
+            }
+        }
+
+        /** Tests that the single precision levels never narrow the extremes of a double precision grid. */
+        public void testOutwardRounding()
+        {
+            this.extremes = BufferWrapper.wrap(ByteBuffer.allocate(16 * ROWS * COLUMNS), AVKey.FLOAT64,
+                AVKey.BIG_ENDIAN);
+            Random random = new Random(4);
+            for (int i = 0; i < 2 * ROWS * COLUMNS; i++)
+            {
+                this.extremes.putDouble(i, 1000 * random.nextDouble() - 300.1);
+            }
+
+            ElevationExtremesPyramid pyramid = new ElevationExtremesPyramid(this.extremes, ROWS, COLUMNS,
+                MISSING_DATA_SIGNAL, MISSING_DATA_REPLACEMENT, CHECKSUM);
+
+            for (int i = 0; i < 500; i++)
+            {
+                int minRow = random.nextInt(ROWS);
+                int maxRow = minRow + random.nextInt(ROWS - minRow);
+                int minCol = random.nextInt(COLUMNS);
+                int maxCol = minCol + random.nextInt(COLUMNS - minCol);
+
+                double[] expected = this.bruteForceExtremes(minRow, maxRow, minCol, maxCol);
+                double[] actual = pyramid.getExtremes(minRow, maxRow, minCol, maxCol);
+                String range = "rows " + minRow + "-" + maxRow + ", columns " + minCol + "-" + maxCol + " ";
+                assertTrue("Minimum narrowed for " + range, actual[0] <= expected[0]);
+                assertTrue("Maximum narrowed for " + range, actual[1] >= expected[1]);
+                assertEquals("Minimum incorrect for " + range, expected[0], actual[0], 1e-4);
+                assertEquals("Maximum incorrect for " + range, expected[1], actual[1], 1e-4);
+            }
+        }
+
+        /** Tests that a compound model's cached extremes follow the addition, removal and disabling of its models. */
+        public void testCompoundExtremesInvalidation()
+        {
+            Sector sector = Sector.fromDegrees(0, 10, 0, 10);
+            ConstantElevationModel low = new ConstantElevationModel(0);
+            ConstantElevationModel high = new ConstantElevationModel(1000);
+            CompoundElevationModel compound = new CompoundElevationModel();
+            compound.addElevationModel(low);
+
+            assertEquals("Maximum incorrect ", 0d, compound.getMaxElevation());
+            assertEquals("Sector maximum incorrect ", 0d, compound.getExtremeElevations(sector)[1]);
+
+            compound.addElevationModel(high);
+            assertEquals("Maximum not updated after add ", 1000d, compound.getMaxElevation());
+            assertEquals("Sector maximum not updated after add ", 1000d, compound.getExtremeElevations(sector)[1]);
+
+            high.setEnabled(false);
+            assertEquals("Maximum not updated after disable ", 0d, compound.getMaxElevation());
+            assertEquals("Sector maximum not updated after disable ", 0d, compound.getExtremeElevations(sector)[1]);
+
+            high.setEnabled(true);
+            compound.removeElevationModel(high);
+            assertEquals("Maximum not updated after remove ", 0d, compound.getMaxElevation());
+
+            CompoundElevationModel outer = new CompoundElevationModel();
+            outer.addElevationModel(compound);
+            assertEquals("Outer maximum incorrect ", 0d, outer.getExtremeElevations(sector)[1]);
+            compound.addElevationModel(high);
+            assertEquals("Outer maximum not updated after nested add ", 1000d,
+                outer.getExtremeElevations(sector)[1]);
+        }
+    }
+
+    /** An elevation model of a single elevation everywhere, whose extremes caching is always enabled. */
+    protected static class ConstantElevationModel extends ZeroElevationModel
+    {
+        protected final double elevation;
+
+        public ConstantElevationModel(double elevation)
+        {
+            this.elevation = elevation;
+        }
+
+        @Override
+        public double getMaxElevation()
+        {
+            return this.elevation;
+        }
+
+        @Override
+        public double getMinElevation()
+        {
+            return this.elevation;
+        }
+
+        @Override
+        public double[] getExtremeElevations(Sector sector)
+        {
+            return new double[] {this.elevation, this.elevation};
+        }
+
+        @Override
+        public boolean isExtremesCachingEnabled()
+        {
+            return true;
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.terrain;
+
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.util.*;
+
+/**
+ * @version $Id$
+ */
+public class LineOfSightBatchTest
+{
+    public static class Tests extends TestCase
+    {
+        protected HighResolutionTerrain terrain;
+        protected List<Position> positions;
+
+        @Override
+        public void setUp()
+        {
+            BasicElevationModelTest.TestElevationModel elevationModel = new BasicElevationModelTest.TestElevationModel();
+            elevationModel.absentTileAvailable = true;
+            Globe globe = new EllipsoidalGlobe(Earth.WGS84_EQUATORIAL_RADIUS, Earth.WGS84_POLAR_RADIUS,
+                Earth.WGS84_ES, elevationModel);
+            this.terrain = new HighResolutionTerrain(globe, Sector.fromDegrees(0, 10, 0, 10), null, null);
+
+            // Rays long enough that the globe's curvature obstructs some of them, one with an end outside the sector,
+            // and one whose ends are the same.
+            this.positions = new ArrayList<Position>();
+            Random random = new Random(1);
+            for (int i = 0; i < 500; i++)
+            {
+                this.positions.add(Position.fromDegrees(1 + 8 * random.nextDouble(), 1 + 8 * random.nextDouble(),
+                    3000 * random.nextDouble()));
+                this.positions.add(Position.fromDegrees(1 + 8 * random.nextDouble(), 1 + 8 * random.nextDouble(),
+                    3000 * random.nextDouble()));
+            }
+            this.positions.add(Position.fromDegrees(5, 5, 10));
+            this.positions.add(Position.fromDegrees(5, 11, 10));
+            this.positions.add(Position.fromDegrees(5, 5, 10));
+            this.positions.add(Position.fromDegrees(5, 5, 10));
+        }
+
+        protected void assertResultCorrect(LineOfSightBatch.Result result)
+        {
+            assertEquals("Number of rays incorrect ", this.positions.size() / 2, result.getNumRays());
+
+            int numObstructed = 0;
+            for (int i = 0; i < result.getNumRays(); i++)
+            {
+                Position pA = this.positions.get(2 * i);
+                Position pB = this.positions.get(2 * i + 1);
+
+                // The terrain's intersections are those of the line through the positions, and may lie beyond them.
+                Vec4 expected = null;
+                Intersection[] hits = this.terrain.intersect(pA, pB);
+                if (hits != null)
+                {
+                    Vec4 ptA = this.terrain.getSurfacePoint(pA);
+                    Vec4 ptB = this.terrain.getSurfacePoint(pB);
+                    for (Intersection hit : hits)
+                    {
+                        Vec4 point = hit.getIntersectionPoint();
+                        if (ptA.distanceTo3(point) <= ptA.distanceTo3(ptB) && point.distanceTo3(ptB) <= ptA.distanceTo3(ptB)
+                            && (expected == null || ptA.distanceTo3(point) < ptA.distanceTo3(expected)))
+                            expected = point;
+                    }
+                }
+
+                assertEquals("Obstruction incorrect for ray " + i + " ", expected != null, result.isObstructed(i));
+                if (expected != null)
+                {
+                    numObstructed++;
+                    assertTrue("Intersection incorrect for ray " + i + " ",
+                        expected.distanceTo3(result.getIntersectionPoint(i)) < 1);
+                }
+            }
+
+            assertTrue("No rays obstructed ", numObstructed > 0);
+            assertTrue("All rays obstructed ", numObstructed < result.getNumRays() - 2);
+        }
+
+        /** Tests that the batch's intersections match those of the terrain when computed on one thread. */
+        public void testSingleThread() throws Exception
+        {
+            LineOfSightBatch batch = new LineOfSightBatch(this.terrain);
+            batch.setNumThreads(1);
+            this.assertResultCorrect(batch.intersect(this.positions));
+        }
+
+        /** Tests that the batch's intersections match those of the terrain when computed on several threads. */
+        public void testMultipleThreads() throws Exception
+        {
+            LineOfSightBatch batch = new LineOfSightBatch(this.terrain);
+            batch.setNumThreads(4);
+            LineOfSightBatch.Result result = batch.intersect(this.positions);
+
+            this.assertResultCorrect(result);
+            assertTrue("No tiles built ", result.getNumTiles() > 0);
+            assertTrue("Rate not reported ", result.getRaysPerSecond() > 0);
+        }
+
+        /** Tests that an array of rays whose length isn't a multiple of six is rejected. */
+        public void testInvalidRays() throws Exception
+        {
+            try
+            {
+                new LineOfSightBatch(this.terrain).intersect(new double[7]);
+                fail("Invalid rays accepted ");
+            }
+            catch (IllegalArgumentException e)
+            {
+                // Expected
+            }
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
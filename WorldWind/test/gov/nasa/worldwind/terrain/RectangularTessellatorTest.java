@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.terrain;
+
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.cache.BasicMemoryCache;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+import gov.nasa.worldwind.render.*;
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.nio.FloatBuffer;
+
+/**
+ * @version $Id$
+ */
+public class RectangularTessellatorTest
+{
+    /** A tessellator that splits tiles to a fixed level rather than by their distance from a view. */
+    protected static class TestTessellator extends RectangularTessellator
+    {
+        protected int splitLevel = 1;
+
+        @Override
+        protected RectTile createTile(DrawContext dc, Sector tileSector, int level)
+        {
+            return new RectTile(this, null, level, this.density, tileSector);
+        }
+
+        @Override
+        protected boolean atBestResolution(DrawContext dc, RectTile tile)
+        {
+            return false;
+        }
+
+        @Override
+        protected boolean needToSplit(DrawContext dc, RectTile tile)
+        {
+            return tile.getLevel() < this.splitLevel;
+        }
+    }
+
+    public static class Tests extends TestCase
+    {
+        protected TestTessellator tessellator;
+        protected DrawContext dc;
+
+        @Override
+        public void setUp()
+        {
+            BasicElevationModelTest.TestElevationModel elevationModel = new BasicElevationModelTest.TestElevationModel();
+            elevationModel.absentTileAvailable = true;
+            Globe globe = new EllipsoidalGlobe(Earth.WGS84_EQUATORIAL_RADIUS, Earth.WGS84_POLAR_RADIUS,
+                Earth.WGS84_ES, elevationModel);
+
+            this.dc = new DrawContextImpl();
+            this.dc.setModel(new BasicModel(globe, null));
+            this.dc.setVerticalExaggeration(1);
+            this.dc.setGLRuntimeCapabilities(new GLRuntimeCapabilities());
+
+            if (!WorldWind.getMemoryCacheSet().containsCache(RectangularTessellator.CACHE_ID))
+            {
+                WorldWind.getMemoryCacheSet().addCache(RectangularTessellator.CACHE_ID,
+                    new BasicMemoryCache(8000000, 10000000));
+            }
+            WorldWind.getMemoryCache(RectangularTessellator.CACHE_ID).clear();
+
+            this.tessellator = new TestTessellator();
+            this.tessellator.setBuildVertsInBackground(true);
+        }
+
+        protected void waitForBuilds() throws InterruptedException
+        {
+            for (int i = 0; i < 500 && !this.tessellator.pendingBuilds.isEmpty(); i++)
+            {
+                Thread.sleep(10);
+            }
+
+            assertTrue("Builds not completed ", this.tessellator.pendingBuilds.isEmpty());
+        }
+
+        /** Tests that vertices built in the background match those built on the calling thread. */
+        public void testBackgroundVertsMatchBuildVerts() throws Exception
+        {
+            Sector sector = Sector.fromDegrees(0, 5, 5, 10);
+            RectangularTessellator.RectTile expected = this.tessellator.createTile(this.dc, sector, 1);
+            this.tessellator.buildVerts(this.dc, expected, true);
+
+            RectangularTessellator.RectTile actual = this.tessellator.createTile(this.dc, sector, 1);
+            RectangularTessellator.CacheKey cacheKey = this.tessellator.createCacheKey(this.dc, actual);
+            this.tessellator.requestVerts(this.dc, actual, cacheKey);
+            this.waitForBuilds();
+
+            assertTrue("Built vertices not used ", this.tessellator.useBuiltVerts(this.dc, actual, cacheKey));
+            assertEquals("Reference center incorrect ", expected.ri.getReferenceCenter(),
+                actual.ri.getReferenceCenter());
+            assertEquals("Vertices incorrect ", expected.ri.getVertices(), actual.ri.getVertices());
+        }
+
+        /** Tests that a tile is drawn in place of its children until their vertices are built. */
+        public void testParentDrawnUntilChildrenBuilt() throws Exception
+        {
+            RectangularTessellator.RectTile top = this.tessellator.createTile(this.dc,
+                Sector.fromDegrees(0, 10, 0, 10), 0);
+            this.tessellator.makeVerts(this.dc, top);
+            assertNotNull("Top level tile not built ", top.ri);
+
+            this.tessellator.selectVisibleTiles(this.dc, top);
+            assertEquals("Tile count incorrect ", 1, this.tessellator.currentTiles.size());
+            assertEquals("Parent not drawn ", 0,
+                ((RectangularTessellator.RectTile) this.tessellator.currentTiles.get(0)).getLevel());
+
+            this.waitForBuilds();
+            assertEquals("Children not built ", 4, this.tessellator.builtVertices.size());
+
+            this.tessellator.currentTiles.clear();
+            this.tessellator.selectVisibleTiles(this.dc, top);
+            assertEquals("Tile count incorrect ", 4, this.tessellator.currentTiles.size());
+            for (SectorGeometry tile : this.tessellator.currentTiles)
+            {
+                assertEquals("Child not drawn ", 1, ((RectangularTessellator.RectTile) tile).getLevel());
+                this.tessellator.makeVerts(this.dc, (RectangularTessellator.RectTile) tile);
+                assertNotNull("Child has no vertices ", ((RectangularTessellator.RectTile) tile).ri);
+            }
+            assertTrue("Built vertices not used ", this.tessellator.builtVertices.isEmpty());
+        }
+
+        /** Tests that out of date vertices are drawn until they're rebuilt, and are then updated in place. */
+        public void testOutOfDateVertsRebuilt() throws Exception
+        {
+            this.tessellator.setUpdateFrequency(0);
+            RectangularTessellator.RectTile tile = this.tessellator.createTile(this.dc,
+                Sector.fromDegrees(0, 10, 0, 10), 0);
+            this.tessellator.makeVerts(this.dc, tile);
+            RectangularTessellator.RenderInfo ri = tile.ri;
+            FloatBuffer vertices = ri.getVertices();
+            Thread.sleep(5);
+
+            this.tessellator.makeVerts(this.dc, tile);
+            assertSame("Out of date vertices not drawn ", ri, tile.ri);
+
+            this.waitForBuilds();
+            this.tessellator.makeVerts(this.dc, tile);
+            assertSame("Render info not updated in place ", ri, tile.ri);
+            assertSame("Vertex buffer not reused ", vertices, tile.ri.getVertices());
+            assertEquals("Vertex buffer not released ", 1, this.tessellator.vertexBufferPool.size());
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
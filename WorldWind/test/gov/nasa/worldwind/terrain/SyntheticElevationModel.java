@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.terrain;
+
+import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.util.*;
+
+import java.nio.DoubleBuffer;
+import java.util.*;
+
+/**
+ * An elevation model for tests and benchmarks whose tiles are computed in memory when first requested and then kept,
+ * so that it runs without a file store or network. Subclasses define the elevations by implementing {@link
+ * #computeElevation(TileKey, int, int, double, double)}, and may withhold tiles by overriding {@link
+ * #isTileAvailable(TileKey)}.
+ *
+ * @version $Id$
+ */
+public abstract class SyntheticElevationModel extends BasicElevationModel
+{
+    protected final Map<TileKey, ElevationTile> tiles = new HashMap<TileKey, ElevationTile>();
+
+    public SyntheticElevationModel(AVList params)
+    {
+        super(params);
+    }
+
+    /**
+     * Creates the configuration parameters of a synthetic elevation model.
+     *
+     * @param sector         the model's sector, which is also its tile origin.
+     * @param levelZeroDelta the size of the level zero tiles.
+     * @param numLevels      the number of levels.
+     * @param tileSize       the width and height of each tile, in samples.
+     * @param name           the model's dataset and cache name.
+     * @param maxElevation   the model's maximum elevation, in meters. Its minimum elevation is zero.
+     *
+     * @return the parameters.
+     */
+    public static AVList createParams(Sector sector, LatLon levelZeroDelta, int numLevels, int tileSize, String name,
+        double maxElevation)
+    {
+        AVList params = new AVListImpl();
+        params.setValue(AVKey.SECTOR, sector);
+        params.setValue(AVKey.LEVEL_ZERO_TILE_DELTA, levelZeroDelta);
+        params.setValue(AVKey.TILE_ORIGIN, new LatLon(sector.getMinLatitude(), sector.getMinLongitude()));
+        params.setValue(AVKey.NUM_LEVELS, numLevels);
+        params.setValue(AVKey.TILE_WIDTH, tileSize);
+        params.setValue(AVKey.TILE_HEIGHT, tileSize);
+        params.setValue(AVKey.DATA_CACHE_NAME, name);
+        params.setValue(AVKey.DATASET_NAME, name);
+        params.setValue(AVKey.FORMAT_SUFFIX, ".bil");
+        params.setValue(AVKey.NETWORK_RETRIEVAL_ENABLED, false);
+        params.setValue(AVKey.ELEVATION_MIN, 0d);
+        params.setValue(AVKey.ELEVATION_MAX, maxElevation);
+        return params;
+    }
+
+    /**
+     * Computes the elevation of one sample of a tile.
+     *
+     * @param key       the tile's key.
+     * @param i         the sample's column in the tile, from west to east.
+     * @param j         the sample's row in the tile, from north to south.
+     * @param latitude  the sample's latitude, in degrees.
+     * @param longitude the sample's longitude, in degrees.
+     *
+     * @return the sample's elevation, in meters, or the model's missing data signal.
+     */
+    protected abstract double computeElevation(TileKey key, int i, int j, double latitude, double longitude);
+
+    /**
+     * Indicates whether a tile's elevations can be computed. Unavailable tiles are not in memory, so locations within
+     * them draw elevations from lower resolution levels.
+     *
+     * @param key the tile's key.
+     *
+     * @return true if the tile is available. This implementation returns true.
+     */
+    protected boolean isTileAvailable(TileKey key)
+    {
+        return true;
+    }
+
+    @Override
+    protected synchronized ElevationTile getTileFromMemory(TileKey key)
+    {
+        if (!this.isTileAvailable(key))
+            return null;
+
+        ElevationTile tile = this.tiles.get(key);
+        if (tile == null)
+        {
+            tile = this.createTile(key);
+            Sector sector = tile.getSector();
+            int width = tile.getWidth();
+            int height = tile.getHeight();
+            DoubleBuffer buffer = DoubleBuffer.allocate(width * height);
+            for (int j = 0; j < height; j++)
+            {
+                double lat = sector.getMaxLatitude().degrees - j * sector.getDeltaLatDegrees() / (height - 1);
+                for (int i = 0; i < width; i++)
+                {
+                    double lon = sector.getMinLongitude().degrees + i * sector.getDeltaLonDegrees() / (width - 1);
+                    buffer.put(this.computeElevation(key, i, j, lat, lon));
+                }
+            }
+            tile.setElevations(new BufferWrapper.DoubleBufferWrapper(buffer), this);
+            this.tiles.put(key, tile);
+        }
+
+        return tile;
+    }
+
+    @Override
+    protected void requestTile(TileKey key)
+    {
+        // Tiles are computed in memory, or are unavailable.
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.terrain;
+
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.cache.BasicMemoryCache;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+import gov.nasa.worldwind.render.*;
+import gov.nasa.worldwind.util.*;
+
+import java.util.*;
+
+/**
+ * Measures the cost of the terrain tessellation hot paths: {@link RectangularTessellator#buildVerts(DrawContext,
+ * RectangularTessellator.RectTile, boolean)}, {@link EllipsoidalGlobe#computePointsFromPositions(Sector, int, int,
+ * double[], Vec4[])} and the {@link BasicElevationModel} getElevations methods. Elevations come from a synthetic
+ * elevation model computed in memory, and the draw context is not backed by OpenGL, so the benchmark runs headless.
+ * <p/>
+ * The benchmarks are run by a {@link BenchmarkHarness}, whose report gives the vertices or points computed per
+ * operation, the time per operation and per vertex, and the heap allocated. Direct buffers are allocated outside the
+ * heap, so only their buffer objects are counted.
+ * <p/>
+ * Usage: <code>TessellationBenchmark [warmupIterations [measurementIterations [iterationMillis]]]</code>. The Ant
+ * target <code>run.benchmarks</code> runs the benchmark with the default arguments.
+ *
+ * @version $Id$
+ */
+public class TessellationBenchmark
+{
+    /** The sector covered by the synthetic elevation model. */
+    protected static final Sector SECTOR = Sector.fromDegrees(0, 10, 0, 10);
+
+    /**
+     * An elevation model whose tiles are computed when first requested and then kept in memory. Elevations vary
+     * smoothly with location over a range of about 1000 meters.
+     */
+    protected static class BenchmarkElevationModel extends SyntheticElevationModel
+    {
+        public BenchmarkElevationModel()
+        {
+            super(createParams(SECTOR, LatLon.fromDegrees(10, 10), 4, 150, "TessellationBenchmark", 1000));
+        }
+
+        @Override
+        protected double computeElevation(TileKey key, int i, int j, double latitude, double longitude)
+        {
+            double lat = Math.toRadians(latitude);
+            double lon = Math.toRadians(longitude);
+            return 500 + 300 * Math.sin(200 * lat) * Math.cos(200 * lon) + 200 * Math.sin(1500 * lat + 1100 * lon);
+        }
+    }
+
+    protected final BenchmarkHarness harness;
+    protected final Globe globe;
+    protected final DrawContext dc;
+
+    public TessellationBenchmark(BenchmarkHarness harness)
+    {
+        if (harness == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.harness = harness;
+
+        this.globe = new EllipsoidalGlobe(Earth.WGS84_EQUATORIAL_RADIUS, Earth.WGS84_POLAR_RADIUS, Earth.WGS84_ES,
+            new BenchmarkElevationModel());
+
+        // A draw context without a GL context provides everything the tessellator needs to build vertices.
+        this.dc = new DrawContextImpl();
+        this.dc.setModel(new BasicModel(this.globe, null));
+        this.dc.setVerticalExaggeration(1);
+        this.dc.setGLRuntimeCapabilities(new GLRuntimeCapabilities());
+
+        if (!WorldWind.getMemoryCacheSet().containsCache(RectangularTessellator.CACHE_ID))
+        {
+            WorldWind.getMemoryCacheSet().addCache(RectangularTessellator.CACHE_ID,
+                new BasicMemoryCache(8000000, 10000000));
+        }
+    }
+
+    /**
+     * Creates the benchmarks. The tessellator benchmarks build the vertices of a grid of tiles covering the synthetic
+     * elevation model, once reusing each tile's vertex buffer and once creating new ones. The globe and elevation
+     * model benchmarks compute a grid of points and random locations over the same area at the elevation model's best
+     * resolution.
+     *
+     * @return the benchmarks, keyed by name.
+     */
+    protected Map<String, BenchmarkHarness.Operation> createBenchmarks()
+    {
+        Map<String, BenchmarkHarness.Operation> benchmarks = new LinkedHashMap<String, BenchmarkHarness.Operation>();
+
+        final RectangularTessellator tessellator = new RectangularTessellator();
+        final List<RectangularTessellator.RectTile> tiles = new ArrayList<RectangularTessellator.RectTile>();
+        for (Sector sector : SECTOR.subdivide(4))
+        {
+            tiles.add(new RectangularTessellator.RectTile(tessellator, null, 2, RectangularTessellator.DEFAULT_DENSITY,
+                sector));
+        }
+
+        benchmarks.put("RectangularTessellator.buildVerts", new BenchmarkHarness.Operation()
+        {
+            public long run()
+            {
+                long numVertices = 0;
+                for (RectangularTessellator.RectTile tile : tiles)
+                {
+                    tessellator.buildVerts(dc, tile, true);
+                    numVertices += (tile.density + 3) * (tile.density + 3);
+                }
+                return numVertices;
+            }
+        });
+
+        benchmarks.put("RectangularTessellator.buildVerts (new buffers)", new BenchmarkHarness.Operation()
+        {
+            public long run()
+            {
+                long numVertices = 0;
+                for (RectangularTessellator.RectTile tile : tiles)
+                {
+                    tile.ri = null;
+                    tessellator.buildVerts(dc, tile, true);
+                    numVertices += (tile.density + 3) * (tile.density + 3);
+                }
+                return numVertices;
+            }
+        });
+
+        final int numLat = 100;
+        final int numLon = 100;
+        final double[] metersElevation = new double[numLat * numLon];
+        final Vec4[] points = new Vec4[numLat * numLon];
+        this.globe.getElevations(SECTOR, createGrid(numLat, numLon), this.getBestResolution(), metersElevation);
+
+        benchmarks.put("EllipsoidalGlobe.computePointsFromPositions", new BenchmarkHarness.Operation()
+        {
+            public long run()
+            {
+                globe.computePointsFromPositions(SECTOR, numLat, numLon, metersElevation, points);
+                return points.length;
+            }
+        });
+
+        final ElevationModel elevationModel = this.globe.getElevationModel();
+        final double resolution = this.getBestResolution();
+        final List<LatLon> locations = new ArrayList<LatLon>();
+        final double[] latLons = new double[2 * 10000];
+        Random random = new Random(1);
+        for (int i = 0; i < latLons.length / 2; i++)
+        {
+            LatLon location = LatLon.fromDegrees(10 * random.nextDouble(), 10 * random.nextDouble());
+            locations.add(location);
+            latLons[2 * i] = location.getLatitude().degrees;
+            latLons[2 * i + 1] = location.getLongitude().degrees;
+        }
+        final double[] elevations = new double[locations.size()];
+
+        benchmarks.put("BasicElevationModel.getElevations (list)", new BenchmarkHarness.Operation()
+        {
+            public long run()
+            {
+                elevationModel.getElevations(SECTOR, locations, resolution, elevations);
+                return elevations.length;
+            }
+        });
+
+        benchmarks.put("BasicElevationModel.getElevations (packed)", new BenchmarkHarness.Operation()
+        {
+            public long run()
+            {
+                elevationModel.getElevations(SECTOR, latLons, false, resolution, elevations);
+                return elevations.length;
+            }
+        });
+
+        return benchmarks;
+    }
+
+    protected double getBestResolution()
+    {
+        return this.globe.getElevationModel().getBestResolution(SECTOR);
+    }
+
+    protected static List<LatLon> createGrid(int numLat, int numLon)
+    {
+        List<LatLon> locations = new ArrayList<LatLon>(numLat * numLon);
+        for (int j = 0; j < numLat; j++)
+        {
+            double lat = SECTOR.getMinLatitude().degrees + j * SECTOR.getDeltaLatDegrees() / (numLat - 1);
+            for (int i = 0; i < numLon; i++)
+            {
+                double lon = SECTOR.getMinLongitude().degrees + i * SECTOR.getDeltaLonDegrees() / (numLon - 1);
+                locations.add(LatLon.fromDegrees(lat, lon));
+            }
+        }
+
+        return locations;
+    }
+
+    /**
+     * Runs all the benchmarks and prints their results.
+     *
+     * @throws Exception if a benchmark fails.
+     */
+    public void run() throws Exception
+    {
+        this.harness.printHeader(null, "Vertices");
+
+        for (Map.Entry<String, BenchmarkHarness.Operation> entry : this.createBenchmarks().entrySet())
+        {
+            this.harness.run(entry.getKey(), entry.getValue(), true);
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        new TessellationBenchmark(BenchmarkHarness.fromArgs(args, 0)).run();
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.terrain;
+
+import gov.nasa.worldwind.data.ByteBufferRaster;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.io.File;
+
+/**
+ * @version $Id$
+ */
+public class ViewshedTest
+{
+    public static class Tests extends TestCase
+    {
+        protected HighResolutionTerrain terrain;
+        protected Viewshed viewshed;
+        protected Position observer;
+
+        @Override
+        public void setUp()
+        {
+            BasicElevationModelTest.TestElevationModel elevationModel = new BasicElevationModelTest.TestElevationModel();
+            elevationModel.absentTileAvailable = true;
+            Globe globe = new EllipsoidalGlobe(Earth.WGS84_EQUATORIAL_RADIUS, Earth.WGS84_POLAR_RADIUS,
+                Earth.WGS84_ES, elevationModel);
+            this.terrain = new HighResolutionTerrain(globe, Sector.fromDegrees(0, 10, 0, 10), null, null);
+
+            // The globe's curvature hides the more distant terrain from this observer.
+            this.viewshed = new Viewshed(this.terrain);
+            this.viewshed.setTargetHeight(2);
+            this.observer = Position.fromDegrees(5, 5, 20);
+        }
+
+        /** Tests that cell visibility agrees with the line of sight from the observer to each cell's target. */
+        public void testVisibilityMatchesLineOfSight() throws Exception
+        {
+            ByteBufferRaster raster = this.viewshed.compute(this.observer, 60000, 1000);
+            int size = raster.getWidth();
+            Sector sector = raster.getSector();
+
+            double[] rays = new double[6 * size * size];
+            int numRays = 0;
+            for (int row = 0; row < size; row++)
+            {
+                for (int col = 0; col < size; col++)
+                {
+                    if (raster.getDoubleAtPosition(row, col) == Viewshed.NO_DATA || row == size / 2 && col == size / 2)
+                        continue;
+
+                    rays[6 * numRays] = this.observer.getLatitude().degrees;
+                    rays[6 * numRays + 1] = this.observer.getLongitude().degrees;
+                    rays[6 * numRays + 2] = this.observer.getElevation();
+                    rays[6 * numRays + 3] = sector.getMaxLatitude().degrees
+                        - (row + 0.5) * sector.getDeltaLatDegrees() / size;
+                    rays[6 * numRays + 4] = sector.getMinLongitude().degrees
+                        + (col + 0.5) * sector.getDeltaLonDegrees() / size;
+                    rays[6 * numRays + 5] = 2;
+                    numRays++;
+                }
+            }
+
+            double[] validRays = new double[6 * numRays];
+            System.arraycopy(rays, 0, validRays, 0, validRays.length);
+            LineOfSightBatch.Result result = new LineOfSightBatch(this.terrain).intersect(validRays);
+
+            int numVisible = 0;
+            int numAgreeing = 0;
+            int ray = 0;
+            for (int row = 0; row < size; row++)
+            {
+                for (int col = 0; col < size; col++)
+                {
+                    double value = raster.getDoubleAtPosition(row, col);
+                    if (value == Viewshed.NO_DATA || row == size / 2 && col == size / 2)
+                        continue;
+
+                    if (value == Viewshed.VISIBLE)
+                        numVisible++;
+                    if ((value == Viewshed.VISIBLE) != result.isObstructed(ray++))
+                        numAgreeing++;
+                }
+            }
+
+            assertTrue("No cells visible ", numVisible > 0);
+            assertTrue("All cells visible ", numVisible < numRays);
+            assertTrue("Visibility disagrees with line of sight for " + (numRays - numAgreeing) + " of " + numRays
+                + " cells ", numAgreeing >= 0.97 * numRays);
+        }
+
+        /** Tests the raster's dimensions and the values of its center and corner cells. */
+        public void testRaster() throws Exception
+        {
+            ByteBufferRaster raster = this.viewshed.compute(this.observer, 10000, 1000);
+
+            assertEquals("Width incorrect ", 21, raster.getWidth());
+            assertEquals("Height incorrect ", 21, raster.getHeight());
+            assertTrue("Sector does not contain observer ", raster.getSector().contains(this.observer));
+            assertEquals("Missing data signal incorrect ", (double) Viewshed.NO_DATA, raster.getTransparentValue());
+            assertEquals("Observer cell not visible ", (double) Viewshed.VISIBLE, raster.getDoubleAtPosition(10, 10));
+            assertEquals("Adjacent cell not visible ", (double) Viewshed.VISIBLE, raster.getDoubleAtPosition(10, 11));
+            assertEquals("Corner outside radius ", (double) Viewshed.NO_DATA, raster.getDoubleAtPosition(0, 0));
+        }
+
+        /** Tests that the viewshed computed on several threads matches that computed on one. */
+        public void testMultipleThreads() throws Exception
+        {
+            this.viewshed.setNumThreads(1);
+            ByteBufferRaster expected = this.viewshed.compute(this.observer, 30000, 500);
+
+            this.viewshed.setNumThreads(4);
+            ByteBufferRaster actual = this.viewshed.compute(this.observer, 30000, 500);
+
+            assertEquals("Rasters differ ", expected.getByteBuffer(), actual.getByteBuffer());
+        }
+
+        /** Tests that the viewshed can be written with the data raster writers. */
+        public void testWrite() throws Exception
+        {
+            ByteBufferRaster raster = this.viewshed.compute(this.observer, 10000, 1000);
+
+            File file = File.createTempFile("ViewshedTest", ".tif");
+            try
+            {
+                this.viewshed.write(raster, file);
+                assertTrue("Raster not written ", file.length() > 21 * 21);
+            }
+            finally
+            {
+                file.delete();
+            }
+        }
+
+        /** Tests that invalid arguments are rejected. */
+        public void testInvalidArguments() throws Exception
+        {
+            try
+            {
+                this.viewshed.compute(this.observer, 0, 100);
+                fail("Zero radius accepted ");
+            }
+            catch (IllegalArgumentException e)
+            {
+                // Expected
+            }
+
+            try
+            {
+                this.viewshed.compute(Position.fromDegrees(20, 5, 10), 1000, 100);
+                fail("Observer outside terrain accepted ");
+            }
+            catch (IllegalArgumentException e)
+            {
+                // Expected
+            }
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
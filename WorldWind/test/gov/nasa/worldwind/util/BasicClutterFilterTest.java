@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.render.*;
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * @version $Id$
+ */
+public class BasicClutterFilterTest
+{
+    /** A declutterable shape with fixed screen bounds. */
+    protected static class TestShape implements Declutterable
+    {
+        protected final Rectangle2D bounds;
+        protected final double distance;
+
+        public TestShape(Rectangle2D bounds, double distance)
+        {
+            this.bounds = bounds;
+            this.distance = distance;
+        }
+
+        public boolean isEnableDecluttering()
+        {
+            return true;
+        }
+
+        public Rectangle2D getBounds(DrawContext dc)
+        {
+            return this.bounds;
+        }
+
+        public double getDistanceFromEye()
+        {
+            return this.distance;
+        }
+
+        public void pick(DrawContext dc, Point pickPoint)
+        {
+        }
+
+        public void render(DrawContext dc)
+        {
+        }
+    }
+
+    public static class Tests extends TestCase
+    {
+        protected static Set<OrderedRenderable> drain(DrawContext dc)
+        {
+            Set<OrderedRenderable> drawn = new HashSet<OrderedRenderable>();
+            while (dc.peekOrderedRenderables() != null)
+            {
+                drawn.add(dc.pollOrderedRenderables());
+            }
+
+            return drawn;
+        }
+
+        /** Tests that the grid finds the first intersecting region, as a search of all regions in order does. */
+        public void testGridMatchesLinearSearch()
+        {
+            ScreenRegionGrid grid = new ScreenRegionGrid(20);
+            grid.reset(new Rectangle(0, 0, 400, 300));
+            List<Rectangle2D> regions = new ArrayList<Rectangle2D>();
+
+            // Include regions beyond the grid's bounds and regions spanning many cells.
+            Random random = new Random(1);
+            for (int i = 0; i < 2000; i++)
+            {
+                Rectangle2D rect = new Rectangle2D.Double(600 * random.nextDouble() - 100,
+                    500 * random.nextDouble() - 100, random.nextInt(10) == 0 ? 150 : 30 * random.nextDouble(),
+                    random.nextInt(10) == 0 ? 150 : 10 * random.nextDouble());
+
+                Rectangle2D expected = null;
+                for (Rectangle2D region : regions)
+                {
+                    if (rect.intersects(region))
+                    {
+                        expected = region;
+                        break;
+                    }
+                }
+
+                assertSame("Intersecting region incorrect for " + i + " ", expected, grid.intersects(rect));
+
+                if (expected == null || random.nextInt(4) == 0)
+                {
+                    grid.add(rect);
+                    regions.add(rect);
+                }
+            }
+
+            assertEquals("Number of regions incorrect ", regions.size(), grid.size());
+            grid.clear();
+            assertNull("Cleared grid has regions ", grid.intersects(new Rectangle2D.Double(-1000, -1000, 3000, 3000)));
+        }
+
+        /** Tests that shapes drawn in the previous frame take precedence over those slightly nearer the eye. */
+        public void testStability()
+        {
+            DrawContext dc = new DrawContextImpl();
+            BasicClutterFilter filter = new BasicClutterFilter();
+
+            TestShape a = new TestShape(new Rectangle2D.Double(0, 0, 50, 10), 100);
+            TestShape b = new TestShape(new Rectangle2D.Double(20, 5, 50, 10), 101);
+            TestShape c = new TestShape(new Rectangle2D.Double(200, 200, 50, 10), 102);
+
+            filter.apply(dc, Arrays.<Declutterable>asList(a, b, c));
+            Set<OrderedRenderable> drawn = drain(dc);
+            assertTrue("Nearest shape not drawn ", drawn.contains(a));
+            assertFalse("Overlapped shape drawn ", drawn.contains(b));
+            assertTrue("Separate shape not drawn ", drawn.contains(c));
+
+            // The overlapping shape moves slightly nearer the eye than the one drawn.
+            filter.apply(dc, Arrays.<Declutterable>asList(b, a, c));
+            drawn = drain(dc);
+            assertTrue("Previously drawn shape not drawn ", drawn.contains(a));
+            assertFalse("Previously hidden shape drawn ", drawn.contains(b));
+
+            filter.setEnableStability(false);
+            filter.apply(dc, Arrays.<Declutterable>asList(b, a, c));
+            drawn = drain(dc);
+            assertTrue("Nearest shape not drawn without stability ", drawn.contains(b));
+            assertFalse("Overlapped shape drawn without stability ", drawn.contains(a));
+        }
+
+        /** Tests that a shape much nearer the eye displaces a shape drawn in the previous frame. */
+        public void testNearerShapeDisplacesPrevious()
+        {
+            DrawContext dc = new DrawContextImpl();
+            BasicClutterFilter filter = new BasicClutterFilter();
+
+            TestShape a = new TestShape(new Rectangle2D.Double(0, 0, 50, 10), 100);
+            TestShape b = new TestShape(new Rectangle2D.Double(20, 5, 50, 10), 120);
+            filter.apply(dc, Arrays.<Declutterable>asList(a, b));
+            assertTrue("Nearest shape not drawn ", drain(dc).contains(a));
+
+            // The overlapping shape moves nearer the eye, but within the tolerance.
+            b = new TestShape(b.bounds, 95);
+            filter.apply(dc, Arrays.<Declutterable>asList(b, a));
+            Set<OrderedRenderable> drawn = drain(dc);
+            assertTrue("Previously drawn shape not drawn ", drawn.contains(a));
+            assertFalse("Shape within the tolerance drawn ", drawn.contains(b));
+
+            // The overlapping shape moves to half the distance of the one drawn.
+            b = new TestShape(b.bounds, 50);
+            filter.apply(dc, Arrays.<Declutterable>asList(b, a));
+            drawn = drain(dc);
+            assertTrue("Much nearer shape not drawn ", drawn.contains(b));
+            assertFalse("Previously drawn shape not displaced ", drawn.contains(a));
+
+            // The shape now drawn keeps precedence when the other moves slightly nearer.
+            a = new TestShape(a.bounds, 48);
+            filter.apply(dc, Arrays.<Declutterable>asList(a, b));
+            drawn = drain(dc);
+            assertTrue("Newly drawn shape not kept ", drawn.contains(b));
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
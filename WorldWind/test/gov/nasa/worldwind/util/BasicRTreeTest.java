@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.util.*;
+
+/**
+ * @version $Id$
+ */
+public class BasicRTreeTest
+{
+    public static class Tests extends TestCase
+    {
+        protected Random random = new Random(1);
+
+        protected Sector randomSector(double maxSize)
+        {
+            double lat = -90 + 180 * this.random.nextDouble();
+            double lon = -180 + 360 * this.random.nextDouble();
+            double dLat = maxSize * this.random.nextDouble();
+            double dLon = maxSize * this.random.nextDouble();
+
+            return Sector.fromDegrees(lat, Math.min(90, lat + dLat), lon, Math.min(180, lon + dLon));
+        }
+
+        protected static Set<Integer> search(Map<Integer, List<Sector>> items, Sector testSector)
+        {
+            Set<Integer> found = new HashSet<Integer>();
+            for (Map.Entry<Integer, List<Sector>> entry : items.entrySet())
+            {
+                for (Sector sector : entry.getValue())
+                {
+                    if (testSector.intersects(sector))
+                        found.add(entry.getKey());
+                }
+            }
+
+            return found;
+        }
+
+        /** Tests that searches find the items a test of every item's sectors finds, as items are added and removed. */
+        public void testSearchMatchesLinearSearch()
+        {
+            BasicRTree<Integer> tree = new BasicRTree<Integer>(6);
+            Map<Integer, List<Sector>> items = new HashMap<Integer, List<Sector>>();
+
+            for (int i = 0; i < 5000; i++)
+            {
+                // Include items with two sectors and items with very large sectors.
+                List<Sector> sectors = new ArrayList<Sector>();
+                sectors.add(this.randomSector(this.random.nextInt(50) == 0 ? 90 : 2));
+                if (this.random.nextInt(10) == 0)
+                    sectors.add(this.randomSector(2));
+
+                tree.add(i, sectors);
+                items.put(i, sectors);
+
+                if (this.random.nextInt(3) == 0)
+                {
+                    Integer removed = this.random.nextInt(i + 1);
+                    tree.remove(removed);
+                    items.remove(removed);
+                }
+
+                if (i % 50 == 0)
+                {
+                    Sector testSector = this.randomSector(20);
+                    assertEquals("Items found incorrect at " + i + " ", search(items, testSector),
+                        tree.getItemsInRegion(testSector, null));
+                }
+            }
+
+            assertEquals("Size incorrect ", items.size(), tree.size());
+            assertEquals("Items found in whole sphere incorrect ", items.keySet(),
+                tree.getItemsInRegion(Sector.FULL_SPHERE, null));
+
+            for (Integer item : new ArrayList<Integer>(items.keySet()))
+            {
+                tree.remove(item);
+            }
+
+            assertFalse("Tree has items after removing all ", tree.hasItems());
+            assertTrue("Empty tree found items ", tree.getItemsInRegion(Sector.FULL_SPHERE, null).isEmpty());
+        }
+
+        /** Creates items with one or two sectors, many of them clustered, and a few with large sectors. */
+        protected Map<Integer, List<Sector>> createItems(int numItems)
+        {
+            Map<Integer, List<Sector>> items = new HashMap<Integer, List<Sector>>();
+            for (int i = 0; i < numItems; i++)
+            {
+                List<Sector> sectors = new ArrayList<Sector>();
+                if (this.random.nextInt(2) == 0)
+                {
+                    double lat = 40 + this.random.nextDouble();
+                    double lon = -100 + this.random.nextDouble();
+                    sectors.add(Sector.fromDegrees(lat, lat + 0.01, lon, lon + 0.01));
+                }
+                else
+                {
+                    sectors.add(this.randomSector(this.random.nextInt(50) == 0 ? 90 : 2));
+                }
+                if (this.random.nextInt(10) == 0)
+                    sectors.add(this.randomSector(2));
+
+                items.put(i, sectors);
+            }
+
+            return items;
+        }
+
+        /** Tests that a bulk loaded tree finds the items a linear search finds, and remains correct as it changes. */
+        public void testBulkLoad()
+        {
+            for (int numItems : new int[] {0, 1, 6, 7, 37, 1000, 5000})
+            {
+                BasicRTree<Integer> tree = new BasicRTree<Integer>(6);
+                Map<Integer, List<Sector>> items = this.createItems(numItems);
+                tree.bulkLoad(items);
+                assertEquals("Size incorrect ", items.size(), tree.size());
+
+                for (int i = 0; i < 20; i++)
+                {
+                    Sector testSector = this.randomSector(20);
+                    assertEquals("Items found incorrect for " + numItems + " items ", search(items, testSector),
+                        tree.getItemsInRegion(testSector, null));
+                }
+
+                // Add and remove items individually, then bulk load more items into the tree.
+                for (int i = 0; i < numItems / 2; i++)
+                {
+                    Integer removed = this.random.nextInt(numItems);
+                    tree.remove(removed);
+                    items.remove(removed);
+
+                    List<Sector> sectors = Arrays.asList(this.randomSector(2));
+                    tree.add(numItems + i, sectors);
+                    items.put(numItems + i, sectors);
+                }
+
+                Map<Integer, List<Sector>> moreItems = new HashMap<Integer, List<Sector>>();
+                for (Map.Entry<Integer, List<Sector>> entry : this.createItems(numItems).entrySet())
+                {
+                    moreItems.put(2 * numItems + entry.getKey(), entry.getValue());
+                }
+                tree.bulkLoad(moreItems);
+                items.putAll(moreItems);
+
+                for (int i = 0; i < 20; i++)
+                {
+                    Sector testSector = this.randomSector(20);
+                    assertEquals("Items found after changes incorrect for " + numItems + " items ",
+                        search(items, testSector), tree.getItemsInRegion(testSector, null));
+                }
+                assertEquals("Size after changes incorrect ", items.size(), tree.size());
+            }
+        }
+
+        /** Tests that location searches find the items whose sectors contain the locations. */
+        public void testItemsAtLocation()
+        {
+            BasicRTree<Integer> tree = new BasicRTree<Integer>();
+            Map<Integer, List<Sector>> items = this.createItems(2000);
+            tree.bulkLoad(items);
+            tree.add(-1, new double[] {40.5, -99.5});
+            items.put(-1, Arrays.asList(Sector.fromDegrees(40.5, 40.5, -99.5, -99.5)));
+
+            for (int i = 0; i < 50; i++)
+            {
+                LatLon location = i == 0 ? LatLon.fromDegrees(40.5, -99.5)
+                    : LatLon.fromDegrees(40 + this.random.nextDouble(), -100 + this.random.nextDouble());
+                assertEquals("Items found incorrect ", search(items, new Sector(location.latitude, location.latitude,
+                    location.longitude, location.longitude)), tree.getItemsAtLocation(location, null));
+            }
+        }
+
+        /** Tests that nearest item searches find the items nearest first, as measured by the tree. */
+        public void testNearestItems()
+        {
+            BasicRTree<Integer> tree = new BasicRTree<Integer>(6);
+            final Map<Integer, List<Sector>> items = this.createItems(3000);
+            for (Map.Entry<Integer, List<Sector>> entry : items.entrySet())
+            {
+                tree.add(entry.getKey(), entry.getValue());
+            }
+
+            for (int i = 0; i < 50; i++)
+            {
+                // Include locations near the dateline and the poles.
+                final LatLon location = i % 5 == 0 ? LatLon.fromDegrees(80 * this.random.nextDouble(), 179.9)
+                    : LatLon.fromDegrees(-90 + 180 * this.random.nextDouble(), -180 + 360 * this.random.nextDouble());
+                int numItems = 1 + this.random.nextInt(20);
+
+                List<Integer> found = tree.getNearestItems(location, numItems, null);
+                assertEquals("Number of items found incorrect ", numItems, found.size());
+
+                List<Integer> expected = new ArrayList<Integer>(items.keySet());
+                Collections.sort(expected, new Comparator<Integer>()
+                {
+                    public int compare(Integer a, Integer b)
+                    {
+                        return Double.compare(distance(location, items.get(a)), distance(location, items.get(b)));
+                    }
+                });
+
+                for (int j = 0; j < numItems; j++)
+                {
+                    assertEquals("Item distance incorrect ", distance(location, items.get(expected.get(j))),
+                        distance(location, items.get(found.get(j))), 1e-9);
+                }
+            }
+
+            assertEquals("All items not found ", new HashSet<Integer>(items.keySet()),
+                new HashSet<Integer>(tree.getNearestItems(LatLon.ZERO, 10000, null)));
+        }
+
+        protected static double distance(LatLon location, List<Sector> sectors)
+        {
+            double cosLat = Math.cos(location.getLatitude().radians);
+            double distance = Double.MAX_VALUE;
+            for (Sector sector : sectors)
+            {
+                BasicRTree.Entry<Integer> entry = new BasicRTree.Entry<Integer>(0, sector.getMinLatitude().degrees,
+                    sector.getMaxLatitude().degrees, sector.getMinLongitude().degrees,
+                    sector.getMaxLongitude().degrees);
+                distance = Math.min(distance, BasicRTree.distance(location.getLatitude().degrees,
+                    location.getLongitude().degrees, cosLat, entry));
+            }
+
+            return distance;
+        }
+
+        /** Tests that frustum searches find the items whose sectors' boxes intersect the frustum. */
+        public void testItemsInFrustum()
+        {
+            Globe globe = new Earth();
+            BasicRTree<Integer> tree = new BasicRTree<Integer>();
+            Map<Integer, List<Sector>> items = this.createItems(3000);
+            tree.bulkLoad(items);
+
+            for (LatLon target : Arrays.asList(LatLon.fromDegrees(40.5, -99.5), LatLon.fromDegrees(0, 0),
+                LatLon.fromDegrees(-60, 120)))
+            {
+                for (double altitude : new double[] {1e5, 1e6, 1e7})
+                {
+                    Vec4 eye = globe.computePointFromPosition(target.latitude, target.longitude, altitude);
+                    Vec4 center = globe.computePointFromPosition(target.latitude, target.longitude, 0);
+                    Vec4 up = globe.computeNorthPointingTangentAtLocation(target.latitude, target.longitude);
+                    Frustum frustum = Frustum.fromPerspective(Angle.fromDegrees(45), 800, 600, 1, 2 * altitude)
+                        .transformBy(Matrix.fromViewLookAt(eye, center, up).getTranspose());
+
+                    Set<Integer> expected = new HashSet<Integer>();
+                    for (Map.Entry<Integer, List<Sector>> entry : items.entrySet())
+                    {
+                        for (Sector sector : entry.getValue())
+                        {
+                            if (sector.getDeltaLatDegrees() > BasicRTree.MAX_CULLED_SIZE
+                                || sector.getDeltaLonDegrees() > BasicRTree.MAX_CULLED_SIZE
+                                || frustum.intersects(Sector.computeBoundingBox(globe, 1, sector)))
+                                expected.add(entry.getKey());
+                        }
+                    }
+
+                    assertEquals("Items found incorrect ", expected, tree.getItemsInFrustum(frustum, globe, 1, null));
+                }
+            }
+        }
+
+        /** Tests that searches from several threads at once find the items a linear search finds. */
+        public void testConcurrentSearches() throws Exception
+        {
+            final BasicRTree<Integer> tree = new BasicRTree<Integer>();
+            final Map<Integer, List<Sector>> items = this.createItems(5000);
+            tree.bulkLoad(items);
+
+            final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int t = 0; t < 4; t++)
+            {
+                final Random threadRandom = new Random(t);
+                Thread thread = new Thread(new Runnable()
+                {
+                    public void run()
+                    {
+                        try
+                        {
+                            for (int i = 0; i < 200; i++)
+                            {
+                                double lat = -90 + 170 * threadRandom.nextDouble();
+                                double lon = -180 + 350 * threadRandom.nextDouble();
+                                Sector testSector = Sector.fromDegrees(lat, lat + 10, lon, lon + 10);
+                                assertEquals("Items found incorrect ", search(items, testSector),
+                                    tree.getItemsInRegion(testSector, null));
+                            }
+                        }
+                        catch (Throwable e)
+                        {
+                            failures.add(e);
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+
+            for (Thread thread : threads)
+            {
+                thread.join();
+            }
+
+            assertTrue("Concurrent searches failed " + failures + " ", failures.isEmpty());
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.util;
+
+import java.lang.management.*;
+import java.lang.reflect.Method;
+
+/**
+ * Measures and reports the benchmarks in the test tree. Each operation runs for a number of warm up iterations followed
+ * by a number of measured iterations, each of which repeats the operation for a fixed time. The report gives, for each
+ * operation, the number of units of work it does -- such as vertices computed or items found -- the time per operation
+ * and per unit, the heap allocated per operation, and the allocation rate. Allocation is measured with the thread
+ * allocation counter of the HotSpot thread management bean, and is not reported on virtual machines without one or for
+ * operations that run on other threads.
+ *
+ * @version $Id$
+ */
+public class BenchmarkHarness
+{
+    public static final int DEFAULT_WARMUP_ITERATIONS = 3;
+    public static final int DEFAULT_MEASUREMENT_ITERATIONS = 5;
+    public static final long DEFAULT_ITERATION_MILLIS = 1000;
+
+    /** An operation to measure. */
+    public interface Operation
+    {
+        /**
+         * Performs the operation once.
+         *
+         * @return the number of units of work the operation did, such as vertices computed or items found.
+         *
+         * @throws Exception if the operation fails.
+         */
+        long run() throws Exception;
+    }
+
+    /** The measurements of one operation, one value per measured iteration. */
+    public static class Result
+    {
+        protected final String name;
+        protected final double[] unitsPerOperation;
+        protected final double[] millisPerOperation;
+        protected final double[] nanosPerUnit;
+        protected final double[] bytesPerOperation;
+        protected final double[] bytesPerSecond;
+
+        public Result(String name, int numIterations)
+        {
+            this.name = name;
+            this.unitsPerOperation = new double[numIterations];
+            this.millisPerOperation = new double[numIterations];
+            this.nanosPerUnit = new double[numIterations];
+            this.bytesPerOperation = new double[numIterations];
+            this.bytesPerSecond = new double[numIterations];
+        }
+
+        public String getName()
+        {
+            return this.name;
+        }
+    }
+
+    protected final int warmupIterations;
+    protected final int measurementIterations;
+    protected final long iterationMillis;
+    protected final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    protected final Method allocatedBytesMethod = getAllocatedBytesMethod();
+
+    public BenchmarkHarness(int warmupIterations, int measurementIterations, long iterationMillis)
+    {
+        if (warmupIterations < 0 || measurementIterations < 1 || iterationMillis < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange",
+                warmupIterations + ", " + measurementIterations + ", " + iterationMillis);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationMillis = iterationMillis;
+    }
+
+    /**
+     * Creates a harness from a benchmark's command line. The arguments from the specified index on are the number of
+     * warm up iterations, the number of measured iterations and the milliseconds per iteration, each of which defaults
+     * if omitted.
+     *
+     * @param args     the command line arguments.
+     * @param firstArg the index of the number of warm up iterations in the arguments.
+     *
+     * @return the new harness.
+     */
+    public static BenchmarkHarness fromArgs(String[] args, int firstArg)
+    {
+        int warmupIterations = args.length > firstArg ? Integer.parseInt(args[firstArg])
+            : DEFAULT_WARMUP_ITERATIONS;
+        int measurementIterations = args.length > firstArg + 1 ? Integer.parseInt(args[firstArg + 1])
+            : DEFAULT_MEASUREMENT_ITERATIONS;
+        long iterationMillis = args.length > firstArg + 2 ? Long.parseLong(args[firstArg + 2])
+            : DEFAULT_ITERATION_MILLIS;
+
+        return new BenchmarkHarness(warmupIterations, measurementIterations, iterationMillis);
+    }
+
+    /**
+     * Returns the HotSpot method that counts the bytes allocated by a thread, or null if the virtual machine doesn't
+     * provide one.
+     *
+     * @return the allocation counter method, or null if none is available.
+     */
+    protected static Method getAllocatedBytesMethod()
+    {
+        try
+        {
+            Class<?> c = Class.forName("com.sun.management.ThreadMXBean");
+            if (!c.isInstance(ManagementFactory.getThreadMXBean()))
+                return null;
+
+            Method method = c.getMethod("getThreadAllocatedBytes", long.class);
+            return method.invoke(ManagementFactory.getThreadMXBean(), Thread.currentThread().getId()) != null
+                ? method : null;
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    protected long getAllocatedBytes()
+    {
+        if (this.allocatedBytesMethod == null)
+            return -1;
+
+        try
+        {
+            Long bytes = (Long) this.allocatedBytesMethod.invoke(this.threadBean, Thread.currentThread().getId());
+            return bytes != null ? bytes : -1;
+        }
+        catch (Exception e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Runs an operation's warm up and measured iterations.
+     *
+     * @param name              the operation's name in the report.
+     * @param operation         the operation to measure.
+     * @param measureAllocation false if the operation allocates on other threads, so its allocation isn't measured.
+     *
+     * @return the operation's measurements.
+     *
+     * @throws Exception if the operation fails.
+     */
+    public Result measure(String name, Operation operation, boolean measureAllocation) throws Exception
+    {
+        for (int i = 0; i < this.warmupIterations; i++)
+        {
+            this.runIteration(operation, measureAllocation, null, 0);
+        }
+
+        Result result = new Result(name, this.measurementIterations);
+        for (int i = 0; i < this.measurementIterations; i++)
+        {
+            this.runIteration(operation, measureAllocation, result, i);
+        }
+
+        return result;
+    }
+
+    protected void runIteration(Operation operation, boolean measureAllocation, Result result, int iteration)
+        throws Exception
+    {
+        long endTime = System.nanoTime() + this.iterationMillis * 1000000L;
+        long numOperations = 0;
+        long numUnits = 0;
+
+        long startBytes = measureAllocation ? this.getAllocatedBytes() : -1;
+        long startTime = System.nanoTime();
+        long time;
+        do
+        {
+            numUnits += operation.run();
+            numOperations++;
+            time = System.nanoTime();
+        }
+        while (time < endTime);
+        long bytes = startBytes >= 0 ? this.getAllocatedBytes() - startBytes : -1;
+
+        if (result != null)
+        {
+            result.unitsPerOperation[iteration] = (double) numUnits / numOperations;
+            result.millisPerOperation[iteration] = (time - startTime) / 1e6 / numOperations;
+            result.nanosPerUnit[iteration] = numUnits > 0 ? (double) (time - startTime) / numUnits : Double.NaN;
+            result.bytesPerOperation[iteration] = bytes >= 0 ? (double) bytes / numOperations : Double.NaN;
+            result.bytesPerSecond[iteration] = bytes >= 0 ? bytes * 1e9 / (time - startTime) : Double.NaN;
+        }
+    }
+
+    /**
+     * Prints the harness's configuration and the heading of the report's table.
+     *
+     * @param description a description of the benchmark's data, or null if there's none.
+     * @param unitName    the name of the operations' unit of work, such as "vertices" or "items".
+     */
+    public void printHeader(String description, String unitName)
+    {
+        System.out.printf("%s%d warm up and %d measured iterations of %d ms%n",
+            description != null ? description + ", " : "", this.warmupIterations, this.measurementIterations,
+            this.iterationMillis);
+        System.out.printf("%-48s %12s %21s %12s %14s %10s%n", "Benchmark", unitName, "ms/op", "ns/unit", "B/op",
+            "MB/s");
+    }
+
+    /**
+     * Prints one row of the report's table.
+     *
+     * @param result the measurements to print.
+     */
+    public void print(Result result)
+    {
+        System.out.printf("%-48s %12.0f %10.3f +/- %6.3f %12.2f %14.0f %10.2f%n", result.name,
+            mean(result.unitsPerOperation), mean(result.millisPerOperation),
+            standardDeviation(result.millisPerOperation), mean(result.nanosPerUnit), mean(result.bytesPerOperation),
+            mean(result.bytesPerSecond) / 1e6);
+    }
+
+    /**
+     * Measures an operation and prints its results.
+     *
+     * @param name              the operation's name in the report.
+     * @param operation         the operation to measure.
+     * @param measureAllocation false if the operation allocates on other threads, so its allocation isn't measured.
+     *
+     * @throws Exception if the operation fails.
+     */
+    public void run(String name, Operation operation, boolean measureAllocation) throws Exception
+    {
+        this.print(this.measure(name, operation, measureAllocation));
+    }
+
+    protected static double mean(double[] values)
+    {
+        double sum = 0;
+        for (double value : values)
+        {
+            sum += value;
+        }
+
+        return sum / values.length;
+    }
+
+    protected static double standardDeviation(double[] values)
+    {
+        double mean = mean(values);
+        double sum = 0;
+        for (double value : values)
+        {
+            sum += (value - mean) * (value - mean);
+        }
+
+        return values.length > 1 ? Math.sqrt(sum / (values.length - 1)) : 0;
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.render.*;
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Measures the cost of decluttering a frame of labels with {@link BasicClutterFilter} and {@link
+ * PlacemarkClutterFilter}, each searching its regions with a {@link ScreenRegionGrid} and, for comparison, with the
+ * linear search the filters used before. The labels have fixed screen bounds scattered over a 1920 by 1080 viewport,
+ * and the draw context is not backed by OpenGL, so the benchmark runs headless.
+ * <p/>
+ * The benchmarks are run by a {@link BenchmarkHarness}. Each operation declutters one frame, so the report gives the
+ * renderables the filter draws, and the time and heap allocated per frame.
+ * <p/>
+ * Usage: <code>ClutterFilterBenchmark [numLabels [warmupIterations [measurementIterations [iterationMillis]]]]</code>.
+ * The Ant target <code>run.benchmarks</code> runs the benchmark with the default arguments.
+ *
+ * @version $Id$
+ */
+public class ClutterFilterBenchmark
+{
+    protected static final int DEFAULT_NUM_LABELS = 20000;
+
+    protected static final Rectangle VIEWPORT = new Rectangle(0, 0, 1920, 1080);
+
+    /** A label with fixed screen bounds. */
+    protected static class Label implements Declutterable
+    {
+        protected final Rectangle2D bounds;
+        protected final double distance;
+
+        public Label(Rectangle2D bounds, double distance)
+        {
+            this.bounds = bounds;
+            this.distance = distance;
+        }
+
+        public boolean isEnableDecluttering()
+        {
+            return true;
+        }
+
+        public Rectangle2D getBounds(DrawContext dc)
+        {
+            return this.bounds;
+        }
+
+        public double getDistanceFromEye()
+        {
+            return this.distance;
+        }
+
+        public void pick(DrawContext dc, Point pickPoint)
+        {
+        }
+
+        public void render(DrawContext dc)
+        {
+        }
+    }
+
+    /** A basic clutter filter that searches its regions linearly. */
+    protected static class LinearBasicClutterFilter extends BasicClutterFilter
+    {
+        @Override
+        protected Rectangle2D intersects(Rectangle2D rectangle)
+        {
+            return linearSearch(this.regions, rectangle);
+        }
+    }
+
+    /** A placemark clutter filter that searches its regions linearly. */
+    protected static class LinearPlacemarkClutterFilter extends PlacemarkClutterFilter
+    {
+        @Override
+        protected Rectangle2D intersects(Rectangle2D rectangle)
+        {
+            return linearSearch(this.regions, rectangle);
+        }
+    }
+
+    protected static Rectangle2D linearSearch(ScreenRegionGrid regions, Rectangle2D rectangle)
+    {
+        if (rectangle == null)
+            return null;
+
+        for (Rectangle2D rect : regions.getRegions())
+        {
+            if (rectangle.intersects(rect))
+                return rect;
+        }
+
+        return null;
+    }
+
+    protected final BenchmarkHarness harness;
+    protected final List<Declutterable> labels;
+    protected final DrawContext dc = new DrawContextImpl();
+
+    public ClutterFilterBenchmark(int numLabels, BenchmarkHarness harness)
+    {
+        if (numLabels < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", numLabels);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (harness == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.harness = harness;
+
+        // Labels are sorted front to back, as the draw context presents them to the filter.
+        this.labels = new ArrayList<Declutterable>(numLabels);
+        Random random = new Random(1);
+        for (int i = 0; i < numLabels; i++)
+        {
+            double width = 40 + 80 * random.nextDouble();
+            this.labels.add(new Label(new Rectangle2D.Double(VIEWPORT.width * random.nextDouble() - width / 2,
+                VIEWPORT.height * random.nextDouble() - 7, width, 14), i));
+        }
+    }
+
+    /**
+     * Declutters the labels once, and discards the ordered renderables the filter adds to the draw context.
+     *
+     * @param filter the filter to apply.
+     *
+     * @return the number of ordered renderables the filter added.
+     */
+    protected int applyFilter(ClutterFilter filter)
+    {
+        filter.apply(this.dc, this.labels);
+
+        int numDrawn = 0;
+        while (this.dc.pollOrderedRenderables() != null)
+        {
+            numDrawn++;
+        }
+
+        return numDrawn;
+    }
+
+    /**
+     * Measures a filter and prints its results.
+     *
+     * @param name   the filter's name in the report.
+     * @param filter the filter to measure.
+     *
+     * @throws Exception if the filter fails.
+     */
+    protected void run(String name, final ClutterFilter filter) throws Exception
+    {
+        this.harness.run(name, new BenchmarkHarness.Operation()
+        {
+            public long run()
+            {
+                return applyFilter(filter);
+            }
+        }, true);
+    }
+
+    /**
+     * Runs all the benchmarks and prints their results.
+     *
+     * @throws Exception if a filter fails.
+     */
+    public void run() throws Exception
+    {
+        this.harness.printHeader(this.labels.size() + " labels", "Renderables");
+
+        this.run("BasicClutterFilter (linear)", this.prepare(new LinearBasicClutterFilter()));
+        this.run("BasicClutterFilter (grid)", this.prepare(new BasicClutterFilter()));
+        this.run("PlacemarkClutterFilter (linear)", this.prepare(new LinearPlacemarkClutterFilter()));
+        this.run("PlacemarkClutterFilter (grid)", this.prepare(new PlacemarkClutterFilter()));
+    }
+
+    /**
+     * Sizes a filter's grid to the benchmark's viewport. The draw context has no view to take it from.
+     *
+     * @param filter the filter to prepare.
+     *
+     * @return the filter.
+     */
+    protected ClutterFilter prepare(BasicClutterFilter filter)
+    {
+        filter.regions.reset(VIEWPORT);
+        return filter;
+    }
+
+    protected ClutterFilter prepare(PlacemarkClutterFilter filter)
+    {
+        filter.regions.reset(VIEWPORT);
+        return filter;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        int numLabels = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUM_LABELS;
+
+        new ClutterFilterBenchmark(numLabels, BenchmarkHarness.fromArgs(args, 1)).run();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.geom.Angle;
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.io.File;
+import java.nio.*;
+import java.util.Random;
+
+/**
+ * @version $Id$
+ */
+public class EGM96Test
+{
+    public static class Tests extends TestCase
+    {
+        protected static final String OFFSETS_FILE = "config/EGM96.dat";
+
+        /** Tests that batch offsets equal those computed one location at a time. */
+        public void testBatchOffsets() throws Exception
+        {
+            EGM96 egm96 = new EGM96(OFFSETS_FILE);
+
+            Random random = new Random(1);
+            double[] lats = new double[1000];
+            double[] lons = new double[lats.length];
+            for (int i = 0; i < lats.length; i++)
+            {
+                lats[i] = 180 * random.nextDouble() - 90;
+                lons[i] = 360 * random.nextDouble() - 180;
+            }
+            lats[0] = -90;
+            lons[1] = 179.99;
+            lats[2] = Double.NaN;
+
+            double[] offsets = new double[lats.length];
+            egm96.getOffsets(lats, lons, offsets);
+
+            assertEquals("NaN location offset incorrect ", 0d, offsets[2]);
+            for (int i = 3; i < lats.length; i++)
+            {
+                double expected = egm96.getOffset(Angle.fromDegrees(lats[i]), Angle.fromDegrees(lons[i]));
+                assertEquals("Offset incorrect at " + i + " ", expected, offsets[i]);
+                assertTrue("Offset out of range at " + i + " ", Math.abs(offsets[i]) < 110);
+            }
+        }
+
+        /** Tests that a finer floating point grid is mapped and interpolated. */
+        public void testFloatGrid() throws Exception
+        {
+            int numRows = 181;
+            int numCols = 360;
+            ByteBuffer buffer = ByteBuffer.allocate(4 * numRows * numCols).order(ByteOrder.BIG_ENDIAN);
+            for (int row = 0; row < numRows; row++)
+            {
+                for (int col = 0; col < numCols; col++)
+                {
+                    buffer.putFloat((float) ((90 - row) + col / 1000d));
+                }
+            }
+            buffer.rewind();
+
+            File file = WWIO.saveBufferToTempFile(buffer, ".dat");
+            try
+            {
+                EGM96 grid = new EGM96(file.getPath(), Angle.fromDegrees(1), AVKey.FLOAT32, 1);
+
+                assertEquals("Post offset incorrect ", 45.1, grid.getOffsetDegrees(45, 100), 1e-4);
+                assertEquals("Interpolated offset incorrect ", -30.25 + 0.2005, grid.getOffsetDegrees(-30.25, 200.5),
+                    1e-4);
+                assertEquals("Negative longitude offset incorrect ", 10.35,
+                    grid.getOffset(Angle.fromDegrees(10), Angle.fromDegrees(-10)), 1e-4);
+            }
+            finally
+            {
+                file.delete();
+            }
+        }
+
+        /** Tests that a grid file smaller than its interval implies is rejected. */
+        public void testGridTooSmall() throws Exception
+        {
+            File file = WWIO.saveBufferToTempFile(ByteBuffer.allocate(1000), ".dat");
+            try
+            {
+                new EGM96(file.getPath(), Angle.fromDegrees(1), AVKey.FLOAT32, 1);
+                fail("Small grid accepted ");
+            }
+            catch (gov.nasa.worldwind.exception.WWRuntimeException e)
+            {
+                // Expected
+            }
+            finally
+            {
+                file.delete();
+            }
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
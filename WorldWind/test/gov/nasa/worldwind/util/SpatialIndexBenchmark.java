@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.geom.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Compares {@link BasicRTree} with {@link BasicQuadTree}: the cost of building each from a set of items, of finding
+ * the items in many small regions, from one thread and from several threads at once, and the cost of the R-tree's
+ * nearest item search. Items are points distributed uniformly over the globe, points in a few tight clusters, and
+ * regions up to 10 degrees across. The quadtree has 8 levels, as the layers using it do. Query regions are centered on
+ * randomly chosen items, so that they find items in clustered data too.
+ * <p/>
+ * The benchmarks are run by a {@link BenchmarkHarness}, whose report gives the number of items each operation found or
+ * added, the time per operation and the heap allocated per operation. Allocation is not reported for operations run on
+ * several threads.
+ * <p/>
+ * Usage: <code>SpatialIndexBenchmark [numItems [warmupIterations [measurementIterations [iterationMillis]]]]</code>.
+ * The Ant target <code>run.benchmarks</code> runs the benchmark with the default arguments.
+ *
+ * @version $Id$
+ */
+public class SpatialIndexBenchmark
+{
+    protected static final int DEFAULT_NUM_ITEMS = 20000;
+
+    protected static final int QUAD_TREE_LEVELS = 8;
+    protected static final int NUM_QUERIES = 1000;
+    protected static final double QUERY_SIZE = 1;
+    protected static final int NUM_NEAREST = 10;
+    protected static final int NUM_THREADS = 4;
+
+    protected final int numItems;
+    protected final BenchmarkHarness harness;
+    protected final ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+
+    public SpatialIndexBenchmark(int numItems, BenchmarkHarness harness)
+    {
+        if (numItems < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange", numItems);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (harness == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.numItems = numItems;
+        this.harness = harness;
+    }
+
+    //**************************************************************//
+    //********************  Data Sets  *****************************//
+    //**************************************************************//
+
+    protected List<Sector> createUniformPoints(Random random)
+    {
+        List<Sector> sectors = new ArrayList<Sector>(this.numItems);
+        for (int i = 0; i < this.numItems; i++)
+        {
+            double lat = -90 + 180 * random.nextDouble();
+            double lon = -180 + 360 * random.nextDouble();
+            sectors.add(Sector.fromDegrees(lat, lat, lon, lon));
+        }
+
+        return sectors;
+    }
+
+    protected List<Sector> createClusteredPoints(Random random)
+    {
+        double[][] centers = new double[20][];
+        for (int i = 0; i < centers.length; i++)
+        {
+            centers[i] = new double[] {-60 + 120 * random.nextDouble(), -170 + 340 * random.nextDouble()};
+        }
+
+        List<Sector> sectors = new ArrayList<Sector>(this.numItems);
+        for (int i = 0; i < this.numItems; i++)
+        {
+            double[] center = centers[random.nextInt(centers.length)];
+            double lat = center[0] + 0.5 * random.nextGaussian();
+            double lon = center[1] + 0.5 * random.nextGaussian();
+            sectors.add(Sector.fromDegrees(lat, lat, lon, lon));
+        }
+
+        return sectors;
+    }
+
+    protected List<Sector> createLargeRegions(Random random)
+    {
+        List<Sector> sectors = new ArrayList<Sector>(this.numItems);
+        for (int i = 0; i < this.numItems; i++)
+        {
+            double lat = -90 + 180 * random.nextDouble();
+            double lon = -180 + 360 * random.nextDouble();
+            sectors.add(Sector.fromDegrees(lat, Math.min(90, lat + 10 * random.nextDouble()), lon,
+                Math.min(180, lon + 10 * random.nextDouble())));
+        }
+
+        return sectors;
+    }
+
+    protected static List<Sector> createQueries(List<Sector> sectors, Random random)
+    {
+        List<Sector> queries = new ArrayList<Sector>(NUM_QUERIES);
+        for (int i = 0; i < NUM_QUERIES; i++)
+        {
+            LatLon center = sectors.get(random.nextInt(sectors.size())).getCentroid();
+            double lat = Math.max(-90, Math.min(90 - QUERY_SIZE, center.getLatitude().degrees - QUERY_SIZE / 2));
+            double lon = Math.max(-180, Math.min(180 - QUERY_SIZE, center.getLongitude().degrees - QUERY_SIZE / 2));
+            queries.add(Sector.fromDegrees(lat, lat + QUERY_SIZE, lon, lon + QUERY_SIZE));
+        }
+
+        return queries;
+    }
+
+    protected static double[] toCoords(Sector sector)
+    {
+        return new double[] {sector.getMinLatitude().degrees, sector.getMaxLatitude().degrees,
+            sector.getMinLongitude().degrees, sector.getMaxLongitude().degrees};
+    }
+
+    //**************************************************************//
+    //********************  Operations  ****************************//
+    //**************************************************************//
+
+    protected static BasicQuadTree<Integer> buildQuadTree(List<Sector> sectors)
+    {
+        BasicQuadTree<Integer> tree = new BasicQuadTree<Integer>(QUAD_TREE_LEVELS, Sector.FULL_SPHERE, null);
+        for (int i = 0; i < sectors.size(); i++)
+        {
+            tree.add(i, toCoords(sectors.get(i)));
+        }
+
+        return tree;
+    }
+
+    protected static BasicRTree<Integer> buildRTree(List<Sector> sectors)
+    {
+        BasicRTree<Integer> tree = new BasicRTree<Integer>();
+        for (int i = 0; i < sectors.size(); i++)
+        {
+            tree.add(i, sectors.get(i));
+        }
+
+        return tree;
+    }
+
+    protected static BasicRTree<Integer> bulkLoadRTree(List<Sector> sectors)
+    {
+        Map<Integer, List<Sector>> items = new HashMap<Integer, List<Sector>>(2 * sectors.size());
+        for (int i = 0; i < sectors.size(); i++)
+        {
+            items.put(i, Arrays.asList(sectors.get(i)));
+        }
+
+        BasicRTree<Integer> tree = new BasicRTree<Integer>();
+        tree.bulkLoad(items);
+
+        return tree;
+    }
+
+    protected static int query(BasicQuadTree<Integer> tree, List<Sector> queries)
+    {
+        int numFound = 0;
+        Set<Integer> items = new HashSet<Integer>();
+        for (Sector query : queries)
+        {
+            items.clear();
+            numFound += tree.getItemsInRegion(query, items).size();
+        }
+
+        return numFound;
+    }
+
+    protected static int query(BasicRTree<Integer> tree, List<Sector> queries)
+    {
+        int numFound = 0;
+        Set<Integer> items = new HashSet<Integer>();
+        for (Sector query : queries)
+        {
+            items.clear();
+            numFound += tree.getItemsInRegion(query, items).size();
+        }
+
+        return numFound;
+    }
+
+    /**
+     * Runs a number of copies of an operation at once, one on each thread of the benchmark's pool.
+     *
+     * @param operation the operation to run.
+     *
+     * @return the number of items the copies found.
+     *
+     * @throws Exception if any copy fails.
+     */
+    protected long runConcurrently(final BenchmarkHarness.Operation operation) throws Exception
+    {
+        List<Callable<Long>> tasks = new ArrayList<Callable<Long>>(NUM_THREADS);
+        for (int i = 0; i < NUM_THREADS; i++)
+        {
+            tasks.add(new Callable<Long>()
+            {
+                public Long call() throws Exception
+                {
+                    return operation.run();
+                }
+            });
+        }
+
+        long numFound = 0;
+        for (Future<Long> future : this.executor.invokeAll(tasks))
+        {
+            numFound += future.get();
+        }
+
+        return numFound;
+    }
+
+    //**************************************************************//
+    //********************  Measurement  ***************************//
+    //**************************************************************//
+
+    /**
+     * Runs the benchmarks of one data set and prints their results.
+     *
+     * @param name    the data set's name in the report.
+     * @param sectors the sectors of the data set's items.
+     * @param random  the random number generator used to choose queries.
+     *
+     * @throws Exception if an operation fails.
+     */
+    protected void run(String name, final List<Sector> sectors, Random random) throws Exception
+    {
+        System.out.println();
+        this.harness.printHeader(name + ", " + this.numItems + " items", "Items");
+
+        final List<Sector> queries = createQueries(sectors, random);
+        final List<LatLon> locations = new ArrayList<LatLon>(NUM_QUERIES);
+        for (Sector query : queries)
+        {
+            locations.add(query.getCentroid());
+        }
+
+        this.harness.run("BasicQuadTree add", new BenchmarkHarness.Operation()
+        {
+            public long run()
+            {
+                return buildQuadTree(sectors).hasItems() ? sectors.size() : 0;
+            }
+        }, true);
+
+        this.harness.run("BasicRTree add", new BenchmarkHarness.Operation()
+        {
+            public long run()
+            {
+                return buildRTree(sectors).size();
+            }
+        }, true);
+
+        this.harness.run("BasicRTree bulk load", new BenchmarkHarness.Operation()
+        {
+            public long run()
+            {
+                return bulkLoadRTree(sectors).size();
+            }
+        }, true);
+
+        final BasicQuadTree<Integer> quadTree = buildQuadTree(sectors);
+        final BasicRTree<Integer> insertedRTree = buildRTree(sectors);
+        final BasicRTree<Integer> loadedRTree = bulkLoadRTree(sectors);
+
+        final BenchmarkHarness.Operation quadTreeQuery = new BenchmarkHarness.Operation()
+        {
+            public long run()
+            {
+                return query(quadTree, queries);
+            }
+        };
+        final BenchmarkHarness.Operation loadedRTreeQuery = new BenchmarkHarness.Operation()
+        {
+            public long run()
+            {
+                return query(loadedRTree, queries);
+            }
+        };
+
+        this.harness.run("BasicQuadTree " + NUM_QUERIES + " regions", quadTreeQuery, true);
+        this.harness.run("BasicRTree (added) " + NUM_QUERIES + " regions", new BenchmarkHarness.Operation()
+        {
+            public long run()
+            {
+                return query(insertedRTree, queries);
+            }
+        }, true);
+        this.harness.run("BasicRTree (loaded) " + NUM_QUERIES + " regions", loadedRTreeQuery, true);
+
+        this.harness.run("BasicQuadTree " + NUM_QUERIES + " regions x " + NUM_THREADS, new BenchmarkHarness.Operation()
+        {
+            public long run() throws Exception
+            {
+                return runConcurrently(quadTreeQuery);
+            }
+        }, false);
+        this.harness.run("BasicRTree " + NUM_QUERIES + " regions x " + NUM_THREADS, new BenchmarkHarness.Operation()
+        {
+            public long run() throws Exception
+            {
+                return runConcurrently(loadedRTreeQuery);
+            }
+        }, false);
+
+        this.harness.run("BasicRTree " + NUM_QUERIES + " nearest " + NUM_NEAREST, new BenchmarkHarness.Operation()
+        {
+            public long run()
+            {
+                int numFound = 0;
+                List<Integer> items = new ArrayList<Integer>(NUM_NEAREST);
+                for (LatLon location : locations)
+                {
+                    items.clear();
+                    numFound += loadedRTree.getNearestItems(location, NUM_NEAREST, items).size();
+                }
+
+                return numFound;
+            }
+        }, true);
+    }
+
+    /**
+     * Runs all the benchmarks and prints their results.
+     *
+     * @throws Exception if an operation fails.
+     */
+    public void run() throws Exception
+    {
+        try
+        {
+            Random random = new Random(1);
+            this.run("Uniform points", this.createUniformPoints(random), random);
+            this.run("Clustered points", this.createClusteredPoints(random), random);
+            this.run("Regions up to 10 degrees", this.createLargeRegions(random), random);
+        }
+        finally
+        {
+            this.executor.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        int numItems = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUM_ITEMS;
+
+        new SpatialIndexBenchmark(numItems, BenchmarkHarness.fromArgs(args, 1)).run();
+    }
+}
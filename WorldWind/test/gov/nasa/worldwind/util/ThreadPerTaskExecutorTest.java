@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.util;
+
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @version $Id$
+ */
+public class ThreadPerTaskExecutorTest
+{
+    public static class Tests extends TestCase
+    {
+        protected final AtomicInteger running = new AtomicInteger();
+        protected final AtomicInteger maxRunning = new AtomicInteger();
+        protected final AtomicInteger completed = new AtomicInteger();
+
+        protected Runnable createTask(final CountDownLatch latch)
+        {
+            return new Runnable()
+            {
+                public void run()
+                {
+                    int count = running.incrementAndGet();
+                    for (int max = maxRunning.get(); count > max; max = maxRunning.get())
+                    {
+                        maxRunning.compareAndSet(max, count);
+                    }
+
+                    try
+                    {
+                        latch.await(5, TimeUnit.SECONDS);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    finally
+                    {
+                        running.decrementAndGet();
+                        completed.incrementAndGet();
+                    }
+                }
+            };
+        }
+
+        /** Tests that no more than the concurrency limit of tasks run at once, and that queued tasks all run. */
+        public void testConcurrencyLimit() throws Exception
+        {
+            ThreadPerTaskExecutor executor = new ThreadPerTaskExecutor(4, new LinkedBlockingQueue<Runnable>());
+            CountDownLatch latch = new CountDownLatch(1);
+
+            for (int i = 0; i < 50; i++)
+            {
+                executor.execute(this.createTask(latch));
+            }
+
+            Thread.sleep(100);
+            assertEquals("Active count incorrect ", 4, executor.getActiveCount());
+            assertEquals("Queue size incorrect ", 46, executor.getQueue().size());
+
+            latch.countDown();
+            executor.shutdown();
+            assertTrue("Executor not terminated ", executor.awaitTermination(5, TimeUnit.SECONDS));
+            assertEquals("Tasks not completed ", 50, this.completed.get());
+            assertEquals("Concurrency limit exceeded ", 4, this.maxRunning.get());
+        }
+
+        /** Tests that raising the concurrency limit starts queued tasks. */
+        public void testSetMaxConcurrency() throws Exception
+        {
+            ThreadPerTaskExecutor executor = new ThreadPerTaskExecutor(1, new LinkedBlockingQueue<Runnable>());
+            CountDownLatch latch = new CountDownLatch(1);
+
+            for (int i = 0; i < 10; i++)
+            {
+                executor.execute(this.createTask(latch));
+            }
+
+            Thread.sleep(100);
+            assertEquals("Active count incorrect ", 1, executor.getActiveCount());
+
+            executor.setMaxConcurrency(10);
+            Thread.sleep(100);
+            assertEquals("Active count not raised ", 10, executor.getActiveCount());
+
+            latch.countDown();
+            executor.shutdown();
+            assertTrue("Executor not terminated ", executor.awaitTermination(5, TimeUnit.SECONDS));
+            assertEquals("Tasks not completed ", 10, this.completed.get());
+        }
+
+        /** Tests that tasks are rejected when the queue is full and after shutdown. */
+        public void testRejection() throws Exception
+        {
+            ThreadPerTaskExecutor executor = new ThreadPerTaskExecutor(1, new ArrayBlockingQueue<Runnable>(1));
+            CountDownLatch latch = new CountDownLatch(1);
+
+            executor.execute(this.createTask(latch));
+            Thread.sleep(100);
+            executor.execute(this.createTask(latch));
+
+            try
+            {
+                executor.execute(this.createTask(latch));
+                fail("Task accepted by full queue ");
+            }
+            catch (RejectedExecutionException e)
+            {
+                // Expected
+            }
+
+            latch.countDown();
+            executor.shutdown();
+
+            try
+            {
+                executor.execute(this.createTask(latch));
+                fail("Task accepted after shutdown ");
+            }
+            catch (RejectedExecutionException e)
+            {
+                // Expected
+            }
+
+            assertTrue("Executor not terminated ", executor.awaitTermination(5, TimeUnit.SECONDS));
+            assertEquals("Tasks not completed ", 2, this.completed.get());
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+
+package gov.nasa.worldwind.view.orbit;
+
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.*;
+import gov.nasa.worldwind.terrain.BasicElevationModel;
+import gov.nasa.worldwind.util.TileKey;
+import junit.framework.*;
+import junit.textui.TestRunner;
+
+import java.lang.reflect.*;
+import java.util.*;
+
+/**
+ * @version $Id$
+ */
+public class ElevationTilePrefetcherTest
+{
+    /** An elevation model that records the tiles prefetched from it rather than retrieving them. */
+    protected static class PrefetchElevationModel extends BasicElevationModel
+    {
+        protected List<TileKey> prefetchedKeys = new ArrayList<TileKey>();
+        protected int numCancels;
+
+        public PrefetchElevationModel()
+        {
+            super(createParams());
+        }
+
+        protected static AVList createParams()
+        {
+            AVList params = new AVListImpl();
+            params.setValue(AVKey.SECTOR, Sector.FULL_SPHERE);
+            params.setValue(AVKey.LEVEL_ZERO_TILE_DELTA, LatLon.fromDegrees(20, 20));
+            params.setValue(AVKey.TILE_ORIGIN, LatLon.fromDegrees(-90, -180));
+            params.setValue(AVKey.NUM_LEVELS, 4);
+            params.setValue(AVKey.TILE_WIDTH, 16);
+            params.setValue(AVKey.TILE_HEIGHT, 16);
+            params.setValue(AVKey.DATA_CACHE_NAME, "ElevationTilePrefetcherTest");
+            params.setValue(AVKey.DATASET_NAME, "ElevationTilePrefetcherTest");
+            params.setValue(AVKey.FORMAT_SUFFIX, ".bil");
+            params.setValue(AVKey.NETWORK_RETRIEVAL_ENABLED, false);
+            params.setValue(AVKey.ELEVATION_MIN, 0d);
+            params.setValue(AVKey.ELEVATION_MAX, 1000d);
+            return params;
+        }
+
+        @Override
+        public List<TileKey> computeTileKeys(Sector sector, double targetResolution)
+        {
+            // The tiles around the sector's center, so that distinct sectors have distinct tiles.
+            LatLon center = sector.getCentroid();
+            int row = (int) Math.floor(center.getLatitude().degrees);
+            int col = (int) Math.floor(center.getLongitude().degrees);
+
+            List<TileKey> keys = new ArrayList<TileKey>();
+            for (int i = 0; i < 4; i++)
+            {
+                keys.add(new TileKey(3, row, col * 4 + i, "ElevationTilePrefetcherTest"));
+            }
+            return keys;
+        }
+
+        @Override
+        public boolean prefetchTile(TileKey key, double priority)
+        {
+            this.prefetchedKeys.add(key);
+            return true;
+        }
+
+        @Override
+        public void cancelPrefetches()
+        {
+            this.numCancels++;
+        }
+    }
+
+    public static class Tests extends TestCase
+    {
+        protected ElevationTilePrefetcher prefetcher;
+        protected BasicOrbitView view;
+        protected Globe globe;
+        protected PrefetchElevationModel elevationModel;
+
+        @Override
+        public void setUp()
+        {
+            WorldWindow wwd = (WorldWindow) Proxy.newProxyInstance(WorldWindow.class.getClassLoader(),
+                new Class[] {WorldWindow.class}, new InvocationHandler()
+            {
+                public Object invoke(Object proxy, Method method, Object[] args)
+                {
+                    return null;
+                }
+            });
+
+            this.prefetcher = new ElevationTilePrefetcher(wwd);
+            this.globe = new Earth();
+            this.view = new BasicOrbitView();
+            this.view.setGlobe(this.globe);
+            this.elevationModel = new PrefetchElevationModel();
+        }
+
+        protected List<ElevationTilePrefetcher.PredictedView> predictMotion(double lat, double lon, double zoom,
+            long time)
+        {
+            return this.prefetcher.predictMotion(this.view, Position.fromDegrees(lat, lon, 0), zoom, Angle.ZERO,
+                time);
+        }
+
+        protected void requestTiles(List<ElevationTilePrefetcher.PredictedView> predictedViews)
+        {
+            this.prefetcher.requestTiles(this.view, this.globe, predictedViews,
+                Arrays.<BasicElevationModel>asList(this.elevationModel));
+        }
+
+        /** Tests that a view panning at a constant rate is predicted to continue at that rate. */
+        public void testLinearPanPrediction()
+        {
+            assertNull("Motion predicted from one view ", this.predictMotion(9, 19, 1e6, 1000));
+
+            List<ElevationTilePrefetcher.PredictedView> predictedViews = this.predictMotion(10, 20, 9e5, 1250);
+            assertEquals("Number of predictions incorrect ", this.prefetcher.getNumSamples(), predictedViews.size());
+
+            // Each sample is a quarter second further ahead, and the view moved by one degree in the last quarter.
+            for (int i = 0; i < predictedViews.size(); i++)
+            {
+                ElevationTilePrefetcher.PredictedView predictedView = predictedViews.get(i);
+                assertEquals("Latitude incorrect ", 11d + i, predictedView.center.getLatitude().degrees, 1e-9);
+                assertEquals("Longitude incorrect ", 21d + i, predictedView.center.getLongitude().degrees, 1e-9);
+                assertEquals("Zoom incorrect ", 9e5 - 1e5 * (i + 1), predictedView.zoom, 1e-6);
+            }
+
+            assertNull("Motion predicted for a still view ", this.predictMotion(10, 20, 9e5, 1500));
+        }
+
+        /** Tests that a flight's predicted views are sampled from the rest of the flight, ending at its destination. */
+        public void testFlyToPrediction()
+        {
+            Position begin = Position.fromDegrees(0, 0, 0);
+            Position end = Position.fromDegrees(10, 20, 0);
+            FlyToOrbitViewAnimator animator = FlyToOrbitViewAnimator.createFlyToOrbitViewAnimator(this.view,
+                begin, end, Angle.ZERO, Angle.ZERO, Angle.ZERO, Angle.fromDegrees(45), 1e6, 1e5, 10000,
+                WorldWind.ABSOLUTE);
+
+            List<ElevationTilePrefetcher.PredictedView> predictedViews = this.prefetcher.predictFlight(animator);
+            assertEquals("Number of predictions incorrect ", this.prefetcher.getNumSamples(), predictedViews.size());
+
+            ElevationTilePrefetcher.PredictedView last = predictedViews.get(predictedViews.size() - 1);
+            assertEquals("Final latitude incorrect ", 10d, last.center.getLatitude().degrees, 1e-6);
+            assertEquals("Final longitude incorrect ", 20d, last.center.getLongitude().degrees, 1e-6);
+            assertEquals("Final zoom incorrect ", 1e5, last.zoom, 1e-3);
+            assertEquals("Final pitch incorrect ", 45d, last.pitch.degrees, 1e-6);
+
+            for (int i = 1; i < predictedViews.size(); i++)
+            {
+                assertTrue("Flight does not progress ", predictedViews.get(i).center.getLatitude().degrees
+                    >= predictedViews.get(i - 1).center.getLatitude().degrees);
+            }
+
+            // Test that a flight in progress is sampled from its current point onward.
+            animator.interpolant = 0.5;
+            predictedViews = this.prefetcher.predictFlight(animator);
+            Position expected = animator.computeCenterPosition(0.5 + 0.5 / this.prefetcher.getNumSamples());
+            assertEquals("First sample incorrect ", expected, predictedViews.get(0).center);
+        }
+
+        /** Tests that the number of tiles requested per update is bounded by the request limit and the budgets. */
+        public void testRequestBudget()
+        {
+            this.prefetcher.setMaxRequestsPerUpdate(3);
+            this.prefetcher.bandwidthAvailable = 1e9;
+
+            // The view moves half a degree east per update, and predictions are a quarter second apart.
+            this.predictMotion(10, 20, 1e6, 1000);
+            this.requestTiles(this.predictMotion(10, 20.5, 1e6, 1250));
+            assertEquals("Request limit not applied ", 3, this.elevationModel.prefetchedKeys.size());
+
+            // Test that a tile's not requested twice during one motion of the view.
+            this.requestTiles(this.predictMotion(10, 21, 1e6, 1500));
+            assertEquals("Requests not limited ", 6, this.elevationModel.prefetchedKeys.size());
+            assertEquals("Tile requested twice ", 6, new HashSet<TileKey>(this.elevationModel.prefetchedKeys).size());
+
+            // Test that the bandwidth available bounds the requests. Each tile is 16 x 16 two-byte samples.
+            this.elevationModel.prefetchedKeys.clear();
+            this.prefetcher.bandwidthAvailable = 2.5 * 512;
+            this.requestTiles(this.predictMotion(10, 21.5, 1e6, 1750));
+            assertEquals("Bandwidth budget not applied ", 2, this.elevationModel.prefetchedKeys.size());
+
+            // Test that the memory budget bounds the requests of one motion.
+            this.elevationModel.prefetchedKeys.clear();
+            this.prefetcher.bandwidthAvailable = 1e9;
+            this.prefetcher.setMemoryBudget(this.prefetcher.memoryUsed + 512);
+            this.requestTiles(this.predictMotion(10, 22, 1e6, 2000));
+            assertEquals("Memory budget not applied ", 1, this.elevationModel.prefetchedKeys.size());
+        }
+
+        /** Tests that pending prefetches are cancelled when the view turns back. */
+        public void testReversalDropsStalePrefetches()
+        {
+            this.prefetcher.bandwidthAvailable = 1e9;
+
+            this.predictMotion(10, 20, 1e6, 1000);
+            this.requestTiles(this.predictMotion(10, 21, 1e6, 1250));
+            assertFalse("No tiles requested ", this.prefetcher.requestedKeys.isEmpty());
+
+            // Test that continuing in the same direction keeps the pending prefetches.
+            this.requestTiles(this.predictMotion(10, 22, 1e6, 1500));
+            assertEquals("Prefetches cancelled while moving ahead ", 0, this.elevationModel.numCancels);
+
+            List<ElevationTilePrefetcher.PredictedView> predictedViews = this.predictMotion(10, 21.5, 1e6, 1750);
+            assertEquals("Prefetches not cancelled on reversal ", 1, this.elevationModel.numCancels);
+            assertTrue("Requested tiles not forgotten on reversal ", this.prefetcher.requestedKeys.isEmpty());
+            assertEquals("Memory budget not reset on reversal ", 0, this.prefetcher.memoryUsed);
+            assertTrue("Prediction does not follow reversal ",
+                predictedViews.get(0).center.getLongitude().degrees < 21.5);
+
+            // Test that zooming back out after zooming in also drops the pending prefetches.
+            this.requestTiles(predictedViews);
+            this.predictMotion(10, 21.5, 9e5, 2000);
+            this.requestTiles(this.predictMotion(10, 21.5, 8e5, 2250));
+            this.predictMotion(10, 21.5, 9e5, 2500);
+            assertEquals("Prefetches not cancelled on zoom reversal ", 2, this.elevationModel.numCancels);
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        new TestRunner().doRun(new TestSuite(Tests.class));
+    }
+}